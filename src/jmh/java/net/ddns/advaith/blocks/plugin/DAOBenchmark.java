@@ -0,0 +1,125 @@
+/*
+ * This file is part of Blocks.
+ * 
+ * Blocks is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * Blocks is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with Blocks. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package net.ddns.advaith.blocks.plugin;
+
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import net.ddns.advaith.blocks.model.GenericDAO;
+import net.ddns.advaith.blocks.model.Paginated;
+import net.ddns.advaith.blocks.model.Task;
+
+/**
+ * Measures the operations {@link DAOConformanceTest} budgets for: the first
+ * page of a fetchAll(), a whole fetchAll() walk, and addAll() in batches.
+ * The factory is any DAOFactory with a no-argument constructor, so a plugin
+ * can be compared with the in-memory baseline by putting it on the test
+ * classpath, e.g. {@code -Djmh.args="DAOBenchmark -p
+ * factory=net.ddns.advaith.blocks.dao.MemoryDAOFactory,com.example.MyFactory"}.
+ *
+ * @since 0.1.0
+ * @author Advaith Menon
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DAOBenchmark {
+    // tasks added per addAll() call
+    private static final int BATCH = 1000;
+
+    @Param({"net.ddns.advaith.blocks.dao.MemoryDAOFactory"})
+    private String factory;
+
+    @Param({"100000"})
+    private int size;
+
+    // the DAO the reads run against, filled once
+    private GenericDAO<Task> loaded;
+
+    // the DAO addAll() writes to, emptied every iteration
+    private GenericDAO<Task> empty;
+
+    @Setup
+    public void setUp() throws Exception {
+        loaded = newDAO();
+        for (int i = 0; i < size; i += BATCH) {
+            loaded.addAll(batch(i, Math.min(BATCH, size - i)));
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void setUpIteration() throws Exception {
+        empty = newDAO();
+    }
+
+    private GenericDAO<Task> newDAO() throws Exception {
+        return ((DAOFactory) Class.forName(factory).getConstructor()
+                .newInstance()).build().getTaskDAO();
+    }
+
+    private static List<Task> batch(int from, int n) {
+        ZonedDateTime base = ZonedDateTime.of(2030, 1, 1, 9, 0, 0, 0,
+                ZoneOffset.UTC);
+        List<Task> out = new ArrayList<>(n);
+        for (int i = from; i < from + n; ++i) {
+            out.add(new Task(-1, "Task " + i, null, base.plusMinutes(i)));
+        }
+        return out;
+    }
+
+    @Benchmark
+    public List<Task> firstPage() {
+        return loaded.fetchAll().nextPage();
+    }
+
+    @Benchmark
+    public void walk(Blackhole bh) {
+        Paginated<Task> p = loaded.fetchAll();
+        while (p.hasNextPage()) {
+            bh.consume(p.nextPage());
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void addAll() {
+        empty.addAll(batch(0, BATCH));
+    }
+}
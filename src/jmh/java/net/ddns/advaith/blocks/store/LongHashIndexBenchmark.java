@@ -0,0 +1,138 @@
+/*
+ * This file is part of Blocks.
+ *
+ * Blocks is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Blocks is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with Blocks. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.ddns.advaith.blocks.store;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares lookups by ID in a boxed {@code HashMap<Long, Object>} with the
+ * primitive LongHashIndex, and the same for the concurrent variants.
+ *
+ * Heap use is reported once per trial (look for the "footprint" lines in the
+ * output): the retained heap of each structure is measured after a GC, so
+ * run with a fixed heap for stable numbers, e.g. {@code -Djmh.args="-jvmArgs
+ * -Xmx2g LongHashIndexBenchmark"}.
+ *
+ * @since 0.1.0
+ * @author Advaith Menon
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LongHashIndexBenchmark {
+    @Param({"1000000"})
+    private int size;
+
+    // keys to look up, a random mix of hits and misses
+    private long[] probes;
+
+    private Map<Long, Object> hashMap;
+    private LongHashIndex<Object> index;
+    private Map<Long, Object> concurrentHashMap;
+    private ConcurrentLongHashIndex<Object> concurrentIndex;
+
+    // position in probes
+    private int p;
+
+    @Setup
+    public void setUp() {
+        Object value = new Object();
+        Random r = new Random(42);
+
+        long before = usedHeap();
+        hashMap = new HashMap<>();
+        for (long i = 0; i < size; ++i) {
+            hashMap.put(i * 7, value);
+        }
+        long afterHashMap = usedHeap();
+
+        index = new LongHashIndex<>();
+        for (long i = 0; i < size; ++i) {
+            index.put(i * 7, value);
+        }
+        long afterIndex = usedHeap();
+
+        System.out.printf("%nfootprint: HashMap<Long, Object> %.1f bytes/entry,"
+                + " LongHashIndex %.1f bytes/entry%n",
+                (afterHashMap - before) / (double) size,
+                (afterIndex - afterHashMap) / (double) size);
+
+        concurrentHashMap = new ConcurrentHashMap<>(hashMap);
+        concurrentIndex = new ConcurrentLongHashIndex<>(16, size);
+        for (long i = 0; i < size; ++i) {
+            concurrentIndex.put(i * 7, value);
+        }
+
+        probes = new long[1 << 16];
+        for (int i = 0; i < probes.length; ++i) {
+            probes[i] = r.nextInt(size * 8);
+        }
+    }
+
+    private static long usedHeap() {
+        Runtime rt = Runtime.getRuntime();
+        for (int i = 0; i < 3; ++i) {
+            System.gc();
+        }
+        return rt.totalMemory() - rt.freeMemory();
+    }
+
+    private long nextProbe() {
+        return probes[p++ & (probes.length - 1)];
+    }
+
+    @Benchmark
+    public void hashMapGet(Blackhole bh) {
+        bh.consume(hashMap.get(nextProbe()));
+    }
+
+    @Benchmark
+    public void longHashIndexGet(Blackhole bh) {
+        bh.consume(index.get(nextProbe()));
+    }
+
+    @Benchmark
+    public void concurrentHashMapGet(Blackhole bh) {
+        bh.consume(concurrentHashMap.get(nextProbe()));
+    }
+
+    @Benchmark
+    public void concurrentLongHashIndexGet(Blackhole bh) {
+        bh.consume(concurrentIndex.get(nextProbe()));
+    }
+}
@@ -3,8 +3,10 @@ package net.ddns.advaith.blocks;
 import net.ddns.advaith.blocks.datamodel.TodoData;
 import net.ddns.advaith.blocks.datamodel.TodoItem;
 import javafx.application.Platform;
+import javafx.beans.binding.Bindings;
 import javafx.beans.value.ChangeListener;
 import javafx.beans.value.ObservableValue;
+import javafx.collections.ListChangeListener;
 import javafx.collections.transformation.FilteredList;
 import javafx.collections.transformation.SortedList;
 import javafx.event.ActionEvent;
@@ -13,6 +15,8 @@ import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.control.*;
 import javafx.scene.input.KeyCode;
+import javafx.scene.input.KeyCodeCombination;
+import javafx.scene.input.KeyCombination;
 import javafx.scene.input.KeyEvent;
 import javafx.scene.layout.BorderPane;
 import javafx.scene.paint.Color;
@@ -108,6 +112,22 @@ public class Controller {
         todoListView.getSelectionModel().setSelectionMode(SelectionMode.SINGLE);
         todoListView.getSelectionModel().selectFirst();
 
+        // items may still be streaming in from the background loader
+        Label placeholder = new Label();
+        placeholder.textProperty().bind(Bindings.when(
+                TodoData.getInstance().loadingProperty())
+                .then("Loading items...").otherwise("No items"));
+        todoListView.setPlaceholder(placeholder);
+        sortedList.addListener(new ListChangeListener<TodoItem>() {
+            @Override
+            public void onChanged(Change<? extends TodoItem> c) {
+                if(todoListView.getSelectionModel().isEmpty()
+                        && !sortedList.isEmpty()) {
+                    todoListView.getSelectionModel().selectFirst();
+                }
+            }
+        });
+
         todoListView.setCellFactory(new Callback<ListView<TodoItem>, ListCell<TodoItem>>() {
             @Override
             public ListCell<TodoItem> call(ListView<TodoItem> param) {
@@ -173,8 +193,15 @@ public class Controller {
 
     }
 
+    private static final KeyCombination UNDO = new KeyCodeCombination(
+            KeyCode.Z, KeyCombination.SHORTCUT_DOWN);
+
     @FXML
     public void handleKeyPressed(KeyEvent keyEvent) {
+        if(UNDO.match(keyEvent)) {
+            undoDelete();
+            return;
+        }
         TodoItem selectedItem = todoListView.getSelectionModel().getSelectedItem();
         if(selectedItem != null) {
             if(keyEvent.getCode().equals(KeyCode.DELETE)) {
@@ -203,6 +230,15 @@ public class Controller {
 
     }
 
+    // puts back the last item deleted with deleteItem
+    @FXML
+    public void undoDelete() {
+        TodoItem item = TodoData.getInstance().undoDelete();
+        if(item != null) {
+            todoListView.getSelectionModel().select(item);
+        }
+    }
+
     @FXML
     public void handleFilterButton() {
         TodoItem selectedItem = todoListView.getSelectionModel().getSelectedItem();
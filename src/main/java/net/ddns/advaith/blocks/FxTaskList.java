@@ -0,0 +1,176 @@
+/*
+ * This file is part of Blocks.
+ * 
+ * Blocks is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * Blocks is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with Blocks. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.ddns.advaith.blocks;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+import javafx.application.Platform;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+
+import net.ddns.advaith.blocks.model.Change;
+import net.ddns.advaith.blocks.model.Task;
+import net.ddns.advaith.blocks.model.TaskKey;
+import net.ddns.advaith.blocks.store.TaskStore;
+
+/**
+ * Mirrors a {@link TaskStore} in an ObservableList that views can bind to.
+ * The store may be written from any thread; the list is only ever changed
+ * on the FX application thread, in the order the changes were made.
+ *
+ * Changes are queued as they happen and applied in a single runLater, so a
+ * burst of writes costs one trip to the FX thread rather than one each. The
+ * list is kept in {@link TaskKey} order, like the store.
+ *
+ * @since 0.1.0
+ * @author Advaith Menon
+ */
+public class FxTaskList {
+    // the store we mirror
+    private final TaskStore store;
+
+    // runs things on the FX application thread
+    private final Executor fxThread;
+
+    // the mirror, and a read only view of it
+    private final ObservableList<Task> tasks;
+    private final ObservableList<Task> view;
+
+    // ID to the task in the list. FX application thread only.
+    private final Map<Long, Task> byID;
+
+    // changes waiting for the FX thread
+    private final Queue<Change<Task>> pending;
+
+    // whether a drain has been scheduled
+    private final AtomicBoolean scheduled;
+
+    // listens to the store
+    private final Consumer<Change<Task>> listener;
+
+    // the version of the store the list is at, -1 before the first load.
+    // FX application thread only.
+    private long version;
+
+    /**
+     * Create a new FxTaskList. The list fills in on the FX application
+     * thread shortly after.
+     *
+     * @param store The store to mirror.
+     * @throws IllegalArgumentException if store is null.
+     */
+    public FxTaskList(TaskStore store) {
+        this(store, Platform::runLater);
+    }
+
+    /**
+     * Create a new FxTaskList that runs its updates on an executor of your
+     * choice, e.g. a direct one in tests.
+     *
+     * @param store The store to mirror.
+     * @param fxThread Runs the updates to the list, one at a time.
+     * @throws IllegalArgumentException if store or fxThread is null.
+     */
+    public FxTaskList(TaskStore store, Executor fxThread) {
+        if (store == null || fxThread == null) {
+            throw new IllegalArgumentException("store and fxThread cannot be "
+                    + "null");
+        }
+        this.store = store;
+        this.fxThread = fxThread;
+        this.tasks = FXCollections.observableArrayList();
+        this.view = FXCollections.unmodifiableObservableList(tasks);
+        this.byID = new HashMap<>();
+        this.pending = new ConcurrentLinkedQueue<>();
+        this.scheduled = new AtomicBoolean();
+        this.listener = this::enqueue;
+        this.version = -1;
+        // listen first, so nothing falls between the snapshot and the queue
+        store.addListener(listener);
+        schedule();
+    }
+
+    /**
+     * @return the tasks, in TaskKey order. Read it on the FX application
+     * thread only.
+     */
+    public ObservableList<Task> getTasks() {
+        return view;
+    }
+
+    /**
+     * Stop following the store. The list keeps its last contents.
+     */
+    public void dispose() {
+        store.removeListener(listener);
+    }
+
+    private void enqueue(Change<Task> c) {
+        pending.add(c);
+        schedule();
+    }
+
+    private void schedule() {
+        if (scheduled.compareAndSet(false, true)) {
+            fxThread.execute(this::drain);
+        }
+    }
+
+    // apply the pending changes. FX application thread only.
+    private void drain() {
+        scheduled.set(false);
+        if (version < 0) {
+            TaskStore.Snapshot s = store.snapshot();
+            List<Task> all = s.tasks();
+            for (Task t: all) {
+                byID.put(t.getID(), t);
+            }
+            tasks.setAll(all);
+            version = s.getVersion();
+        }
+        Change<Task> c;
+        while ((c = pending.poll()) != null) {
+            // already in the snapshot we loaded
+            if (c.getSequence() <= version) {
+                continue;
+            }
+            version = c.getSequence();
+            Task old = byID.remove(c.getID());
+            if (old != null) {
+                tasks.remove(indexOf(old));
+            }
+            if (c.getType() != Change.Type.DELETE) {
+                Task t = c.getItem();
+                byID.put(t.getID(), t);
+                tasks.add(-indexOf(t) - 1, t);
+            }
+        }
+    }
+
+    private int indexOf(Task t) {
+        return Collections.binarySearch(tasks, t, TaskKey.ORDER);
+    }
+}
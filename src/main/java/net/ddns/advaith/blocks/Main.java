@@ -1,7 +1,11 @@
 package net.ddns.advaith.blocks;
 
 import net.ddns.advaith.blocks.datamodel.TodoData;
+import net.ddns.advaith.blocks.cds.Training;
+import net.ddns.advaith.blocks.config.ConfigManager;
+import net.ddns.advaith.blocks.dao.UndoHistory;
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
@@ -11,12 +15,38 @@ import java.io.IOException;
 
 public class Main extends Application {
 
+    // set -Dnet.ddns.advaith.blocks.startup.progressive=false to load all
+    // items before the window is shown, like we used to.
+    private static final String PROGRESSIVE_PROPERTY =
+            "net.ddns.advaith.blocks.startup.progressive";
+
+    // set -Dnet.ddns.advaith.blocks.startup.mode=measure to quit as soon as
+    // startup is over and print the milestones, or =training to also warm
+    // up the DAOs first. The CDS launcher uses these; nothing is saved.
+    private static final String MODE_PROPERTY =
+            "net.ddns.advaith.blocks.startup.mode";
+
+    private StartupLoader loader;
+
+    private final String mode = System.getProperty(MODE_PROPERTY);
+
     @Override
     public void start(Stage primaryStage) throws Exception{
         Parent root = FXMLLoader.load(
                 getClass().getResource("mainwindow.fxml"));
         primaryStage.setTitle("Todo List");
         primaryStage.setScene(new Scene(root, 900, 500));
+        primaryStage.setOnShown(event -> {
+            StartupMetrics.getInstance().mark(StartupMetrics.FIRST_FRAME);
+            if(mode != null) {
+                if(loader != null) {
+                    loader.whenLoaded().whenComplete((v, e) ->
+                            Platform.runLater(Platform::exit));
+                } else {
+                    Platform.runLater(Platform::exit);
+                }
+            }
+        });
         primaryStage.show();
     }
 
@@ -27,16 +57,53 @@ public class Main extends Application {
 
     @Override
     public void stop() throws Exception {
-        try {
-            TodoData.getInstance().storeTodoItems();
+        if(mode != null) {
+            if(loader != null) {
+                loader.awaitItems();
+            }
+            StartupMetrics.getInstance().writeTo(System.out);
+            return;
+        }
+
+        storeItems(loader, TodoData.getInstance());
+    }
 
+    // save the items, unless the loader only read some of them: saving
+    // those would overwrite the rest in the file. loader may be null if
+    // everything was loaded up front.
+    static boolean storeItems(StartupLoader loader, TodoData data) {
+        if(loader != null && !loader.awaitItems()) {
+            System.out.println("Items were not fully loaded, so they were "
+                    + "not saved.");
+            return false;
+        }
+
+        try {
+            data.storeTodoItems();
+            return true;
         } catch(IOException e) {
             System.out.println(e.getMessage());
+            return false;
         }
     }
 
     @Override
     public void init() throws Exception {
+        StartupMetrics.getInstance().mark(StartupMetrics.INIT);
+
+        if("training".equals(mode)) {
+            Training.warmUp();
+        }
+
+        if(!"false".equals(System.getProperty(PROGRESSIVE_PROPERTY))) {
+            loader = new StartupLoader(TodoData.getInstance(),
+                    StartupLoader.DEFAULT_CHUNK_SIZE);
+            loader.start();
+            return;
+        }
+
+        TodoData.getInstance().setDeletedCap(
+                UndoHistory.capacityOf(ConfigManager.getInstance()));
         try {
             TodoData.getInstance().loadTodoItems();
         } catch(IOException e) {
@@ -0,0 +1,254 @@
+/*
+ * This file is part of Blocks.
+ *
+ * Blocks is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Blocks is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with Blocks. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.ddns.advaith.blocks;
+
+import java.io.IOException;
+import java.nio.file.NoSuchFileException;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javafx.application.Platform;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.ddns.advaith.blocks.config.ConfigManager;
+import net.ddns.advaith.blocks.dao.UndoHistory;
+import net.ddns.advaith.blocks.datamodel.TodoData;
+import net.ddns.advaith.blocks.datamodel.TodoItem;
+import net.ddns.advaith.blocks.plugin.PluginLoader;
+
+/**
+ * Loads everything the application needs in the background, so that the main
+ * window can be shown straight away. Items are read in chunks on a worker
+ * thread and published to the {@link TodoData} list on the FX application
+ * thread as they arrive. Configuration and plugin discovery run at the same
+ * time on a second worker.
+ *
+ * Plugins are discovered after the configuration is loaded, since the plugin
+ * directory is itself a configuration property, and neither singleton is safe
+ * to create from two threads at once. Once the configuration is in, the cap
+ * on deleted items the TodoData keeps for undo is set from it.
+ *
+ * If the items file cannot be read to the end, e.g. because a line is
+ * malformed, only some of the items are in the list, and {@link
+ * #awaitItems()} says so, so that they are not saved over the file. A file
+ * that does not exist yet is not a failure.
+ *
+ * @since 0.1.0
+ * @author Advaith Menon
+ */
+public class StartupLoader {
+    // Logger
+    private static final Logger LOGGER = LoggerFactory.getLogger(
+            StartupLoader.class);
+
+    /**
+     * The default number of items published to the list at a time. Small
+     * enough that the first chunk shows up almost instantly, large enough that
+     * the FX thread is not flooded with tiny updates.
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 256;
+
+    // the data model we are loading into
+    private final TodoData data;
+
+    // number of items per chunk
+    private final int chunkSize;
+
+    // chunks read but not yet added to the list
+    private final Queue<List<TodoItem>> pending;
+
+    // the workers. Daemon threads, so a slow disk never blocks exiting.
+    private final ExecutorService executor;
+
+    // runs work on the FX application thread
+    private final Executor fxThread;
+
+    // completes once the file has been fully read. Created up front and
+    // completed by the workers, so any thread may read it.
+    private final CompletableFuture<Void> items = new CompletableFuture<>();
+
+    // completes once configuration and plugins have been loaded
+    private final CompletableFuture<Void> discovery =
+        new CompletableFuture<>();
+
+    // set by start(), read from any thread
+    private volatile boolean started;
+
+    /**
+     * Create a new StartupLoader.
+     *
+     * @param data The data model to load the items into.
+     * @param chunkSize The number of items to publish at a time.
+     * @throws IllegalArgumentException if data is null or chunkSize is not
+     * positive.
+     */
+    public StartupLoader(TodoData data, int chunkSize) {
+        this(data, chunkSize, Platform::runLater);
+    }
+
+    /**
+     * Create a new StartupLoader that publishes on an executor of your
+     * choice, e.g. a direct one in tests.
+     *
+     * @param data The data model to load the items into.
+     * @param chunkSize The number of items to publish at a time.
+     * @param fxThread Runs the updates to the list, one at a time.
+     * @throws IllegalArgumentException if data or fxThread is null or
+     * chunkSize is not positive.
+     */
+    public StartupLoader(TodoData data, int chunkSize, Executor fxThread) {
+        if (data == null || fxThread == null) {
+            throw new IllegalArgumentException("data and fxThread cannot be "
+                    + "null");
+        } else if (chunkSize <= 0) {
+            throw new IllegalArgumentException("chunkSize must be positive");
+        }
+        this.data = data;
+        this.chunkSize = chunkSize;
+        this.fxThread = fxThread;
+        pending = new ConcurrentLinkedQueue<>();
+        executor = Executors.newFixedThreadPool(2, r -> {
+            Thread t = new Thread(r, "blocks-startup");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Start loading. The TodoData is marked as loading until the last chunk
+     * has been published. This must be called after the FX toolkit has been
+     * started, for example from Application.init().
+     *
+     * @throws IllegalStateException if the loader was already started.
+     */
+    public synchronized void start() {
+        if (started) {
+            throw new IllegalStateException("Loader already started.");
+        }
+        started = true;
+        fxThread.execute(() -> data.setLoading(true));
+
+        items.whenComplete((v, e) -> {
+            if (e != null) {
+                LOGGER.error("Could not load items.", e);
+            }
+            fxThread.execute(this::drain);
+        });
+        executor.execute(() -> {
+            try {
+                data.loadTodoItems(chunkSize, this::publish);
+                items.complete(null);
+            } catch (NoSuchFileException e) {
+                LOGGER.info("No items file yet: {}", e.getMessage());
+                items.complete(null);
+            } catch (IOException | RuntimeException e) {
+                items.completeExceptionally(e);
+            }
+        });
+
+        executor.execute(() -> {
+            try {
+                long cap = UndoHistory.capacityOf(ConfigManager.getInstance());
+                fxThread.execute(() -> data.setDeletedCap(cap));
+                StartupMetrics.getInstance().mark(
+                        StartupMetrics.CONFIG_LOADED);
+                PluginLoader.getInstance();
+                StartupMetrics.getInstance().mark(
+                        StartupMetrics.PLUGINS_LOADED);
+                discovery.complete(null);
+            } catch (RuntimeException | Error e) {
+                discovery.completeExceptionally(e);
+            }
+        });
+        discovery.whenComplete((v, e) -> {
+            if (e != null) {
+                LOGGER.error("Could not load configuration or plugins.", e);
+            }
+        });
+
+        CompletableFuture.allOf(items, discovery)
+            .whenComplete((v, e) -> executor.shutdown());
+    }
+
+    /**
+     * @return a future that completes once every item has been read and
+     * configuration and plugins have been loaded, whether or not that
+     * succeeded.
+     * @throws IllegalStateException if the loader has not been started.
+     */
+    public CompletableFuture<Void> whenLoaded() {
+        if (!started) {
+            throw new IllegalStateException("Loader not started.");
+        }
+        return CompletableFuture.allOf(items, discovery)
+            .handle((v, e) -> null);
+    }
+
+    // hand a chunk over to the FX thread
+    private void publish(List<TodoItem> chunk) {
+        pending.add(chunk);
+        fxThread.execute(this::drain);
+    }
+
+    // add every pending chunk to the list. FX application thread only.
+    private void drain() {
+        List<TodoItem> chunk;
+        while ((chunk = pending.poll()) != null) {
+            data.getTodoItems().addAll(chunk);
+            StartupMetrics.getInstance().mark(StartupMetrics.FIRST_CHUNK);
+        }
+
+        if (items.isDone() && data.loadingProperty().get()) {
+            data.setLoading(false);
+            StartupMetrics.getInstance().mark(StartupMetrics.ITEMS_LOADED);
+        }
+    }
+
+    /**
+     * Wait until every item has been read and added to the list. Call this
+     * before saving, otherwise the items that have not arrived yet would be
+     * lost, and do not save if it returns false. This must be called from
+     * the FX application thread.
+     *
+     * @return true if every item in the file was read, or there was no
+     * file; false if reading it failed partway, so the list only has some
+     * of the items.
+     */
+    public boolean awaitItems() {
+        if (!started) {
+            return true;
+        }
+        boolean complete = true;
+        try {
+            items.join();
+        } catch (CompletionException e) {
+            // already logged
+            complete = false;
+        }
+        drain();
+        return complete;
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * This file is part of Blocks.
+ *
+ * Blocks is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Blocks is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with Blocks. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.ddns.advaith.blocks;
+
+import java.io.PrintStream;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Records how long it takes to reach each startup milestone. Every milestone
+ * is measured from the moment the JVM process was started (or, if the OS does
+ * not tell us that, from when this class was loaded), so the numbers reflect
+ * what the user actually perceives rather than how long our own code ran.
+ *
+ * The milestones recorded by the application are:
+ * <ul>
+ * <li>{@link #INIT} - Application.init() was entered.</li>
+ * <li>{@link #FIRST_FRAME} - the main window was shown. This is the
+ * perceived startup time.</li>
+ * <li>{@link #FIRST_CHUNK} - the first chunk of items reached the list.</li>
+ * <li>{@link #ITEMS_LOADED} - all items have been published.</li>
+ * <li>{@link #CONFIG_LOADED} and {@link #PLUGINS_LOADED} - background
+ * discovery finished.</li>
+ * </ul>
+ *
+ * @since 0.1.0
+ * @author Advaith Menon
+ */
+public final class StartupMetrics {
+    // Logger
+    private static final Logger LOGGER = LoggerFactory.getLogger(
+            StartupMetrics.class);
+
+    /**
+     * Milestone: Application.init() was entered.
+     */
+    public static final String INIT = "init";
+
+    /**
+     * Milestone: the primary stage was shown.
+     */
+    public static final String FIRST_FRAME = "firstFrame";
+
+    /**
+     * Milestone: the first chunk of items was published to the list.
+     */
+    public static final String FIRST_CHUNK = "firstChunk";
+
+    /**
+     * Milestone: the last chunk of items was published to the list.
+     */
+    public static final String ITEMS_LOADED = "itemsLoaded";
+
+    /**
+     * Milestone: the configuration was loaded.
+     */
+    public static final String CONFIG_LOADED = "configLoaded";
+
+    /**
+     * Milestone: plugin discovery finished.
+     */
+    public static final String PLUGINS_LOADED = "pluginsLoaded";
+
+    /**
+     * What every line written by {@link #writeTo(PrintStream)} starts with.
+     */
+    public static final String REPORT_PREFIX = "startup ";
+
+    // the singleton
+    private static final StartupMetrics INSTANCE = new StartupMetrics();
+
+    // the origin all milestones are measured from
+    private final Instant origin;
+
+    // milestone name to elapsed time, in the order they were reached
+    private final Map<String, Duration> milestones;
+
+    private StartupMetrics() {
+        origin = ProcessHandle.current().info().startInstant()
+            .orElse(Instant.now());
+        milestones = new LinkedHashMap<>();
+    }
+
+    /**
+     * @return the process-wide StartupMetrics. This is never null.
+     */
+    public static StartupMetrics getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Record that a milestone has been reached. Only the first call for any
+     * given milestone counts, so it is safe to call this from code that may
+     * run more than once.
+     *
+     * @param milestone The name of the milestone.
+     * @return the time elapsed since the process started.
+     */
+    public synchronized Duration mark(String milestone) {
+        Duration d = milestones.get(milestone);
+        if (d == null) {
+            d = Duration.between(origin, Instant.now());
+            milestones.put(milestone, d);
+            LOGGER.info("Startup: {} reached after {} ms", milestone,
+                    d.toMillis());
+        }
+        return d;
+    }
+
+    /**
+     * @param milestone The name of the milestone.
+     * @return the time it took to reach the milestone, or null if it has not
+     * been reached yet.
+     */
+    public synchronized Duration get(String milestone) {
+        return milestones.get(milestone);
+    }
+
+    /**
+     * @return the perceived startup time, i.e. the time until the first frame
+     * was shown, or null if the window has not been shown yet.
+     */
+    public Duration getPerceivedStartup() {
+        return get(FIRST_FRAME);
+    }
+
+    /**
+     * @return an unmodifiable copy of all milestones reached so far, in the
+     * order they were reached.
+     */
+    public synchronized Map<String, Duration> getMilestones() {
+        return Collections.unmodifiableMap(new LinkedHashMap<>(milestones));
+    }
+
+    /**
+     * Write every milestone reached so far, one per line, as the prefix
+     * {@link #REPORT_PREFIX}, the name and the milliseconds, e.g. "startup
+     * firstFrame 412". This is for tools that launch the application and
+     * read its output.
+     *
+     * @param out Where to write to.
+     */
+    public void writeTo(PrintStream out) {
+        for (Map.Entry<String, Duration> e: getMilestones().entrySet()) {
+            out.println(REPORT_PREFIX + e.getKey() + " "
+                    + e.getValue().toMillis());
+        }
+        out.flush();
+    }
+}
@@ -0,0 +1,246 @@
+/*
+ * This file is part of Blocks.
+ * 
+ * Blocks is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * Blocks is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with Blocks. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package net.ddns.advaith.blocks.cds;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An AppCDS dynamic archive of the classes the application loads while it
+ * starts up, and the fingerprint of the installation it was made from.
+ *
+ * The JVM checks on its own that the class path has not changed since the
+ * archive was made, but plugins are loaded from their own directories and a
+ * new plugin also changes what the startup path loads. The fingerprint
+ * therefore covers the JVM, every class path entry and every plugin JAR, by
+ * path, size and modification time; if any of them changes, the archive is
+ * stale and has to be made again.
+ *
+ * The fingerprint is kept in a file next to the archive, and is only written
+ * once a training run has produced the archive, so an interrupted run never
+ * leaves an archive that looks usable.
+ *
+ * @since 0.1.0
+ * @author Advaith Menon
+ */
+public final class CdsArchive {
+    // Logger
+    private static final Logger LOGGER = LoggerFactory.getLogger(
+            CdsArchive.class);
+
+    /**
+     * The name of the archive in the user directory.
+     */
+    public static final String FILE_NAME = "blocks.jsa";
+
+    // suffix of the fingerprint file
+    private static final String FINGERPRINT_SUFFIX = ".id";
+
+    // the archive
+    private final Path archive;
+
+    // the fingerprint file
+    private final Path fingerprintFile;
+
+    /**
+     * Create a new CdsArchive. Nothing is read or written until asked for.
+     *
+     * @param archive Where the archive is, or will be, kept.
+     * @throws IllegalArgumentException if archive is null.
+     */
+    public CdsArchive(Path archive) {
+        if (archive == null) {
+            throw new IllegalArgumentException("archive cannot be null");
+        }
+        this.archive = archive.toAbsolutePath();
+        fingerprintFile = this.archive.resolveSibling(
+                this.archive.getFileName() + FINGERPRINT_SUFFIX);
+    }
+
+    /**
+     * @return the archive in the user directory, ~/.blocks/cds/blocks.jsa.
+     */
+    public static CdsArchive userArchive() {
+        return new CdsArchive(Paths.get(System.getProperty("user.home"),
+                    ".blocks", "cds", FILE_NAME));
+    }
+
+    /**
+     * @return the path of the archive.
+     */
+    public Path getPath() {
+        return archive;
+    }
+
+    /**
+     * Work out the fingerprint of an installation.
+     *
+     * @param classPath The class path entries, as in java.class.path.
+     * @param pluginDirs The directories plugins are loaded from. They need
+     * not exist.
+     * @return The fingerprint, as a hexadecimal string.
+     */
+    public static String fingerprint(List<Path> classPath,
+            List<Path> pluginDirs) {
+        MessageDigest md;
+        try {
+            md = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // every JVM has SHA-256
+            throw new IllegalStateException(e);
+        }
+        StringBuilder sb = new StringBuilder();
+        sb.append(System.getProperty("java.vm.version")).append('\n')
+            .append(System.getProperty("java.home")).append('\n');
+        for (Path p: classPath) {
+            describe(sb, p);
+        }
+        for (Path dir: pluginDirs) {
+            for (Path jar: jars(dir)) {
+                describe(sb, jar);
+            }
+        }
+        byte[] hash = md.digest(sb.toString().getBytes(
+                    StandardCharsets.UTF_8));
+        StringBuilder out = new StringBuilder(hash.length * 2);
+        for (byte b: hash) {
+            out.append(String.format("%02x", b));
+        }
+        return out.toString();
+    }
+
+    /**
+     * @return the class path of this JVM, as in java.class.path.
+     */
+    public static List<Path> classPath() {
+        List<Path> out = new ArrayList<>();
+        for (String s: System.getProperty("java.class.path", "")
+                .split(File.pathSeparator)) {
+            if (!s.isEmpty()) {
+                out.add(Paths.get(s));
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Check whether the archive exists and was made from an installation
+     * with the given fingerprint.
+     *
+     * @param fingerprint The fingerprint of the current installation.
+     * @return true if the archive can be used.
+     */
+    public boolean isUsable(String fingerprint) {
+        if (!Files.isRegularFile(archive)
+                || !Files.isRegularFile(fingerprintFile)) {
+            return false;
+        }
+        try {
+            return fingerprint.equals(Files.readString(fingerprintFile,
+                        StandardCharsets.UTF_8).trim());
+        } catch (IOException e) {
+            LOGGER.warn("Could not read {}", fingerprintFile, e);
+            return false;
+        }
+    }
+
+    /**
+     * Remove the archive and its fingerprint, before a training run.
+     *
+     * @throws IOException if they could not be removed.
+     */
+    public void clear() throws IOException {
+        Files.deleteIfExists(fingerprintFile);
+        Files.deleteIfExists(archive);
+        Files.createDirectories(archive.getParent());
+    }
+
+    /**
+     * Record that a training run has made the archive from an installation.
+     *
+     * @param fingerprint The fingerprint of the installation.
+     * @throws IOException if the fingerprint could not be written.
+     * @throws IllegalStateException if there is no archive.
+     */
+    public void commit(String fingerprint) throws IOException {
+        if (!Files.isRegularFile(archive)) {
+            throw new IllegalStateException("No archive at " + archive);
+        }
+        Files.writeString(fingerprintFile, fingerprint,
+                StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return the JVM options that make a training run dump the archive
+     * when it exits.
+     */
+    public List<String> trainOptions() {
+        return List.of("-XX:ArchiveClassesAtExit=" + archive);
+    }
+
+    /**
+     * @return the JVM options that use the archive. If the JVM finds it
+     * unusable after all, it starts without it rather than failing.
+     */
+    public List<String> useOptions() {
+        return List.of("-XX:SharedArchiveFile=" + archive, "-Xshare:auto");
+    }
+
+    // the JARs of the plugins in a directory, in a stable order
+    private static List<Path> jars(Path dir) {
+        if (!Files.isDirectory(dir)) {
+            return List.of();
+        }
+        // plugins are directories holding JARs, see PluginLoader
+        try (Stream<Path> s = Files.walk(dir, 2)) {
+            return s.filter(p -> p.toString().endsWith(".jar"))
+                .sorted().collect(Collectors.toList());
+        } catch (IOException e) {
+            LOGGER.warn("Could not list plugins in {}", dir, e);
+            return List.of();
+        }
+    }
+
+    private static void describe(StringBuilder sb, Path p) {
+        sb.append(p.toAbsolutePath()).append(' ');
+        try {
+            BasicFileAttributes a = Files.readAttributes(p,
+                    BasicFileAttributes.class);
+            sb.append(a.size()).append(' ')
+                .append(a.lastModifiedTime().toMillis());
+        } catch (IOException e) {
+            sb.append("missing");
+        }
+        sb.append('\n');
+    }
+}
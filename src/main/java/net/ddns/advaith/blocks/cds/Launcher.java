@@ -0,0 +1,314 @@
+/*
+ * This file is part of Blocks.
+ * 
+ * Blocks is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * Blocks is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with Blocks. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package net.ddns.advaith.blocks.cds;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.ddns.advaith.blocks.StartupMetrics;
+import net.ddns.advaith.blocks.plugin.PluginLoader;
+
+/**
+ * Starts the application in a new JVM that uses the AppCDS archive of the
+ * user (see {@link CdsArchive}), making the archive first if it is missing
+ * or stale:
+ * <pre>
+ * java -cp blocks.jar:... net.ddns.advaith.blocks.cds.Launcher [args]
+ * java -cp blocks.jar:... net.ddns.advaith.blocks.cds.Launcher --train
+ * java -cp blocks.jar:... net.ddns.advaith.blocks.cds.Launcher --measure [n]
+ * </pre>
+ * The archive is made by a training run: the application starts with the
+ * archive being dumped at exit, warms up the DAOs (see {@link Training}),
+ * and quits as soon as startup is over, without saving anything. {@code
+ * --train} only does that; {@code --measure} then starts the application n
+ * times (default 5) with and without the archive and prints the median time
+ * to the first frame of each.
+ *
+ * The JVM options, class path and module path of the launcher are passed on
+ * to the application. The JVM only archives classes loaded from JAR files,
+ * so this helps most with an installed copy rather than target/classes.
+ *
+ * @since 0.1.0
+ * @author Advaith Menon
+ */
+public final class Launcher {
+    // Logger
+    private static final Logger LOGGER = LoggerFactory.getLogger(
+            Launcher.class);
+
+    // the application
+    private static final String MAIN_CLASS = "net.ddns.advaith.blocks.Main";
+
+    // see Main
+    private static final String MODE_PROPERTY =
+            "net.ddns.advaith.blocks.startup.mode";
+
+    // JVM options the launcher sets itself
+    private static final List<String> OWN_OPTIONS = List.of(
+            "-XX:SharedArchiveFile=", "-XX:ArchiveClassesAtExit=",
+            "-Xshare:", "-D" + MODE_PROPERTY + "=");
+
+    // the archive
+    private final CdsArchive archive;
+
+    // the JVM options, class path and module path to start with
+    private final List<String> jvm;
+
+    // the fingerprint of this installation
+    private final String fingerprint;
+
+    /**
+     * Create a new Launcher.
+     *
+     * @param archive The archive to use.
+     * @param jvm The java command and the options to start it with, before
+     * the CDS options and the main class.
+     * @param fingerprint The fingerprint of the installation.
+     */
+    Launcher(CdsArchive archive, List<String> jvm, String fingerprint) {
+        this.archive = archive;
+        this.jvm = jvm;
+        this.fingerprint = fingerprint;
+    }
+
+    /**
+     * Start the application, train, or measure.
+     *
+     * @param args {@code --train}, {@code --measure [n]}, or the arguments
+     * of the application.
+     * @throws IOException if a JVM cannot be started.
+     * @throws InterruptedException if interrupted while waiting for it.
+     */
+    public static void main(String[] args) throws IOException,
+           InterruptedException {
+        Launcher l = new Launcher(CdsArchive.userArchive(), currentJvm(),
+                CdsArchive.fingerprint(CdsArchive.classPath(),
+                    PluginLoader.pluginDirectories()));
+        if (args.length > 0 && args[0].equals("--train")) {
+            System.exit(l.train() ? 0 : 1);
+        } else if (args.length > 0 && args[0].equals("--measure")) {
+            int n = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+            if (!l.ensureArchive()) {
+                System.exit(1);
+            }
+            l.measure(n);
+        } else {
+            l.ensureArchive();
+            System.exit(l.launch(Arrays.asList(args)));
+        }
+    }
+
+    /**
+     * Make the archive if it is missing or stale.
+     *
+     * @return true if the archive can be used.
+     * @throws IOException if the training JVM cannot be started.
+     * @throws InterruptedException if interrupted while training.
+     */
+    public boolean ensureArchive() throws IOException, InterruptedException {
+        if (archive.isUsable(fingerprint)) {
+            return true;
+        }
+        LOGGER.info("CDS archive {} is missing or stale; training",
+                archive.getPath());
+        return train();
+    }
+
+    /**
+     * Make the archive, whether or not there is one.
+     *
+     * @return true if it was made.
+     * @throws IOException if the training JVM cannot be started.
+     * @throws InterruptedException if interrupted while training.
+     */
+    public boolean train() throws IOException, InterruptedException {
+        archive.clear();
+        long start = System.nanoTime();
+        Process p = new ProcessBuilder(command(archive.trainOptions(),
+                    "training", List.of())).inheritIO().start();
+        int code = p.waitFor();
+        if (code != 0 || !Files.isRegularFile(archive.getPath())) {
+            LOGGER.warn("Training run failed with exit code {}; starting "
+                    + "without a CDS archive", code);
+            return false;
+        }
+        archive.commit(fingerprint);
+        LOGGER.info("CDS archive {} made in {} ms", archive.getPath(),
+                (System.nanoTime() - start) / 1_000_000);
+        return true;
+    }
+
+    /**
+     * Start the application and wait for it to exit. The archive is used if
+     * it is usable.
+     *
+     * @param args The arguments of the application.
+     * @return its exit code.
+     * @throws IOException if the JVM cannot be started.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    public int launch(List<String> args) throws IOException,
+           InterruptedException {
+        List<String> cds = archive.isUsable(fingerprint)
+            ? archive.useOptions() : List.of();
+        return new ProcessBuilder(command(cds, null, args)).inheritIO()
+            .start().waitFor();
+    }
+
+    /**
+     * Start the application n times with the archive and n times without,
+     * alternately, and print the median time to the first frame of each.
+     *
+     * @param n The number of starts of each kind.
+     * @throws IllegalArgumentException if n is not positive.
+     * @throws IOException if a JVM cannot be started.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    public void measure(int n) throws IOException, InterruptedException {
+        if (n <= 0) {
+            throw new IllegalArgumentException("n must be positive");
+        }
+        long[] with = new long[n];
+        long[] without = new long[n];
+        for (int i = 0; i < n; ++i) {
+            with[i] = firstFrame(archive.useOptions());
+            without[i] = firstFrame(List.of());
+        }
+        long a = median(with);
+        long b = median(without);
+        System.out.printf("first frame: %d ms with the CDS archive, %d ms "
+                + "without (%.0f%% faster)%n", a, b, 100.0 * (b - a) / b);
+    }
+
+    // time to the first frame of one start, in ms
+    private long firstFrame(List<String> cds) throws IOException,
+            InterruptedException {
+        Process p = new ProcessBuilder(command(cds, "measure", List.of()))
+            .redirectErrorStream(true).start();
+        List<String> lines = new ArrayList<>();
+        try (BufferedReader r = new BufferedReader(new InputStreamReader(
+                        p.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = r.readLine()) != null) {
+                lines.add(line);
+            }
+        }
+        int code = p.waitFor();
+        long ms = milestone(lines, StartupMetrics.FIRST_FRAME);
+        if (code != 0 || ms < 0) {
+            throw new IOException("Measuring run failed with exit code "
+                    + code + ":\n" + String.join("\n", lines));
+        }
+        return ms;
+    }
+
+    /**
+     * Build the command line of an application JVM.
+     *
+     * @param cds The CDS options.
+     * @param mode The startup mode, or null for a normal start.
+     * @param args The arguments of the application.
+     * @return The command line.
+     */
+    List<String> command(List<String> cds, String mode, List<String> args) {
+        List<String> out = new ArrayList<>(jvm.size() + cds.size()
+                + args.size() + 2);
+        out.add(jvm.get(0));
+        out.addAll(cds);
+        if (mode != null) {
+            out.add("-D" + MODE_PROPERTY + "=" + mode);
+        }
+        out.addAll(jvm.subList(1, jvm.size()));
+        out.add(MAIN_CLASS);
+        out.addAll(args);
+        return out;
+    }
+
+    /**
+     * Find the time of a milestone in the output of {@link
+     * StartupMetrics#writeTo(java.io.PrintStream)}.
+     *
+     * @param lines The output.
+     * @param name The milestone.
+     * @return The milliseconds, or -1 if it is not there.
+     */
+    static long milestone(List<String> lines, String name) {
+        String prefix = StartupMetrics.REPORT_PREFIX + name + " ";
+        for (String line: lines) {
+            if (line.startsWith(prefix)) {
+                return Long.parseLong(line.substring(prefix.length())
+                        .trim());
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Drop the options the launcher sets itself from a list of JVM options.
+     *
+     * @param options The options.
+     * @return The rest of the options.
+     */
+    static List<String> passOn(List<String> options) {
+        List<String> out = new ArrayList<>(options.size());
+        for (String o: options) {
+            if (OWN_OPTIONS.stream().noneMatch(o::startsWith)) {
+                out.add(o);
+            }
+        }
+        return out;
+    }
+
+    // the java command, options, class path and module path of this JVM
+    private static List<String> currentJvm() {
+        List<String> out = new ArrayList<>();
+        out.add(ProcessHandle.current().info().command().orElse(
+                    Paths.get(System.getProperty("java.home"), "bin", "java")
+                    .toString()));
+        out.addAll(passOn(ManagementFactory.getRuntimeMXBean()
+                    .getInputArguments()));
+        out.add("-cp");
+        out.add(System.getProperty("java.class.path"));
+        String modules = System.getProperty("jdk.module.path");
+        if (modules != null && !modules.isEmpty()) {
+            out.add("--module-path");
+            out.add(modules);
+            out.add("--add-modules");
+            out.add("javafx.controls,javafx.fxml");
+        }
+        return out;
+    }
+
+    private static long median(long[] xs) {
+        long[] s = xs.clone();
+        Arrays.sort(s);
+        return s[s.length / 2];
+    }
+}
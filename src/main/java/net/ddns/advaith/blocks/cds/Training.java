@@ -0,0 +1,103 @@
+/*
+ * This file is part of Blocks.
+ * 
+ * Blocks is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * Blocks is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with Blocks. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package net.ddns.advaith.blocks.cds;
+
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.ddns.advaith.blocks.dao.MemoryDAOFactory;
+import net.ddns.advaith.blocks.dao.TaskQueries;
+import net.ddns.advaith.blocks.model.GenericDAO;
+import net.ddns.advaith.blocks.model.Paginated;
+import net.ddns.advaith.blocks.model.Query;
+import net.ddns.advaith.blocks.model.Task;
+import net.ddns.advaith.blocks.plugin.PluginLoader;
+import net.ddns.advaith.blocks.plugin.PluginWrapper;
+
+/**
+ * The extra work a training run does, so that the classes it loads end up in
+ * the CDS archive along with those of a normal startup.
+ *
+ * The DAO code paths are exercised on a throwaway in-memory DAO. Plugins are
+ * only asked for their factories, never to build one, since building would
+ * open the user's real storage.
+ *
+ * @since 0.1.0
+ * @author Advaith Menon
+ */
+public final class Training {
+    // Logger
+    private static final Logger LOGGER = LoggerFactory.getLogger(
+            Training.class);
+
+    // tasks in the throwaway DAO
+    private static final int TASKS = 2000;
+
+    private Training() {}
+
+    /**
+     * Load and run the DAO classes used at startup and in normal use.
+     */
+    public static void warmUp() {
+        GenericDAO<Task> dao = new MemoryDAOFactory().build().getTaskDAO();
+        ZonedDateTime base = ZonedDateTime.now(ZoneOffset.UTC);
+        List<Task> tasks = new ArrayList<>(TASKS);
+        for (int i = 0; i < TASKS; ++i) {
+            tasks.add(new Task(-1, "Task " + i, i % 2 == 0 ? null : "x",
+                        base.plusHours(i)));
+        }
+        dao.addAll(tasks);
+        for (int i = 0; i < TASKS; i += 10) {
+            Task t = tasks.get(i);
+            t.setTitle("Renamed " + i);
+            dao.update(t);
+        }
+
+        int n = 0;
+        Paginated<Task> all = dao.fetchAll();
+        while (all.hasNextPage()) {
+            n += all.nextPage().size();
+        }
+        dao.fetchEquals(Task.ID, 5L).nextPage();
+        Query q = Query.select().from(Task.TABLE).where(Task.TITLE_FIELD)
+            .like("Task 1%").and().where(Task.DEADLINE_FIELD)
+            .greaterThan(base).finish().orderBy(Task.DEADLINE_FIELD,
+                    Query.Order.DESC).limit(20).build();
+        dao.query(q).nextPage();
+        TaskQueries.select(dao, q).nextPage();
+        for (int i = 0; i < TASKS; i += 2) {
+            dao.delete(tasks.get(i));
+        }
+
+        for (PluginWrapper w: PluginLoader.getInstance().getPlugins()) {
+            try {
+                w.getDAOFactory();
+            } catch (RuntimeException e) {
+                LOGGER.warn("Plugin {} failed during training", w.getName(),
+                        e);
+            }
+        }
+        LOGGER.info("Training: walked {} tasks", n);
+    }
+}
@@ -71,11 +71,12 @@ public class ConfigManager {
                     "default-profile.properties");
             // installation directory
             try {
-                inputs[i++] = new FileInputStream(
+                inputs[i] = new FileInputStream(
                         new File(new File(
                                 ConfigManager.class.getProtectionDomain()
                                 .getCodeSource().getLocation().toURI())
                                 .getParent() + "blocks.properties"));
+                ++i;
             } catch (FileNotFoundException e) {
                 LOGGER.info("No configuration profile found in installation"
                         + " directory.");
@@ -86,9 +87,10 @@ public class ConfigManager {
             // user directory
 
             try {
-                inputs[i++] = new FileInputStream(
+                inputs[i] = new FileInputStream(
                         new File(System.getProperty("user.home")
                                 + "/.blocks/blocks.properties"));
+                ++i;
             } catch (FileNotFoundException e) {
                 LOGGER.info("No configuration profile found in user directory.");
             }
@@ -96,7 +98,8 @@ public class ConfigManager {
             // working directory
 
             try {
-                inputs[i++] = new FileInputStream("blocks.properties");
+                inputs[i] = new FileInputStream("blocks.properties");
+                ++i;
             } catch (FileNotFoundException e) {
                 LOGGER.info("No configuration profile found in working "
                         + "directory.");
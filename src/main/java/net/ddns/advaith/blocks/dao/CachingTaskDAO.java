@@ -0,0 +1,333 @@
+/*
+ * This file is part of Blocks.
+ *
+ * Blocks is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Blocks is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with Blocks. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.ddns.advaith.blocks.dao;
+
+import java.util.List;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import net.ddns.advaith.blocks.model.Change;
+import net.ddns.advaith.blocks.model.ChangeOverflowException;
+import net.ddns.advaith.blocks.model.GenericDAO;
+import net.ddns.advaith.blocks.model.Group;
+import net.ddns.advaith.blocks.model.ListPaginated;
+import net.ddns.advaith.blocks.model.Paginated;
+import net.ddns.advaith.blocks.model.Query;
+import net.ddns.advaith.blocks.model.Row;
+import net.ddns.advaith.blocks.model.Task;
+import net.ddns.advaith.blocks.store.ConcurrentLongHashIndex;
+
+/**
+ * A write-through cache in front of another Task DAO. Tasks are cached by ID
+ * in a {@link ConcurrentLongHashIndex}, so lookups with {@code
+ * fetchEquals(Task.ID, id)} are answered from memory once a task has been
+ * seen, without boxing the ID. Writes go to the backing DAO first and only
+ * then update the cache; deletes evict. Added tasks are cached the first
+ * time they are read.
+ *
+ * A read that misses and a write to the same task may overlap, so the read
+ * could be about to cache what the write has just replaced. Every write
+ * bumps a stamp for its stripe of IDs first, and a task is only cached if
+ * the stamp has not moved since the read or write that produced it.
+ *
+ * The cache holds at most a fixed number of tasks; once full, the task
+ * cached longest ago makes way.
+ *
+ * If the backing DAO has a change feed (see {@link GenericDAO#changes()}),
+ * the cache follows it and evicts every task that is updated or deleted, so
+ * writes made by others are picked up shortly after they happen. Otherwise
+ * the cache assumes it is the only writer to the backing DAO; if something
+ * else may change it, call {@link #invalidate(long)} or {@link
+ * #invalidateAll()}.
+ *
+ * @since 0.1.0
+ * @author Advaith Menon
+ */
+public class CachingTaskDAO implements GenericDAO<Task> {
+    /**
+     * The default number of tasks to cache.
+     */
+    public static final int DEFAULT_CAPACITY = 10000;
+
+    // the number of stripes of stamps and locks
+    private static final int STRIPES = 64;
+
+    // the DAO we are caching
+    private final GenericDAO<Task> delegate;
+
+    // ID to a private copy of the task
+    private final ConcurrentLongHashIndex<Task> cache;
+
+    // one lock per stripe of IDs, held while checking a stamp and caching
+    private final Object[] locks;
+
+    // the number of writes per stripe of IDs
+    private final AtomicLongArray stamps;
+
+    // the IDs in the order they were cached, to evict the oldest; guarded
+    // by itself
+    private final long[] order;
+
+    // where the next cached ID goes in order, and how many it holds
+    private int next;
+    private int filled;
+
+    /**
+     * Create a new CachingTaskDAO that caches up to {@link
+     * #DEFAULT_CAPACITY} tasks.
+     *
+     * @param delegate The DAO to cache.
+     * @throws IllegalArgumentException if delegate is null.
+     */
+    public CachingTaskDAO(GenericDAO<Task> delegate) {
+        this(delegate, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Create a new CachingTaskDAO.
+     *
+     * @param delegate The DAO to cache.
+     * @param capacity The most tasks to cache.
+     * @throws IllegalArgumentException if delegate is null or capacity is
+     * not positive.
+     */
+    public CachingTaskDAO(GenericDAO<Task> delegate, int capacity) {
+        if (delegate == null) {
+            throw new IllegalArgumentException("delegate cannot be null");
+        } else if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        this.delegate = delegate;
+        this.cache = new ConcurrentLongHashIndex<>();
+        this.locks = new Object[STRIPES];
+        for (int i = 0; i < STRIPES; ++i) {
+            locks[i] = new Object();
+        }
+        this.stamps = new AtomicLongArray(STRIPES);
+        this.order = new long[capacity];
+        follow();
+    }
+
+    @Override
+    public void add(Task item) {
+        if (item.getID() >= 0) {
+            // a stale copy of an earlier task with this ID must go
+            evict(item.getID());
+        }
+        delegate.add(item);
+    }
+
+    @Override
+    public void addAll(List<Task> items) {
+        for (Task t: items) {
+            if (t.getID() >= 0) {
+                evict(t.getID());
+            }
+        }
+        delegate.addAll(items);
+    }
+
+    @Override
+    public void update(Task item) {
+        long id = item.getID();
+        if (id == -1) {
+            throw new IllegalArgumentException("Task has no ID.");
+        }
+        // evict first: if the update fails we no longer know what is stored
+        long stamp = evict(id);
+        delegate.update(item);
+        install(id, stamp, Tasks.copy(item));
+    }
+
+    @Override
+    public void delete(Task item) {
+        long id = item.getID();
+        if (id < 0) {
+            throw new IllegalArgumentException("Task has no ID.");
+        }
+        evict(id);
+        delegate.delete(item);
+    }
+
+    @Override
+    public void delete(long id) {
+        if (id < 0) {
+            throw new IllegalArgumentException("ID cannot be less than 0.");
+        }
+        evict(id);
+        delegate.delete(id);
+    }
+
+    @Override
+    public Paginated<Task> fetchAll() {
+        return delegate.fetchAll();
+    }
+
+    @Override
+    public Paginated<Task> fetchAll(String token) {
+        return delegate.fetchAll(token);
+    }
+
+    @Override
+    public Paginated<Task> fetchEquals(int column, Object target) {
+        if (column != Task.ID || !(target instanceof Number)) {
+            return delegate.fetchEquals(column, target);
+        }
+
+        long id = ((Number) target).longValue();
+        Task t = cache.get(id);
+        if (t == null) {
+            long stamp = stamps.get(stripe(id));
+            List<Task> found = Tasks.drain(delegate.fetchEquals(column, target));
+            if (found.isEmpty()) {
+                return ListPaginated.empty();
+            }
+            t = Tasks.copy(found.get(0));
+            install(id, stamp, t);
+        }
+        return new ListPaginated<>(List.of(Tasks.copy(t)), 1);
+    }
+
+    @Override
+    public Paginated<Task> query(Query query) {
+        return delegate.query(query);
+    }
+
+    @Override
+    public Paginated<Row> select(Query query) {
+        return delegate.select(query);
+    }
+
+    @Override
+    public List<Group> aggregate(Query query) {
+        return delegate.aggregate(query);
+    }
+
+    @Override
+    public Flow.Publisher<Change<Task>> changes() {
+        return delegate.changes();
+    }
+
+    /**
+     * Forget a single cached task.
+     *
+     * @param id The ID of the task.
+     */
+    public void invalidate(long id) {
+        evict(id);
+    }
+
+    /**
+     * Forget every cached task.
+     */
+    public void invalidateAll() {
+        for (int i = 0; i < STRIPES; ++i) {
+            synchronized (locks[i]) {
+                stamps.incrementAndGet(i);
+            }
+        }
+        cache.clear();
+    }
+
+    /**
+     * @return the number of tasks currently cached.
+     */
+    public int cachedCount() {
+        return cache.size();
+    }
+
+    // subscribe to the delegate's change feed, if it has one
+    private void follow() {
+        Flow.Publisher<Change<Task>> feed;
+        try {
+            feed = delegate.changes();
+        } catch (UnsupportedOperationException e) {
+            return;
+        }
+        feed.subscribe(new Flow.Subscriber<Change<Task>>() {
+            @Override
+            public void onSubscribe(Flow.Subscription s) {
+                s.request(Long.MAX_VALUE);
+            }
+
+            @Override
+            public void onNext(Change<Task> c) {
+                // evict rather than update: our own writes may already have
+                // put something newer in the cache
+                if (c.getType() != Change.Type.INSERT) {
+                    evict(c.getID());
+                }
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                // we may have missed changes
+                invalidateAll();
+                if (t instanceof ChangeOverflowException) {
+                    follow();
+                }
+            }
+
+            @Override
+            public void onComplete() {
+                // the delegate is shutting down
+            }
+        });
+    }
+
+    // note a write to a task and forget it; returns the stamp to cache the
+    // result of the write with
+    private long evict(long id) {
+        int i = stripe(id);
+        synchronized (locks[i]) {
+            long stamp = stamps.incrementAndGet(i);
+            cache.remove(id);
+            return stamp;
+        }
+    }
+
+    // cache a task, unless it has been written since the stamp was taken
+    private void install(long id, long stamp, Task t) {
+        int i = stripe(id);
+        synchronized (locks[i]) {
+            if (stamps.get(i) != stamp || cache.put(id, t) != null) {
+                return;
+            }
+        }
+        // newly cached; make room if full
+        long oldest;
+        synchronized (order) {
+            oldest = order[next];
+            order[next] = id;
+            next = (next + 1) % order.length;
+            if (filled < order.length) {
+                ++filled;
+                return;
+            }
+        }
+        // an ID can be in order twice if it was evicted and cached again,
+        // in which case this evicts it early; that only costs a miss
+        if (oldest != id) {
+            cache.remove(oldest);
+        }
+    }
+
+    private static int stripe(long id) {
+        return (int) ((id * 0x9E3779B97F4A7C15L) >>> 58);
+    }
+}
@@ -0,0 +1,303 @@
+/*
+ * This file is part of Blocks.
+ * 
+ * Blocks is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * Blocks is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with Blocks. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.ddns.advaith.blocks.dao;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.ddns.advaith.blocks.model.Change;
+import net.ddns.advaith.blocks.model.ChangeOverflowException;
+
+/**
+ * A {@link Flow.Publisher} of changes, for DAOs to implement {@link
+ * net.ddns.advaith.blocks.model.GenericDAO#changes()} with. The DAO calls
+ * {@link #publish(Change.Type, long, Object)} after every successful write,
+ * and the feed numbers the changes and hands them to every subscriber.
+ *
+ * Each subscriber gets its own bounded buffer and is only sent as many
+ * changes as it has requested, on the executor, one at a time. Writers never
+ * wait for subscribers: a subscriber whose buffer is full is cancelled with a
+ * {@link ChangeOverflowException}, and has to reload and subscribe again.
+ * Subscribers only see the changes published after they subscribed.
+ *
+ * @param <T> The object this feed publishes changes of
+ * @since 0.1.0
+ * @author Advaith Menon
+ */
+public final class ChangeFeed<T> implements Flow.Publisher<Change<T>> {
+    // logger
+    private static final Logger LOGGER = LoggerFactory.getLogger(
+            ChangeFeed.class);
+
+    // delivers changes to subscribers
+    private final Executor executor;
+
+    // the most changes a subscriber can have waiting
+    private final int bufferSize;
+
+    // the current subscriptions
+    private final CopyOnWriteArrayList<Subscription> subscriptions;
+
+    // the last sequence number handed out, guarded by this
+    private long sequence;
+
+    // whether close() was called, guarded by this
+    private boolean closed;
+
+    /**
+     * Create a new ChangeFeed that delivers on the common pool, with {@link
+     * Flow#defaultBufferSize()} changes of buffer per subscriber.
+     */
+    public ChangeFeed() {
+        this(ForkJoinPool.commonPool(), Flow.defaultBufferSize());
+    }
+
+    /**
+     * Create a new ChangeFeed.
+     *
+     * @param executor Delivers changes to subscribers.
+     * @param bufferSize The most changes a subscriber can have waiting.
+     * @throws IllegalArgumentException if executor is null or bufferSize is
+     * not positive.
+     */
+    public ChangeFeed(Executor executor, int bufferSize) {
+        if (executor == null) {
+            throw new IllegalArgumentException("executor cannot be null");
+        } else if (bufferSize <= 0) {
+            throw new IllegalArgumentException("bufferSize must be positive");
+        }
+        this.executor = executor;
+        this.bufferSize = bufferSize;
+        this.subscriptions = new CopyOnWriteArrayList<>();
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super Change<T>> subscriber) {
+        if (subscriber == null) {
+            throw new NullPointerException("subscriber cannot be null");
+        }
+        Subscription s = new Subscription(subscriber);
+        synchronized (this) {
+            if (closed) {
+                s.done = true;
+            } else {
+                subscriptions.add(s);
+            }
+        }
+        s.schedule();
+    }
+
+    /**
+     * Publish a change to every subscriber.
+     *
+     * @param type What happened to the item.
+     * @param id The ID of the item.
+     * @param item The item after the change, or null for a delete. It is
+     * shared by every subscriber, so pass a copy that nobody will modify.
+     * @return The change, with its sequence number.
+     * @throws IllegalArgumentException if item is null for an insert or
+     * update, or not null for a delete.
+     * @throws IllegalStateException if the feed was closed.
+     */
+    public synchronized Change<T> publish(Change.Type type, long id, T item) {
+        if (closed) {
+            throw new IllegalStateException("Feed is closed.");
+        }
+        Change<T> c = new Change<>(type, sequence + 1, id, item);
+        ++sequence;
+        for (Subscription s: subscriptions) {
+            s.offer(c);
+        }
+        return c;
+    }
+
+    /**
+     * @return the sequence number of the last change published, 0 if none
+     * was.
+     */
+    public synchronized long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * @return the number of current subscribers.
+     */
+    public int getSubscriberCount() {
+        return subscriptions.size();
+    }
+
+    /**
+     * Complete every subscription once the changes already published have
+     * been delivered, and refuse new ones.
+     */
+    public void close() {
+        synchronized (this) {
+            closed = true;
+        }
+        for (Subscription s: subscriptions) {
+            s.complete();
+        }
+    }
+
+    /**
+     * The subscription of a single subscriber. Signals are only ever sent
+     * from run(), and run() never runs twice at the same time, so the
+     * subscriber sees them one at a time and in order.
+     */
+    private final class Subscription implements Flow.Subscription, Runnable {
+        private final Flow.Subscriber<? super Change<T>> subscriber;
+
+        // changes not delivered yet, guarded by this
+        private final ArrayDeque<Change<T>> queue;
+
+        // the number of times run() has to loop, 0 if it is not scheduled
+        private final AtomicInteger wip;
+
+        // requested but not delivered, guarded by this
+        private long demand;
+
+        // the error to signal, guarded by this
+        private Throwable error;
+
+        // complete once the queue is empty, guarded by this
+        private boolean done;
+
+        // no more signals at all
+        private volatile boolean cancelled;
+
+        // whether onSubscribe was called, only touched in run()
+        private boolean subscribed;
+
+        // the last sequence number delivered, only touched in run()
+        private long delivered;
+
+        Subscription(Flow.Subscriber<? super Change<T>> subscriber) {
+            this.subscriber = subscriber;
+            this.queue = new ArrayDeque<>();
+            this.wip = new AtomicInteger();
+        }
+
+        void offer(Change<T> c) {
+            synchronized (this) {
+                if (error != null || done) {
+                    return;
+                } else if (queue.size() >= bufferSize) {
+                    queue.clear();
+                    error = new ChangeOverflowException("Subscriber fell "
+                            + "more than " + bufferSize + " changes behind.",
+                            0);
+                } else {
+                    queue.add(c);
+                }
+            }
+            schedule();
+        }
+
+        void complete() {
+            synchronized (this) {
+                done = true;
+            }
+            schedule();
+        }
+
+        @Override
+        public void request(long n) {
+            synchronized (this) {
+                if (n <= 0) {
+                    queue.clear();
+                    error = new IllegalArgumentException("Requested " + n
+                            + " changes, must be positive (rule 3.9).");
+                } else {
+                    demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+                }
+            }
+            schedule();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            subscriptions.remove(this);
+        }
+
+        void schedule() {
+            if (wip.getAndIncrement() == 0) {
+                executor.execute(this);
+            }
+        }
+
+        @Override
+        public void run() {
+            int missed = 1;
+            do {
+                if (!cancelled) {
+                    drain();
+                }
+                missed = wip.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private void drain() {
+            try {
+                if (!subscribed) {
+                    subscribed = true;
+                    subscriber.onSubscribe(this);
+                }
+                while (!cancelled) {
+                    Change<T> c;
+                    Throwable e;
+                    synchronized (this) {
+                        e = error;
+                        c = e == null && demand > 0 ? queue.poll() : null;
+                        if (c != null) {
+                            --demand;
+                        } else if (e == null && (!done || !queue.isEmpty())) {
+                            return;
+                        }
+                    }
+                    if (c != null) {
+                        subscriber.onNext(c);
+                        delivered = c.getSequence();
+                        continue;
+                    }
+                    cancel();
+                    if (e instanceof ChangeOverflowException) {
+                        e = new ChangeOverflowException(e.getMessage(),
+                                delivered);
+                    }
+                    if (e != null) {
+                        subscriber.onError(e);
+                    } else {
+                        subscriber.onComplete();
+                    }
+                }
+            } catch (RuntimeException e) {
+                // the subscriber broke rule 2.13; drop it
+                LOGGER.warn("Change feed subscriber threw, cancelling.", e);
+                cancel();
+            }
+        }
+    }
+}
@@ -0,0 +1,351 @@
+/*
+ * This file is part of Blocks.
+ * 
+ * Blocks is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * Blocks is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with Blocks. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.ddns.advaith.blocks.dao;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import net.ddns.advaith.blocks.model.Change;
+import net.ddns.advaith.blocks.model.DAOException;
+import net.ddns.advaith.blocks.model.GenericDAO;
+import net.ddns.advaith.blocks.model.Group;
+import net.ddns.advaith.blocks.model.Paginated;
+import net.ddns.advaith.blocks.model.Query;
+import net.ddns.advaith.blocks.model.Row;
+import net.ddns.advaith.blocks.model.Task;
+
+/**
+ * A Task DAO over a primary and a read replica that hedges its reads to cut
+ * tail latency. Writes only go to the primary. Every read is sent to the
+ * primary first; if it has not answered within the hedge delay, the same read
+ * is sent to the replica as well, and whichever answers first wins. If the
+ * primary fails, the replica is asked straight away.
+ *
+ * The hedge delay is a percentile (by default the 95th) of the primary's
+ * recent read latencies, clamped to a minimum and maximum, so only the
+ * slowest few percent of reads are ever sent twice. Until enough reads have
+ * been seen the maximum is used.
+ *
+ * For reads returning a {@link Paginated}, the race covers opening the
+ * result and fetching its first page; later pages come from whichever DAO
+ * won. The replica may lag behind the primary, so a read that must see a
+ * write that was just made should go to the primary directly.
+ *
+ * @since 0.1.0
+ * @author Advaith Menon
+ */
+public class HedgedTaskDAO implements GenericDAO<Task> {
+    // the delay is recomputed after this many reads
+    private static final int RECOMPUTE_EVERY = 32;
+
+    // the maximum delay is used until this many reads have been seen
+    private static final int MIN_SAMPLES = 16;
+
+    // takes all the writes
+    private final GenericDAO<Task> primary;
+
+    // answers reads the primary is slow with
+    private final GenericDAO<Task> replica;
+
+    // runs the reads
+    private final Executor executor;
+
+    // the percentile of the primary's latency to hedge at
+    private final double percentile;
+
+    // bounds of the hedge delay, in nanoseconds
+    private final long minDelay;
+    private final long maxDelay;
+
+    // recent read latencies of the primary
+    private final LatencyWindow latencies;
+
+    // the current hedge delay, in nanoseconds
+    private volatile long delay;
+
+    // the sample count the delay was last computed at
+    private volatile long computedAt;
+
+    // statistics
+    private final AtomicLong reads = new AtomicLong();
+    private final AtomicLong hedges = new AtomicLong();
+    private final AtomicLong replicaWins = new AtomicLong();
+
+    /**
+     * Create a new HedgedTaskDAO that hedges at the 95th percentile, with the
+     * delay between 1 ms and 1 s.
+     *
+     * @param primary The primary DAO.
+     * @param replica The replica DAO.
+     * @param executor Runs the reads. It must be able to run at least two
+     * reads at once.
+     * @throws IllegalArgumentException if any argument is null.
+     */
+    public HedgedTaskDAO(GenericDAO<Task> primary, GenericDAO<Task> replica,
+            Executor executor) {
+        this(primary, replica, executor, 95, Duration.ofMillis(1),
+                Duration.ofSeconds(1));
+    }
+
+    /**
+     * Create a new HedgedTaskDAO.
+     *
+     * @param primary The primary DAO.
+     * @param replica The replica DAO.
+     * @param executor Runs the reads. It must be able to run at least two
+     * reads at once.
+     * @param percentile The percentile of the primary's latency to hedge at,
+     * in (0, 100].
+     * @param minDelay The shortest hedge delay.
+     * @param maxDelay The longest hedge delay.
+     * @throws IllegalArgumentException if any argument is null, if
+     * percentile is out of range, or if the delays are negative or the wrong
+     * way round.
+     */
+    public HedgedTaskDAO(GenericDAO<Task> primary, GenericDAO<Task> replica,
+            Executor executor, double percentile, Duration minDelay,
+            Duration maxDelay) {
+        if (primary == null || replica == null || executor == null
+                || minDelay == null || maxDelay == null) {
+            throw new IllegalArgumentException("Arguments cannot be null.");
+        } else if (!(percentile > 0 && percentile <= 100)) {
+            throw new IllegalArgumentException("percentile must be in "
+                    + "(0, 100]");
+        } else if (minDelay.isNegative() || maxDelay.compareTo(minDelay) < 0) {
+            throw new IllegalArgumentException("Need 0 <= minDelay <= "
+                    + "maxDelay.");
+        }
+        this.primary = primary;
+        this.replica = replica;
+        this.executor = executor;
+        this.percentile = percentile;
+        this.minDelay = minDelay.toNanos();
+        this.maxDelay = maxDelay.toNanos();
+        this.latencies = new LatencyWindow(1024);
+        this.delay = this.maxDelay;
+    }
+
+    @Override
+    public void add(Task item) {
+        primary.add(item);
+    }
+
+    @Override
+    public void update(Task item) {
+        primary.update(item);
+    }
+
+    @Override
+    public void delete(Task item) {
+        primary.delete(item);
+    }
+
+    @Override
+    public void delete(long id) {
+        primary.delete(id);
+    }
+
+    @Override
+    public Paginated<Task> fetchAll() {
+        return hedge(d -> warm(d.fetchAll()));
+    }
+
+    @Override
+    public Paginated<Task> fetchAll(String token) {
+        return hedge(d -> warm(d.fetchAll(token)));
+    }
+
+    @Override
+    public Paginated<Task> fetchEquals(int column, Object target) {
+        return hedge(d -> warm(d.fetchEquals(column, target)));
+    }
+
+    @Override
+    public Paginated<Task> query(Query query) {
+        return hedge(d -> warm(d.query(query)));
+    }
+
+    @Override
+    public Paginated<Row> select(Query query) {
+        return hedge(d -> warm(TaskQueries.select(d, query)));
+    }
+
+    @Override
+    public List<Group> aggregate(Query query) {
+        return hedge(d -> TaskQueries.aggregate(d, query));
+    }
+
+    @Override
+    public Flow.Publisher<Change<Task>> changes() {
+        return primary.changes();
+    }
+
+    /**
+     * @return the current hedge delay.
+     */
+    public Duration getHedgeDelay() {
+        return Duration.ofNanos(delay());
+    }
+
+    /**
+     * @return the number of reads made.
+     */
+    public long getReadCount() {
+        return reads.get();
+    }
+
+    /**
+     * @return the number of reads that were also sent to the replica.
+     */
+    public long getHedgeCount() {
+        return hedges.get();
+    }
+
+    /**
+     * @return the number of reads the replica answered first.
+     */
+    public long getReplicaWinCount() {
+        return replicaWins.get();
+    }
+
+    // fetch the first page, which is what the caller is waiting for
+    private static <T> Paginated<T> warm(Paginated<T> p) {
+        p.hasNextPage();
+        return p;
+    }
+
+    private long delay() {
+        long n = latencies.count();
+        if (n >= MIN_SAMPLES && n - computedAt >= RECOMPUTE_EVERY) {
+            computedAt = n;
+            delay = Math.min(Math.max(latencies.percentile(percentile),
+                        minDelay), maxDelay);
+        }
+        return delay;
+    }
+
+    private <R> R hedge(Function<GenericDAO<Task>, R> read) {
+        reads.incrementAndGet();
+        Race<R> race = new Race<>(read);
+        race.start(delay());
+        try {
+            return race.result.join();
+        } catch (CompletionException e) {
+            throw unwrap(e);
+        }
+    }
+
+    private static RuntimeException unwrap(Throwable e) {
+        Throwable c = e instanceof CompletionException && e.getCause() != null
+            ? e.getCause() : e;
+        if (c instanceof RuntimeException) {
+            return (RuntimeException) c;
+        }
+        return new DAOException("Read failed.", c);
+    }
+
+    // one read, raced between the primary and the replica
+    private final class Race<R> {
+        // the read
+        private final Function<GenericDAO<Task>, R> read;
+
+        // the first answer
+        private final CompletableFuture<R> result = new CompletableFuture<>();
+
+        // when the read was sent to the primary
+        private final long start = System.nanoTime();
+
+        // whether the replica has been asked; guarded by this
+        private boolean hedged;
+
+        // whether an answer has been handed over; guarded by this
+        private boolean answered;
+
+        // the number of failed attempts; guarded by this
+        private int failed;
+
+        // the error to report if both fail, preferring the primary's
+        private RuntimeException error;
+
+        Race(Function<GenericDAO<Task>, R> read) {
+            this.read = read;
+        }
+
+        void start(long delay) {
+            CompletableFuture.supplyAsync(() -> read.apply(primary), executor)
+                .whenComplete((r, e) -> {
+                    if (e == null) {
+                        latencies.record(System.nanoTime() - start);
+                    }
+                    done(r, e, false);
+                });
+            CompletableFuture.delayedExecutor(delay, TimeUnit.NANOSECONDS,
+                    executor).execute(this::hedge);
+        }
+
+        private void hedge() {
+            synchronized (this) {
+                if (hedged || result.isDone()) {
+                    return;
+                }
+                hedged = true;
+            }
+            hedges.incrementAndGet();
+            CompletableFuture.supplyAsync(() -> read.apply(replica), executor)
+                .whenComplete((r, e) -> done(r, e, true));
+        }
+
+        private void done(R r, Throwable e, boolean fromReplica) {
+            if (e == null) {
+                synchronized (this) {
+                    if (answered) {
+                        return;
+                    }
+                    answered = true;
+                }
+                // count before the caller wakes up
+                if (fromReplica) {
+                    replicaWins.incrementAndGet();
+                }
+                result.complete(r);
+                return;
+            }
+            boolean hedgeNow;
+            synchronized (this) {
+                if (error == null || !fromReplica) {
+                    error = unwrap(e);
+                }
+                ++failed;
+                hedgeNow = !hedged;
+                if (!hedgeNow && failed == 2 && !answered) {
+                    result.completeExceptionally(error);
+                }
+            }
+            if (hedgeNow) {
+                hedge();
+            }
+        }
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * This file is part of Blocks.
+ * 
+ * Blocks is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * Blocks is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with Blocks. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.ddns.advaith.blocks.dao;
+
+import java.util.Arrays;
+
+/**
+ * Keeps the most recent latency samples in a ring buffer and answers
+ * percentile queries over them, so that old samples age out as conditions
+ * change. Thread safe.
+ *
+ * @since 0.1.0
+ * @author Advaith Menon
+ */
+public class LatencyWindow {
+    // the samples, in nanoseconds
+    private final long[] samples;
+
+    // total number of samples ever recorded
+    private long count;
+
+    /**
+     * Create a new LatencyWindow.
+     *
+     * @param capacity The number of recent samples to keep.
+     * @throws IllegalArgumentException if capacity is not positive.
+     */
+    public LatencyWindow(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        samples = new long[capacity];
+    }
+
+    /**
+     * Record a sample.
+     *
+     * @param nanos The latency, in nanoseconds.
+     */
+    public synchronized void record(long nanos) {
+        samples[(int) (count++ % samples.length)] = nanos;
+    }
+
+    /**
+     * @return the number of samples ever recorded, including those that have
+     * aged out.
+     */
+    public synchronized long count() {
+        return count;
+    }
+
+    /**
+     * Work out a percentile of the samples in the window, using the nearest
+     * rank method.
+     *
+     * @param p The percentile, in (0, 100].
+     * @return The percentile in nanoseconds, or -1 if there are no samples.
+     * @throws IllegalArgumentException if p is out of range.
+     */
+    public long percentile(double p) {
+        if (!(p > 0 && p <= 100)) {
+            throw new IllegalArgumentException("p must be in (0, 100]");
+        }
+        long[] copy;
+        synchronized (this) {
+            copy = Arrays.copyOf(samples, (int) Math.min(count,
+                        samples.length));
+        }
+        if (copy.length == 0) {
+            return -1;
+        }
+        Arrays.sort(copy);
+        int rank = (int) Math.ceil(p / 100 * copy.length);
+        return copy[Math.max(rank, 1) - 1];
+    }
+}
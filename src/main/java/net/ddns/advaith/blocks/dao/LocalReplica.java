@@ -0,0 +1,265 @@
+/*
+ * This file is part of Blocks.
+ * 
+ * Blocks is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * Blocks is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with Blocks. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.ddns.advaith.blocks.dao;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.Flow;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.ddns.advaith.blocks.model.Change;
+import net.ddns.advaith.blocks.model.ChangeOverflowException;
+import net.ddns.advaith.blocks.model.Field;
+import net.ddns.advaith.blocks.model.GenericDAO;
+import net.ddns.advaith.blocks.model.KeysetPaginated;
+import net.ddns.advaith.blocks.model.ListPaginated;
+import net.ddns.advaith.blocks.model.Paginated;
+import net.ddns.advaith.blocks.model.Query;
+import net.ddns.advaith.blocks.model.Task;
+import net.ddns.advaith.blocks.model.TaskKey;
+import net.ddns.advaith.blocks.store.LongHashIndex;
+
+/**
+ * A read-only, in-memory copy of another Task DAO, for use as the replica of
+ * a {@link HedgedTaskDAO} when there is no real one, e.g. in tests or when
+ * the primary sits on a slow file system.
+ *
+ * The copy is loaded from the source when it is created, and then follows
+ * the source's change feed (see {@link GenericDAO#changes()}), so it lags
+ * behind by however long the feed takes to deliver. If the source has no
+ * feed, the copy only changes when {@link #refresh()} is called. Writes
+ * throw {@link UnsupportedOperationException}.
+ *
+ * @since 0.1.0
+ * @author Advaith Menon
+ */
+public class LocalReplica implements GenericDAO<Task> {
+    private static final Logger LOGGER = LoggerFactory.getLogger(
+            LocalReplica.class);
+
+    // the column numbers as fields
+    private static final Field<?>[] FIELDS = {Task.ID_FIELD, Task.TITLE_FIELD,
+        Task.DETAILS_FIELD, Task.DEADLINE_FIELD};
+
+    // the DAO we are copying
+    private final GenericDAO<Task> source;
+
+    // the number of tasks per page
+    private final int perPage;
+
+    // the tasks, in TaskKey order; guarded by this
+    private final TreeMap<TaskKey, Task> tasks;
+
+    // ID to key; guarded by this
+    private final LongHashIndex<TaskKey> keys;
+
+    // IDs changed by the feed while loading; null when not loading
+    private LongHashIndex<Boolean> touched;
+
+    /**
+     * Create a new LocalReplica and load it from its source.
+     *
+     * @param source The DAO to copy.
+     * @param perPage The number of tasks per page of results.
+     * @throws IllegalArgumentException if source is null or perPage is not
+     * positive.
+     */
+    public LocalReplica(GenericDAO<Task> source, int perPage) {
+        if (source == null) {
+            throw new IllegalArgumentException("source cannot be null");
+        } else if (perPage <= 0) {
+            throw new IllegalArgumentException("perPage must be positive");
+        }
+        this.source = source;
+        this.perPage = perPage;
+        this.tasks = new TreeMap<>();
+        this.keys = new LongHashIndex<>();
+        if (!follow()) {
+            refresh();
+        }
+    }
+
+    /**
+     * Reload every task from the source.
+     */
+    public void refresh() {
+        synchronized (this) {
+            tasks.clear();
+            keys.clear();
+            touched = new LongHashIndex<>();
+        }
+        Paginated<Task> all = source.fetchAll();
+        while (all.hasNextPage()) {
+            List<Task> page = all.nextPage();
+            synchronized (this) {
+                for (Task t: page) {
+                    // the feed has something newer
+                    if (!touched.containsKey(t.getID())) {
+                        put(Tasks.copy(t));
+                    }
+                }
+            }
+        }
+        synchronized (this) {
+            touched = null;
+        }
+    }
+
+    /**
+     * @return the number of tasks in the copy.
+     */
+    public synchronized int size() {
+        return tasks.size();
+    }
+
+    @Override
+    public void add(Task item) {
+        throw new UnsupportedOperationException("Replicas are read only.");
+    }
+
+    @Override
+    public void update(Task item) {
+        throw new UnsupportedOperationException("Replicas are read only.");
+    }
+
+    @Override
+    public void delete(Task item) {
+        throw new UnsupportedOperationException("Replicas are read only.");
+    }
+
+    @Override
+    public void delete(long id) {
+        throw new UnsupportedOperationException("Replicas are read only.");
+    }
+
+    @Override
+    public Paginated<Task> fetchAll() {
+        return fetchAll(null);
+    }
+
+    @Override
+    public Paginated<Task> fetchAll(String token) {
+        return new KeysetPaginated<>((t, limit) -> {
+            synchronized (this) {
+                List<Task> out = new ArrayList<>(limit);
+                for (Task task: (t == null ? tasks : tasks.tailMap(
+                                TaskKey.parse(t), false)).values()) {
+                    if (out.size() == limit) {
+                        break;
+                    }
+                    out.add(Tasks.copy(task));
+                }
+                return out;
+            }
+        }, task -> TaskKey.of(task).toToken(), perPage, token);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Paginated<Task> fetchEquals(int column, Object target) {
+        if (column < 0 || column >= FIELDS.length) {
+            throw new IllegalArgumentException("Unknown column " + column);
+        }
+        List<Task> out = new ArrayList<>();
+        if (column == Task.ID && target instanceof Number) {
+            synchronized (this) {
+                TaskKey k = keys.get(((Number) target).longValue());
+                if (k != null) {
+                    out.add(Tasks.copy(tasks.get(k)));
+                }
+            }
+            return new ListPaginated<>(out, perPage);
+        }
+        Query q = Query.select().from(Task.TABLE)
+            .where((Field<Object>) FIELDS[column]).equal(target).finish()
+            .build();
+        return query(q);
+    }
+
+    @Override
+    public Paginated<Task> query(Query query) {
+        return new ListPaginated<>(TaskQueries.evaluate(fetchAll(), query),
+                perPage);
+    }
+
+    // subscribe to the source's feed and load; false if it has no feed
+    private boolean follow() {
+        Flow.Publisher<Change<Task>> feed;
+        try {
+            feed = source.changes();
+        } catch (UnsupportedOperationException e) {
+            return false;
+        }
+        feed.subscribe(new Flow.Subscriber<Change<Task>>() {
+            @Override
+            public void onSubscribe(Flow.Subscription s) {
+                s.request(Long.MAX_VALUE);
+            }
+
+            @Override
+            public void onNext(Change<Task> c) {
+                apply(c);
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                if (t instanceof ChangeOverflowException) {
+                    LOGGER.warn("Replica fell behind, reloading.");
+                    follow();
+                } else {
+                    LOGGER.error("Replica lost its change feed.", t);
+                }
+            }
+
+            @Override
+            public void onComplete() {
+                // the source is shutting down
+            }
+        });
+        // changes made from here on are in the feed, so load the rest
+        refresh();
+        return true;
+    }
+
+    private synchronized void apply(Change<Task> c) {
+        if (touched != null) {
+            touched.put(c.getID(), Boolean.TRUE);
+        }
+        remove(c.getID());
+        if (c.getType() != Change.Type.DELETE) {
+            put(Tasks.copy(c.getItem()));
+        }
+    }
+
+    private void put(Task t) {
+        remove(t.getID());
+        TaskKey k = TaskKey.of(t);
+        tasks.put(k, t);
+        keys.put(t.getID(), k);
+    }
+
+    private void remove(long id) {
+        TaskKey k = keys.remove(id);
+        if (k != null) {
+            tasks.remove(k);
+        }
+    }
+}
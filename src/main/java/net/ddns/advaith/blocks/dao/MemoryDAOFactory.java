@@ -0,0 +1,78 @@
+/*
+ * This file is part of Blocks.
+ * 
+ * Blocks is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * Blocks is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with Blocks. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.ddns.advaith.blocks.dao;
+
+import net.ddns.advaith.blocks.model.PageSizer;
+import net.ddns.advaith.blocks.plugin.DAOFactory;
+import net.ddns.advaith.blocks.plugin.DAOProxy;
+
+/**
+ * A DAOFactory whose Task DAO is a {@link MemoryTaskDAO}. Nothing is saved:
+ * every call to {@link #build()} starts from an empty DAO. Use it for tests,
+ * as the baseline when benchmarking a storage plugin, or as the fast tier in
+ * front of one.
+ *
+ * @since 0.1.0
+ * @author Advaith Menon
+ */
+public class MemoryDAOFactory implements DAOFactory {
+    // entries per page
+    private int perPage;
+
+    // sizes pages adaptively; null for a fixed size
+    private PageSizer sizer;
+
+    /**
+     * Create a new MemoryDAOFactory with the configured number of entries
+     * per page, see {@link PageSizer#defaultPerPage()}.
+     */
+    public MemoryDAOFactory() {
+        this(PageSizer.defaultPerPage());
+    }
+
+    /**
+     * Create a new MemoryDAOFactory.
+     *
+     * @param perPage The number of entries per page.
+     * @throws IllegalArgumentException if perPage is not positive.
+     */
+    public MemoryDAOFactory(int perPage) {
+        setNumPerPage(perPage);
+    }
+
+    @Override
+    public void setNumPerPage(int x) {
+        if (x <= 0) {
+            throw new IllegalArgumentException("x must be positive");
+        }
+        perPage = x;
+        sizer = null;
+    }
+
+    @Override
+    public void setPageSizer(PageSizer sizer) {
+        this.sizer = sizer;
+    }
+
+    @Override
+    public DAOProxy build() {
+        MemoryTaskDAO dao = sizer == null ? new MemoryTaskDAO(perPage)
+            : new MemoryTaskDAO(sizer);
+        return () -> dao;
+    }
+}
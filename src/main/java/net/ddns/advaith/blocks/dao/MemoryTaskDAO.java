@@ -0,0 +1,709 @@
+/*
+ * This file is part of Blocks.
+ * 
+ * Blocks is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * Blocks is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with Blocks. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.ddns.advaith.blocks.dao;
+
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+import net.ddns.advaith.blocks.model.Change;
+import net.ddns.advaith.blocks.model.ConflictException;
+import net.ddns.advaith.blocks.model.DAOException;
+import net.ddns.advaith.blocks.model.Field;
+import net.ddns.advaith.blocks.model.GenericDAO;
+import net.ddns.advaith.blocks.model.IndexedPaginated;
+import net.ddns.advaith.blocks.model.KeysetPaginated;
+import net.ddns.advaith.blocks.model.ListPaginated;
+import net.ddns.advaith.blocks.model.PageSizer;
+import net.ddns.advaith.blocks.model.Paginated;
+import net.ddns.advaith.blocks.model.Query;
+import net.ddns.advaith.blocks.model.Row;
+import net.ddns.advaith.blocks.model.Task;
+import net.ddns.advaith.blocks.model.TaskKey;
+import net.ddns.advaith.blocks.store.TaskSearchIndex;
+
+/**
+ * A Task DAO kept in memory, indexed by ID and by deadline in two {@link
+ * ConcurrentSkipListMap}s. Reads never lock, and writes only lock the task
+ * they change, so any number of threads can use it at once. It is the
+ * reference that storage plugins are measured against, and makes a fast
+ * cache tier in front of a slower one.
+ *
+ * Both indexes hold the same stored objects, which are never changed once
+ * stored; an update stores a new object. A write puts the new object into
+ * the deadline index before it replaces the old one in the ID index, and
+ * only then takes the old one out of the deadline index, so the ID index is
+ * the truth: a read of the deadline index only keeps an entry if the ID
+ * index holds a task with the same key. A task that moves further along
+ * while the index is being read can still be reached twice, so reads also
+ * skip IDs they have already returned. Tasks that are not written to during
+ * a read are always seen exactly once.
+ *
+ * {@link #fetchAll()} reads lazily in {@link TaskKey} order and supports
+ * continuation tokens. Each page is read when it is asked for, from the
+ * entries after the last key seen, so a long walk sees the writes made while
+ * it goes on, and a task that moves may show up on two pages, as with any
+ * keyset pagination; use {@link SnapshotTaskDAO} if the whole walk has to
+ * see one point in time. The pages of {@link #fetchAll()} can also be jumped
+ * to with {@link Paginated#page(int)}, see {@link IndexedPaginated}. Given a
+ * {@link PageSizer}, these lazy walks size their pages adaptively instead,
+ * and can then only be read in order; results built in memory keep a fixed
+ * page size.
+ *
+ * {@link #query(Query)} is answered from the indexes: conditions on the ID
+ * are looked up directly, ranges of IDs or deadlines only scan that range,
+ * and if the ORDER BY is the order of an index, the scan stops as soon as
+ * the LIMIT is reached. LIKE conditions on the title or details are
+ * narrowed down to candidates by a {@link TaskSearchIndex} first, when their
+ * patterns have whole words in them. Other conditions are checked on the
+ * tasks scanned.
+ *
+ * @since 0.1.0
+ * @author Advaith Menon
+ */
+public class MemoryTaskDAO implements GenericDAO<Task> {
+    // writes to a task are serialised on one of these, chosen by ID
+    private static final int STRIPES = 64;
+
+    // fetchAll() remembers where every this many pages start
+    private static final int STRIDE = 16;
+
+    // the column numbers as fields
+    private static final Field<?>[] FIELDS = {Task.ID_FIELD, Task.TITLE_FIELD,
+        Task.DETAILS_FIELD, Task.DEADLINE_FIELD};
+
+    /**
+     * Bounds on the keys of an index, narrowed by each condition.
+     */
+    private static final class Bounds<K extends Comparable<K>> {
+        K lo;
+        boolean loIn;
+        K hi;
+        boolean hiIn;
+
+        void above(K k, boolean in) {
+            int c = lo == null ? 1 : k.compareTo(lo);
+            if (c > 0 || (c == 0 && !in)) {
+                lo = k;
+                loIn = in;
+            }
+        }
+
+        void below(K k, boolean in) {
+            int c = hi == null ? -1 : k.compareTo(hi);
+            if (c < 0 || (c == 0 && !in)) {
+                hi = k;
+                hiIn = in;
+            }
+        }
+
+        boolean isSet() {
+            return lo != null || hi != null;
+        }
+
+        // the range of a map, which may be empty
+        <V> NavigableMap<K, V> of(NavigableMap<K, V> m) {
+            if (lo != null && hi != null) {
+                int c = lo.compareTo(hi);
+                if (c > 0 || (c == 0 && !(loIn && hiIn))) {
+                    return new ConcurrentSkipListMap<>();
+                }
+                return m.subMap(lo, loIn, hi, hiIn);
+            } else if (lo != null) {
+                return m.tailMap(lo, loIn);
+            } else if (hi != null) {
+                return m.headMap(hi, hiIn);
+            }
+            return m;
+        }
+    }
+
+    // ID to the stored task
+    private final ConcurrentSkipListMap<Long, Task> byID;
+
+    // key to the stored task; may briefly hold an old key of a task
+    private final ConcurrentSkipListMap<TaskKey, Task> byDeadline;
+
+    // the next ID to give out
+    private final AtomicLong nextID;
+
+    // see STRIPES
+    private final Object[] locks;
+
+    // the words of titles and details; guarded by itself, and written to
+    // under the lock of the task
+    private final TaskSearchIndex words;
+
+    // the change feed
+    private final ChangeFeed<Task> feed;
+
+    // entries per page
+    private volatile int perPage;
+
+    // sizes the pages of lazy walks; null for a fixed size
+    private volatile PageSizer sizer;
+
+    /**
+     * Create a new, empty MemoryTaskDAO.
+     *
+     * @param perPage The number of entries per page.
+     * @throws IllegalArgumentException if perPage is not positive.
+     */
+    public MemoryTaskDAO(int perPage) {
+        setNumPerPage(perPage);
+        byID = new ConcurrentSkipListMap<>();
+        byDeadline = new ConcurrentSkipListMap<>();
+        nextID = new AtomicLong();
+        locks = new Object[STRIPES];
+        for (int i = 0; i < STRIPES; ++i) {
+            locks[i] = new Object();
+        }
+        words = new TaskSearchIndex();
+        feed = new ChangeFeed<>();
+    }
+
+    /**
+     * Create a new, empty MemoryTaskDAO whose lazy walks size their pages
+     * adaptively.
+     *
+     * @param sizer Sizes the pages; its current size is used for the rest.
+     * @throws IllegalArgumentException if sizer is null.
+     */
+    public MemoryTaskDAO(PageSizer sizer) {
+        this(checked(sizer).next());
+        this.sizer = sizer;
+    }
+
+    /**
+     * Set the number of entries per page of the results from now on. This
+     * also turns adaptive sizing off.
+     *
+     * @param perPage The number of entries per page.
+     * @throws IllegalArgumentException if perPage is not positive.
+     */
+    public void setNumPerPage(int perPage) {
+        if (perPage <= 0) {
+            throw new IllegalArgumentException("perPage must be positive");
+        }
+        this.perPage = perPage;
+        this.sizer = null;
+    }
+
+    /**
+     * Size the pages of lazy walks (see {@link #fetchAll()}) adaptively
+     * from now on. One sizer can be shared with other DAOs.
+     *
+     * @param sizer Sizes the pages, or null for the fixed size.
+     */
+    public void setPageSizer(PageSizer sizer) {
+        this.sizer = sizer;
+    }
+
+    /**
+     * @return the number of tasks.
+     */
+    public int size() {
+        return byID.size();
+    }
+
+    /**
+     * Get a copy of a task by ID.
+     *
+     * @param id The ID.
+     * @return A copy of the task, or null if there is none.
+     */
+    Task get(long id) {
+        Task t = byID.get(id);
+        return t == null ? null : Tasks.copy(t);
+    }
+
+    /**
+     * Store a copy of a task exactly as given, version included, replacing
+     * the task with the same ID if there is one. This is for keeping a copy
+     * of a task that lives somewhere else, so there is no version check.
+     *
+     * @param item The task. It must have an ID.
+     * @throws IllegalArgumentException if the task has no ID.
+     */
+    void put(Task item) {
+        long id = item.getID();
+        if (id < 0) {
+            throw new IllegalArgumentException("Task has no ID.");
+        }
+        nextID.accumulateAndGet(id + 1, Math::max);
+        Task stored = Tasks.copy(item);
+        synchronized (lock(id)) {
+            Task old = byID.get(id);
+            move(old, stored);
+            index(stored);
+            feed.publish(old == null ? Change.Type.INSERT
+                    : Change.Type.UPDATE, id, Tasks.copy(stored));
+        }
+    }
+
+    @Override
+    public void add(Task item) {
+        boolean assign = item.getID() == -1;
+        long id = assign ? nextID.getAndIncrement() : item.getID();
+        if (!assign) {
+            nextID.accumulateAndGet(id + 1, Math::max);
+        }
+        long version = Math.max(item.getVersion(), 0);
+        while (true) {
+            Task stored = Task.restore(id, item.getTitle(), item.getDetails(),
+                    item.getDeadline(), version);
+            synchronized (lock(id)) {
+                if (!byID.containsKey(id)) {
+                    byDeadline.put(TaskKey.of(stored), stored);
+                    byID.put(id, stored);
+                    index(stored);
+                    feed.publish(Change.Type.INSERT, id, Tasks.copy(stored));
+                    break;
+                }
+            }
+            if (!assign) {
+                throw new DAOException("A task with ID " + id
+                        + " already exists.");
+            }
+            // someone added this ID by hand; take the next one
+            id = nextID.getAndIncrement();
+        }
+        item.setID(id);
+        item.setVersion(version);
+    }
+
+    @Override
+    public void update(Task item) {
+        long id = item.getID();
+        if (id == -1) {
+            throw new IllegalArgumentException("Task has no ID.");
+        }
+        long version;
+        synchronized (lock(id)) {
+            Task old = byID.get(id);
+            if (old == null) {
+                if (item.getVersion() != -1) {
+                    throw new ConflictException(id, item.getVersion(), -1);
+                }
+                throw new DAOException("No task with ID " + id);
+            }
+            check(old, item.getVersion());
+            version = old.getVersion() + 1;
+            Task stored = Task.restore(id, item.getTitle(), item.getDetails(),
+                    item.getDeadline(), version);
+            move(old, stored);
+            index(stored);
+            feed.publish(Change.Type.UPDATE, id, Tasks.copy(stored));
+        }
+        item.setVersion(version);
+    }
+
+    @Override
+    public void delete(Task item) {
+        if (item.getID() < 0) {
+            throw new IllegalArgumentException("Task has no ID.");
+        }
+        delete(item.getID(), item.getVersion());
+    }
+
+    @Override
+    public void delete(long id) {
+        if (id < 0) {
+            throw new IllegalArgumentException("ID cannot be less than 0.");
+        }
+        delete(id, -1);
+    }
+
+    @Override
+    public Paginated<Task> fetchAll() {
+        return fetchAll(null);
+    }
+
+    @Override
+    public Paginated<Task> fetchAll(String token) {
+        if (sizer != null) {
+            // pages of varying size cannot be numbered
+            return scan(byDeadline, null, token);
+        }
+        return new IndexedPaginated<>(
+                t -> scan(byDeadline, null, t == null ? token : t),
+                token == null ? byID::size : null, perPage, STRIDE);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Paginated<Task> fetchEquals(int column, Object target) {
+        if (column < 0 || column >= FIELDS.length) {
+            throw new IllegalArgumentException("Unknown column " + column);
+        }
+        return query(Query.select().from(Task.TABLE)
+                .where((Field<Object>) FIELDS[column]).equal(target).finish()
+                .build());
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Without a LIMIT or OFFSET, and in {@link TaskKey} order or no order at
+     * all, the result is read lazily, a page at a time.
+     */
+    @Override
+    public Paginated<Task> query(Query query) {
+        List<Query.Where> where = query.getWhere();
+        // compiled once, LIKE patterns and all, and tested on every row
+        Predicate<Task> matches = TaskQueries.predicate(query);
+        boolean and = true;
+        for (Query.Where w: where) {
+            and &= w.getNextLogicalOperator() != Query.Operator.OR;
+        }
+        Collection<Long> ids = and ? pointLookup(where) : null;
+        if (ids != null) {
+            List<Task> out = new ArrayList<>();
+            for (long id: ids) {
+                Task t = byID.get(id);
+                if (t != null && matches.test(t)) {
+                    out.add(Tasks.copy(t));
+                }
+            }
+            if (query.getOrderBy().isEmpty()) {
+                out.sort(TaskKey.ORDER);
+            }
+            return finish(out, query);
+        }
+        long[] candidates = null;
+        if (and) {
+            synchronized (words) {
+                candidates = words.candidates(query);
+            }
+        }
+        if (candidates != null) {
+            List<Task> out = new ArrayList<>();
+            for (long id: candidates) {
+                Task t = byID.get(id);
+                if (t != null && matches.test(t)) {
+                    out.add(Tasks.copy(t));
+                }
+            }
+            if (query.getOrderBy().isEmpty()) {
+                // as a scan of the deadline index would have them
+                out.sort(TaskKey.ORDER);
+            }
+            return finish(out, query);
+        }
+
+        Bounds<Long> idRange = new Bounds<>();
+        Bounds<TaskKey> keyRange = new Bounds<>();
+        if (and) {
+            narrow(where, idRange, keyRange);
+        }
+        List<Query.OrderBy> order = query.getOrderBy();
+        Field<?> first = order.isEmpty() ? null : order.get(0).getField();
+        boolean desc = !order.isEmpty()
+            && order.get(0).getOrder() == Query.Order.DESC;
+
+        if (Task.ID_FIELD.equals(first) || (first == null
+                    && idRange.isSet() && !keyRange.isSet())) {
+            NavigableMap<Long, Task> m = idRange.of(byID);
+            Collection<Task> source = desc ? m.descendingMap().values()
+                : m.values();
+            if (order.size() <= 1) {
+                return new ListPaginated<>(collect(source, matches,
+                            query.getOffset(), query.getLimit()), perPage);
+            }
+            return finish(collect(source, matches, 0, -1), query);
+        }
+
+        NavigableMap<TaskKey, Task> m = keyRange.of(byDeadline);
+        boolean keyOrder = order.isEmpty() || (Task.DEADLINE_FIELD.equals(
+                    first) && (order.size() == 1 || (order.size() == 2
+                        && Task.ID_FIELD.equals(order.get(1).getField())
+                        && order.get(1).getOrder() == order.get(0)
+                        .getOrder())));
+        if (!keyOrder) {
+            return finish(collect(current(m.values()), matches, 0, -1),
+                    query);
+        } else if (!desc && query.getLimit() < 0 && query.getOffset() == 0) {
+            return scan(m, matches, null);
+        }
+        Collection<Task> source = desc ? m.descendingMap().values()
+            : m.values();
+        return new ListPaginated<>(collect(current(source), matches,
+                    query.getOffset(), query.getLimit()), perPage);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * The query is answered as by {@link #query(Query)} and the rows
+     * projected from the tasks.
+     */
+    @Override
+    public Paginated<Row> select(Query query) {
+        if (query.isAggregate()) {
+            throw new IllegalArgumentException("Use aggregate() for "
+                    + "aggregate queries.");
+        }
+        Paginated<Task> tasks = query(query);
+        tasks.setEntriesPerPage(perPage);
+        List<Row> rows = new ArrayList<>();
+        while (tasks.hasNextPage()) {
+            for (Task t: tasks.nextPage()) {
+                rows.add(TaskQueries.project(t, query.getFields()));
+            }
+        }
+        return new ListPaginated<>(rows, perPage);
+    }
+
+    @Override
+    public Flow.Publisher<Change<Task>> changes() {
+        return feed;
+    }
+
+    private void delete(long id, long version) {
+        synchronized (lock(id)) {
+            Task old = byID.get(id);
+            if (old == null) {
+                if (version != -1) {
+                    // as with update(), the version read is gone
+                    throw new ConflictException(id, version, -1);
+                }
+                return;
+            }
+            check(old, version);
+            byID.remove(id);
+            byDeadline.remove(TaskKey.of(old));
+            synchronized (words) {
+                words.delete(id);
+            }
+            feed.publish(Change.Type.DELETE, id, null);
+        }
+    }
+
+    // replace a task in both indexes; called under its lock. The old
+    // deadline entry goes first, so that a scan running at the same time
+    // cannot meet the task under both deadlines.
+    private void move(Task old, Task stored) {
+        TaskKey key = TaskKey.of(stored);
+        if (old != null && !TaskKey.of(old).equals(key)) {
+            byDeadline.remove(TaskKey.of(old));
+        }
+        byDeadline.put(key, stored);
+        byID.put(stored.getID(), stored);
+    }
+
+    // index the words of a task; called under its lock
+    private void index(Task stored) {
+        synchronized (words) {
+            words.update(stored);
+        }
+    }
+
+    private Object lock(long id) {
+        return locks[(int) ((id * 0x9E3779B97F4A7C15L) >>> 58)];
+    }
+
+    // the compare in compare-and-set
+    private static void check(Task stored, long expected) {
+        if (expected != -1 && stored.getVersion() != expected) {
+            throw new ConflictException(stored.getID(), expected,
+                    stored.getVersion());
+        }
+    }
+
+    // the stored task an entry of the deadline index stands for, or null if
+    // the entry is out of date
+    private Task current(Task entry) {
+        Task t = byID.get(entry.getID());
+        if (t == null) {
+            return null;
+        }
+        return t == entry || TaskKey.ORDER.compare(t, entry) == 0 ? t : null;
+    }
+
+    // the tasks of a range of the deadline index, skipping stale entries
+    // and tasks already seen, checked as they are read
+    private Iterable<Task> current(Collection<Task> source) {
+        return () -> {
+            Set<Long> seen = new HashSet<>();
+            return source.stream().map(this::current)
+                .filter(t -> t != null && seen.add(t.getID())).iterator();
+        };
+    }
+
+    // lazily page through a range of the deadline index, keeping the tasks
+    // that match, or all of them if matches is null
+    private Paginated<Task> scan(NavigableMap<TaskKey, Task> range,
+            Predicate<Task> matches, String token) {
+        KeysetPaginated.Seek<Task> seek = (t, limit) -> {
+            List<Task> out = new ArrayList<>(limit);
+            NavigableMap<TaskKey, Task> from = t == null ? range
+                : range.tailMap(TaskKey.parse(t), false);
+            for (Task c: current(from.values())) {
+                if (matches == null || matches.test(c)) {
+                    out.add(Tasks.copy(c));
+                    if (out.size() == limit) {
+                        break;
+                    }
+                }
+            }
+            return out;
+        };
+        PageSizer s = sizer;
+        if (s != null) {
+            return new KeysetPaginated<>(seek, MemoryTaskDAO::tokenOf, s,
+                    PageSizer::bytesOf, token);
+        }
+        return new KeysetPaginated<>(seek, MemoryTaskDAO::tokenOf, perPage,
+                token);
+    }
+
+    private static String tokenOf(Task t) {
+        return TaskKey.of(t).toToken();
+    }
+
+    private static PageSizer checked(PageSizer sizer) {
+        if (sizer == null) {
+            throw new IllegalArgumentException("sizer cannot be null");
+        }
+        return sizer;
+    }
+
+    // copies of the matching tasks, in order, after skipping some
+    private static List<Task> collect(Iterable<Task> source,
+            Predicate<Task> matches, int skip, int max) {
+        List<Task> out = new ArrayList<>();
+        if (max == 0) {
+            return out;
+        }
+        for (Task t: source) {
+            if (!matches.test(t)) {
+                continue;
+            } else if (skip > 0) {
+                --skip;
+                continue;
+            }
+            out.add(Tasks.copy(t));
+            if (out.size() == max) {
+                break;
+            }
+        }
+        return out;
+    }
+
+    // sort, OFFSET and LIMIT in memory
+    private Paginated<Task> finish(List<Task> out, Query query) {
+        Comparator<Task> order = TaskQueries.comparator(query);
+        if (order != null) {
+            out.sort(order);
+        }
+        int from = Math.min(query.getOffset(), out.size());
+        int to = query.getLimit() < 0 ? out.size()
+            : Math.min(out.size(), from + query.getLimit());
+        return new ListPaginated<>(out.subList(from, to), perPage);
+    }
+
+    // the IDs an AND-only WHERE clause is limited to, or null
+    private static Collection<Long> pointLookup(List<Query.Where> where) {
+        for (Query.Where w: where) {
+            if (!Task.ID_FIELD.equals(w.getField())) {
+                continue;
+            }
+            Object v = w.getValue();
+            if (w.getOperator() == Query.Operator.EQUALS
+                    && v instanceof Number) {
+                return List.of(((Number) v).longValue());
+            } else if (w.getOperator() == Query.Operator.IN
+                    && v instanceof Collection) {
+                // each task once, however often its ID is listed
+                Set<Long> out = new LinkedHashSet<>();
+                for (Object o: (Collection<?>) v) {
+                    if (o instanceof Number) {
+                        out.add(((Number) o).longValue());
+                    }
+                }
+                return out;
+            }
+        }
+        return null;
+    }
+
+    // narrow the ranges of both indexes down by an AND-only WHERE clause
+    private static void narrow(List<Query.Where> where, Bounds<Long> ids,
+            Bounds<TaskKey> keys) {
+        for (Query.Where w: where) {
+            Object v = w.getValue();
+            Query.Operator op = w.getOperator();
+            if (Task.ID_FIELD.equals(w.getField()) && v instanceof Number) {
+                long id = ((Number) v).longValue();
+                switch (op) {
+                    case GREATER_THAN:
+                        ids.above(id, false);
+                        break;
+                    case GREATER_THAN_OR_EQUALS:
+                        ids.above(id, true);
+                        break;
+                    case LESS_THAN:
+                        ids.below(id, false);
+                        break;
+                    case LESS_THAN_OR_EQUALS:
+                        ids.below(id, true);
+                        break;
+                    default:
+                        break;
+                }
+            } else if (Task.DEADLINE_FIELD.equals(w.getField())
+                    && v instanceof ZonedDateTime) {
+                // every key with this deadline lies between these two
+                TaskKey first = new TaskKey(((ZonedDateTime) v).toInstant(),
+                        0);
+                TaskKey last = new TaskKey(first.getDeadline(),
+                        Long.MAX_VALUE);
+                switch (op) {
+                    case EQUALS:
+                        keys.above(first, true);
+                        keys.below(last, true);
+                        break;
+                    case GREATER_THAN:
+                        keys.above(last, false);
+                        break;
+                    case GREATER_THAN_OR_EQUALS:
+                        keys.above(first, true);
+                        break;
+                    case LESS_THAN:
+                        keys.below(first, false);
+                        break;
+                    case LESS_THAN_OR_EQUALS:
+                        keys.below(last, true);
+                        break;
+                    default:
+                        break;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * This file is part of Blocks.
+ * 
+ * Blocks is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * Blocks is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with Blocks. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.ddns.advaith.blocks.dao;
+
+import java.util.List;
+import java.util.concurrent.Flow;
+
+import net.ddns.advaith.blocks.model.BatchWriteException;
+import net.ddns.advaith.blocks.model.Change;
+import net.ddns.advaith.blocks.model.GenericDAO;
+import net.ddns.advaith.blocks.model.Group;
+import net.ddns.advaith.blocks.model.Paginated;
+import net.ddns.advaith.blocks.model.Query;
+import net.ddns.advaith.blocks.model.Row;
+import net.ddns.advaith.blocks.model.Task;
+
+/**
+ * Adds a change feed to a Task DAO that does not have one. Every write that
+ * goes through this object and succeeds is published on a {@link
+ * ChangeFeed}; writes made to the backing DAO directly are not seen.
+ *
+ * @since 0.1.0
+ * @author Advaith Menon
+ */
+public class ObservableTaskDAO implements GenericDAO<Task> {
+    // the DAO we are observing
+    private final GenericDAO<Task> delegate;
+
+    // the change feed
+    private final ChangeFeed<Task> feed;
+
+    /**
+     * Create a new ObservableTaskDAO with a default {@link ChangeFeed}.
+     *
+     * @param delegate The DAO to observe.
+     * @throws IllegalArgumentException if delegate is null.
+     */
+    public ObservableTaskDAO(GenericDAO<Task> delegate) {
+        this(delegate, new ChangeFeed<>());
+    }
+
+    /**
+     * Create a new ObservableTaskDAO.
+     *
+     * @param delegate The DAO to observe.
+     * @param feed The feed to publish changes on.
+     * @throws IllegalArgumentException if delegate or feed is null.
+     */
+    public ObservableTaskDAO(GenericDAO<Task> delegate, ChangeFeed<Task> feed) {
+        if (delegate == null || feed == null) {
+            throw new IllegalArgumentException("delegate and feed cannot be "
+                    + "null");
+        }
+        this.delegate = delegate;
+        this.feed = feed;
+    }
+
+    @Override
+    public void add(Task item) {
+        delegate.add(item);
+        feed.publish(Change.Type.INSERT, item.getID(), Tasks.copy(item));
+    }
+
+    @Override
+    public void addAll(List<Task> items) {
+        int written = 0;
+        try {
+            delegate.addAll(items);
+            written = items.size();
+        } catch (BatchWriteException e) {
+            written = e.getWritten();
+            throw e;
+        } finally {
+            for (Task t: items.subList(0, written)) {
+                feed.publish(Change.Type.INSERT, t.getID(), Tasks.copy(t));
+            }
+        }
+    }
+
+    @Override
+    public void update(Task item) {
+        delegate.update(item);
+        feed.publish(Change.Type.UPDATE, item.getID(), Tasks.copy(item));
+    }
+
+    @Override
+    public void delete(Task item) {
+        delegate.delete(item);
+        feed.publish(Change.Type.DELETE, item.getID(), null);
+    }
+
+    @Override
+    public void delete(long id) {
+        delegate.delete(id);
+        feed.publish(Change.Type.DELETE, id, null);
+    }
+
+    @Override
+    public Paginated<Task> fetchAll() {
+        return delegate.fetchAll();
+    }
+
+    @Override
+    public Paginated<Task> fetchAll(String token) {
+        return delegate.fetchAll(token);
+    }
+
+    @Override
+    public Paginated<Task> fetchEquals(int column, Object target) {
+        return delegate.fetchEquals(column, target);
+    }
+
+    @Override
+    public Paginated<Task> query(Query query) {
+        return delegate.query(query);
+    }
+
+    @Override
+    public Paginated<Row> select(Query query) {
+        return delegate.select(query);
+    }
+
+    @Override
+    public List<Group> aggregate(Query query) {
+        return delegate.aggregate(query);
+    }
+
+    @Override
+    public Flow.Publisher<Change<Task>> changes() {
+        return feed;
+    }
+}
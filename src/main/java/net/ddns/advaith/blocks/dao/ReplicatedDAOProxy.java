@@ -0,0 +1,103 @@
+/*
+ * This file is part of Blocks.
+ * 
+ * Blocks is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * Blocks is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with Blocks. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.ddns.advaith.blocks.dao;
+
+import java.time.Duration;
+import java.util.concurrent.Executor;
+
+import net.ddns.advaith.blocks.model.GenericDAO;
+import net.ddns.advaith.blocks.model.Task;
+import net.ddns.advaith.blocks.plugin.DAOProxy;
+
+/**
+ * A DAOProxy over a primary and a replica, with hedged reads: see {@link
+ * HedgedTaskDAO}. Writes and the change feed come from the primary.
+ *
+ * @since 0.1.0
+ * @author Advaith Menon
+ */
+public class ReplicatedDAOProxy implements DAOProxy {
+    // the hedged Task DAO
+    private final HedgedTaskDAO tasks;
+
+    /**
+     * Create a new ReplicatedDAOProxy with the default hedging settings.
+     *
+     * @param primary The primary.
+     * @param replica The replica.
+     * @param executor Runs the reads.
+     * @throws IllegalArgumentException if any argument is null.
+     */
+    public ReplicatedDAOProxy(DAOProxy primary, DAOProxy replica,
+            Executor executor) {
+        this(new HedgedTaskDAO(taskDAO(primary), taskDAO(replica), executor));
+    }
+
+    /**
+     * Create a new ReplicatedDAOProxy.
+     *
+     * @param primary The primary.
+     * @param replica The replica.
+     * @param executor Runs the reads.
+     * @param percentile The percentile of the primary's latency to hedge at.
+     * @param minDelay The shortest hedge delay.
+     * @param maxDelay The longest hedge delay.
+     * @throws IllegalArgumentException see {@link HedgedTaskDAO#HedgedTaskDAO(
+     * GenericDAO, GenericDAO, Executor, double, Duration, Duration)}.
+     */
+    public ReplicatedDAOProxy(DAOProxy primary, DAOProxy replica,
+            Executor executor, double percentile, Duration minDelay,
+            Duration maxDelay) {
+        this(new HedgedTaskDAO(taskDAO(primary), taskDAO(replica), executor,
+                    percentile, minDelay, maxDelay));
+    }
+
+    private ReplicatedDAOProxy(HedgedTaskDAO tasks) {
+        this.tasks = tasks;
+    }
+
+    /**
+     * Create a ReplicatedDAOProxy whose replica is an in-memory {@link
+     * LocalReplica} of the primary.
+     *
+     * @param primary The primary.
+     * @param executor Runs the reads.
+     * @param perPage The number of tasks per page of the replica's results.
+     * @return The proxy.
+     * @throws IllegalArgumentException if primary or executor is null, or
+     * perPage is not positive.
+     */
+    public static ReplicatedDAOProxy withLocalReplica(DAOProxy primary,
+            Executor executor, int perPage) {
+        GenericDAO<Task> p = taskDAO(primary);
+        return new ReplicatedDAOProxy(new HedgedTaskDAO(p,
+                    new LocalReplica(p, perPage), executor));
+    }
+
+    @Override
+    public HedgedTaskDAO getTaskDAO() {
+        return tasks;
+    }
+
+    private static GenericDAO<Task> taskDAO(DAOProxy proxy) {
+        if (proxy == null) {
+            throw new IllegalArgumentException("proxy cannot be null");
+        }
+        return proxy.getTaskDAO();
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * This file is part of Blocks.
+ * 
+ * Blocks is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * Blocks is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with Blocks. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.ddns.advaith.blocks.dao;
+
+import java.time.Instant;
+import java.util.Arrays;
+
+import net.ddns.advaith.blocks.model.Task;
+
+/**
+ * Decides which shard of a {@link ShardedTaskDAO} a task lives on.
+ *
+ * @since 0.1.0
+ * @author Advaith Menon
+ */
+public interface ShardStrategy {
+    /**
+     * Get the shard a task belongs on.
+     *
+     * @param task The task.
+     * @param shards The number of shards.
+     * @return The shard, in the range [0, shards).
+     */
+    int shardOf(Task task, int shards);
+
+    /**
+     * Get the shard a task is on from its ID alone, if the strategy can
+     * tell. If it cannot, single-ID operations have to ask every shard.
+     *
+     * @param id The ID of the task.
+     * @param shards The number of shards.
+     * @return The shard, in the range [0, shards), or -1 if it cannot be
+     * known from the ID.
+     */
+    int shardOf(long id, int shards);
+
+    /**
+     * Check that this strategy works with a number of shards.
+     *
+     * @param shards The number of shards.
+     * @throws IllegalArgumentException if it does not.
+     */
+    default void validate(int shards) {
+        if (shards <= 0) {
+            throw new IllegalArgumentException("Need at least one shard.");
+        }
+    }
+
+    /**
+     * Spread tasks evenly over the shards by a hash of their ID. Every
+     * operation on a single ID goes to exactly one shard. Tasks never move
+     * between shards, since IDs do not change.
+     *
+     * @return The strategy.
+     */
+    static ShardStrategy byID() {
+        return new ShardStrategy() {
+            @Override
+            public int shardOf(Task task, int shards) {
+                return shardOf(task.getID(), shards);
+            }
+
+            @Override
+            public int shardOf(long id, int shards) {
+                // Fibonacci hashing, then scale the top 32 bits to [0, shards)
+                long h = (id * 0x9E3779B97F4A7C15L) >>> 32;
+                return (int) ((h * shards) >>> 32);
+            }
+        };
+    }
+
+    /**
+     * Split tasks into deadline ranges. Shard 0 holds the deadlines before
+     * the first boundary, shard i the deadlines in [boundaries[i - 1],
+     * boundaries[i]), and the last shard everything from the last boundary
+     * on; so there must be exactly one more shard than there are boundaries.
+     *
+     * Queries on a deadline range only touch a few shards' worth of data,
+     * and old shards can be archived. On the other hand, operations on an ID
+     * alone have to ask every shard, and changing a task's deadline can move
+     * it to another shard.
+     *
+     * @param boundaries The boundaries, in increasing order.
+     * @return The strategy.
+     * @throws IllegalArgumentException if the boundaries contain null or are
+     * not strictly increasing.
+     */
+    static ShardStrategy byDeadline(Instant... boundaries) {
+        Instant[] b = boundaries.clone();
+        for (int i = 0; i < b.length; ++i) {
+            if (b[i] == null) {
+                throw new IllegalArgumentException("boundaries cannot "
+                        + "contain null.");
+            } else if (i > 0 && b[i - 1].compareTo(b[i]) >= 0) {
+                throw new IllegalArgumentException("boundaries must be "
+                        + "strictly increasing.");
+            }
+        }
+        return new ShardStrategy() {
+            @Override
+            public int shardOf(Task task, int shards) {
+                int i = Arrays.binarySearch(b, task.getDeadline()
+                        .toInstant());
+                return i >= 0 ? i + 1 : -i - 1;
+            }
+
+            @Override
+            public int shardOf(long id, int shards) {
+                return -1;
+            }
+
+            @Override
+            public void validate(int shards) {
+                if (shards != b.length + 1) {
+                    throw new IllegalArgumentException(b.length
+                            + " boundaries need " + (b.length + 1)
+                            + " shards, not " + shards + ".");
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * This file is part of Blocks.
+ * 
+ * Blocks is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * Blocks is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with Blocks. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.ddns.advaith.blocks.dao;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import net.ddns.advaith.blocks.model.GenericDAO;
+import net.ddns.advaith.blocks.model.PageSizer;
+import net.ddns.advaith.blocks.model.Task;
+import net.ddns.advaith.blocks.plugin.DAOFactory;
+import net.ddns.advaith.blocks.plugin.DAOProxy;
+
+/**
+ * A DAOFactory whose Task DAO is a {@link ShardedTaskDAO} over the Task DAOs
+ * of other factories, which may come from the same plugin or different ones.
+ *
+ * @since 0.1.0
+ * @author Advaith Menon
+ */
+public class ShardedDAOFactory implements DAOFactory {
+    // one factory per shard
+    private final List<DAOFactory> factories;
+
+    // decides where tasks go
+    private final ShardStrategy strategy;
+
+    // runs the per-shard calls
+    private final Executor executor;
+
+    // entries per page
+    private int perPage;
+
+    /**
+     * Create a new ShardedDAOFactory.
+     *
+     * @param factories One factory per shard, in shard order.
+     * @param strategy Decides which shard a task lives on.
+     * @param executor Runs the calls to the shards.
+     * @param perPage The number of entries per page of merged results.
+     * @throws IllegalArgumentException if anything is null, the strategy
+     * does not work with this many shards, or perPage is not positive.
+     */
+    public ShardedDAOFactory(List<? extends DAOFactory> factories,
+            ShardStrategy strategy, Executor executor, int perPage) {
+        if (factories == null || strategy == null || executor == null) {
+            throw new IllegalArgumentException("factories, strategy and "
+                    + "executor cannot be null");
+        } else if (perPage <= 0) {
+            throw new IllegalArgumentException("perPage must be positive");
+        }
+        strategy.validate(factories.size());
+        this.factories = List.copyOf(factories);
+        this.strategy = strategy;
+        this.executor = executor;
+        this.perPage = perPage;
+    }
+
+    /**
+     * Set the number of elements per page, on the merged results and on
+     * every shard that supports it.
+     *
+     * @param x The number of elements per page. Must be greater than 0.
+     * @throws IllegalArgumentException when x is less than or equal to 0
+     */
+    @Override
+    public void setNumPerPage(int x) {
+        if (x <= 0) {
+            throw new IllegalArgumentException("x must be positive");
+        }
+        perPage = x;
+        for (DAOFactory f: factories) {
+            try {
+                f.setNumPerPage(x);
+            } catch (UnsupportedOperationException e) {
+                // the shard keeps its own page size
+            }
+        }
+    }
+
+    /**
+     * Size the pages of every shard that supports it adaptively. The merged
+     * results keep a fixed page size.
+     *
+     * @param sizer Sizes the pages, or null to go back to a fixed size.
+     */
+    @Override
+    public void setPageSizer(PageSizer sizer) {
+        for (DAOFactory f: factories) {
+            try {
+                f.setPageSizer(sizer);
+            } catch (UnsupportedOperationException e) {
+                // the shard sizes its own pages
+            }
+        }
+    }
+
+    @Override
+    public DAOProxy build() {
+        List<GenericDAO<Task>> shards = new ArrayList<>(factories.size());
+        for (DAOFactory f: factories) {
+            shards.add(f.build().getTaskDAO());
+        }
+        ShardedTaskDAO dao = new ShardedTaskDAO(shards, strategy, executor,
+                perPage);
+        return () -> dao;
+    }
+}
@@ -0,0 +1,405 @@
+/*
+ * This file is part of Blocks.
+ * 
+ * Blocks is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * Blocks is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with Blocks. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.ddns.advaith.blocks.dao;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import net.ddns.advaith.blocks.model.ConflictException;
+import net.ddns.advaith.blocks.model.DAOException;
+import net.ddns.advaith.blocks.model.Field;
+import net.ddns.advaith.blocks.model.GenericDAO;
+import net.ddns.advaith.blocks.model.Group;
+import net.ddns.advaith.blocks.model.ListPaginated;
+import net.ddns.advaith.blocks.model.MergedPaginated;
+import net.ddns.advaith.blocks.model.Paginated;
+import net.ddns.advaith.blocks.model.Query;
+import net.ddns.advaith.blocks.model.Row;
+import net.ddns.advaith.blocks.model.Task;
+import net.ddns.advaith.blocks.model.TaskKey;
+
+/**
+ * Spreads tasks over several Task DAOs, from the same plugin or different
+ * ones, so that no single backend has to take every write. A {@link
+ * ShardStrategy} decides which shard a task lives on.
+ *
+ * Operations on a single task go to the one shard that holds it; with {@link
+ * ShardStrategy#byDeadline(java.time.Instant...)} the shard of an ID is
+ * first looked up on all shards in parallel. Everything else is sent to all
+ * shards in parallel on the executor, and the results are merged lazily in
+ * order (see {@link MergedPaginated}): {@link #fetchAll()} in {@link
+ * TaskKey} order, queries in their ORDER BY. For the merge to be in order,
+ * each shard has to return its results in that order too. A LIMIT and
+ * OFFSET are applied after merging, so each shard is asked for at most
+ * OFFSET + LIMIT results.
+ *
+ * IDs have to be unique across shards, so tasks added without an ID are
+ * given one here, one higher than the highest ID on any shard. The shards
+ * must keep the ID of a task added with one.
+ *
+ * This DAO has no change feed of its own; wrap it in an {@link
+ * ObservableTaskDAO} for one.
+ *
+ * @since 0.1.0
+ * @author Advaith Menon
+ */
+public class ShardedTaskDAO implements GenericDAO<Task> {
+    // the shards
+    private final List<GenericDAO<Task>> shards;
+
+    // decides where tasks go
+    private final ShardStrategy strategy;
+
+    // runs the per-shard calls
+    private final Executor executor;
+
+    // entries per page of the merged results
+    private final int perPage;
+
+    // guards nextID
+    private final Object idLock;
+
+    // the next ID to give out, -1 until the shards have been asked
+    private long nextID;
+
+    /**
+     * Create a new ShardedTaskDAO.
+     *
+     * @param shards The shards. Their order matters: a task is always
+     * looked for on the shard with the same index.
+     * @param strategy Decides which shard a task lives on.
+     * @param executor Runs the calls to the shards. For the shards to be
+     * used in parallel, it needs at least as many threads as there are
+     * shards.
+     * @param perPage The number of entries per page of merged results.
+     * @throws IllegalArgumentException if anything is null, the strategy
+     * does not work with this many shards, or perPage is not positive.
+     */
+    public ShardedTaskDAO(List<? extends GenericDAO<Task>> shards,
+            ShardStrategy strategy, Executor executor, int perPage) {
+        if (shards == null || strategy == null || executor == null) {
+            throw new IllegalArgumentException("shards, strategy and "
+                    + "executor cannot be null");
+        } else if (perPage <= 0) {
+            throw new IllegalArgumentException("perPage must be positive");
+        }
+        strategy.validate(shards.size());
+        this.shards = List.copyOf(shards);
+        this.strategy = strategy;
+        this.executor = executor;
+        this.perPage = perPage;
+        this.idLock = new Object();
+        this.nextID = -1;
+    }
+
+    /**
+     * @return the number of shards.
+     */
+    public int getShardCount() {
+        return shards.size();
+    }
+
+    @Override
+    public void add(Task item) {
+        if (item.getID() == -1) {
+            item.setID(nextID());
+        } else {
+            synchronized (idLock) {
+                if (nextID >= 0) {
+                    nextID = Math.max(nextID, item.getID() + 1);
+                }
+            }
+        }
+        shardFor(item).add(item);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * If the strategy puts the updated task on another shard, it is added
+     * there, with the next version, before it is deleted from the old one.
+     * The delete makes the version check; if it fails, the task is taken off
+     * the new shard again. This is not atomic: if the delete fails for any
+     * other reason, the task is on both shards until it is deleted.
+     */
+    @Override
+    public void update(Task item) {
+        long id = item.getID();
+        if (id == -1) {
+            throw new IllegalArgumentException("Task has no ID.");
+        }
+        int target = strategy.shardOf(item, shards.size());
+        int holder = strategy.shardOf(id, shards.size()) >= 0 ? target
+            : locate(id);
+        if (holder < 0 || holder == target) {
+            shards.get(target).update(item);
+            return;
+        }
+        long version = item.getVersion();
+        if (version == -1) {
+            List<Task> old = Tasks.drain(shards.get(holder).fetchEquals(
+                        Task.ID, id));
+            version = old.isEmpty() ? -1 : old.get(0).getVersion();
+        }
+        Task moved = Tasks.copy(item);
+        moved.setVersion(version + 1);
+        shards.get(target).add(moved);
+        try {
+            shards.get(holder).delete(item);
+        } catch (ConflictException e) {
+            shards.get(target).delete(id);
+            throw e;
+        }
+        item.setVersion(moved.getVersion());
+    }
+
+    @Override
+    public void delete(Task item) {
+        if (item.getID() < 0) {
+            throw new IllegalArgumentException("ID cannot be less than 0.");
+        }
+        int shard = locate(item.getID());
+        if (shard >= 0) {
+            shards.get(shard).delete(item);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Deleting a task that is on no shard does nothing.
+     */
+    @Override
+    public void delete(long id) {
+        if (id < 0) {
+            throw new IllegalArgumentException("ID cannot be less than 0.");
+        }
+        int shard = locate(id);
+        if (shard >= 0) {
+            shards.get(shard).delete(id);
+        }
+    }
+
+    @Override
+    public Paginated<Task> fetchAll() {
+        return fetchAll(null);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Since every shard is merged in {@link TaskKey} order, resuming means
+     * resuming every shard from the same token. The shards have to support
+     * tokens themselves, or reading the result throws
+     * UnsupportedOperationException.
+     */
+    @Override
+    public Paginated<Task> fetchAll(String token) {
+        return new MergedPaginated<>(sources(s -> token == null
+                    ? s.fetchAll() : s.fetchAll(token)), TaskKey.ORDER,
+                executor, perPage, 0, -1, t -> TaskKey.of(t).toToken(), token);
+    }
+
+    @Override
+    public Paginated<Task> fetchEquals(int column, Object target) {
+        if (column == Task.ID && target instanceof Number) {
+            int shard = strategy.shardOf(((Number) target).longValue(),
+                    shards.size());
+            if (shard >= 0) {
+                return shards.get(shard).fetchEquals(column, target);
+            }
+        }
+        return new MergedPaginated<>(sources(s -> s.fetchEquals(column,
+                        target)), TaskKey.ORDER, executor, perPage);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Shards that do not implement query() evaluate it over their
+     * fetchAll(), see {@link TaskQueries#evaluate(Paginated, Query)}.
+     */
+    @Override
+    public Paginated<Task> query(Query query) {
+        if (query.isAggregate()) {
+            throw new IllegalArgumentException("Use aggregate() for "
+                    + "aggregate queries.");
+        }
+        Query q = perShard(query).build();
+        Comparator<Task> order = TaskQueries.comparator(query);
+        return new MergedPaginated<>(sources(s -> {
+            try {
+                return s.query(q);
+            } catch (UnsupportedOperationException e) {
+                return new ListPaginated<>(TaskQueries.evaluate(s.fetchAll(),
+                            q), perPage);
+            }
+        }), order == null ? TaskKey.ORDER : order, executor, perPage,
+                query.getOffset(), query.getLimit(), null, null);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Fields in the ORDER BY are needed to merge the shards in order; if
+     * some are not selected, they are fetched from the shards as well and
+     * dropped after merging.
+     */
+    @Override
+    public Paginated<Row> select(Query query) {
+        if (query.isAggregate()) {
+            throw new IllegalArgumentException("Use aggregate() for "
+                    + "aggregate queries.");
+        }
+        List<Field<?>> fields = query.getFields();
+        List<Field<?>> wide = new ArrayList<>(fields);
+        if (!fields.isEmpty()) {
+            for (Query.OrderBy o: query.getOrderBy()) {
+                if (!wide.contains(o.getField())) {
+                    wide.add(o.getField());
+                }
+            }
+        }
+        Query q = perShard(query).fields(wide.toArray(new Field<?>[0]))
+            .build();
+        Comparator<Row> order = TaskQueries.rowComparator(q);
+        Paginated<Row> merged = new MergedPaginated<>(sources(
+                    s -> TaskQueries.select(s, q)), order == null
+                ? (a, b) -> 0 : order, executor, perPage, query.getOffset(),
+                query.getLimit(), null, null);
+        return wide.size() == fields.size() ? merged
+            : new Narrowed(merged, fields);
+    }
+
+    @Override
+    public List<Group> aggregate(Query query) {
+        return TaskQueries.combine(query, all(s -> TaskQueries.aggregate(s,
+                        query)));
+    }
+
+    private GenericDAO<Task> shardFor(Task t) {
+        return shards.get(strategy.shardOf(t, shards.size()));
+    }
+
+    // the shard holding an ID, or -1 if none does
+    private int locate(long id) {
+        int shard = strategy.shardOf(id, shards.size());
+        if (shard >= 0) {
+            return shard;
+        }
+        List<Boolean> found = all(s -> s.fetchEquals(Task.ID, id)
+                .hasNextPage());
+        return found.indexOf(Boolean.TRUE);
+    }
+
+    private long nextID() {
+        synchronized (idLock) {
+            if (nextID < 0) {
+                Query.Aggregate<Long> max = Query.max(Task.ID_FIELD);
+                Query q = Query.select().from(Task.TABLE).aggregate(max)
+                    .build();
+                Long highest = aggregate(q).get(0).get(max);
+                nextID = highest == null ? 0 : highest + 1;
+            }
+            return nextID++;
+        }
+    }
+
+    // the query to send to each shard: enough rows for the merged slice
+    private Query.QueryBuilder perShard(Query query) {
+        Query.QueryBuilder qb = query.toBuilder().offset(0);
+        if (query.getLimit() >= 0) {
+            qb.limit((int) Math.min(Integer.MAX_VALUE,
+                        (long) query.getOffset() + query.getLimit()));
+        }
+        return qb;
+    }
+
+    private <R> List<Supplier<Paginated<R>>> sources(
+            Function<GenericDAO<Task>, Paginated<R>> f) {
+        List<Supplier<Paginated<R>>> out = new ArrayList<>(shards.size());
+        for (GenericDAO<Task> s: shards) {
+            out.add(() -> f.apply(s));
+        }
+        return out;
+    }
+
+    // call every shard in parallel, and wait for all of them
+    private <R> List<R> all(Function<GenericDAO<Task>, R> f) {
+        List<CompletableFuture<R>> futures = new ArrayList<>(shards.size());
+        for (GenericDAO<Task> s: shards) {
+            futures.add(CompletableFuture.supplyAsync(() -> f.apply(s),
+                        executor));
+        }
+        List<R> out = new ArrayList<>(futures.size());
+        for (CompletableFuture<R> c: futures) {
+            try {
+                out.add(c.join());
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw new DAOException("Shard call failed.", e.getCause());
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Drops the fields that were only fetched for merging.
+     */
+    private static final class Narrowed implements Paginated<Row> {
+        private final Paginated<Row> wide;
+        private final List<Field<?>> fields;
+
+        Narrowed(Paginated<Row> wide, List<Field<?>> fields) {
+            this.wide = wide;
+            this.fields = fields;
+        }
+
+        @Override
+        public void setEntriesPerPage(int x) {
+            wide.setEntriesPerPage(x);
+        }
+
+        @Override
+        public boolean hasNextPage() {
+            return wide.hasNextPage();
+        }
+
+        @Override
+        public List<Row> nextPage() {
+            List<Row> page = wide.nextPage();
+            List<Row> out = new ArrayList<>(page.size());
+            for (Row r: page) {
+                Object[] values = new Object[fields.size()];
+                for (int i = 0; i < values.length; ++i) {
+                    values[i] = r.get(fields.get(i));
+                }
+                out.add(new Row(fields, values));
+            }
+            return out;
+        }
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ * This file is part of Blocks.
+ * 
+ * Blocks is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * Blocks is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with Blocks. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.ddns.advaith.blocks.dao;
+
+import java.util.List;
+import java.util.concurrent.Flow;
+
+import net.ddns.advaith.blocks.model.BatchWriteException;
+import net.ddns.advaith.blocks.model.Change;
+import net.ddns.advaith.blocks.model.ConflictException;
+import net.ddns.advaith.blocks.model.DAOException;
+import net.ddns.advaith.blocks.model.Field;
+import net.ddns.advaith.blocks.model.GenericDAO;
+import net.ddns.advaith.blocks.model.KeysetPaginated;
+import net.ddns.advaith.blocks.model.ListPaginated;
+import net.ddns.advaith.blocks.model.Paginated;
+import net.ddns.advaith.blocks.model.Query;
+import net.ddns.advaith.blocks.model.Task;
+import net.ddns.advaith.blocks.model.TaskKey;
+import net.ddns.advaith.blocks.store.TaskStore;
+
+/**
+ * A reference Task DAO kept entirely in memory, in a {@link TaskStore}. It
+ * is thread safe, and reads never wait for writes.
+ *
+ * Every result is read from the snapshot the store had when the method was
+ * called, so paging through {@link #fetchAll()} sees a consistent view even
+ * while others write. Queries are evaluated in memory. Changes are published
+ * on a {@link ChangeFeed}, in the order they were made.
+ *
+ * @since 0.1.0
+ * @author Advaith Menon
+ */
+public class SnapshotTaskDAO implements GenericDAO<Task> {
+    // the column numbers as fields
+    private static final Field<?>[] FIELDS = {Task.ID_FIELD, Task.TITLE_FIELD,
+        Task.DETAILS_FIELD, Task.DEADLINE_FIELD};
+
+    // the tasks
+    private final TaskStore store;
+
+    // the number of tasks per page
+    private final int perPage;
+
+    // the change feed
+    private final ChangeFeed<Task> feed;
+
+    /**
+     * Create a new, empty SnapshotTaskDAO.
+     *
+     * @param perPage The number of tasks per page of results.
+     * @throws IllegalArgumentException if perPage is not positive.
+     */
+    public SnapshotTaskDAO(int perPage) {
+        this(new TaskStore(), perPage);
+    }
+
+    /**
+     * Create a new SnapshotTaskDAO over an existing store. Writes made to
+     * the store directly show up in the DAO and its change feed.
+     *
+     * @param store The store.
+     * @param perPage The number of tasks per page of results.
+     * @throws IllegalArgumentException if store is null or perPage is not
+     * positive.
+     */
+    public SnapshotTaskDAO(TaskStore store, int perPage) {
+        if (store == null) {
+            throw new IllegalArgumentException("store cannot be null");
+        } else if (perPage <= 0) {
+            throw new IllegalArgumentException("perPage must be positive");
+        }
+        this.store = store;
+        this.perPage = perPage;
+        this.feed = new ChangeFeed<>();
+        store.addListener(c -> feed.publish(c.getType(), c.getID(),
+                    c.getItem()));
+    }
+
+    /**
+     * @return the store behind this DAO.
+     */
+    public TaskStore getStore() {
+        return store;
+    }
+
+    @Override
+    public void add(Task item) {
+        try {
+            store.add(item);
+        } catch (IllegalArgumentException e) {
+            throw new DAOException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Add several tasks at once. Either all of them are added or none are.
+     *
+     * @param items The tasks.
+     * @throws BatchWriteException with {@code getWritten() == 0} if any of
+     * them could not be added.
+     */
+    @Override
+    public void addAll(List<Task> items) {
+        try {
+            store.addAll(items);
+        } catch (IllegalArgumentException e) {
+            throw new BatchWriteException(0, e);
+        }
+    }
+
+    @Override
+    public void update(Task item) {
+        if (!store.update(item)) {
+            if (item.getVersion() != -1) {
+                throw new ConflictException(item.getID(), item.getVersion(),
+                        -1);
+            }
+            throw new DAOException("No task with ID " + item.getID());
+        }
+    }
+
+    @Override
+    public void delete(Task item) {
+        if (item.getID() < 0) {
+            throw new IllegalArgumentException("Task has no ID.");
+        }
+        if (!store.delete(item.getID(), item.getVersion())
+                && item.getVersion() != -1) {
+            throw new ConflictException(item.getID(), item.getVersion(), -1);
+        }
+    }
+
+    @Override
+    public void delete(long id) {
+        if (id < 0) {
+            throw new IllegalArgumentException("ID cannot be less than 0.");
+        }
+        store.delete(id);
+    }
+
+    @Override
+    public Paginated<Task> fetchAll() {
+        return fetchAll(null);
+    }
+
+    @Override
+    public Paginated<Task> fetchAll(String token) {
+        TaskStore.Snapshot s = store.snapshot();
+        return new KeysetPaginated<>((t, limit) -> {
+            int from = t == null ? 0 : s.indexAfter(TaskKey.parse(t));
+            return s.tasks(from, limit);
+        }, task -> TaskKey.of(task).toToken(), perPage, token);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Paginated<Task> fetchEquals(int column, Object target) {
+        if (column < 0 || column >= FIELDS.length) {
+            throw new IllegalArgumentException("Unknown column " + column);
+        }
+        if (column == Task.ID && target instanceof Number) {
+            Task t = store.get(((Number) target).longValue());
+            return t == null ? ListPaginated.empty()
+                : new ListPaginated<>(List.of(t), perPage);
+        }
+        return query(Query.select().from(Task.TABLE)
+                .where((Field<Object>) FIELDS[column]).equal(target).finish()
+                .build());
+    }
+
+    @Override
+    public Paginated<Task> query(Query query) {
+        return new ListPaginated<>(TaskQueries.evaluate(fetchAll(), query),
+                perPage);
+    }
+
+    @Override
+    public Flow.Publisher<Change<Task>> changes() {
+        return feed;
+    }
+}
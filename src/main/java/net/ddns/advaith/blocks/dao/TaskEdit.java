@@ -0,0 +1,278 @@
+/*
+ * This file is part of Blocks.
+ * 
+ * Blocks is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * Blocks is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with Blocks. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package net.ddns.advaith.blocks.dao;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import net.ddns.advaith.blocks.model.BatchWriteException;
+import net.ddns.advaith.blocks.model.GenericDAO;
+import net.ddns.advaith.blocks.model.PageSizer;
+import net.ddns.advaith.blocks.model.Task;
+import net.ddns.advaith.blocks.store.LongHashIndex;
+
+/**
+ * One step in an {@link UndoHistory}: the tasks a write, or a group of
+ * writes, changed, each with what it was before and what it became. A task
+ * that was added has nothing before, and one that was deleted has nothing
+ * after. A task written several times in one step is kept once, from its
+ * first state to its last, so a step costs as much as the tasks it touched,
+ * never a copy of the whole list.
+ *
+ * Undoing a step writes every task back to what it was before, and redoing
+ * it writes what it became, through a {@link GenericDAO}: tasks to add
+ * again go in batches with {@link GenericDAO#addAll(List)}, so undoing a
+ * bulk delete takes a few large writes. The rest are updated and deleted
+ * with the version they should be at, so a task someone else has changed
+ * since fails with a {@link net.ddns.advaith.blocks.model.ConflictException}
+ * instead of being overwritten.
+ *
+ * @since 0.1.0
+ * @author Advaith Menon
+ */
+public final class TaskEdit {
+    // what the step is called, e.g. "Delete 3 tasks"
+    private final String label;
+
+    // what each task was before, null if it was added
+    private final Task[] before;
+
+    // what each task became, null if it was deleted
+    private final Task[] after;
+
+    // the estimated size
+    private final long bytes;
+
+    private TaskEdit(String label, Task[] before, Task[] after) {
+        this.label = label;
+        this.before = before;
+        this.after = after;
+        long b = 64 + 32L * after.length + 2L * label.length();
+        for (int i = 0; i < after.length; ++i) {
+            b += bytesOf(before[i], after[i]);
+        }
+        this.bytes = b;
+    }
+
+    /**
+     * @return what the step is called.
+     */
+    public String getLabel() {
+        return label;
+    }
+
+    /**
+     * @return the number of tasks it changed.
+     */
+    public int size() {
+        return after.length;
+    }
+
+    /**
+     * @return roughly how many bytes it holds on to.
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+    @Override
+    public String toString() {
+        return label;
+    }
+
+    /**
+     * Write every task back to what it was before.
+     *
+     * @param dao Where to write.
+     * @param batchSize The most tasks to add in one call.
+     * @param moved Task ID to {recorded version, stored version}, for tasks
+     * that are not stored with the version they were recorded with because
+     * an earlier undo or redo wrote them. This is kept up to date.
+     */
+    void undo(GenericDAO<Task> dao, int batchSize,
+            LongHashIndex<long[]> moved) {
+        apply(dao, batchSize, moved, after, before);
+    }
+
+    /**
+     * Write every task as it became.
+     *
+     * @param dao Where to write.
+     * @param batchSize The most tasks to add in one call.
+     * @param moved As for {@link #undo(GenericDAO, int, LongHashIndex)}.
+     */
+    void redo(GenericDAO<Task> dao, int batchSize,
+            LongHashIndex<long[]> moved) {
+        apply(dao, batchSize, moved, before, after);
+    }
+
+    private static void apply(GenericDAO<Task> dao, int batchSize,
+            LongHashIndex<long[]> moved, Task[] from, Task[] to) {
+        List<Task> adds = new ArrayList<>(Math.min(batchSize, to.length));
+        for (int i = 0; i < to.length; ++i) {
+            if (from[i] == null) {
+                // added again with the version it had
+                adds.add(Tasks.copy(to[i]));
+                if (adds.size() == batchSize) {
+                    addAll(dao, adds, moved);
+                }
+            } else if (to[i] == null) {
+                long id = from[i].getID();
+                dao.delete(Task.restore(id, from[i].getTitle(),
+                            from[i].getDetails(), from[i].getDeadline(),
+                            stored(moved, from[i])));
+                moved.remove(id);
+            } else {
+                Task t = Task.restore(to[i].getID(), to[i].getTitle(),
+                        to[i].getDetails(), to[i].getDeadline(),
+                        stored(moved, from[i]));
+                dao.update(t);
+                move(moved, to[i], t.getVersion());
+            }
+        }
+        if (!adds.isEmpty()) {
+            addAll(dao, adds, moved);
+        }
+    }
+
+    private static void addAll(GenericDAO<Task> dao, List<Task> adds,
+            LongHashIndex<long[]> moved) {
+        int written = adds.size();
+        try {
+            dao.addAll(adds);
+        } catch (BatchWriteException e) {
+            written = e.getWritten();
+            throw e;
+        } finally {
+            for (Task t: adds.subList(0, written)) {
+                moved.remove(t.getID());
+            }
+            adds.clear();
+        }
+    }
+
+    // the version a task recorded as t should be stored with now
+    private static long stored(LongHashIndex<long[]> moved, Task t) {
+        long[] m = moved.get(t.getID());
+        return m != null && m[0] == t.getVersion() ? m[1] : t.getVersion();
+    }
+
+    // note that the task recorded as t is stored with version v
+    private static void move(LongHashIndex<long[]> moved, Task t, long v) {
+        if (t.getVersion() == v) {
+            moved.remove(t.getID());
+        } else {
+            moved.put(t.getID(), new long[] {t.getVersion(), v});
+        }
+    }
+
+    // a task's size, not counting strings it shares with its other state
+    private static long bytesOf(Task before, Task after) {
+        if (before == null || after == null) {
+            return PageSizer.bytesOf(before == null ? after : before);
+        }
+        long b = PageSizer.bytesOf(before) + PageSizer.bytesOf(after);
+        if (before.getTitle().equals(after.getTitle())) {
+            b -= 2L * after.getTitle().length();
+        }
+        String details = after.getDetails();
+        if (details != null && details.equals(before.getDetails())) {
+            b -= 2L * details.length();
+        }
+        return b;
+    }
+
+    /**
+     * Records the tasks a step changes, as they are changed.
+     *
+     * @since 0.1.0
+     * @author Advaith Menon
+     */
+    static final class Builder {
+        // what the step is called
+        private final String label;
+
+        // task ID to its place in the lists below
+        private final LongHashIndex<Integer> slots = new LongHashIndex<>();
+
+        // what each task was before, null if it was added
+        private final List<Task> before = new ArrayList<>();
+
+        // what each task became, null if it was deleted
+        private final List<Task> after = new ArrayList<>();
+
+        /**
+         * @param label What the step is called.
+         */
+        Builder(String label) {
+            this.label = label;
+        }
+
+        /**
+         * @return true if nothing has been recorded.
+         */
+        boolean isEmpty() {
+            return after.isEmpty();
+        }
+
+        /**
+         * Record a write.
+         *
+         * @param was The task before, or null if it was added. This is
+         * kept, so it must be a copy.
+         * @param is The task after, or null if it was deleted. This is kept,
+         * so it must be a copy.
+         */
+        void record(Task was, Task is) {
+            long id = (is == null ? was : is).getID();
+            Integer slot = slots.get(id);
+            if (slot == null) {
+                slots.put(id, after.size());
+                before.add(was);
+                after.add(is);
+            } else {
+                // keep the first state, and only move the last one on
+                after.set(slot, is);
+            }
+        }
+
+        /**
+         * @return the step, without the tasks that ended as they started,
+         * i.e. were added and then deleted.
+         */
+        TaskEdit build() {
+            int n = 0;
+            for (int i = 0; i < after.size(); ++i) {
+                if (before.get(i) != null || after.get(i) != null) {
+                    ++n;
+                }
+            }
+            Task[] b = new Task[n];
+            Task[] a = new Task[n];
+            n = 0;
+            for (int i = 0; i < after.size(); ++i) {
+                if (before.get(i) != null || after.get(i) != null) {
+                    b[n] = before.get(i);
+                    a[n++] = after.get(i);
+                }
+            }
+            return new TaskEdit(label, b, a);
+        }
+    }
+}
@@ -0,0 +1,522 @@
+/*
+ * This file is part of Blocks.
+ * 
+ * Blocks is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * Blocks is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with Blocks. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.ddns.advaith.blocks.dao;
+
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.function.IntPredicate;
+import java.util.function.Predicate;
+
+import net.ddns.advaith.blocks.model.Field;
+import net.ddns.advaith.blocks.model.GenericDAO;
+import net.ddns.advaith.blocks.model.Group;
+import net.ddns.advaith.blocks.model.LikePattern;
+import net.ddns.advaith.blocks.model.ListPaginated;
+import net.ddns.advaith.blocks.model.Paginated;
+import net.ddns.advaith.blocks.model.Query;
+import net.ddns.advaith.blocks.model.Row;
+import net.ddns.advaith.blocks.model.Task;
+
+/**
+ * Evaluates a {@link Query} over tasks in memory. Used as the fallback for
+ * DAOs that cannot push a query down to their storage backend, and by DAOs
+ * that keep their tasks in memory anyway.
+ *
+ * Conditions are evaluated the way SQL does: a comparison with a null value
+ * never matches, and deadlines are compared by the instant they refer to.
+ * AND and OR are applied strictly left to right, see {@link
+ * Query#getWhere()}.
+ *
+ * @since 0.1.0
+ * @author Advaith Menon
+ */
+public final class TaskQueries {
+    private TaskQueries() {}
+
+    /**
+     * Run a query against a DAO. If the DAO implements {@link
+     * GenericDAO#select(Query)}, the query is pushed down to it. Otherwise
+     * every task is read from {@link GenericDAO#fetchAll()} a page at a time
+     * and the query is evaluated here; with a LIMIT, at most OFFSET + LIMIT
+     * tasks are held in memory at once.
+     *
+     * @param dao The DAO.
+     * @param query The query.
+     * @return The rows, in the requested order.
+     * @throws IllegalArgumentException if the query is an aggregate query.
+     * @throws UnsupportedOperationException if the query uses an operator
+     * that cannot be evaluated in memory.
+     * @throws net.ddns.advaith.blocks.model.DAOException if the DAO fails.
+     */
+    public static Paginated<Row> select(GenericDAO<Task> dao, Query query) {
+        if (query.isAggregate()) {
+            throw new IllegalArgumentException("Use aggregate() for "
+                    + "aggregate queries.");
+        }
+        try {
+            return dao.select(query);
+        } catch (UnsupportedOperationException e) {
+            // not pushed down, do it ourselves
+        }
+        Paginated<Task> all = dao.fetchAll();
+        int[] perPage = {1};
+        List<Task> tasks = evaluate(all, query, perPage);
+        List<Row> rows = new ArrayList<>(tasks.size());
+        for (Task t: tasks) {
+            rows.add(project(t, query.getFields()));
+        }
+        return new ListPaginated<>(rows, perPage[0]);
+    }
+
+    /**
+     * Evaluate the WHERE, ORDER BY, OFFSET and LIMIT of a query over tasks.
+     * The selected fields are ignored; see {@link #project(Task, List)}.
+     *
+     * @param source The tasks. It is read one page at a time, and reading
+     * stops early if there is a LIMIT but no ORDER BY.
+     * @param query The query.
+     * @return The matching tasks, in the requested order.
+     * @throws UnsupportedOperationException if the query uses an operator
+     * that cannot be evaluated in memory.
+     */
+    public static List<Task> evaluate(Paginated<Task> source, Query query) {
+        return evaluate(source, query, new int[1]);
+    }
+
+    /**
+     * Check if a single task matches the WHERE clause of a query. This
+     * compiles the clause every time it is called, LIKE patterns included;
+     * to test many tasks, build the {@link #predicate(Query)} once and reuse
+     * it.
+     *
+     * @param task The task.
+     * @param query The query.
+     * @return true if it matches, or if there is no WHERE clause.
+     * @throws UnsupportedOperationException if the query uses an operator
+     * that cannot be evaluated in memory.
+     */
+    public static boolean matches(Task task, Query query) {
+        return predicate(query).test(task);
+    }
+
+    /**
+     * Compile the WHERE clause of a query into a predicate. LIKE patterns
+     * are compiled here, once, so the predicate is cheap to test against
+     * every task a query scans.
+     *
+     * @param query The query.
+     * @return The predicate. It accepts every task if there is no WHERE
+     * clause.
+     * @throws UnsupportedOperationException if the query uses an operator
+     * that cannot be evaluated in memory.
+     */
+    public static Predicate<Task> predicate(Query query) {
+        Predicate<Task> out = null;
+        Query.Operator next = null;
+        for (Query.Where w: query.getWhere()) {
+            Predicate<Task> p = condition(w);
+            if (out == null) {
+                out = p;
+            } else if (next == Query.Operator.OR) {
+                out = out.or(p);
+            } else {
+                out = out.and(p);
+            }
+            next = w.getNextLogicalOperator();
+        }
+        return out == null ? t -> true : out;
+    }
+
+    /**
+     * Build a comparator for the ORDER BY clause of a query.
+     *
+     * @param query The query.
+     * @return The comparator, or null if the query has no ORDER BY.
+     */
+    public static Comparator<Task> comparator(Query query) {
+        Comparator<Task> out = null;
+        for (Query.OrderBy o: query.getOrderBy()) {
+            Field<?> f = o.getField();
+            Comparator<Task> c = (a, b) -> compare(a.get(f), b.get(f));
+            if (o.getOrder() == Query.Order.DESC) {
+                c = c.reversed();
+            }
+            out = out == null ? c : out.thenComparing(c);
+        }
+        return out;
+    }
+
+    /**
+     * Build a comparator for the ORDER BY clause of a query, over the rows
+     * it returns. Every field in the ORDER BY has to be selected.
+     *
+     * @param query The query.
+     * @return The comparator, or null if the query has no ORDER BY.
+     * @throws IllegalArgumentException if an ORDER BY field is not selected.
+     */
+    public static Comparator<Row> rowComparator(Query query) {
+        Comparator<Row> out = null;
+        for (Query.OrderBy o: query.getOrderBy()) {
+            Field<?> f = o.getField();
+            if (!query.getFields().isEmpty()
+                    && !query.getFields().contains(f)) {
+                throw new IllegalArgumentException("ORDER BY field " + f
+                        + " is not selected.");
+            }
+            Comparator<Row> c = (a, b) -> compare(a.get(f), b.get(f));
+            if (o.getOrder() == Query.Order.DESC) {
+                c = c.reversed();
+            }
+            out = out == null ? c : out.thenComparing(c);
+        }
+        return out;
+    }
+
+    /**
+     * Keep only some fields of a task.
+     *
+     * @param task The task.
+     * @param fields The fields to keep. If empty, every field is kept.
+     * @return The row.
+     */
+    public static Row project(Task task, List<Field<?>> fields) {
+        if (fields.isEmpty()) {
+            fields = List.of(Task.ID_FIELD, Task.TITLE_FIELD,
+                    Task.DETAILS_FIELD, Task.DEADLINE_FIELD);
+        }
+        Object[] values = new Object[fields.size()];
+        for (int i = 0; i < values.length; ++i) {
+            values[i] = task.get(fields.get(i));
+        }
+        return new Row(fields, values);
+    }
+
+    /**
+     * Run an aggregate query against a DAO. If the DAO implements {@link
+     * GenericDAO#aggregate(Query)}, the query is pushed down to it.
+     * Otherwise every task is read from {@link GenericDAO#fetchAll()} a page
+     * at a time and the aggregates are computed here, see {@link
+     * #aggregate(Paginated, Query)}.
+     *
+     * @param dao The DAO.
+     * @param query The aggregate query.
+     * @return One group per key, sorted by key.
+     * @throws IllegalArgumentException if the query is not an aggregate
+     * query.
+     * @throws UnsupportedOperationException if the query uses an operator
+     * that cannot be evaluated in memory.
+     * @throws net.ddns.advaith.blocks.model.DAOException if the DAO fails.
+     */
+    public static List<Group> aggregate(GenericDAO<Task> dao, Query query) {
+        if (!query.isAggregate()) {
+            throw new IllegalArgumentException("Not an aggregate query.");
+        }
+        try {
+            return dao.aggregate(query);
+        } catch (UnsupportedOperationException e) {
+            // not pushed down, do it ourselves
+        }
+        return aggregate(dao.fetchAll(), query);
+    }
+
+    /**
+     * Compute an aggregate query over tasks. Pages are dropped as soon as
+     * they have been counted, so the memory used only depends on the number
+     * of groups: constant for a badge count, one entry per day for a
+     * calendar heatmap.
+     *
+     * @param source The tasks.
+     * @param query The aggregate query. ORDER BY, LIMIT and OFFSET are
+     * ignored.
+     * @return One group per key, sorted by key. Without a GROUP BY, exactly
+     * one group, even if no tasks match.
+     * @throws IllegalArgumentException if the query is not an aggregate
+     * query.
+     * @throws UnsupportedOperationException if the query uses an operator
+     * that cannot be evaluated in memory.
+     */
+    public static List<Group> aggregate(Paginated<Task> source, Query query) {
+        if (!query.isAggregate()) {
+            throw new IllegalArgumentException("Not an aggregate query.");
+        }
+        Predicate<Task> where = predicate(query);
+        List<Query.Aggregate<?>> aggs = query.getAggregates();
+        Query.GroupBy groupBy = query.getGroupBy();
+        Map<Object, Object[]> groups = new HashMap<>();
+        if (groupBy == null) {
+            groups.put(null, accumulator(aggs));
+        }
+
+        while (source.hasNextPage()) {
+            for (Task t: source.nextPage()) {
+                if (!where.test(t)) {
+                    continue;
+                }
+                Object key = groupBy == null ? null : keyOf(t, groupBy);
+                Object[] acc = groups.get(key);
+                if (acc == null) {
+                    acc = accumulator(aggs);
+                    groups.put(key, acc);
+                }
+                for (int i = 0; i < acc.length; ++i) {
+                    accumulate(acc, i, aggs.get(i), t);
+                }
+            }
+        }
+
+        return sorted(groups, aggs);
+    }
+
+    /**
+     * Combine the results of the same aggregate query over disjoint sets of
+     * tasks, e.g. the shards of a {@link ShardedTaskDAO}: counts are added
+     * up, and the smallest MIN and largest MAX are kept.
+     *
+     * @param query The aggregate query.
+     * @param parts The result of the query on each set.
+     * @return The result of the query over all the sets, sorted by key.
+     */
+    public static List<Group> combine(Query query, List<List<Group>> parts) {
+        List<Query.Aggregate<?>> aggs = query.getAggregates();
+        Map<Object, Object[]> groups = new HashMap<>();
+        for (List<Group> part: parts) {
+            for (Group g: part) {
+                Object[] acc = groups.get(g.getKey());
+                if (acc == null) {
+                    acc = accumulator(aggs);
+                    groups.put(g.getKey(), acc);
+                }
+                for (int i = 0; i < acc.length; ++i) {
+                    Object v = g.get(aggs.get(i));
+                    switch (aggs.get(i).getFunction()) {
+                        case COUNT:
+                            acc[i] = (Long) acc[i] + (Long) v;
+                            break;
+                        default:
+                            extreme(acc, i, aggs.get(i).getFunction(), v);
+                            break;
+                    }
+                }
+            }
+        }
+        if (query.getGroupBy() == null && groups.isEmpty()) {
+            groups.put(null, accumulator(aggs));
+        }
+        return sorted(groups, aggs);
+    }
+
+    private static List<Group> sorted(Map<Object, Object[]> groups,
+            List<Query.Aggregate<?>> aggs) {
+        List<Object> keys = new ArrayList<>(groups.keySet());
+        keys.sort(TaskQueries::compare);
+        List<Group> out = new ArrayList<>(keys.size());
+        for (Object key: keys) {
+            out.add(new Group(key, aggs, groups.get(key)));
+        }
+        return out;
+    }
+
+    // counts start at 0, MIN and MAX at null
+    private static Object[] accumulator(List<Query.Aggregate<?>> aggs) {
+        Object[] acc = new Object[aggs.size()];
+        for (int i = 0; i < acc.length; ++i) {
+            if (aggs.get(i).getFunction() == Query.Function.COUNT) {
+                acc[i] = 0L;
+            }
+        }
+        return acc;
+    }
+
+    private static void accumulate(Object[] acc, int i, Query.Aggregate<?> a,
+            Task t) {
+        Object v = a.getField() == null ? null : t.get(a.getField());
+        switch (a.getFunction()) {
+            case COUNT:
+                if (a.getField() == null || v != null) {
+                    acc[i] = (Long) acc[i] + 1;
+                }
+                break;
+            default:
+                extreme(acc, i, a.getFunction(), v);
+                break;
+        }
+    }
+
+    // keep the smaller value for MIN, the larger one for MAX
+    private static void extreme(Object[] acc, int i, Query.Function f,
+            Object v) {
+        if (v == null) {
+            return;
+        }
+        int c = acc[i] == null ? 0 : compare(v, acc[i]);
+        if (acc[i] == null || (f == Query.Function.MIN ? c < 0 : c > 0)) {
+            acc[i] = v;
+        }
+    }
+
+    private static Object keyOf(Task t, Query.GroupBy groupBy) {
+        Object v = t.get(groupBy.getField());
+        if (!groupBy.isByDay() || v == null) {
+            return v;
+        }
+        return ((ZonedDateTime) v).withZoneSameInstant(groupBy.getZone())
+            .toLocalDate();
+    }
+
+    // perPage[0] is set to the size of the first page of the source
+    private static List<Task> evaluate(Paginated<Task> source, Query query,
+            int[] perPage) {
+        Predicate<Task> where = predicate(query);
+        Comparator<Task> order = comparator(query);
+        int offset = query.getOffset();
+        int limit = query.getLimit();
+        List<Task> out = new ArrayList<>();
+        if (limit == 0) {
+            return out;
+        }
+
+        if (order == null) {
+            // stream, and stop as soon as we have enough
+            int skipped = 0;
+            while (source.hasNextPage()) {
+                List<Task> page = source.nextPage();
+                perPage[0] = Math.max(perPage[0], page.size());
+                for (Task t: page) {
+                    if (!where.test(t)) {
+                        continue;
+                    } else if (skipped < offset) {
+                        ++skipped;
+                        continue;
+                    }
+                    out.add(t);
+                    if (out.size() == limit) {
+                        return out;
+                    }
+                }
+            }
+            return out;
+        }
+
+        if (limit < 0) {
+            while (source.hasNextPage()) {
+                List<Task> page = source.nextPage();
+                perPage[0] = Math.max(perPage[0], page.size());
+                for (Task t: page) {
+                    if (where.test(t)) {
+                        out.add(t);
+                    }
+                }
+            }
+            out.sort(order);
+            return out.subList(Math.min(offset, out.size()), out.size());
+        }
+
+        // top k: keep the best offset + limit in a heap with the worst on top
+        int k = (int) Math.min(Integer.MAX_VALUE - 8L, (long) offset + limit);
+        PriorityQueue<Task> heap = new PriorityQueue<>(Math.min(k, 1024),
+                order.reversed());
+        while (source.hasNextPage()) {
+            List<Task> page = source.nextPage();
+            perPage[0] = Math.max(perPage[0], page.size());
+            for (Task t: page) {
+                if (!where.test(t)) {
+                    continue;
+                } else if (heap.size() < k) {
+                    heap.add(t);
+                } else if (order.compare(t, heap.peek()) < 0) {
+                    heap.poll();
+                    heap.add(t);
+                }
+            }
+        }
+        out.addAll(heap);
+        out.sort(order);
+        return out.subList(Math.min(offset, out.size()), out.size());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Predicate<Task> condition(Query.Where w) {
+        Field<?> f = w.getField();
+        Object v = w.getValue();
+        switch (w.getOperator()) {
+            case EQUALS:
+                return t -> test(t.get(f), v, c -> c == 0);
+            case NOT_EQUALS:
+                return t -> test(t.get(f), v, c -> c != 0);
+            case GREATER_THAN:
+                return t -> test(t.get(f), v, c -> c > 0);
+            case LESS_THAN:
+                return t -> test(t.get(f), v, c -> c < 0);
+            case GREATER_THAN_OR_EQUALS:
+                return t -> test(t.get(f), v, c -> c >= 0);
+            case LESS_THAN_OR_EQUALS:
+                return t -> test(t.get(f), v, c -> c <= 0);
+            case LIKE:
+                LikePattern p = LikePattern.compile(String.valueOf(v));
+                return t -> p.matches((String) t.get(f));
+            case IN:
+                if (!(v instanceof Collection)) {
+                    throw new IllegalArgumentException("IN needs a "
+                            + "Collection value.");
+                }
+                Collection<Object> in = (Collection<Object>) v;
+                return t -> {
+                    Object x = t.get(f);
+                    for (Object o: in) {
+                        if (test(x, o, c -> c == 0)) {
+                            return true;
+                        }
+                    }
+                    return false;
+                };
+            default:
+                throw new UnsupportedOperationException("Operator "
+                        + w.getOperator() + " is not supported.");
+        }
+    }
+
+    // a comparison involving null never matches, as in SQL
+    private static boolean test(Object a, Object b, IntPredicate ok) {
+        return a != null && b != null && ok.test(compare(a, b));
+    }
+
+    // nulls first, deadlines by instant, numbers by value
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static int compare(Object a, Object b) {
+        if (a == b) {
+            return 0;
+        } else if (a == null) {
+            return -1;
+        } else if (b == null) {
+            return 1;
+        } else if (a instanceof ZonedDateTime && b instanceof ZonedDateTime) {
+            return ((ZonedDateTime) a).toInstant()
+                .compareTo(((ZonedDateTime) b).toInstant());
+        } else if (a instanceof Number && b instanceof Number) {
+            return Long.compare(((Number) a).longValue(),
+                    ((Number) b).longValue());
+        }
+        return ((Comparable) a).compareTo(b);
+    }
+}
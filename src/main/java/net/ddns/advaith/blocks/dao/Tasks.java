@@ -0,0 +1,62 @@
+/*
+ * This file is part of Blocks.
+ *
+ * Blocks is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Blocks is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with Blocks. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.ddns.advaith.blocks.dao;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import net.ddns.advaith.blocks.model.Paginated;
+import net.ddns.advaith.blocks.model.Task;
+
+/**
+ * Small helpers shared by the DAOs in this package.
+ *
+ * @since 0.1.0
+ * @author Advaith Menon
+ */
+final class Tasks {
+    private Tasks() {}
+
+    /**
+     * Copy a task. Tasks are mutable, so anything we keep must be a copy, or
+     * callers could change what we have stored behind our back. The copy has
+     * the same version.
+     *
+     * @param t The task to copy.
+     * @return A copy of the task.
+     */
+    static Task copy(Task t) {
+        return Task.restore(t.getID(), t.getTitle(), t.getDetails(),
+                t.getDeadline(), t.getVersion());
+    }
+
+    /**
+     * Read every page of a Paginated into a list. Only use this for results
+     * known to be small.
+     *
+     * @param p The Paginated.
+     * @return All the elements, in order.
+     */
+    static <T> List<T> drain(Paginated<T> p) {
+        List<T> out = new ArrayList<>();
+        while (p.hasNextPage()) {
+            out.addAll(p.nextPage());
+        }
+        return out;
+    }
+}
@@ -0,0 +1,319 @@
+/*
+ * This file is part of Blocks.
+ * 
+ * Blocks is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * Blocks is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with Blocks. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package net.ddns.advaith.blocks.dao;
+
+import java.time.Duration;
+import java.time.format.DateTimeParseException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.ddns.advaith.blocks.config.ConfigManager;
+
+/**
+ * Decides which tasks a {@link TieredTaskDAO} keeps in its hot tier. A task
+ * is hot if its deadline is in the window around now, or if it has been
+ * read often enough lately; everything else is demoted to the cold tier when
+ * the tiers are rebalanced.
+ *
+ * @since 0.1.0
+ * @author Advaith Menon
+ */
+public final class TierPolicy {
+    // Logger
+    private static final Logger LOGGER = LoggerFactory.getLogger(
+            TierPolicy.class);
+
+    /**
+     * The configuration key for how far ahead of now deadlines are hot, as
+     * an ISO-8601 duration, e.g. P7D.
+     */
+    public static final String WINDOW_KEY =
+        "net.ddns.advaith.blocks.tier.window";
+
+    /**
+     * The configuration key for how long overdue tasks stay hot, as an
+     * ISO-8601 duration.
+     */
+    public static final String GRACE_KEY =
+        "net.ddns.advaith.blocks.tier.grace";
+
+    /**
+     * The configuration key for the number of reads by ID that promote a
+     * task outside the window. Counts halve on every rebalance.
+     */
+    public static final String PROMOTE_AFTER_KEY =
+        "net.ddns.advaith.blocks.tier.promoteAfter";
+
+    /**
+     * The configuration key for the most tasks in the hot tier. Tasks in
+     * the window are always hot, so this only limits the ones promoted for
+     * being read often.
+     */
+    public static final String CAPACITY_KEY =
+        "net.ddns.advaith.blocks.tier.capacity";
+
+    /**
+     * The configuration key for how often to rebalance, as an ISO-8601
+     * duration.
+     */
+    public static final String INTERVAL_KEY =
+        "net.ddns.advaith.blocks.tier.interval";
+
+    /**
+     * The configuration key for whether updates to hot tasks are only
+     * written to the cold tier when they are demoted: "true" or "false"
+     * (the default).
+     */
+    public static final String WRITE_BACK_KEY =
+        "net.ddns.advaith.blocks.tier.writeBack";
+
+    /**
+     * The policy with every setting at its default.
+     */
+    public static final TierPolicy DEFAULT = builder().build();
+
+    private final Duration window;
+    private final Duration grace;
+    private final int promoteAfter;
+    private final int capacity;
+    private final Duration interval;
+    private final boolean writeBack;
+
+    private TierPolicy(Builder b) {
+        window = b.window;
+        grace = b.grace;
+        promoteAfter = b.promoteAfter;
+        capacity = b.capacity;
+        interval = b.interval;
+        writeBack = b.writeBack;
+    }
+
+    /**
+     * Builds a TierPolicy.
+     *
+     * @since 0.1.0
+     */
+    public static final class Builder {
+        private Duration window = Duration.ofDays(7);
+        private Duration grace = Duration.ofDays(1);
+        private int promoteAfter = 3;
+        private int capacity = 10000;
+        private Duration interval = Duration.ofMinutes(1);
+        private boolean writeBack = false;
+
+        private Builder() {}
+
+        /**
+         * @param window How far ahead of now deadlines are hot. Default
+         * seven days.
+         * @return this builder.
+         * @throws IllegalArgumentException if window is negative.
+         */
+        public Builder window(Duration window) {
+            this.window = notNegative(window, "window");
+            return this;
+        }
+
+        /**
+         * @param grace How long overdue tasks stay hot. Default one day.
+         * @return this builder.
+         * @throws IllegalArgumentException if grace is negative.
+         */
+        public Builder grace(Duration grace) {
+            this.grace = notNegative(grace, "grace");
+            return this;
+        }
+
+        /**
+         * @param promoteAfter The number of reads by ID between two
+         * rebalances that promotes a task outside the window. Default 3.
+         * @return this builder.
+         * @throws IllegalArgumentException if promoteAfter is not positive.
+         */
+        public Builder promoteAfter(int promoteAfter) {
+            if (promoteAfter <= 0) {
+                throw new IllegalArgumentException("promoteAfter must be "
+                        + "positive");
+            }
+            this.promoteAfter = promoteAfter;
+            return this;
+        }
+
+        /**
+         * @param capacity The most tasks in the hot tier, not counting the
+         * ones in the window. Default 10000.
+         * @return this builder.
+         * @throws IllegalArgumentException if capacity is negative.
+         */
+        public Builder capacity(int capacity) {
+            if (capacity < 0) {
+                throw new IllegalArgumentException("capacity cannot be "
+                        + "negative");
+            }
+            this.capacity = capacity;
+            return this;
+        }
+
+        /**
+         * @param interval How often {@link TieredDAOProxy} rebalances.
+         * Default one minute.
+         * @return this builder.
+         * @throws IllegalArgumentException if interval is not positive.
+         */
+        public Builder interval(Duration interval) {
+            if (interval == null || interval.isNegative()
+                    || interval.isZero()) {
+                throw new IllegalArgumentException("interval must be "
+                        + "positive");
+            }
+            this.interval = interval;
+            return this;
+        }
+
+        /**
+         * @param writeBack true to write updates to hot tasks to the cold
+         * tier only when they are demoted or flushed, false to write them
+         * to both tiers straight away. Default false.
+         * @return this builder.
+         */
+        public Builder writeBack(boolean writeBack) {
+            this.writeBack = writeBack;
+            return this;
+        }
+
+        /**
+         * @return the policy.
+         */
+        public TierPolicy build() {
+            return new TierPolicy(this);
+        }
+
+        private static Duration notNegative(Duration d, String name) {
+            if (d == null || d.isNegative()) {
+                throw new IllegalArgumentException(name + " cannot be null "
+                        + "or negative");
+            }
+            return d;
+        }
+    }
+
+    /**
+     * @return a new builder, with every setting at its default.
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Read the policy from the configuration. Missing or malformed values
+     * are left at their defaults; malformed ones are logged.
+     *
+     * @param config The configuration.
+     * @return The policy.
+     */
+    public static TierPolicy fromConfig(ConfigManager config) {
+        Builder b = builder();
+        String s = config.getProperty(WINDOW_KEY);
+        try {
+            if (s != null) {
+                b.window(Duration.parse(s));
+            }
+        } catch (DateTimeParseException | IllegalArgumentException e) {
+            LOGGER.warn("Ignoring malformed {}", WINDOW_KEY);
+        }
+        s = config.getProperty(GRACE_KEY);
+        try {
+            if (s != null) {
+                b.grace(Duration.parse(s));
+            }
+        } catch (DateTimeParseException | IllegalArgumentException e) {
+            LOGGER.warn("Ignoring malformed {}", GRACE_KEY);
+        }
+        s = config.getProperty(PROMOTE_AFTER_KEY);
+        try {
+            if (s != null) {
+                b.promoteAfter(Integer.parseInt(s));
+            }
+        } catch (IllegalArgumentException e) {
+            LOGGER.warn("Ignoring malformed {}", PROMOTE_AFTER_KEY);
+        }
+        s = config.getProperty(CAPACITY_KEY);
+        try {
+            if (s != null) {
+                b.capacity(Integer.parseInt(s));
+            }
+        } catch (IllegalArgumentException e) {
+            LOGGER.warn("Ignoring malformed {}", CAPACITY_KEY);
+        }
+        s = config.getProperty(INTERVAL_KEY);
+        try {
+            if (s != null) {
+                b.interval(Duration.parse(s));
+            }
+        } catch (DateTimeParseException | IllegalArgumentException e) {
+            LOGGER.warn("Ignoring malformed {}", INTERVAL_KEY);
+        }
+        return b.writeBack("true".equals(config.getProperty(WRITE_BACK_KEY)))
+            .build();
+    }
+
+    /**
+     * @return how far ahead of now deadlines are hot.
+     */
+    public Duration getWindow() {
+        return window;
+    }
+
+    /**
+     * @return how long overdue tasks stay hot.
+     */
+    public Duration getGrace() {
+        return grace;
+    }
+
+    /**
+     * @return the number of reads by ID that promotes a task.
+     */
+    public int getPromoteAfter() {
+        return promoteAfter;
+    }
+
+    /**
+     * @return the most tasks in the hot tier outside the window.
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return how often to rebalance.
+     */
+    public Duration getInterval() {
+        return interval;
+    }
+
+    /**
+     * @return true if updates to hot tasks reach the cold tier only when
+     * they are demoted or flushed.
+     */
+    public boolean isWriteBack() {
+        return writeBack;
+    }
+}
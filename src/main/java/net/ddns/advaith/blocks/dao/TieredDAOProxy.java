@@ -0,0 +1,117 @@
+/*
+ * This file is part of Blocks.
+ * 
+ * Blocks is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * Blocks is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with Blocks. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package net.ddns.advaith.blocks.dao;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.ddns.advaith.blocks.config.ConfigManager;
+import net.ddns.advaith.blocks.plugin.DAOProxy;
+
+/**
+ * A DAOProxy with an in-memory hot tier in front of another proxy's Task
+ * DAO, see {@link TieredTaskDAO}. The tiers are rebalanced on the executor
+ * every {@link TierPolicy#getInterval()} until the proxy is closed.
+ *
+ * @since 0.1.0
+ * @author Advaith Menon
+ */
+public class TieredDAOProxy implements DAOProxy, AutoCloseable {
+    // Logger
+    private static final Logger LOGGER = LoggerFactory.getLogger(
+            TieredDAOProxy.class);
+
+    // the tiered Task DAO
+    private final TieredTaskDAO tasks;
+
+    // the periodic rebalance
+    private final ScheduledFuture<?> rebalancing;
+
+    /**
+     * Create a new TieredDAOProxy.
+     *
+     * @param cold The proxy whose Task DAO is the cold tier.
+     * @param policy Decides which tasks are hot.
+     * @param executor Reads both tiers and rebalances them.
+     * @param perPage The number of entries per page of results.
+     * @throws IllegalArgumentException if anything is null or perPage is not
+     * positive.
+     * @throws net.ddns.advaith.blocks.model.DAOException if the cold tier
+     * cannot be read.
+     */
+    public TieredDAOProxy(DAOProxy cold, TierPolicy policy,
+            ScheduledExecutorService executor, int perPage) {
+        if (cold == null) {
+            throw new IllegalArgumentException("cold cannot be null");
+        }
+        tasks = new TieredTaskDAO(cold.getTaskDAO(), policy, executor,
+                perPage);
+        long period = policy.getInterval().toMillis();
+        rebalancing = executor.scheduleWithFixedDelay(this::rebalance,
+                period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Create a TieredDAOProxy with the policy from the {@link
+     * ConfigManager}.
+     *
+     * @param cold The proxy whose Task DAO is the cold tier.
+     * @param executor Reads both tiers and rebalances them.
+     * @param perPage The number of entries per page of results.
+     * @return The proxy.
+     * @throws IllegalArgumentException if anything is null or perPage is not
+     * positive.
+     */
+    public static TieredDAOProxy fromConfig(DAOProxy cold,
+            ScheduledExecutorService executor, int perPage) {
+        return new TieredDAOProxy(cold, TierPolicy.fromConfig(
+                    ConfigManager.getInstance()), executor, perPage);
+    }
+
+    @Override
+    public TieredTaskDAO getTaskDAO() {
+        return tasks;
+    }
+
+    /**
+     * Stop rebalancing, and write back whatever is dirty. The Task DAO can
+     * still be used afterwards, but its hot tier no longer moves along.
+     *
+     * @throws net.ddns.advaith.blocks.model.DAOException if the write back
+     * fails.
+     */
+    @Override
+    public void close() {
+        rebalancing.cancel(false);
+        tasks.flush();
+    }
+
+    private void rebalance() {
+        try {
+            tasks.rebalance();
+        } catch (RuntimeException e) {
+            // a failed run must not cancel the ones after it
+            LOGGER.warn("Could not rebalance the tiers", e);
+        }
+    }
+}
@@ -0,0 +1,663 @@
+/*
+ * This file is part of Blocks.
+ * 
+ * Blocks is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * Blocks is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with Blocks. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package net.ddns.advaith.blocks.dao;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.ddns.advaith.blocks.model.GenericDAO;
+import net.ddns.advaith.blocks.model.ListPaginated;
+import net.ddns.advaith.blocks.model.MergedPaginated;
+import net.ddns.advaith.blocks.model.Paginated;
+import net.ddns.advaith.blocks.model.Query;
+import net.ddns.advaith.blocks.model.Task;
+import net.ddns.advaith.blocks.model.TaskKey;
+
+/**
+ * Keeps the tasks that are being worked on in memory, in front of a plugin's
+ * Task DAO. The plugin's DAO is the cold tier and holds every task; the hot
+ * tier is a {@link MemoryTaskDAO} with copies of the tasks a {@link
+ * TierPolicy} picks: those due soon or recently overdue, and those read by
+ * ID often. Reads of hot tasks by ID, and queries whose deadline range lies
+ * inside the window, are answered from memory alone; everything else reads
+ * both tiers in parallel and merges them in order (see {@link
+ * MergedPaginated}), taking hot tasks from the hot tier and the rest from
+ * the cold one. A LIMIT and OFFSET are applied after merging.
+ *
+ * Every write goes to the cold tier first, so it is never behind and
+ * nothing is lost if the process dies. With {@link TierPolicy#isWriteBack()},
+ * updates to hot tasks only go to the hot tier, and reach the cold tier when
+ * the task is demoted or {@link #flush()} is called. The cold tier picks its
+ * own version for such a task, so the version of a task can jump when it is
+ * written back, and the next update made with the old one conflicts.
+ *
+ * {@link #rebalance()} moves the window along: it promotes the cold tasks
+ * that have come into it or have been read often, and demotes the hot tasks
+ * that have left it and are no longer read. It has to be called
+ * periodically; {@link TieredDAOProxy} does that.
+ *
+ * Like the tiers themselves, reads are weakly consistent: a task promoted
+ * or demoted while a merged result is being read may be missed by it.
+ *
+ * This DAO has no change feed of its own; wrap it in an {@link
+ * ObservableTaskDAO} for one. select() and aggregate() are not pushed down;
+ * {@link TaskQueries} evaluates them over this DAO.
+ *
+ * @since 0.1.0
+ * @author Advaith Menon
+ */
+public class TieredTaskDAO implements GenericDAO<Task> {
+    // Logger
+    private static final Logger LOGGER = LoggerFactory.getLogger(
+            TieredTaskDAO.class);
+
+    // the number of lock stripes
+    private static final int STRIPES = 64;
+
+    // the hot tier
+    private final MemoryTaskDAO hot;
+
+    // the cold tier, and the system of record
+    private final GenericDAO<Task> cold;
+
+    // which tasks are hot
+    private final TierPolicy policy;
+
+    // runs the reads of both tiers
+    private final Executor executor;
+
+    // tells the time for the window
+    private final Clock clock;
+
+    // entries per page of merged results
+    private final int perPage;
+
+    // the IDs in the hot tier
+    private final Set<Long> hotIDs;
+
+    // hot IDs updated since they were last written to the cold tier
+    private final Set<Long> dirty;
+
+    // reads by ID since the last rebalance, halved on every rebalance
+    private final Map<Long, Integer> reads;
+
+    // one lock per stripe of IDs, held while a task changes tier or is
+    // written
+    private final Object[] locks;
+
+    // the number of writes per stripe, to tell if a bulk read is stale
+    private final AtomicLongArray writes;
+
+    // the number of promotions and demotions
+    private final LongAdder promotions;
+    private final LongAdder demotions;
+
+    // new tasks with deadlines in this range go to the hot tier
+    private volatile Instant from;
+    private volatile Instant to;
+
+    // every task with a deadline in this range is in the hot tier; null
+    // until the first rebalance
+    private volatile Instant coveredFrom;
+    private volatile Instant coveredTo;
+
+    /**
+     * Create a new TieredTaskDAO and fill its hot tier.
+     *
+     * @param cold The cold tier.
+     * @param policy Decides which tasks are hot.
+     * @param executor Runs the reads of both tiers.
+     * @param perPage The number of entries per page of results.
+     * @throws IllegalArgumentException if anything is null or perPage is not
+     * positive.
+     * @throws net.ddns.advaith.blocks.model.DAOException if the cold tier
+     * cannot be read.
+     */
+    public TieredTaskDAO(GenericDAO<Task> cold, TierPolicy policy,
+            Executor executor, int perPage) {
+        this(cold, policy, executor, perPage, Clock.systemDefaultZone());
+    }
+
+    /**
+     * Create a new TieredTaskDAO with its own clock, and fill its hot tier.
+     *
+     * @param cold The cold tier.
+     * @param policy Decides which tasks are hot.
+     * @param executor Runs the reads of both tiers.
+     * @param perPage The number of entries per page of results.
+     * @param clock Tells the time for the window.
+     * @throws IllegalArgumentException if anything is null or perPage is not
+     * positive.
+     * @throws net.ddns.advaith.blocks.model.DAOException if the cold tier
+     * cannot be read.
+     */
+    public TieredTaskDAO(GenericDAO<Task> cold, TierPolicy policy,
+            Executor executor, int perPage, Clock clock) {
+        if (cold == null || policy == null || executor == null
+                || clock == null) {
+            throw new IllegalArgumentException("cold, policy, executor and "
+                    + "clock cannot be null");
+        }
+        this.hot = new MemoryTaskDAO(perPage);
+        this.cold = cold;
+        this.policy = policy;
+        this.executor = executor;
+        this.clock = clock;
+        this.perPage = perPage;
+        hotIDs = ConcurrentHashMap.newKeySet();
+        dirty = ConcurrentHashMap.newKeySet();
+        reads = new ConcurrentHashMap<>();
+        locks = new Object[STRIPES];
+        for (int i = 0; i < STRIPES; ++i) {
+            locks[i] = new Object();
+        }
+        writes = new AtomicLongArray(STRIPES);
+        promotions = new LongAdder();
+        demotions = new LongAdder();
+        rebalance();
+    }
+
+    /**
+     * @return the policy.
+     */
+    public TierPolicy getPolicy() {
+        return policy;
+    }
+
+    /**
+     * @return the number of tasks in the hot tier.
+     */
+    public int getHotSize() {
+        return hotIDs.size();
+    }
+
+    /**
+     * @return the number of tasks promoted to the hot tier so far.
+     */
+    public long getPromotions() {
+        return promotions.sum();
+    }
+
+    /**
+     * @return the number of tasks demoted from the hot tier so far.
+     */
+    public long getDemotions() {
+        return demotions.sum();
+    }
+
+    /**
+     * @param id The ID of a task.
+     * @return true if it is in the hot tier.
+     */
+    public boolean isHot(long id) {
+        return hotIDs.contains(id);
+    }
+
+    @Override
+    public void add(Task item) {
+        cold.add(item);
+        placed(item);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * The tasks are added to the cold tier in one batch.
+     */
+    @Override
+    public void addAll(List<Task> items) {
+        cold.addAll(items);
+        for (Task t: items) {
+            placed(t);
+        }
+    }
+
+    @Override
+    public void update(Task item) {
+        long id = item.getID();
+        if (id == -1) {
+            throw new IllegalArgumentException("Task has no ID.");
+        }
+        synchronized (lock(id)) {
+            writes.incrementAndGet(stripe(id));
+            if (!hotIDs.contains(id)) {
+                cold.update(item);
+                if (inWindow(item)) {
+                    promote(item);
+                }
+            } else if (policy.isWriteBack()) {
+                hot.update(item);
+                dirty.add(id);
+            } else {
+                cold.update(item);
+                hot.put(item);
+            }
+        }
+    }
+
+    @Override
+    public void delete(Task item) {
+        long id = item.getID();
+        if (id < 0) {
+            throw new IllegalArgumentException("Task has no ID.");
+        }
+        synchronized (lock(id)) {
+            writes.incrementAndGet(stripe(id));
+            if (hotIDs.contains(id) && policy.isWriteBack()) {
+                // the hot copy has the version the caller knows
+                hot.delete(item);
+                cold.delete(id);
+            } else {
+                cold.delete(item);
+                hot.delete(id);
+            }
+            forget(id);
+        }
+    }
+
+    @Override
+    public void delete(long id) {
+        if (id < 0) {
+            throw new IllegalArgumentException("ID cannot be less than 0.");
+        }
+        synchronized (lock(id)) {
+            writes.incrementAndGet(stripe(id));
+            cold.delete(id);
+            hot.delete(id);
+            forget(id);
+        }
+    }
+
+    @Override
+    public Paginated<Task> fetchAll() {
+        return fetchAll(null);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Resuming means resuming both tiers from the same token, so the cold
+     * tier has to support tokens, or reading the result throws
+     * UnsupportedOperationException.
+     */
+    @Override
+    public Paginated<Task> fetchAll(String token) {
+        return new MergedPaginated<>(List.of(
+                    () -> token == null ? hot.fetchAll() : hot.fetchAll(token),
+                    () -> coldOnly(token == null ? cold.fetchAll()
+                        : cold.fetchAll(token))), TaskKey.ORDER, executor,
+                perPage, 0, -1, t -> TaskKey.of(t).toToken(), token);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * A lookup by ID counts as a read of that task towards its promotion.
+     */
+    @Override
+    public Paginated<Task> fetchEquals(int column, Object target) {
+        if (column == Task.ID && target instanceof Number) {
+            long id = ((Number) target).longValue();
+            reads.merge(id, 1, Integer::sum);
+            return hotIDs.contains(id) ? hot.fetchEquals(column, target)
+                : cold.fetchEquals(column, target);
+        }
+        return new MergedPaginated<>(List.of(
+                    () -> hot.fetchEquals(column, target),
+                    () -> coldOnly(cold.fetchEquals(column, target))),
+                TaskKey.ORDER, executor, perPage);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * A query joined only with AND, whose conditions on the deadline bound
+     * it to the window, is answered from the hot tier alone. If the cold
+     * tier does not implement query(), it is evaluated over its fetchAll(),
+     * see {@link TaskQueries#evaluate(Paginated, Query)}.
+     */
+    @Override
+    public Paginated<Task> query(Query query) {
+        if (query.isAggregate()) {
+            throw new IllegalArgumentException("Use aggregate() for "
+                    + "aggregate queries.");
+        } else if (covered(query)) {
+            return hot.query(query);
+        }
+        Query.QueryBuilder qb = query.toBuilder().offset(0);
+        Query.QueryBuilder cb = query.toBuilder().offset(0);
+        if (query.getLimit() >= 0) {
+            long n = (long) query.getOffset() + query.getLimit();
+            qb.limit((int) Math.min(Integer.MAX_VALUE, n));
+            // some of what the cold tier returns is hot and dropped
+            cb.limit((int) Math.min(Integer.MAX_VALUE, n + hotIDs.size()));
+        }
+        Query hq = qb.build();
+        Query cq = cb.build();
+        Comparator<Task> order = TaskQueries.comparator(query);
+        List<Supplier<Paginated<Task>>> sources = List.of(
+                () -> hot.query(hq), () -> {
+                    try {
+                        return coldOnly(cold.query(cq));
+                    } catch (UnsupportedOperationException e) {
+                        return coldOnly(new ListPaginated<>(
+                                    TaskQueries.evaluate(cold.fetchAll(), cq),
+                                    perPage));
+                    }
+                });
+        return new MergedPaginated<>(sources, order == null ? TaskKey.ORDER
+                : order, executor, perPage, query.getOffset(),
+                query.getLimit(), null, null);
+    }
+
+    /**
+     * Move the window along to now. Cold tasks that have come into it, or
+     * have been read by ID at least {@link TierPolicy#getPromoteAfter()}
+     * times, are promoted; hot tasks that have left it and are read less
+     * are demoted, as are the least read ones outside the window if there
+     * are more than {@link TierPolicy#getCapacity()}. Read counts are halved
+     * afterwards, so that they only reflect recent use.
+     *
+     * @throws net.ddns.advaith.blocks.model.DAOException if a tier fails.
+     * Whatever was moved before stays moved.
+     */
+    public synchronized void rebalance() {
+        Instant now = clock.instant();
+        Instant newFrom = now.minus(policy.getGrace());
+        Instant newTo = now.plus(policy.getWindow());
+        // until promotion is done, only the overlap is known to be hot
+        if (coveredFrom != null) {
+            coveredFrom = later(coveredFrom, newFrom);
+            coveredTo = earlier(coveredTo, newTo);
+        }
+        from = newFrom;
+        to = newTo;
+
+        long[] before = stamps();
+        Query q = Query.select().from(Task.TABLE)
+            .where(Task.DEADLINE_FIELD).greaterThanOrEquals(
+                    ZonedDateTime.ofInstant(newFrom, clock.getZone()))
+            .and().where(Task.DEADLINE_FIELD).lessThanOrEquals(
+                    ZonedDateTime.ofInstant(newTo, clock.getZone()))
+            .finish().build();
+        for (Task t: coldQuery(q)) {
+            if (!hotIDs.contains(t.getID())) {
+                promote(t, before);
+            }
+        }
+        coveredFrom = newFrom;
+        coveredTo = newTo;
+
+        int extra = 0;
+        List<Task> outside = new ArrayList<>();
+        for (long id: hotIDs) {
+            Task t = hot.get(id);
+            if (t != null && !inWindow(t)) {
+                if (reads(id) >= policy.getPromoteAfter()) {
+                    outside.add(t);
+                    ++extra;
+                } else {
+                    demote(t);
+                }
+            }
+        }
+        List<Long> wanted = new ArrayList<>();
+        for (Map.Entry<Long, Integer> e: reads.entrySet()) {
+            if (e.getValue() >= policy.getPromoteAfter()
+                    && !hotIDs.contains(e.getKey())) {
+                wanted.add(e.getKey());
+            }
+        }
+        wanted.sort(Comparator.comparingInt(this::reads).reversed());
+        for (long id: wanted) {
+            if (extra >= policy.getCapacity()) {
+                break;
+            }
+            if (promote(id)) {
+                ++extra;
+            }
+        }
+        if (extra > policy.getCapacity()) {
+            outside.sort(Comparator.comparingInt(t -> reads(t.getID())));
+            for (Task t: outside.subList(0, extra - policy.getCapacity())) {
+                demote(t);
+            }
+        }
+        reads.replaceAll((id, n) -> n / 2);
+        reads.values().removeIf(n -> n == 0);
+        LOGGER.debug("Rebalanced tiers: {} hot, {} promoted and {} demoted "
+                + "so far", hotIDs.size(), promotions.sum(), demotions.sum());
+    }
+
+    /**
+     * Write every hot task updated since it was last written back to the
+     * cold tier, without demoting it. Does nothing unless the policy is
+     * write-back.
+     *
+     * @throws net.ddns.advaith.blocks.model.DAOException if the cold tier
+     * fails. The tasks not written yet stay dirty.
+     */
+    public void flush() {
+        for (long id: dirty) {
+            synchronized (lock(id)) {
+                Task t = hot.get(id);
+                if (t != null && dirty.contains(id)) {
+                    writeBack(t);
+                }
+            }
+        }
+    }
+
+    // put a newly added task in the hot tier if it belongs there
+    private void placed(Task item) {
+        if (inWindow(item)) {
+            synchronized (lock(item.getID())) {
+                promote(item);
+            }
+        }
+    }
+
+    // a task read from the cold tier, promoted unless it changed since
+    private void promote(Task t, long[] before) {
+        long id = t.getID();
+        synchronized (lock(id)) {
+            if (hotIDs.contains(id)) {
+                return;
+            } else if (writes.get(stripe(id)) != before[stripe(id)]) {
+                promote(id);
+            } else {
+                promote(t);
+            }
+        }
+    }
+
+    // promote a task by ID; false if it is not in the cold tier
+    private boolean promote(long id) {
+        synchronized (lock(id)) {
+            if (hotIDs.contains(id)) {
+                return false;
+            }
+            List<Task> found = Tasks.drain(cold.fetchEquals(Task.ID, id));
+            if (found.isEmpty()) {
+                reads.remove(id);
+                return false;
+            }
+            promote(found.get(0));
+            return true;
+        }
+    }
+
+    // copy a task into the hot tier; the caller holds its lock
+    private void promote(Task t) {
+        hot.put(t);
+        if (hotIDs.add(t.getID())) {
+            promotions.increment();
+        }
+    }
+
+    private void demote(Task t) {
+        long id = t.getID();
+        synchronized (lock(id)) {
+            if (!hotIDs.contains(id)) {
+                return;
+            }
+            Task current = hot.get(id);
+            if (current != null && dirty.contains(id)) {
+                writeBack(current);
+            }
+            writes.incrementAndGet(stripe(id));
+            hotIDs.remove(id);
+            hot.delete(id);
+            demotions.increment();
+        }
+    }
+
+    // the caller holds the lock of the task
+    private void writeBack(Task t) {
+        Task c = Tasks.copy(t);
+        c.setVersion(-1);
+        cold.update(c);
+        dirty.remove(t.getID());
+    }
+
+    private void forget(long id) {
+        hotIDs.remove(id);
+        dirty.remove(id);
+        reads.remove(id);
+    }
+
+    private boolean inWindow(Task t) {
+        Instant d = t.getDeadline().toInstant();
+        return !d.isBefore(from) && !d.isAfter(to);
+    }
+
+    // whether an AND-only query's deadline conditions keep it in the part
+    // of the window known to be hot
+    private boolean covered(Query query) {
+        Instant lo = null;
+        Instant hi = null;
+        for (Query.Where w: query.getWhere()) {
+            if (w.getNextLogicalOperator() == Query.Operator.OR) {
+                return false;
+            } else if (!Task.DEADLINE_FIELD.equals(w.getField())
+                    || !(w.getValue() instanceof ZonedDateTime)) {
+                continue;
+            }
+            Instant v = ((ZonedDateTime) w.getValue()).toInstant();
+            switch (w.getOperator()) {
+                case EQUALS:
+                    lo = lo == null ? v : later(lo, v);
+                    hi = hi == null ? v : earlier(hi, v);
+                    break;
+                case GREATER_THAN:
+                case GREATER_THAN_OR_EQUALS:
+                    lo = lo == null ? v : later(lo, v);
+                    break;
+                case LESS_THAN:
+                case LESS_THAN_OR_EQUALS:
+                    hi = hi == null ? v : earlier(hi, v);
+                    break;
+                default:
+                    break;
+            }
+        }
+        Instant f = coveredFrom;
+        Instant t = coveredTo;
+        return lo != null && hi != null && f != null && !lo.isBefore(f)
+            && !hi.isAfter(t);
+    }
+
+    // run a query on the cold tier, falling back to evaluating it here
+    private List<Task> coldQuery(Query q) {
+        try {
+            return Tasks.drain(cold.query(q));
+        } catch (UnsupportedOperationException e) {
+            return TaskQueries.evaluate(cold.fetchAll(), q);
+        }
+    }
+
+    // drop the tasks that are hot from a result of the cold tier
+    private Paginated<Task> coldOnly(Paginated<Task> source) {
+        return new Paginated<>() {
+            @Override
+            public void setEntriesPerPage(int x) {
+                source.setEntriesPerPage(x);
+            }
+
+            @Override
+            public boolean hasNextPage() {
+                return source.hasNextPage();
+            }
+
+            @Override
+            public List<Task> nextPage() {
+                List<Task> page = new ArrayList<>(source.nextPage());
+                page.removeIf(t -> hotIDs.contains(t.getID()));
+                return page;
+            }
+
+            @Override
+            public String getContinuationToken() {
+                return source.getContinuationToken();
+            }
+        };
+    }
+
+    private int reads(long id) {
+        return reads.getOrDefault(id, 0);
+    }
+
+    private long[] stamps() {
+        long[] out = new long[STRIPES];
+        for (int i = 0; i < STRIPES; ++i) {
+            out[i] = writes.get(i);
+        }
+        return out;
+    }
+
+    private static int stripe(long id) {
+        return (int) ((id * 0x9E3779B97F4A7C15L) >>> 58);
+    }
+
+    private Object lock(long id) {
+        return locks[stripe(id)];
+    }
+
+    private static Instant later(Instant a, Instant b) {
+        return a.isAfter(b) ? a : b;
+    }
+
+    private static Instant earlier(Instant a, Instant b) {
+        return a.isBefore(b) ? a : b;
+    }
+}
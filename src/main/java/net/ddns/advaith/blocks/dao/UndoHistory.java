@@ -0,0 +1,280 @@
+/*
+ * This file is part of Blocks.
+ * 
+ * Blocks is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * Blocks is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with Blocks. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package net.ddns.advaith.blocks.dao;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.ddns.advaith.blocks.config.ConfigManager;
+import net.ddns.advaith.blocks.model.GenericDAO;
+import net.ddns.advaith.blocks.model.Task;
+import net.ddns.advaith.blocks.store.LongHashIndex;
+
+/**
+ * The steps that can be undone and redone, newest first. The history is
+ * capped by the bytes its steps hold on to (see {@link
+ * TaskEdit#getBytes()}), not by their number, so a bulk delete of ten
+ * thousand tasks pushes out more of the oldest steps than a single edit
+ * does; a step bigger than the whole cap is not kept at all.
+ *
+ * Undoing a step writes its tasks with new versions, so the history keeps
+ * track of the version each of them is stored with now, until no step is
+ * left that could need it.
+ *
+ * Recording a step forgets everything that could be redone. If undoing or
+ * redoing a step fails, e.g. because a task has been changed since, the
+ * step may be half done, so it is dropped.
+ *
+ * @since 0.1.0
+ * @author Advaith Menon
+ */
+public final class UndoHistory {
+    // Logger
+    private static final Logger LOGGER = LoggerFactory.getLogger(
+            UndoHistory.class);
+
+    /**
+     * The configuration key for the cap, in bytes.
+     */
+    public static final String CAPACITY_KEY =
+        "net.ddns.advaith.blocks.history.capacity";
+
+    /**
+     * The configuration key for the most tasks to add again in one call to
+     * {@link GenericDAO#addAll(java.util.List)} when undoing or redoing.
+     */
+    public static final String BATCH_KEY =
+        "net.ddns.advaith.blocks.history.batch";
+
+    /**
+     * The default cap, 16 MiB.
+     */
+    public static final long DEFAULT_CAPACITY = 16L << 20;
+
+    /**
+     * The default batch size.
+     */
+    public static final int DEFAULT_BATCH = 10000;
+
+    // the cap in bytes
+    private final long capacity;
+
+    // the most tasks per addAll
+    private final int batchSize;
+
+    // steps to undo, newest first
+    private final Deque<TaskEdit> undo = new ArrayDeque<>();
+
+    // steps to redo, newest first
+    private final Deque<TaskEdit> redo = new ArrayDeque<>();
+
+    // the bytes held by both
+    private long bytes;
+
+    // tasks undo and redo wrote with a new version, see TaskEdit#undo
+    private final LongHashIndex<long[]> moved = new LongHashIndex<>();
+
+    /**
+     * Create a new UndoHistory.
+     *
+     * @param capacity The cap, in bytes.
+     * @param batchSize The most tasks to add in one call.
+     * @throws IllegalArgumentException if either is not positive.
+     */
+    public UndoHistory(long capacity, int batchSize) {
+        if (capacity <= 0 || batchSize <= 0) {
+            throw new IllegalArgumentException("capacity and batchSize must "
+                    + "be positive");
+        }
+        this.capacity = capacity;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Create an UndoHistory with the cap and batch size from the
+     * configuration. Missing or malformed values are logged and left at
+     * their defaults.
+     *
+     * @param config The configuration.
+     * @return The history.
+     */
+    public static UndoHistory fromConfig(ConfigManager config) {
+        long capacity = capacityOf(config);
+        int batch = DEFAULT_BATCH;
+        try {
+            String s = config.getProperty(BATCH_KEY);
+            batch = s == null ? batch : Integer.parseInt(s);
+            if (batch <= 0) {
+                throw new NumberFormatException();
+            }
+        } catch (NumberFormatException e) {
+            LOGGER.warn("Ignoring malformed {}", BATCH_KEY);
+            batch = DEFAULT_BATCH;
+        }
+        return new UndoHistory(capacity, batch);
+    }
+
+    /**
+     * Read the cap from the configuration. Other undo buffers, like the one
+     * for deleted items in the window, are capped by the same setting.
+     *
+     * @param config The configuration.
+     * @return The value of {@link #CAPACITY_KEY}, or {@link
+     * #DEFAULT_CAPACITY} if it is missing or malformed.
+     */
+    public static long capacityOf(ConfigManager config) {
+        String s = config.getProperty(CAPACITY_KEY);
+        if (s == null) {
+            return DEFAULT_CAPACITY;
+        }
+        try {
+            long capacity = Long.parseLong(s);
+            if (capacity > 0) {
+                return capacity;
+            }
+        } catch (NumberFormatException e) {
+            // logged below
+        }
+        LOGGER.warn("Ignoring malformed {}", CAPACITY_KEY);
+        return DEFAULT_CAPACITY;
+    }
+
+    /**
+     * @return the cap, in bytes.
+     */
+    public long getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return the most tasks added in one call when undoing or redoing.
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * @return roughly how many bytes the steps hold on to.
+     */
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * @return the step {@link #undo(GenericDAO)} would undo, or null if
+     * there is none.
+     */
+    public synchronized TaskEdit peekUndo() {
+        return undo.peekFirst();
+    }
+
+    /**
+     * @return the step {@link #redo(GenericDAO)} would redo, or null if
+     * there is none.
+     */
+    public synchronized TaskEdit peekRedo() {
+        return redo.peekFirst();
+    }
+
+    /**
+     * Add a step that has just been done, and forget the ones that could be
+     * redone.
+     *
+     * @param edit The step.
+     */
+    public synchronized void record(TaskEdit edit) {
+        for (TaskEdit e: redo) {
+            bytes -= e.getBytes();
+        }
+        redo.clear();
+        if (edit.getBytes() > capacity) {
+            LOGGER.info("Not keeping \"{}\" ({} bytes) for undo", edit,
+                    edit.getBytes());
+            return;
+        }
+        undo.addFirst(edit);
+        bytes += edit.getBytes();
+        while (bytes > capacity) {
+            bytes -= undo.removeLast().getBytes();
+        }
+        if (undo.size() == 1) {
+            // nothing left that an earlier replay could have moved
+            moved.clear();
+        }
+    }
+
+    /**
+     * Undo the newest step.
+     *
+     * @param dao Where to write the tasks back to.
+     * @return The step, or null if there was nothing to undo.
+     * @throws net.ddns.advaith.blocks.model.DAOException if a task could
+     * not be written; the step is dropped.
+     */
+    public synchronized TaskEdit undo(GenericDAO<Task> dao) {
+        TaskEdit e = undo.pollFirst();
+        if (e == null) {
+            return null;
+        }
+        try {
+            e.undo(dao, batchSize, moved);
+        } catch (RuntimeException ex) {
+            bytes -= e.getBytes();
+            throw ex;
+        }
+        redo.addFirst(e);
+        return e;
+    }
+
+    /**
+     * Redo the newest step that was undone.
+     *
+     * @param dao Where to write the tasks to.
+     * @return The step, or null if there was nothing to redo.
+     * @throws net.ddns.advaith.blocks.model.DAOException if a task could
+     * not be written; the step is dropped.
+     */
+    public synchronized TaskEdit redo(GenericDAO<Task> dao) {
+        TaskEdit e = redo.pollFirst();
+        if (e == null) {
+            return null;
+        }
+        try {
+            e.redo(dao, batchSize, moved);
+        } catch (RuntimeException ex) {
+            bytes -= e.getBytes();
+            throw ex;
+        }
+        undo.addFirst(e);
+        return e;
+    }
+
+    /**
+     * Forget every step.
+     */
+    public synchronized void clear() {
+        undo.clear();
+        redo.clear();
+        moved.clear();
+        bytes = 0;
+    }
+}
@@ -0,0 +1,234 @@
+/*
+ * This file is part of Blocks.
+ * 
+ * Blocks is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * Blocks is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with Blocks. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package net.ddns.advaith.blocks.dao;
+
+import java.util.List;
+import java.util.concurrent.Flow;
+
+import net.ddns.advaith.blocks.model.BatchWriteException;
+import net.ddns.advaith.blocks.model.Change;
+import net.ddns.advaith.blocks.model.GenericDAO;
+import net.ddns.advaith.blocks.model.Group;
+import net.ddns.advaith.blocks.model.Paginated;
+import net.ddns.advaith.blocks.model.Query;
+import net.ddns.advaith.blocks.model.Row;
+import net.ddns.advaith.blocks.model.Task;
+
+/**
+ * Makes the writes to a Task DAO undoable. Every write that goes through
+ * this object and succeeds is recorded on an {@link UndoHistory} as the
+ * tasks it changed, and {@link #undo()} and {@link #redo()} write them back
+ * through the backing DAO; writes made to the backing DAO directly are not
+ * recorded.
+ *
+ * Each write is a step of its own, except that {@link #addAll(List)} is
+ * one step, and so is everything done in {@link #group(String, Runnable)},
+ * e.g. deleting a selection of tasks. Updates, and deletes of tasks
+ * without a version, read the task first to know what to put back.
+ *
+ * @since 0.1.0
+ * @author Advaith Menon
+ */
+public class UndoableTaskDAO implements GenericDAO<Task> {
+    // the DAO we are recording
+    private final GenericDAO<Task> delegate;
+
+    // where the steps go
+    private final UndoHistory history;
+
+    // the step being grouped on this thread, if any
+    private final ThreadLocal<TaskEdit.Builder> open = new ThreadLocal<>();
+
+    /**
+     * Create a new UndoableTaskDAO.
+     *
+     * @param delegate The DAO to record.
+     * @param history Where to record the steps.
+     * @throws IllegalArgumentException if either is null.
+     */
+    public UndoableTaskDAO(GenericDAO<Task> delegate, UndoHistory history) {
+        if (delegate == null || history == null) {
+            throw new IllegalArgumentException("delegate and history cannot "
+                    + "be null");
+        }
+        this.delegate = delegate;
+        this.history = history;
+    }
+
+    /**
+     * @return the history the steps are recorded on.
+     */
+    public UndoHistory getHistory() {
+        return history;
+    }
+
+    /**
+     * Do some writes as a single step, so that they are undone together.
+     * The writes must be made on this thread. Groups inside a group join
+     * it. If the work throws, the writes it made before are still recorded.
+     *
+     * @param label What the step is called, e.g. "Delete 3 tasks".
+     * @param work The writes.
+     */
+    public void group(String label, Runnable work) {
+        if (open.get() != null) {
+            work.run();
+            return;
+        }
+        TaskEdit.Builder b = new TaskEdit.Builder(label);
+        open.set(b);
+        try {
+            work.run();
+        } finally {
+            open.remove();
+            if (!b.isEmpty()) {
+                history.record(b.build());
+            }
+        }
+    }
+
+    /**
+     * Undo the newest step.
+     *
+     * @return The step, or null if there was nothing to undo.
+     * @throws net.ddns.advaith.blocks.model.DAOException if a task could
+     * not be written back.
+     */
+    public TaskEdit undo() {
+        return history.undo(delegate);
+    }
+
+    /**
+     * Redo the newest step that was undone.
+     *
+     * @return The step, or null if there was nothing to redo.
+     * @throws net.ddns.advaith.blocks.model.DAOException if a task could
+     * not be written.
+     */
+    public TaskEdit redo() {
+        return history.redo(delegate);
+    }
+
+    @Override
+    public void add(Task item) {
+        delegate.add(item);
+        record("Add task", null, Tasks.copy(item));
+    }
+
+    @Override
+    public void addAll(List<Task> items) {
+        group("Add " + items.size() + " tasks", () -> {
+            int written = 0;
+            try {
+                delegate.addAll(items);
+                written = items.size();
+            } catch (BatchWriteException e) {
+                written = e.getWritten();
+                throw e;
+            } finally {
+                for (Task t: items.subList(0, written)) {
+                    record(null, null, Tasks.copy(t));
+                }
+            }
+        });
+    }
+
+    @Override
+    public void update(Task item) {
+        Task before = read(item.getID());
+        delegate.update(item);
+        record("Edit task", before, Tasks.copy(item));
+    }
+
+    @Override
+    public void delete(Task item) {
+        // with a version, the delete only goes through if it is current
+        Task before = item.getVersion() >= 0 && item.getID() >= 0
+            ? Tasks.copy(item) : read(item.getID());
+        delegate.delete(item);
+        if (before != null) {
+            record("Delete task", before, null);
+        }
+    }
+
+    @Override
+    public void delete(long id) {
+        Task before = read(id);
+        delegate.delete(id);
+        if (before != null) {
+            record("Delete task", before, null);
+        }
+    }
+
+    @Override
+    public Paginated<Task> fetchAll() {
+        return delegate.fetchAll();
+    }
+
+    @Override
+    public Paginated<Task> fetchAll(String token) {
+        return delegate.fetchAll(token);
+    }
+
+    @Override
+    public Paginated<Task> fetchEquals(int column, Object target) {
+        return delegate.fetchEquals(column, target);
+    }
+
+    @Override
+    public Paginated<Task> query(Query query) {
+        return delegate.query(query);
+    }
+
+    @Override
+    public Paginated<Row> select(Query query) {
+        return delegate.select(query);
+    }
+
+    @Override
+    public List<Group> aggregate(Query query) {
+        return delegate.aggregate(query);
+    }
+
+    @Override
+    public Flow.Publisher<Change<Task>> changes() {
+        return delegate.changes();
+    }
+
+    // the stored task, or null if there is none
+    private Task read(long id) {
+        if (id < 0) {
+            return null;
+        }
+        List<Task> found = Tasks.drain(delegate.fetchEquals(Task.ID, id));
+        return found.isEmpty() ? null : found.get(0);
+    }
+
+    // add a write to the open group, or record it as a step of its own
+    private void record(String label, Task before, Task after) {
+        TaskEdit.Builder b = open.get();
+        if (b != null) {
+            b.record(before, after);
+        } else {
+            b = new TaskEdit.Builder(label);
+            b.record(before, after);
+            history.record(b.build());
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package net.ddns.advaith.blocks.datamodel;
 
+import javafx.beans.property.ReadOnlyBooleanProperty;
+import javafx.beans.property.ReadOnlyBooleanWrapper;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 
@@ -11,7 +13,12 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
 import java.util.Iterator;
+import java.util.List;
+import java.util.function.Consumer;
 
 public class TodoData {
     private static TodoData instance = new TodoData();
@@ -19,44 +26,91 @@ public class TodoData {
 
     private ObservableList<TodoItem> todoItems;
     private DateTimeFormatter formatter;
+    private ReadOnlyBooleanWrapper loading;
+
+    // deleted items and where they were, newest first, for undoDelete().
+    // Only the items themselves are kept, never a copy of the list, and
+    // only up to deletedCap bytes worth of them. The cap is configured
+    // along with the undo history of the DAOs, and is set once the
+    // configuration has been loaded, see setDeletedCap().
+    private static final long DEFAULT_DELETED_CAP = 16L << 20;
+    private long deletedCap = DEFAULT_DELETED_CAP;
+    private final Deque<Deleted> deleted = new ArrayDeque<>();
+    private long deletedBytes;
+
+    private record Deleted(int index, TodoItem item, long bytes) {}
 
     public static TodoData getInstance() {
         return instance;
     }
 
+    // where the items are loaded from and stored to, relative to the
+    // working directory unless absolute
+    public static void setFilename(String filename) {
+        TodoData.filename = filename;
+    }
+
     private TodoData() {
         formatter = DateTimeFormatter.ofPattern("dd-MM-yyyy");
+        // created up front so views can bind to it before anything is loaded
+        todoItems = FXCollections.observableArrayList();
+        loading = new ReadOnlyBooleanWrapper(false);
     }
 
     public ObservableList<TodoItem> getTodoItems() {
         return todoItems;
     }
 
+    // true while a background load is still publishing chunks. Only touch
+    // this from the FX application thread.
+    public ReadOnlyBooleanProperty loadingProperty() {
+        return loading.getReadOnlyProperty();
+    }
+
+    public void setLoading(boolean loading) {
+        this.loading.set(loading);
+    }
+
     public void addTodoItem(TodoItem item) {
         todoItems.add(item);
     }
 
     public void loadTodoItems() throws IOException {
+        List<TodoItem> loaded = new ArrayList<>();
+        loadTodoItems(Integer.MAX_VALUE, loaded::addAll);
+        todoItems.setAll(loaded);
+    }
+
+    /**
+     * Read the items file, handing the parsed items to the publisher in
+     * chunks of at most chunkSize items. This does not touch the observable
+     * list, so it is safe to call off the FX application thread - the
+     * publisher decides where the chunks end up.
+     */
+    public void loadTodoItems(int chunkSize, Consumer<List<TodoItem>> publisher)
+            throws IOException {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("chunkSize must be positive");
+        }
 
-        todoItems = FXCollections.observableArrayList();
         Path path = Paths.get(filename);
         BufferedReader br = Files.newBufferedReader(path);
 
         String input;
+        List<TodoItem> chunk = new ArrayList<>();
 
         try {
             while ((input = br.readLine()) != null) {
-                String[] itemPieces = input.split("\t");
-
-                String shortDescription = itemPieces[0];
-                String details = itemPieces[1];
-                String dateString = itemPieces[2];
-
-                LocalDate date = LocalDate.parse(dateString, formatter);
-                TodoItem todoItem = new TodoItem(shortDescription, details, date);
-                todoItems.add(todoItem);
+                chunk.add(parseTodoItem(input));
+                if (chunk.size() >= chunkSize) {
+                    publisher.accept(chunk);
+                    chunk = new ArrayList<>();
+                }
             }
 
+            if (!chunk.isEmpty()) {
+                publisher.accept(chunk);
+            }
         } finally {
             if(br != null) {
                 br.close();
@@ -64,6 +118,17 @@ public class TodoData {
         }
     }
 
+    private TodoItem parseTodoItem(String input) {
+        String[] itemPieces = input.split("\t");
+
+        String shortDescription = itemPieces[0];
+        String details = itemPieces[1];
+        String dateString = itemPieces[2];
+
+        LocalDate date = LocalDate.parse(dateString, formatter);
+        return new TodoItem(shortDescription, details, date);
+    }
+
     public void storeTodoItems() throws IOException {
 
         Path path = Paths.get(filename);
@@ -87,7 +152,49 @@ public class TodoData {
     }
 
     public void deleteTodoItem(TodoItem item) {
-        todoItems.remove(item);
+        int index = todoItems.indexOf(item);
+        if (index < 0) {
+            return;
+        }
+        todoItems.remove(index);
+        String details = item.getDetails();
+        long bytes = 64 + 2L * (item.getShortDescription().length()
+                + (details == null ? 0 : details.length()));
+        deleted.addFirst(new Deleted(index, item, bytes));
+        deletedBytes += bytes;
+        trimDeleted();
+    }
+
+    // how many bytes worth of deleted items to keep for undoDelete(). Only
+    // call this from the FX application thread; older items are dropped
+    // straight away if they no longer fit.
+    public void setDeletedCap(long cap) {
+        if (cap <= 0) {
+            throw new IllegalArgumentException("cap must be positive");
+        }
+        deletedCap = cap;
+        trimDeleted();
+    }
+
+    private void trimDeleted() {
+        while (deletedBytes > deletedCap) {
+            deletedBytes -= deleted.removeLast().bytes();
+        }
+    }
+
+    /**
+     * Put the most recently deleted item back where it was.
+     *
+     * @return the item, or null if there is nothing to undo.
+     */
+    public TodoItem undoDelete() {
+        Deleted d = deleted.pollFirst();
+        if (d == null) {
+            return null;
+        }
+        deletedBytes -= d.bytes();
+        todoItems.add(Math.min(d.index(), todoItems.size()), d.item());
+        return d.item();
     }
 
 }
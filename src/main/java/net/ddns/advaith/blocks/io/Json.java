@@ -0,0 +1,222 @@
+/*
+ * This file is part of Blocks.
+ * 
+ * Blocks is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * Blocks is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with Blocks. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.ddns.advaith.blocks.io;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Just enough JSON for {@link TaskFormat#JSONL} and the HTTP server: flat
+ * objects whose values are strings, integers or null.
+ *
+ * @since 0.1.0
+ * @author Advaith Menon
+ */
+public final class Json {
+    private Json() {}
+
+    /**
+     * Append a string as a JSON string literal.
+     *
+     * @param s The string, or null.
+     * @param out Where to append it.
+     */
+    public static void quote(String s, StringBuilder out) {
+        if (s == null) {
+            out.append("null");
+            return;
+        }
+        out.append('"');
+        for (int i = 0; i < s.length(); ++i) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"':
+                    out.append("\\\"");
+                    break;
+                case '\\':
+                    out.append("\\\\");
+                    break;
+                case '\n':
+                    out.append("\\n");
+                    break;
+                case '\r':
+                    out.append("\\r");
+                    break;
+                case '\t':
+                    out.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        out.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        out.append(c);
+                    }
+            }
+        }
+        out.append('"');
+    }
+
+    /**
+     * Parse a flat JSON object.
+     *
+     * @param text The object.
+     * @return Its members, in order. Strings are Strings, integers are Longs.
+     * @throws IllegalArgumentException if the text is not a flat object of
+     * strings, integers and nulls.
+     */
+    public static Map<String, Object> parseObject(String text) {
+        Parser p = new Parser(text);
+        Map<String, Object> out = new LinkedHashMap<>();
+        p.expect('{');
+        if (!p.consume('}')) {
+            do {
+                String key = p.string();
+                p.expect(':');
+                if (out.put(key, p.value()) != null) {
+                    throw p.error("duplicate key \"" + key + "\"");
+                }
+            } while (p.consume(','));
+            p.expect('}');
+        }
+        p.skipSpace();
+        if (p.pos != text.length()) {
+            throw p.error("trailing characters");
+        }
+        return out;
+    }
+
+    private static final class Parser {
+        private final String text;
+        private int pos;
+
+        Parser(String text) {
+            this.text = text;
+        }
+
+        IllegalArgumentException error(String what) {
+            return new IllegalArgumentException("Bad JSON at column "
+                    + (pos + 1) + ": " + what);
+        }
+
+        void skipSpace() {
+            while (pos < text.length()
+                    && " \t\r\n".indexOf(text.charAt(pos)) >= 0) {
+                ++pos;
+            }
+        }
+
+        boolean consume(char c) {
+            skipSpace();
+            if (pos < text.length() && text.charAt(pos) == c) {
+                ++pos;
+                return true;
+            }
+            return false;
+        }
+
+        void expect(char c) {
+            if (!consume(c)) {
+                throw error("expected '" + c + "'");
+            }
+        }
+
+        Object value() {
+            skipSpace();
+            if (pos >= text.length()) {
+                throw error("expected a value");
+            }
+            char c = text.charAt(pos);
+            if (c == '"') {
+                return string();
+            } else if (text.startsWith("null", pos)) {
+                pos += 4;
+                return null;
+            } else if (c == '-' || (c >= '0' && c <= '9')) {
+                int start = pos++;
+                while (pos < text.length() && text.charAt(pos) >= '0'
+                        && text.charAt(pos) <= '9') {
+                    ++pos;
+                }
+                try {
+                    return Long.parseLong(text.substring(start, pos));
+                } catch (NumberFormatException e) {
+                    throw error("expected an integer");
+                }
+            }
+            throw error("expected a string, integer or null");
+        }
+
+        String string() {
+            skipSpace();
+            if (pos >= text.length() || text.charAt(pos) != '"') {
+                throw error("expected a string");
+            }
+            ++pos;
+            StringBuilder sb = new StringBuilder();
+            while (pos < text.length()) {
+                char c = text.charAt(pos++);
+                if (c == '"') {
+                    return sb.toString();
+                } else if (c != '\\') {
+                    sb.append(c);
+                    continue;
+                } else if (pos >= text.length()) {
+                    break;
+                }
+                char e = text.charAt(pos++);
+                switch (e) {
+                    case '"':
+                    case '\\':
+                    case '/':
+                        sb.append(e);
+                        break;
+                    case 'b':
+                        sb.append('\b');
+                        break;
+                    case 'f':
+                        sb.append('\f');
+                        break;
+                    case 'n':
+                        sb.append('\n');
+                        break;
+                    case 'r':
+                        sb.append('\r');
+                        break;
+                    case 't':
+                        sb.append('\t');
+                        break;
+                    case 'u':
+                        if (pos + 4 > text.length()) {
+                            throw error("bad \\u escape");
+                        }
+                        try {
+                            sb.append((char) Integer.parseInt(
+                                        text.substring(pos, pos + 4), 16));
+                        } catch (NumberFormatException x) {
+                            throw error("bad \\u escape");
+                        }
+                        pos += 4;
+                        break;
+                    default:
+                        throw error("bad escape");
+                }
+            }
+            throw error("unterminated string");
+        }
+    }
+}
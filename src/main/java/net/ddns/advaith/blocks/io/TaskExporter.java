@@ -0,0 +1,152 @@
+/*
+ * This file is part of Blocks.
+ * 
+ * Blocks is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * Blocks is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with Blocks. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.ddns.advaith.blocks.io;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Writer;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import net.ddns.advaith.blocks.model.DAOException;
+import net.ddns.advaith.blocks.model.GenericDAO;
+import net.ddns.advaith.blocks.model.Paginated;
+import net.ddns.advaith.blocks.model.Task;
+
+/**
+ * Exports every task of a Task DAO to a CSV or JSONL stream. The pages of
+ * {@link GenericDAO#fetchAll()} are fetched on a background thread while
+ * the previous ones are being written, with a small bounded queue between
+ * the two, so only a few pages are ever held in memory.
+ *
+ * @since 0.1.0
+ * @author Advaith Menon
+ */
+public class TaskExporter {
+    // the number of pages fetched ahead of the writer
+    private static final int PREFETCH = 4;
+
+    // marks the end of the pages
+    private static final List<Task> END = List.of();
+
+    // the file format
+    private final TaskFormat format;
+
+    /**
+     * Create a new TaskExporter.
+     *
+     * @param format The file format.
+     * @throws IllegalArgumentException if format is null.
+     */
+    public TaskExporter(TaskFormat format) {
+        if (format == null) {
+            throw new IllegalArgumentException("format cannot be null");
+        }
+        this.format = format;
+    }
+
+    /**
+     * Write every task to a stream, header first. The stream is flushed but
+     * not closed.
+     *
+     * @param dao The DAO to export.
+     * @param out The stream.
+     * @return What happened.
+     * @throws IOException if writing fails or the export is interrupted.
+     * @throws DAOException if the DAO fails.
+     */
+    public TransferReport export(GenericDAO<Task> dao, Writer out)
+            throws IOException {
+        if (dao == null || out == null) {
+            throw new IllegalArgumentException("dao and out cannot be null");
+        }
+        TransferReport.Tally tally = new TransferReport.Tally(0);
+        BufferedWriter w = out instanceof BufferedWriter
+            ? (BufferedWriter) out : new BufferedWriter(out, 1 << 16);
+        BlockingQueue<List<Task>> pages = new ArrayBlockingQueue<>(PREFETCH);
+        ExecutorService fetcher = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "blocks-export");
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            Future<?> done = fetcher.submit(() -> {
+                Paginated<Task> all = dao.fetchAll();
+                while (all.hasNextPage()) {
+                    List<Task> page = all.nextPage();
+                    tally.read(page.size());
+                    pages.put(page);
+                }
+                pages.put(END);
+                return null;
+            });
+            if (format.header() != null) {
+                w.write(format.header());
+                w.newLine();
+            }
+            while (true) {
+                List<Task> page = next(pages, done);
+                if (page == END) {
+                    break;
+                }
+                for (Task t: page) {
+                    w.write(format.format(t));
+                    w.newLine();
+                }
+                tally.written(page.size());
+            }
+            w.flush();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Export interrupted.");
+        } finally {
+            fetcher.shutdownNow();
+        }
+        return tally.finish();
+    }
+
+    // take the next page, or rethrow whatever stopped the fetcher
+    private static List<Task> next(BlockingQueue<List<Task>> pages,
+            Future<?> fetcher) throws InterruptedException {
+        while (true) {
+            List<Task> page = pages.poll(50,
+                    TimeUnit.MILLISECONDS);
+            if (page != null) {
+                return page;
+            } else if (fetcher.isDone() && pages.isEmpty()) {
+                try {
+                    fetcher.get();
+                } catch (ExecutionException e) {
+                    Throwable c = e.getCause();
+                    if (c instanceof RuntimeException) {
+                        throw (RuntimeException) c;
+                    }
+                    throw new DAOException("Export failed.", c);
+                }
+                // finished normally, so END is in the queue
+            }
+        }
+    }
+}
@@ -0,0 +1,311 @@
+/*
+ * This file is part of Blocks.
+ * 
+ * Blocks is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * Blocks is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with Blocks. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.ddns.advaith.blocks.io;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import net.ddns.advaith.blocks.model.Task;
+
+/**
+ * The file formats tasks can be imported from and exported to. Both have the
+ * fields id, title, details and deadline; the deadline is written in ISO
+ * format with its zone, e.g.
+ * {@code 2025-01-31T17:00:00+05:30[Asia/Kolkata]}, and read back in that
+ * format or with just an offset. A missing or empty
+ * id means the DAO should assign one.
+ *
+ * @since 0.1.0
+ * @author Advaith Menon
+ */
+public enum TaskFormat {
+    /**
+     * Comma separated values as in RFC 4180, with a header row. Fields
+     * containing commas, quotes or line breaks are quoted, so a record may
+     * span several lines. An empty unquoted field is null, while {@code ""}
+     * is the empty string.
+     *
+     * A quote that is still open at the end of the input, or after {@link
+     * #MAX_RECORD} characters, is taken to be a stray one: the line it is on
+     * is read as a record of its own, which fails to parse, and reading goes
+     * on from the next line.
+     */
+    CSV {
+        @Override
+        public String header() {
+            return "id,title,details,deadline";
+        }
+
+        @Override
+        public String format(Task t) {
+            StringBuilder sb = new StringBuilder();
+            sb.append(t.getID() < 0 ? "" : Long.toString(t.getID()))
+                .append(',');
+            csv(t.getTitle(), sb);
+            sb.append(',');
+            csv(t.getDetails(), sb);
+            sb.append(',').append(DateTimeFormatter.ISO_ZONED_DATE_TIME
+                    .format(t.getDeadline()));
+            return sb.toString();
+        }
+
+        @Override
+        public Task parse(String record) {
+            List<String> f = fields(record);
+            if (f.size() != 4) {
+                throw new IllegalArgumentException("Expected 4 fields, got "
+                        + f.size() + ".");
+            }
+            return task(f.get(0) == null ? null : id(f.get(0)), f.get(1),
+                    f.get(2), f.get(3));
+        }
+
+        @Override
+        String readRecord(BufferedReader in) throws IOException {
+            String line = in.readLine();
+            if (line == null || quotes(line) % 2 == 0) {
+                return line;
+            }
+            // an open quote: the record goes on to the next line. Marked
+            // so that we can come back if the quote turns out to be stray;
+            // twice the cap, since a line break may take two characters.
+            in.mark(2 * MAX_RECORD);
+            StringBuilder sb = new StringBuilder(line);
+            int open = quotes(line);
+            String next;
+            while (open % 2 != 0 && (next = in.readLine()) != null) {
+                if (sb.length() + 1 + next.length() > MAX_RECORD) {
+                    return stray(in, line, sb.append('\n').append(next));
+                }
+                sb.append('\n').append(next);
+                open += quotes(next);
+            }
+            return open % 2 == 0 ? sb.toString() : stray(in, line, sb);
+        }
+
+        // go back to the line after the one with a stray quote, and return
+        // that line alone. If a single huge line made us read too far to go
+        // back, what was read is returned as one record instead.
+        private String stray(BufferedReader in, String line, StringBuilder sb) {
+            try {
+                in.reset();
+                return line;
+            } catch (IOException e) {
+                return sb.toString();
+            }
+        }
+
+        private void csv(String s, StringBuilder out) {
+            if (s == null) {
+                return;
+            }
+            if (!s.isEmpty() && s.chars().noneMatch(c -> c == ','
+                        || c == '"' || c == '\n' || c == '\r')) {
+                out.append(s);
+                return;
+            }
+            out.append('"').append(s.replace("\"", "\"\"")).append('"');
+        }
+
+        private int quotes(String line) {
+            int n = 0;
+            for (int i = 0; i < line.length(); ++i) {
+                if (line.charAt(i) == '"') {
+                    ++n;
+                }
+            }
+            return n;
+        }
+
+        // split a record; unquoted empty fields are null
+        private List<String> fields(String record) {
+            List<String> out = new ArrayList<>(4);
+            int i = 0;
+            int n = record.length();
+            while (true) {
+                if (i < n && record.charAt(i) == '"') {
+                    StringBuilder sb = new StringBuilder();
+                    ++i;
+                    while (true) {
+                        if (i >= n) {
+                            throw new IllegalArgumentException(
+                                    "Unterminated quoted field.");
+                        }
+                        char c = record.charAt(i++);
+                        if (c != '"') {
+                            sb.append(c);
+                        } else if (i < n && record.charAt(i) == '"') {
+                            sb.append('"');
+                            ++i;
+                        } else {
+                            break;
+                        }
+                    }
+                    out.add(sb.toString());
+                    if (i < n && record.charAt(i) != ',') {
+                        throw new IllegalArgumentException("Unexpected "
+                                + "character after a quoted field.");
+                    }
+                } else {
+                    int end = record.indexOf(',', i);
+                    end = end < 0 ? n : end;
+                    String s = record.substring(i, end);
+                    if (s.indexOf('"') >= 0) {
+                        throw new IllegalArgumentException("Quote in an "
+                                + "unquoted field.");
+                    }
+                    out.add(s.isEmpty() ? null : s);
+                    i = end;
+                }
+                if (i >= n) {
+                    return out;
+                }
+                // skip the comma
+                ++i;
+            }
+        }
+    },
+
+    /**
+     * One JSON object per line, e.g. {@code {"id":1,"title":"Shop",
+     * "details":null,"deadline":"2025-01-31T17:00:00+05:30"}}. Members other
+     * than the four fields are ignored. There is no header.
+     */
+    JSONL {
+        @Override
+        public String header() {
+            return null;
+        }
+
+        @Override
+        public String format(Task t) {
+            StringBuilder sb = new StringBuilder("{\"id\":");
+            sb.append(t.getID() < 0 ? "null" : Long.toString(t.getID()))
+                .append(",\"title\":");
+            Json.quote(t.getTitle(), sb);
+            sb.append(",\"details\":");
+            Json.quote(t.getDetails(), sb);
+            sb.append(",\"deadline\":");
+            Json.quote(DateTimeFormatter.ISO_ZONED_DATE_TIME.format(
+                        t.getDeadline()), sb);
+            return sb.append('}').toString();
+        }
+
+        @Override
+        public Task parse(String record) {
+            Map<String, Object> m = Json.parseObject(record);
+            Object id = m.get("id");
+            if (id != null && !(id instanceof Long)) {
+                throw new IllegalArgumentException("id must be an integer.");
+            }
+            return task((Long) id, string(m, "title"), string(m, "details"),
+                    string(m, "deadline"));
+        }
+
+        @Override
+        String readRecord(BufferedReader in) throws IOException {
+            String line;
+            do {
+                line = in.readLine();
+            } while (line != null && line.isBlank());
+            return line;
+        }
+
+        private String string(Map<String, Object> m, String key) {
+            Object v = m.get(key);
+            if (v != null && !(v instanceof String)) {
+                throw new IllegalArgumentException(key + " must be a "
+                        + "string.");
+            }
+            return (String) v;
+        }
+    };
+
+    /**
+     * The most characters a record spanning several lines may have. A record
+     * would only get longer than this because of a stray quote.
+     */
+    public static final int MAX_RECORD = 1 << 20;
+
+    /**
+     * @return the header record, or null if the format has none.
+     */
+    public abstract String header();
+
+    /**
+     * Write a task as a record.
+     *
+     * @param t The task.
+     * @return The record, without a line break at the end.
+     */
+    public abstract String format(Task t);
+
+    /**
+     * Read a task from a record. The deadline may be in the past.
+     *
+     * @param record The record, without a line break at the end.
+     * @return The task, with an ID of -1 if the record had none.
+     * @throws IllegalArgumentException if the record is malformed or the
+     * task is invalid.
+     */
+    public abstract Task parse(String record);
+
+    /**
+     * Read the next record.
+     *
+     * @param in The reader.
+     * @return The record, or null at the end of the input.
+     * @throws IOException if reading fails.
+     */
+    abstract String readRecord(BufferedReader in) throws IOException;
+
+    private static long id(String s) {
+        try {
+            long id = Long.parseLong(s.trim());
+            if (id < 0) {
+                throw new IllegalArgumentException("id cannot be negative.");
+            }
+            return id;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("id must be an integer.");
+        }
+    }
+
+    private static Task task(Long id, String title, String details,
+            String deadline) {
+        if (deadline == null) {
+            throw new IllegalArgumentException("deadline is missing.");
+        } else if (id != null && id < 0) {
+            throw new IllegalArgumentException("id cannot be negative.");
+        }
+        ZonedDateTime d;
+        try {
+            d = ZonedDateTime.parse(deadline.trim());
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Bad deadline \"" + deadline
+                    + "\".");
+        }
+        return Task.restore(id == null ? -1 : id, title, details, d);
+    }
+}
@@ -0,0 +1,293 @@
+/*
+ * This file is part of Blocks.
+ * 
+ * Blocks is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * Blocks is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with Blocks. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.ddns.advaith.blocks.io;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import net.ddns.advaith.blocks.model.BatchWriteException;
+import net.ddns.advaith.blocks.model.DAOException;
+import net.ddns.advaith.blocks.model.GenericDAO;
+import net.ddns.advaith.blocks.model.Task;
+
+/**
+ * Imports tasks from a CSV or JSONL stream into any Task DAO. The work is
+ * split into a pipeline:
+ * <ol>
+ * <li>one thread reads records from the stream and groups them into
+ * batches,</li>
+ * <li>several workers parse and validate the batches in parallel, and</li>
+ * <li>one thread writes each parsed batch with {@link
+ * GenericDAO#addAll(List)}.</li>
+ * </ol>
+ * The stages are joined by small bounded queues, so a slow DAO holds the
+ * reader back instead of the file piling up in memory: at most a few
+ * batches per worker are in flight, however big the file is.
+ *
+ * Bad records do not stop the import. A record that cannot be parsed, or
+ * that the DAO rejects, is counted and reported in the {@link
+ * TransferReport}, and the rest carry on. Batches are written in the order
+ * they finish parsing, which is not always the order of the file.
+ *
+ * @since 0.1.0
+ * @author Advaith Menon
+ */
+public class TaskImporter {
+    // the file format
+    private final TaskFormat format;
+
+    // the number of parse workers
+    private final int workers;
+
+    // the number of records per batch
+    private final int batchSize;
+
+    // the most errors to keep in the report
+    private final int maxErrors;
+
+    /**
+     * Create a new TaskImporter with a parse worker per spare processor,
+     * batches of 500 records, and up to 100 errors in the report.
+     *
+     * @param format The file format.
+     * @throws IllegalArgumentException if format is null.
+     */
+    public TaskImporter(TaskFormat format) {
+        this(format, Math.max(1, Runtime.getRuntime().availableProcessors()
+                    - 2), 500, 100);
+    }
+
+    /**
+     * Create a new TaskImporter.
+     *
+     * @param format The file format.
+     * @param workers The number of parse workers.
+     * @param batchSize The number of records per batch.
+     * @param maxErrors The most errors to keep in the report.
+     * @throws IllegalArgumentException if format is null, workers or
+     * batchSize is not positive, or maxErrors is negative.
+     */
+    public TaskImporter(TaskFormat format, int workers, int batchSize,
+            int maxErrors) {
+        if (format == null) {
+            throw new IllegalArgumentException("format cannot be null");
+        } else if (workers <= 0 || batchSize <= 0) {
+            throw new IllegalArgumentException("workers and batchSize must "
+                    + "be positive");
+        } else if (maxErrors < 0) {
+            throw new IllegalArgumentException("maxErrors cannot be "
+                    + "negative");
+        }
+        this.format = format;
+        this.workers = workers;
+        this.batchSize = batchSize;
+        this.maxErrors = maxErrors;
+    }
+
+    /**
+     * Import every record of a stream. The stream is not closed.
+     *
+     * @param in The stream.
+     * @param dao Where to add the tasks.
+     * @return What happened.
+     * @throws IOException if reading the stream fails or the import is
+     * interrupted.
+     * @throws DAOException if the DAO fails in a way that is not about a
+     * single task, i.e. with something other than a {@link
+     * BatchWriteException}.
+     */
+    public TransferReport importTasks(Reader in, GenericDAO<Task> dao)
+            throws IOException {
+        if (in == null || dao == null) {
+            throw new IllegalArgumentException("in and dao cannot be null");
+        }
+        BufferedReader br = in instanceof BufferedReader
+            ? (BufferedReader) in : new BufferedReader(in, 1 << 16);
+        TransferReport.Tally tally = new TransferReport.Tally(maxErrors);
+        BlockingQueue<Batch> raw = new ArrayBlockingQueue<>(2 * workers);
+        BlockingQueue<Batch> parsed = new ArrayBlockingQueue<>(2 * workers);
+
+        ExecutorService pool = Executors.newFixedThreadPool(workers + 2,
+                r -> {
+                    Thread t = new Thread(r, "blocks-import");
+                    t.setDaemon(true);
+                    return t;
+                });
+        CompletionService<Void> stages = new ExecutorCompletionService<>(pool);
+        try {
+            stages.submit(() -> {
+                read(br, raw, tally);
+                return null;
+            });
+            for (int i = 0; i < workers; ++i) {
+                stages.submit(() -> {
+                    parse(raw, parsed, tally);
+                    return null;
+                });
+            }
+            stages.submit(() -> {
+                write(parsed, dao, tally);
+                return null;
+            });
+            // stop everything as soon as any stage fails
+            for (int i = 0; i < workers + 2; ++i) {
+                stages.take().get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Import interrupted.");
+        } catch (ExecutionException e) {
+            Throwable c = e.getCause();
+            if (c instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) c).getCause();
+            } else if (c instanceof RuntimeException) {
+                throw (RuntimeException) c;
+            }
+            throw new DAOException("Import failed.", c);
+        } finally {
+            pool.shutdownNow();
+        }
+        return tally.finish();
+    }
+
+    // stage 1: group records into batches
+    private void read(BufferedReader in, BlockingQueue<Batch> out,
+            TransferReport.Tally tally) throws InterruptedException {
+        try {
+            long number = 0;
+            String header = format.header();
+            String record = format.readRecord(in);
+            if (record != null && header != null
+                    && record.trim().equalsIgnoreCase(header)) {
+                record = format.readRecord(in);
+            }
+            List<String> records = new ArrayList<>(batchSize);
+            while (record != null) {
+                records.add(record);
+                if (records.size() == batchSize) {
+                    tally.read(records.size());
+                    out.put(new Batch(number + 1, records));
+                    number += records.size();
+                    records = new ArrayList<>(batchSize);
+                }
+                record = format.readRecord(in);
+            }
+            if (!records.isEmpty()) {
+                tally.read(records.size());
+                out.put(new Batch(number + 1, records));
+            }
+            out.put(Batch.END);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // stage 2: parse batches; bad records are dropped and reported
+    private void parse(BlockingQueue<Batch> in, BlockingQueue<Batch> out,
+            TransferReport.Tally tally) throws InterruptedException {
+        while (true) {
+            Batch b = in.take();
+            if (b == Batch.END) {
+                // let the other workers see it too
+                in.put(b);
+                out.put(b);
+                return;
+            }
+            Batch p = new Batch(b.first, null);
+            for (int i = 0; i < b.records.size(); ++i) {
+                try {
+                    p.add(format.parse(b.records.get(i)), b.first + i);
+                } catch (IllegalArgumentException e) {
+                    tally.failed(b.first + i, e.getMessage());
+                }
+            }
+            out.put(p);
+        }
+    }
+
+    // stage 3: write the parsed batches
+    private void write(BlockingQueue<Batch> in, GenericDAO<Task> dao,
+            TransferReport.Tally tally) throws InterruptedException {
+        int ended = 0;
+        while (ended < workers) {
+            Batch b = in.take();
+            if (b == Batch.END) {
+                ++ended;
+                continue;
+            }
+            int from = 0;
+            while (from < b.tasks.size()) {
+                List<Task> rest = b.tasks.subList(from, b.tasks.size());
+                try {
+                    dao.addAll(rest);
+                    tally.written(rest.size());
+                    break;
+                } catch (BatchWriteException e) {
+                    int bad = from + e.getWritten();
+                    tally.written(e.getWritten());
+                    Throwable c = e.getCause() == null ? e : e.getCause();
+                    tally.failed(b.numbers[bad], c.getMessage());
+                    from = bad + 1;
+                }
+            }
+        }
+    }
+
+    // a batch of records, and later of the tasks parsed from them
+    private static final class Batch {
+        // marks the end of the input
+        static final Batch END = new Batch(0, null);
+
+        // the number of the first record
+        final long first;
+
+        // the records; null once parsed
+        final List<String> records;
+
+        // the parsed tasks, and the numbers of their records
+        final List<Task> tasks = new ArrayList<>();
+        long[] numbers = new long[0];
+
+        Batch(long first, List<String> records) {
+            this.first = first;
+            this.records = records;
+        }
+
+        void add(Task t, long number) {
+            if (tasks.size() == numbers.length) {
+                numbers = Arrays.copyOf(numbers,
+                        Math.max(16, numbers.length * 2));
+            }
+            numbers[tasks.size()] = number;
+            tasks.add(t);
+        }
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * This file is part of Blocks.
+ * 
+ * Blocks is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * Blocks is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with Blocks. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.ddns.advaith.blocks.io;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * What happened during an import or export: how many records were read and
+ * written, how long it took, and why records failed. Only the first few
+ * errors are kept, so a file full of bad records cannot use up the memory;
+ * {@link #getFailed()} still counts all of them.
+ *
+ * @since 0.1.0
+ * @author Advaith Menon
+ */
+public final class TransferReport {
+    /**
+     * A record that could not be imported.
+     *
+     * @since 0.1.0
+     */
+    public static final class RowError {
+        private final long record;
+        private final String message;
+
+        RowError(long record, String message) {
+            this.record = record;
+            this.message = message;
+        }
+
+        /**
+         * @return the number of the record, counting from 1 and not counting
+         * the header.
+         */
+        public long getRecord() {
+            return record;
+        }
+
+        /**
+         * @return why it failed.
+         */
+        public String getMessage() {
+            return message;
+        }
+
+        @Override
+        public String toString() {
+            return "record " + record + ": " + message;
+        }
+    }
+
+    private final long read;
+    private final long written;
+    private final long failed;
+    private final Duration elapsed;
+    private final List<RowError> errors;
+
+    private TransferReport(Tally t, Duration elapsed) {
+        synchronized (t) {
+            this.read = t.read;
+            this.written = t.written;
+            this.failed = t.failed;
+            this.errors = Collections.unmodifiableList(new ArrayList<>(
+                        t.errors));
+        }
+        this.elapsed = elapsed;
+    }
+
+    /**
+     * @return the number of records read.
+     */
+    public long getRead() {
+        return read;
+    }
+
+    /**
+     * @return the number of records written.
+     */
+    public long getWritten() {
+        return written;
+    }
+
+    /**
+     * @return the number of records that failed.
+     */
+    public long getFailed() {
+        return failed;
+    }
+
+    /**
+     * @return how long the transfer took.
+     */
+    public Duration getElapsed() {
+        return elapsed;
+    }
+
+    /**
+     * @return the records written per second.
+     */
+    public double getThroughput() {
+        long nanos = Math.max(elapsed.toNanos(), 1);
+        return written * 1e9 / nanos;
+    }
+
+    /**
+     * @return the first errors, in no particular order. There are fewer than
+     * {@link #getFailed()} if some were dropped.
+     */
+    public List<RowError> getErrors() {
+        return errors;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d read, %d written, %d failed in %d ms "
+                + "(%.0f records/s)", read, written, failed,
+                elapsed.toMillis(), getThroughput());
+    }
+
+    /**
+     * Counts as a transfer goes along. Thread safe.
+     */
+    static final class Tally {
+        // the most errors to keep
+        private final int maxErrors;
+
+        private final long start = System.nanoTime();
+        private final List<RowError> errors = new ArrayList<>();
+        private long read;
+        private long written;
+        private long failed;
+
+        Tally(int maxErrors) {
+            this.maxErrors = maxErrors;
+        }
+
+        synchronized void read(long n) {
+            read += n;
+        }
+
+        synchronized void written(long n) {
+            written += n;
+        }
+
+        synchronized void failed(long record, String message) {
+            ++failed;
+            if (errors.size() < maxErrors) {
+                errors.add(new RowError(record, message));
+            }
+        }
+
+        TransferReport finish() {
+            return new TransferReport(this, Duration.ofNanos(
+                        System.nanoTime() - start));
+        }
+    }
+}
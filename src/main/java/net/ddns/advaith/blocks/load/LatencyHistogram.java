@@ -0,0 +1,144 @@
+/*
+ * This file is part of Blocks.
+ * 
+ * Blocks is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * Blocks is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with Blocks. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.ddns.advaith.blocks.load;
+
+/**
+ * Counts latencies in log-linear buckets, so that percentiles can be read
+ * off for runs of any length in a fixed amount of memory. Every power of two
+ * is split into 32 buckets, so a percentile is never more than about 3% off,
+ * from nanoseconds up to centuries.
+ *
+ * Unlike {@link net.ddns.advaith.blocks.dao.LatencyWindow}, which keeps the
+ * most recent samples, this counts every sample ever recorded. It is meant
+ * to be filled by one thread and merged with {@link
+ * #add(LatencyHistogram)} at the end.
+ *
+ * This class is not thread safe.
+ *
+ * @since 0.1.0
+ * @author Advaith Menon
+ */
+public class LatencyHistogram {
+    // buckets per power of two, as a shift
+    private static final int SUB_BITS = 5;
+    private static final int SUB = 1 << SUB_BITS;
+
+    // enough buckets for any non-negative long
+    private static final int BUCKETS = (63 - SUB_BITS + 1) * SUB;
+
+    // the number of samples in each bucket
+    private final long[] counts = new long[BUCKETS];
+
+    private long count;
+    private long total;
+    private long max;
+
+    /**
+     * Record a sample.
+     *
+     * @param nanos The latency, in nanoseconds. Negative values count as 0.
+     */
+    public void record(long nanos) {
+        long v = Math.max(nanos, 0);
+        ++counts[indexOf(v)];
+        ++count;
+        total += v;
+        max = Math.max(max, v);
+    }
+
+    /**
+     * Add the samples of another histogram to this one.
+     *
+     * @param other The other histogram.
+     */
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < BUCKETS; ++i) {
+            counts[i] += other.counts[i];
+        }
+        count += other.count;
+        total += other.total;
+        max = Math.max(max, other.max);
+    }
+
+    /**
+     * @return the number of samples.
+     */
+    public long count() {
+        return count;
+    }
+
+    /**
+     * @return the largest sample, in nanoseconds, or 0 if there are none.
+     */
+    public long getMax() {
+        return max;
+    }
+
+    /**
+     * @return the mean of the samples, in nanoseconds, or 0 if there are
+     * none.
+     */
+    public double getMean() {
+        return count == 0 ? 0 : (double) total / count;
+    }
+
+    /**
+     * Work out a percentile of the samples, using the nearest rank method.
+     * The answer is the upper end of the bucket the sample falls in, but
+     * never more than the largest sample.
+     *
+     * @param p The percentile, in (0, 100].
+     * @return The percentile in nanoseconds, or -1 if there are no samples.
+     * @throws IllegalArgumentException if p is out of range.
+     */
+    public long percentile(double p) {
+        if (!(p > 0 && p <= 100)) {
+            throw new IllegalArgumentException("p must be in (0, 100]");
+        } else if (count == 0) {
+            return -1;
+        }
+        long rank = (long) Math.ceil(p / 100 * count);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; ++i) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(highest(i), max);
+            }
+        }
+        return max;
+    }
+
+    static int indexOf(long v) {
+        if (v < SUB) {
+            return (int) v;
+        }
+        int exp = 63 - Long.numberOfLeadingZeros(v);
+        int shift = exp - SUB_BITS;
+        return (shift + 1) * SUB + (int) ((v >>> shift) - SUB);
+    }
+
+    // the largest value that falls in a bucket
+    static long highest(int i) {
+        if (i < SUB) {
+            return i;
+        }
+        int shift = i / SUB - 1;
+        long low = (long) (SUB + i % SUB) << shift;
+        return low + (1L << shift) - 1;
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * This file is part of Blocks.
+ * 
+ * Blocks is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * Blocks is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with Blocks. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.ddns.advaith.blocks.load;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import net.ddns.advaith.blocks.config.ConfigManager;
+import net.ddns.advaith.blocks.plugin.PluginLoader;
+import net.ddns.advaith.blocks.plugin.PluginWrapper;
+
+/**
+ * Runs a {@link LoadTest} against a storage plugin from the command line:
+ * <pre>
+ * java -cp blocks.jar:... net.ddns.advaith.blocks.load.LoadMain \
+ *     [users] [seconds] [report.json]
+ * </pre>
+ * The defaults are 16 users for 60 seconds, after a 10 second warm up, and
+ * the report is written to {@code load-<plugin>-<version>.json}. The
+ * summary is printed. If more than one plugin is installed, set {@code
+ * net.ddns.advaith.blocks.load.plugin} to the UUID of the one to test.
+ *
+ * The test writes to the plugin's storage, so point the plugin at a scratch
+ * copy of the data first.
+ *
+ * @since 0.1.0
+ * @author Advaith Menon
+ */
+public final class LoadMain {
+    /**
+     * The configuration key for the UUID of the plugin to test.
+     */
+    public static final String PLUGIN_KEY =
+        "net.ddns.advaith.blocks.load.plugin";
+
+    private LoadMain() {}
+
+    /**
+     * Run the test.
+     *
+     * @param args The number of users, the number of seconds and the report
+     * file, all optional.
+     * @throws IOException if the report cannot be written.
+     * @throws InterruptedException if interrupted while testing.
+     */
+    public static void main(String[] args) throws IOException,
+           InterruptedException {
+        int users = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 60;
+        PluginWrapper w = PluginLoader.getInstance().choosePlugin(
+                ConfigManager.getInstance().getProperty(PLUGIN_KEY));
+        String label = w.getName() + " " + w.getVersion();
+        Path out = Path.of(args.length > 2 ? args[2] : "load-"
+                + label.replaceAll("[^A-Za-z0-9.]+", "-") + ".json");
+
+        w.initialize();
+        LoadReport r;
+        try {
+            r = LoadTest.builder().users(users)
+                .duration(Duration.ofSeconds(seconds))
+                .warmup(Duration.ofSeconds(10)).build()
+                .run(w.getDAOFactory(), label);
+        } finally {
+            w.close();
+        }
+        try (Writer wr = Files.newBufferedWriter(out,
+                    StandardCharsets.UTF_8)) {
+            r.writeTo(wr);
+        }
+        System.out.print(r.summary());
+        System.out.println("Report written to " + out);
+    }
+}
@@ -0,0 +1,405 @@
+/*
+ * This file is part of Blocks.
+ * 
+ * Blocks is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * Blocks is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with Blocks. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.ddns.advaith.blocks.load;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+import net.ddns.advaith.blocks.io.Json;
+
+/**
+ * The results of a {@link LoadTest}: for every {@link Operation}, how often
+ * it ran, how often it failed and why, and its latency percentiles; and a
+ * timeline of throughput, errors and heap use, taken at regular intervals.
+ *
+ * {@link #writeTo(Writer)} writes the report as JSON, with the keys always in
+ * the same order, so that the reports of two plugin versions, or of the same
+ * plugin before and after a change, can be compared with diff or a script.
+ * {@link #summary()} is a table for people.
+ *
+ * @since 0.1.0
+ * @author Advaith Menon
+ */
+public final class LoadReport {
+    /**
+     * The percentiles in the report.
+     */
+    public static final double[] PERCENTILES = {50, 90, 99, 99.9};
+
+    /**
+     * The results for one kind of operation.
+     *
+     * @since 0.1.0
+     */
+    public static final class OperationStats {
+        private final Operation operation;
+        private final LatencyHistogram latencies;
+        private final long errors;
+        private final Map<String, Long> errorTypes;
+        private final double seconds;
+
+        OperationStats(Operation operation, LatencyHistogram latencies,
+                Map<String, Long> errorTypes, double seconds) {
+            this.operation = operation;
+            this.latencies = latencies;
+            this.errorTypes = Collections.unmodifiableMap(new TreeMap<>(
+                        errorTypes));
+            this.seconds = seconds;
+            long e = 0;
+            for (long n: errorTypes.values()) {
+                e += n;
+            }
+            this.errors = e;
+        }
+
+        /**
+         * @return the operation.
+         */
+        public Operation getOperation() {
+            return operation;
+        }
+
+        /**
+         * @return the number of times the operation ran, including the
+         * times it failed.
+         */
+        public long getCount() {
+            return latencies.count();
+        }
+
+        /**
+         * @return the number of times the operation failed.
+         */
+        public long getErrors() {
+            return errors;
+        }
+
+        /**
+         * @return the fraction of runs that failed, in [0, 1].
+         */
+        public double getErrorRate() {
+            return getCount() == 0 ? 0 : (double) errors / getCount();
+        }
+
+        /**
+         * @return the number of failures by the simple name of the exception
+         * class, e.g. {@code ConflictException}, sorted by name.
+         */
+        public Map<String, Long> getErrorTypes() {
+            return errorTypes;
+        }
+
+        /**
+         * @return the number of runs per second.
+         */
+        public double getThroughput() {
+            return seconds == 0 ? 0 : getCount() / seconds;
+        }
+
+        /**
+         * @return the latencies, failed runs included.
+         */
+        public LatencyHistogram getLatencies() {
+            return latencies;
+        }
+    }
+
+    /**
+     * The state of a test at one point in time.
+     *
+     * @since 0.1.0
+     */
+    public static final class Sample {
+        private final Duration elapsed;
+        private final long operations;
+        private final long errors;
+        private final long heapUsed;
+        private final long heapAfterGC;
+
+        Sample(Duration elapsed, long operations, long errors, long heapUsed,
+                long heapAfterGC) {
+            this.elapsed = elapsed;
+            this.operations = operations;
+            this.errors = errors;
+            this.heapUsed = heapUsed;
+            this.heapAfterGC = heapAfterGC;
+        }
+
+        /**
+         * @return the time since measuring started.
+         */
+        public Duration getElapsed() {
+            return elapsed;
+        }
+
+        /**
+         * @return the number of operations run so far.
+         */
+        public long getOperations() {
+            return operations;
+        }
+
+        /**
+         * @return the number of operations that have failed so far.
+         */
+        public long getErrors() {
+            return errors;
+        }
+
+        /**
+         * @return the bytes of heap in use, garbage included.
+         */
+        public long getHeapUsed() {
+            return heapUsed;
+        }
+
+        /**
+         * @return the bytes of heap in use after the most recent garbage
+         * collection, or -1 if the JVM does not say. Steady growth of this
+         * over a long run points to a leak.
+         */
+        public long getHeapAfterGC() {
+            return heapAfterGC;
+        }
+    }
+
+    private final String label;
+    private final int users;
+    private final Duration elapsed;
+    private final Map<Operation, OperationStats> operations;
+    private final List<Sample> samples;
+
+    LoadReport(String label, int users, Duration elapsed,
+            Map<Operation, OperationStats> operations, List<Sample> samples) {
+        this.label = label;
+        this.users = users;
+        this.elapsed = elapsed;
+        this.operations = Collections.unmodifiableMap(new EnumMap<>(
+                    operations));
+        this.samples = List.copyOf(samples);
+    }
+
+    /**
+     * @return what was tested, e.g. the name and version of the plugin.
+     */
+    public String getLabel() {
+        return label;
+    }
+
+    /**
+     * @return the number of concurrent users.
+     */
+    public int getUsers() {
+        return users;
+    }
+
+    /**
+     * @return how long the test was measured for, not counting the warm up.
+     */
+    public Duration getElapsed() {
+        return elapsed;
+    }
+
+    /**
+     * @return the results of every operation in the mix, in the order of
+     * {@link Operation}.
+     */
+    public Map<Operation, OperationStats> getOperations() {
+        return operations;
+    }
+
+    /**
+     * @return the timeline, oldest first. The first sample is taken when
+     * measuring starts and the last when it ends.
+     */
+    public List<Sample> getSamples() {
+        return samples;
+    }
+
+    /**
+     * @return the number of operations run.
+     */
+    public long getCount() {
+        long n = 0;
+        for (OperationStats s: operations.values()) {
+            n += s.getCount();
+        }
+        return n;
+    }
+
+    /**
+     * @return the number of operations that failed.
+     */
+    public long getErrors() {
+        long n = 0;
+        for (OperationStats s: operations.values()) {
+            n += s.getErrors();
+        }
+        return n;
+    }
+
+    /**
+     * @return the fraction of operations that failed, in [0, 1].
+     */
+    public double getErrorRate() {
+        long n = getCount();
+        return n == 0 ? 0 : (double) getErrors() / n;
+    }
+
+    /**
+     * @return the number of operations per second.
+     */
+    public double getThroughput() {
+        double s = seconds(elapsed);
+        return s == 0 ? 0 : getCount() / s;
+    }
+
+    /**
+     * @return how much the heap in use after garbage collection grew from
+     * the first sample to the last, in bytes, or 0 if the JVM does not say.
+     */
+    public long getHeapGrowth() {
+        if (samples.isEmpty()) {
+            return 0;
+        }
+        long first = samples.get(0).getHeapAfterGC();
+        long last = samples.get(samples.size() - 1).getHeapAfterGC();
+        return first < 0 || last < 0 ? 0 : last - first;
+    }
+
+    /**
+     * Write the report as JSON. Latencies are in microseconds, heap sizes in
+     * bytes and times in milliseconds.
+     *
+     * @param out Where to write it.
+     * @throws IOException if writing fails.
+     */
+    public void writeTo(Writer out) throws IOException {
+        StringBuilder sb = new StringBuilder("{\n  \"label\": ");
+        Json.quote(label, sb);
+        sb.append(",\n  \"users\": ").append(users);
+        sb.append(",\n  \"elapsed_ms\": ").append(elapsed.toMillis());
+        sb.append(",\n  \"operations\": ").append(getCount());
+        sb.append(",\n  \"errors\": ").append(getErrors());
+        sb.append(",\n  \"error_rate\": ").append(decimal(getErrorRate()));
+        sb.append(",\n  \"throughput\": ").append(decimal(getThroughput()));
+        sb.append(",\n  \"heap_growth\": ").append(getHeapGrowth());
+        sb.append(",\n  \"by_operation\": {");
+        String sep = "\n";
+        for (OperationStats s: operations.values()) {
+            sb.append(sep).append("    \"").append(s.getOperation())
+                .append("\": {\"count\": ").append(s.getCount())
+                .append(", \"errors\": ").append(s.getErrors())
+                .append(", \"error_rate\": ").append(decimal(
+                            s.getErrorRate()))
+                .append(", \"throughput\": ").append(decimal(
+                            s.getThroughput()));
+            for (double p: PERCENTILES) {
+                sb.append(", \"p").append(name(p)).append("_us\": ")
+                    .append(decimal(micros(s.getLatencies().percentile(p))));
+            }
+            sb.append(", \"max_us\": ").append(decimal(micros(
+                            s.getLatencies().getMax())))
+                .append(", \"mean_us\": ").append(decimal(
+                            s.getLatencies().getMean() / 1000))
+                .append(", \"error_types\": {");
+            String esep = "";
+            for (Map.Entry<String, Long> e: s.getErrorTypes().entrySet()) {
+                sb.append(esep);
+                Json.quote(e.getKey(), sb);
+                sb.append(": ").append(e.getValue());
+                esep = ", ";
+            }
+            sb.append("}}");
+            sep = ",\n";
+        }
+        sb.append("\n  },\n  \"samples\": [");
+        sep = "\n";
+        Sample prev = null;
+        for (Sample s: samples) {
+            double dt = prev == null ? 0 : seconds(s.getElapsed().minus(
+                        prev.getElapsed()));
+            long ops = prev == null ? 0 : s.getOperations()
+                - prev.getOperations();
+            sb.append(sep).append("    {\"t_ms\": ")
+                .append(s.getElapsed().toMillis())
+                .append(", \"operations\": ").append(s.getOperations())
+                .append(", \"errors\": ").append(s.getErrors())
+                .append(", \"throughput\": ").append(decimal(dt == 0 ? 0
+                            : ops / dt))
+                .append(", \"heap_used\": ").append(s.getHeapUsed())
+                .append(", \"heap_after_gc\": ").append(s.getHeapAfterGC())
+                .append('}');
+            sep = ",\n";
+            prev = s;
+        }
+        sb.append("\n  ]\n}\n");
+        out.write(sb.toString());
+        out.flush();
+    }
+
+    /**
+     * @return a table of the results, one line per operation.
+     */
+    public String summary() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format(Locale.ROOT, "%s: %d users, %.1f s, %.1f "
+                    + "ops/s, %.2f%% errors, heap %+d KiB%n", label, users,
+                    seconds(elapsed), getThroughput(), getErrorRate() * 100,
+                    getHeapGrowth() / 1024));
+        sb.append(String.format(Locale.ROOT, "%-12s %9s %10s %7s %9s %9s "
+                    + "%9s %9s %9s%n", "operation", "count", "ops/s",
+                    "err%", "p50 us", "p90 us", "p99 us", "p99.9 us",
+                    "max us"));
+        for (OperationStats s: operations.values()) {
+            LatencyHistogram h = s.getLatencies();
+            sb.append(String.format(Locale.ROOT, "%-12s %9d %10.1f %7.2f "
+                        + "%9.0f %9.0f %9.0f %9.0f %9.0f%n", s.getOperation(),
+                        s.getCount(), s.getThroughput(),
+                        s.getErrorRate() * 100, micros(h.percentile(50)),
+                        micros(h.percentile(90)), micros(h.percentile(99)),
+                        micros(h.percentile(99.9)), micros(h.getMax())));
+        }
+        return sb.toString();
+    }
+
+    static double seconds(Duration d) {
+        return d.toNanos() / 1e9;
+    }
+
+    private static double micros(long nanos) {
+        return nanos < 0 ? 0 : nanos / 1000.0;
+    }
+
+    private static String decimal(double d) {
+        return String.format(Locale.ROOT, "%.3f", d);
+    }
+
+    // 99.9 becomes "99_9", to keep keys plain
+    private static String name(double p) {
+        return p == Math.rint(p) ? String.valueOf((long) p)
+            : String.valueOf(p).replace('.', '_');
+    }
+}
@@ -0,0 +1,616 @@
+/*
+ * This file is part of Blocks.
+ * 
+ * Blocks is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * Blocks is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with Blocks. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.ddns.advaith.blocks.load;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.ddns.advaith.blocks.model.GenericDAO;
+import net.ddns.advaith.blocks.model.Paginated;
+import net.ddns.advaith.blocks.model.Query;
+import net.ddns.advaith.blocks.model.Task;
+import net.ddns.advaith.blocks.plugin.DAOFactory;
+import net.ddns.advaith.blocks.server.TaskServer;
+
+/**
+ * Runs a workload against a Task DAO with many concurrent users and
+ * reports how it held up (see {@link LoadReport}). Use it to check a storage
+ * plugin before shipping it, or to compare two versions of one:
+ * <pre>
+ * LoadReport r = LoadTest.builder().users(200)
+ *     .duration(Duration.ofMinutes(30)).warmup(Duration.ofMinutes(1))
+ *     .weight(Operation.PAGE_WALK, 20).build()
+ *     .run(plugin.getDAOFactory(), "sqlite 1.2.0");
+ * </pre>
+ *
+ * Every user runs on its own thread, a virtual thread where available (see
+ * {@link TaskServer#newExecutor()}), and picks operations at random in
+ * proportion to their weights, with an optional think time in between.
+ * Users are a closed loop: each waits for its call to return before making
+ * the next, so latencies are those of the DAO under the given concurrency.
+ *
+ * The DAO is first loaded with some tasks, so that reads have something to
+ * find. Users remember the IDs of tasks in a fixed-size pool, which they
+ * pick from to update, delete and look up tasks. Operations that find
+ * nothing to work on, such as a delete with an empty pool, are skipped.
+ *
+ * Latencies are recorded per user and merged at the end, so recording
+ * them adds no contention. Every sample interval, the number of operations
+ * and errors so far and the heap use are added to the timeline.
+ *
+ * @since 0.1.0
+ * @author Advaith Menon
+ */
+public final class LoadTest {
+    private static final Logger LOGGER = LoggerFactory.getLogger(
+            LoadTest.class);
+
+    // distinct titles, so that some lookups by title find several tasks
+    private static final int TITLES = 100;
+
+    /**
+     * Sets up a {@link LoadTest}. Every setting has a default, so {@code
+     * LoadTest.builder().build()} is a valid test.
+     *
+     * @since 0.1.0
+     */
+    public static final class Builder {
+        private int users = 16;
+        private Duration duration = Duration.ofMinutes(1);
+        private Duration warmup = Duration.ZERO;
+        private Duration thinkTime = Duration.ZERO;
+        private Duration sampleInterval = Duration.ofSeconds(1);
+        private int preload = 1000;
+        private int pagesPerWalk = 10;
+        private long seed = System.nanoTime();
+        private final EnumMap<Operation, Integer> weights = new EnumMap<>(
+                Map.of(Operation.ADD, 10, Operation.UPDATE, 15,
+                    Operation.DELETE, 5, Operation.FETCH_ALL, 15,
+                    Operation.FETCH_EQUALS, 30, Operation.QUERY, 15,
+                    Operation.PAGE_WALK, 10));
+
+        private Builder() {}
+
+        /**
+         * @param users The number of concurrent users. Default 16.
+         * @return this builder.
+         * @throws IllegalArgumentException if users is not positive.
+         */
+        public Builder users(int users) {
+            if (users <= 0) {
+                throw new IllegalArgumentException("users must be positive");
+            }
+            this.users = users;
+            return this;
+        }
+
+        /**
+         * @param duration How long to measure for. Default one minute.
+         * @return this builder.
+         * @throws IllegalArgumentException if duration is not positive.
+         */
+        public Builder duration(Duration duration) {
+            this.duration = positive(duration, "duration");
+            return this;
+        }
+
+        /**
+         * @param warmup How long to run before measuring, so that caches
+         * fill and the JIT compiler catches up. Default none.
+         * @return this builder.
+         * @throws IllegalArgumentException if warmup is negative.
+         */
+        public Builder warmup(Duration warmup) {
+            this.warmup = notNegative(warmup, "warmup");
+            return this;
+        }
+
+        /**
+         * @param thinkTime The mean time a user waits between operations;
+         * the actual waits are exponentially distributed around it. Default
+         * none, i.e. every user calls the DAO as fast as it can.
+         * @return this builder.
+         * @throws IllegalArgumentException if thinkTime is negative.
+         */
+        public Builder thinkTime(Duration thinkTime) {
+            this.thinkTime = notNegative(thinkTime, "thinkTime");
+            return this;
+        }
+
+        /**
+         * @param interval How often to add to the timeline. Default every
+         * second.
+         * @return this builder.
+         * @throws IllegalArgumentException if interval is not positive.
+         */
+        public Builder sampleEvery(Duration interval) {
+            this.sampleInterval = positive(interval, "interval");
+            return this;
+        }
+
+        /**
+         * @param tasks The number of tasks to add before starting. Default
+         * 1000.
+         * @return this builder.
+         * @throws IllegalArgumentException if tasks is negative.
+         */
+        public Builder preload(int tasks) {
+            if (tasks < 0) {
+                throw new IllegalArgumentException("tasks cannot be "
+                        + "negative");
+            }
+            this.preload = tasks;
+            return this;
+        }
+
+        /**
+         * @param pages The most pages a {@link Operation#PAGE_WALK} reads.
+         * Default 10.
+         * @return this builder.
+         * @throws IllegalArgumentException if pages is not positive.
+         */
+        public Builder pagesPerWalk(int pages) {
+            if (pages <= 0) {
+                throw new IllegalArgumentException("pages must be positive");
+            }
+            this.pagesPerWalk = pages;
+            return this;
+        }
+
+        /**
+         * Set how often an operation is picked, relative to the others. The
+         * default mix is mostly reads: FETCH_EQUALS 30, UPDATE, FETCH_ALL
+         * and QUERY 15 each, ADD and PAGE_WALK 10 each, and DELETE 5.
+         *
+         * @param op The operation.
+         * @param weight The weight; 0 leaves the operation out.
+         * @return this builder.
+         * @throws IllegalArgumentException if weight is negative.
+         */
+        public Builder weight(Operation op, int weight) {
+            if (weight < 0) {
+                throw new IllegalArgumentException("weight cannot be "
+                        + "negative");
+            }
+            weights.put(op, weight);
+            return this;
+        }
+
+        /**
+         * @param seed The seed for the random choices, to repeat a run
+         * exactly as far as the users' interleaving allows.
+         * @return this builder.
+         */
+        public Builder seed(long seed) {
+            this.seed = seed;
+            return this;
+        }
+
+        /**
+         * @return the test.
+         * @throws IllegalStateException if every weight is 0.
+         */
+        public LoadTest build() {
+            int total = 0;
+            for (int w: weights.values()) {
+                total += w;
+            }
+            if (total == 0) {
+                throw new IllegalStateException("The mix has no "
+                        + "operations.");
+            }
+            return new LoadTest(this);
+        }
+
+        private static Duration positive(Duration d, String name) {
+            if (d == null || d.isNegative() || d.isZero()) {
+                throw new IllegalArgumentException(name + " must be "
+                        + "positive");
+            }
+            return d;
+        }
+
+        private static Duration notNegative(Duration d, String name) {
+            if (d == null || d.isNegative()) {
+                throw new IllegalArgumentException(name + " cannot be "
+                        + "negative");
+            }
+            return d;
+        }
+    }
+
+    /**
+     * IDs of tasks that exist, or did recently. A fixed number of slots,
+     * overwritten at random, so it never grows and needs no lock.
+     */
+    private static final class IdPool {
+        private final AtomicLongArray slots;
+
+        IdPool(int size) {
+            slots = new AtomicLongArray(size);
+            for (int i = 0; i < size; ++i) {
+                slots.set(i, -1);
+            }
+        }
+
+        void offer(long id, SplittableRandom rnd) {
+            slots.set(rnd.nextInt(slots.length()), id);
+        }
+
+        // a random ID, or -1 if a few tries find none
+        long pick(SplittableRandom rnd) {
+            for (int i = 0; i < 4; ++i) {
+                long id = slots.get(rnd.nextInt(slots.length()));
+                if (id >= 0) {
+                    return id;
+                }
+            }
+            return -1;
+        }
+
+        // like pick, but no one else will be given the ID
+        long take(SplittableRandom rnd) {
+            for (int i = 0; i < 4; ++i) {
+                int k = rnd.nextInt(slots.length());
+                long id = slots.get(k);
+                if (id >= 0 && slots.compareAndSet(k, id, -1)) {
+                    return id;
+                }
+            }
+            return -1;
+        }
+    }
+
+    /**
+     * What one user measured.
+     */
+    private static final class Result {
+        final EnumMap<Operation, LatencyHistogram> latencies =
+            new EnumMap<>(Operation.class);
+        final EnumMap<Operation, Map<String, Long>> errors =
+            new EnumMap<>(Operation.class);
+
+        Result() {
+            for (Operation op: Operation.values()) {
+                latencies.put(op, new LatencyHistogram());
+                errors.put(op, new HashMap<>());
+            }
+        }
+    }
+
+    private final int users;
+    private final Duration duration;
+    private final Duration warmup;
+    private final Duration thinkTime;
+    private final Duration sampleInterval;
+    private final int preload;
+    private final int pagesPerWalk;
+    private final long seed;
+
+    // the operations, with one entry per unit of weight
+    private final Operation[] mix;
+
+    private LoadTest(Builder b) {
+        users = b.users;
+        duration = b.duration;
+        warmup = b.warmup;
+        thinkTime = b.thinkTime;
+        sampleInterval = b.sampleInterval;
+        preload = b.preload;
+        pagesPerWalk = b.pagesPerWalk;
+        seed = b.seed;
+        List<Operation> m = new ArrayList<>();
+        for (Map.Entry<Operation, Integer> e: b.weights.entrySet()) {
+            for (int i = 0; i < e.getValue(); ++i) {
+                m.add(e.getKey());
+            }
+        }
+        mix = m.toArray(new Operation[0]);
+    }
+
+    /**
+     * @return a builder for a new test.
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Run the test against the Task DAO of a factory.
+     *
+     * @param factory The factory. A new DAOProxy is built from it.
+     * @param label What is being tested, for the report.
+     * @return The report.
+     * @throws InterruptedException if interrupted while waiting for the
+     * users.
+     */
+    public LoadReport run(DAOFactory factory, String label)
+            throws InterruptedException {
+        return run(factory.build().getTaskDAO(), label);
+    }
+
+    /**
+     * Run the test against a Task DAO. The DAO is written to, so do not
+     * point this at data you want to keep.
+     *
+     * @param dao The DAO.
+     * @param label What is being tested, for the report.
+     * @return The report.
+     * @throws InterruptedException if interrupted while waiting for the
+     * users.
+     * @throws net.ddns.advaith.blocks.model.DAOException if the DAO cannot
+     * be loaded with the initial tasks.
+     */
+    public LoadReport run(GenericDAO<Task> dao, String label)
+            throws InterruptedException {
+        IdPool pool = new IdPool(Math.max(1024, Math.min(preload, 65536)));
+        load(dao, pool);
+
+        LongAdder ops = new LongAdder();
+        LongAdder errs = new LongAdder();
+        List<LoadReport.Sample> samples = new ArrayList<>();
+        long start = System.nanoTime();
+        long measureFrom = start + warmup.toNanos();
+        long end = measureFrom + duration.toNanos();
+
+        ScheduledExecutorService sampler =
+            Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "blocks-load-sampler");
+                t.setDaemon(true);
+                return t;
+            });
+        sampler.scheduleAtFixedRate(() -> {
+            synchronized (samples) {
+                samples.add(sample(measureFrom, ops, errs));
+            }
+        }, measureFrom - System.nanoTime(), sampleInterval.toNanos(),
+                TimeUnit.NANOSECONDS);
+
+        ExecutorService executor = TaskServer.newExecutor();
+        List<Future<Result>> running = new ArrayList<>(users);
+        SplittableRandom seeds = new SplittableRandom(seed);
+        try {
+            for (int i = 0; i < users; ++i) {
+                SplittableRandom rnd = seeds.split();
+                running.add(executor.submit(() -> user(dao, pool, rnd,
+                                measureFrom, end, ops, errs)));
+            }
+            List<Result> results = new ArrayList<>(users);
+            for (Future<Result> f: running) {
+                try {
+                    results.add(f.get());
+                } catch (ExecutionException e) {
+                    // users catch everything the DAO throws; this is a bug
+                    throw new IllegalStateException(e.getCause());
+                }
+            }
+            sampler.shutdownNow();
+            sampler.awaitTermination(1, TimeUnit.MINUTES);
+            // collect so that the last sample can be compared to the first
+            System.gc();
+            synchronized (samples) {
+                samples.add(sample(measureFrom, ops, errs));
+            }
+            return report(label, results, samples);
+        } finally {
+            sampler.shutdownNow();
+            for (Future<Result> f: running) {
+                f.cancel(true);
+            }
+            executor.shutdown();
+        }
+    }
+
+    private void load(GenericDAO<Task> dao, IdPool pool) {
+        SplittableRandom rnd = new SplittableRandom(seed ^ 0x5DEECE66DL);
+        for (int done = 0; done < preload; done += 500) {
+            List<Task> batch = new ArrayList<>();
+            for (int i = done; i < Math.min(preload, done + 500); ++i) {
+                batch.add(newTask(rnd));
+            }
+            dao.addAll(batch);
+            for (Task t: batch) {
+                pool.offer(t.getID(), rnd);
+            }
+        }
+        LOGGER.info("Loaded {} tasks", preload);
+        // start the timeline from a clean heap
+        System.gc();
+    }
+
+    private Result user(GenericDAO<Task> dao, IdPool pool,
+            SplittableRandom rnd, long measureFrom, long end, LongAdder ops,
+            LongAdder errs) {
+        Result r = new Result();
+        long now = System.nanoTime();
+        while (now < end && !Thread.currentThread().isInterrupted()) {
+            Operation op = mix[rnd.nextInt(mix.length)];
+            String error = null;
+            boolean ran;
+            try {
+                ran = call(op, dao, pool, rnd);
+            } catch (RuntimeException e) {
+                ran = true;
+                error = e.getClass().getSimpleName();
+            }
+            long done = System.nanoTime();
+            if (ran && now >= measureFrom) {
+                r.latencies.get(op).record(done - now);
+                ops.increment();
+                if (error != null) {
+                    r.errors.get(op).merge(error, 1L, Long::sum);
+                    errs.increment();
+                }
+            }
+            if (!thinkTime.isZero()) {
+                LockSupport.parkNanos((long) (-Math.log(1 - rnd.nextDouble())
+                            * thinkTime.toNanos()));
+            }
+            now = System.nanoTime();
+        }
+        return r;
+    }
+
+    // make one call; false if there was nothing to do it on
+    private boolean call(Operation op, GenericDAO<Task> dao, IdPool pool,
+            SplittableRandom rnd) {
+        switch (op) {
+            case ADD: {
+                Task t = newTask(rnd);
+                dao.add(t);
+                pool.offer(t.getID(), rnd);
+                return true;
+            }
+            case UPDATE: {
+                long id = pool.pick(rnd);
+                if (id < 0) {
+                    return false;
+                }
+                Paginated<Task> p = dao.fetchEquals(Task.ID, id);
+                if (p.hasNextPage()) {
+                    for (Task t: p.nextPage()) {
+                        t.setTitle(title(rnd));
+                        dao.update(t);
+                    }
+                }
+                return true;
+            }
+            case DELETE: {
+                long id = pool.take(rnd);
+                if (id < 0) {
+                    return false;
+                }
+                dao.delete(id);
+                return true;
+            }
+            case FETCH_ALL:
+                firstPage(dao.fetchAll());
+                return true;
+            case FETCH_EQUALS:
+                if (rnd.nextBoolean()) {
+                    long id = pool.pick(rnd);
+                    if (id < 0) {
+                        return false;
+                    }
+                    firstPage(dao.fetchEquals(Task.ID, id));
+                } else {
+                    firstPage(dao.fetchEquals(Task.TITLE, title(rnd)));
+                }
+                return true;
+            case QUERY:
+                firstPage(dao.query(Query.select().from(Task.TABLE)
+                            .where(Task.TITLE_FIELD).equal(title(rnd))
+                            .finish().orderBy(Task.DEADLINE_FIELD)
+                            .limit(20).build()));
+                return true;
+            default:
+                Paginated<Task> p = dao.fetchAll();
+                for (int i = 0; i < pagesPerWalk && p.hasNextPage(); ++i) {
+                    p.nextPage();
+                }
+                return true;
+        }
+    }
+
+    private LoadReport report(String label, List<Result> results,
+            List<LoadReport.Sample> samples) {
+        double seconds = LoadReport.seconds(duration);
+        Map<Operation, LoadReport.OperationStats> stats = new EnumMap<>(
+                Operation.class);
+        for (Operation op: Operation.values()) {
+            LatencyHistogram h = new LatencyHistogram();
+            Map<String, Long> errors = new HashMap<>();
+            for (Result r: results) {
+                h.add(r.latencies.get(op));
+                r.errors.get(op).forEach((k, v) -> errors.merge(k, v,
+                            Long::sum));
+            }
+            if (h.count() > 0 || contains(op)) {
+                stats.put(op, new LoadReport.OperationStats(op, h, errors,
+                            seconds));
+            }
+        }
+        return new LoadReport(label, users, duration, stats, samples);
+    }
+
+    private boolean contains(Operation op) {
+        for (Operation o: mix) {
+            if (o == op) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static LoadReport.Sample sample(long measureFrom, LongAdder ops,
+            LongAdder errs) {
+        long afterGC = 0;
+        boolean known = false;
+        for (MemoryPoolMXBean pool: ManagementFactory
+                .getMemoryPoolMXBeans()) {
+            MemoryUsage u = pool.getType() == MemoryType.HEAP
+                ? pool.getCollectionUsage() : null;
+            if (u != null) {
+                afterGC += u.getUsed();
+                known = true;
+            }
+        }
+        return new LoadReport.Sample(Duration.ofNanos(Math.max(0,
+                        System.nanoTime() - measureFrom)), ops.sum(),
+                errs.sum(), ManagementFactory.getMemoryMXBean()
+                .getHeapMemoryUsage().getUsed(), known ? afterGC : -1);
+    }
+
+    private static void firstPage(Paginated<Task> p) {
+        if (p.hasNextPage()) {
+            p.nextPage();
+        }
+    }
+
+    private static Task newTask(SplittableRandom rnd) {
+        return new Task(-1, title(rnd), rnd.nextInt(4) == 0 ? null
+                : "Details " + rnd.nextInt(), ZonedDateTime.now().plusDays(1)
+                .plusMinutes(rnd.nextInt(365 * 24 * 60)));
+    }
+
+    private static String title(SplittableRandom rnd) {
+        return "Task " + rnd.nextInt(TITLES);
+    }
+}
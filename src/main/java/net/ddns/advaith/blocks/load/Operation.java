@@ -0,0 +1,65 @@
+/*
+ * This file is part of Blocks.
+ * 
+ * Blocks is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * Blocks is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with Blocks. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.ddns.advaith.blocks.load;
+
+/**
+ * The kinds of call a {@link LoadTest} user makes on a Task DAO.
+ *
+ * @since 0.1.0
+ * @author Advaith Menon
+ */
+public enum Operation {
+    /**
+     * Add a new task.
+     */
+    ADD,
+
+    /**
+     * Read a task by ID and write it back with a new title, as an editor
+     * would. The write is compare-and-set, so it fails with a {@link
+     * net.ddns.advaith.blocks.model.ConflictException} if another user got
+     * there first.
+     */
+    UPDATE,
+
+    /**
+     * Delete a task by ID.
+     */
+    DELETE,
+
+    /**
+     * Read the first page of {@code fetchAll()}, as the UI does on start.
+     */
+    FETCH_ALL,
+
+    /**
+     * Read the first page of {@code fetchEquals()}, half the time by ID and
+     * half the time by title.
+     */
+    FETCH_EQUALS,
+
+    /**
+     * Run a query for the next deadlines with a given title.
+     */
+    QUERY,
+
+    /**
+     * Walk through several pages of {@code fetchAll()}, as when scrolling.
+     */
+    PAGE_WALK
+}
@@ -0,0 +1,56 @@
+/*
+ * This file is part of Blocks.
+ * 
+ * Blocks is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * Blocks is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with Blocks. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.ddns.advaith.blocks.model;
+
+/**
+ * Thrown by {@link GenericDAO#addAll(java.util.List)} when one of the items
+ * could not be added. It says how many items, from the start of the list,
+ * were added before the failure, so that the caller can report the item
+ * that failed and carry on with the rest.
+ *
+ * @since 0.1.0
+ * @author Advaith Menon
+ */
+public class BatchWriteException extends DAOException {
+    private static final long serialVersionUID = 1L;
+
+    // the number of items added before the failure
+    private final int written;
+
+    /**
+     * Create a new BatchWriteException.
+     *
+     * @param written The number of items added before the failing one. The
+     * failing item is the one at this index.
+     * @param cause Why the item failed.
+     */
+    public BatchWriteException(int written, Throwable cause) {
+        super("Item " + written + " could not be added: "
+                + (cause == null ? null : cause.getMessage()), cause);
+        this.written = written;
+    }
+
+    /**
+     * @return the number of items, from the start of the list, that were
+     * added. The item at this index is the one that failed; the items after
+     * it were not added.
+     */
+    public int getWritten() {
+        return written;
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * This file is part of Blocks.
+ * 
+ * Blocks is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * Blocks is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with Blocks. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.ddns.advaith.blocks.model;
+
+/**
+ * A single event of a change feed (see {@link GenericDAO#changes()}): an
+ * item was inserted, updated or deleted. Every change carries a sequence
+ * number, which increases by exactly one from one change to the next on the
+ * same feed, so a subscriber can tell if it missed any.
+ *
+ * @param <T> The object that changed.
+ * @since 0.1.0
+ * @author Advaith Menon
+ */
+public final class Change<T> {
+    /**
+     * What happened to the item.
+     *
+     * @since 0.1.0
+     */
+    public static enum Type {
+        INSERT,
+        UPDATE,
+        DELETE
+    }
+
+    // what happened
+    private final Type type;
+
+    // the sequence number
+    private final long sequence;
+
+    // the ID of the item
+    private final long id;
+
+    // the item after the change, null for deletes
+    private final T item;
+
+    /**
+     * Create a new Change.
+     *
+     * @param type What happened to the item.
+     * @param sequence The sequence number, at least 1.
+     * @param id The ID of the item.
+     * @param item The item after the change. Must be null for a delete,
+     * and cannot be null otherwise.
+     * @throws IllegalArgumentException if any of the values are invalid.
+     */
+    public Change(Type type, long sequence, long id, T item) {
+        if (type == null) {
+            throw new IllegalArgumentException("type cannot be null.");
+        } else if (sequence < 1) {
+            throw new IllegalArgumentException("sequence must be positive.");
+        } else if ((type == Type.DELETE) != (item == null)) {
+            throw new IllegalArgumentException("Only deletes have no item.");
+        }
+        this.type = type;
+        this.sequence = sequence;
+        this.id = id;
+        this.item = item;
+    }
+
+    /**
+     * @return what happened to the item.
+     */
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * @return the sequence number of this change.
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * @return the ID of the item.
+     */
+    public long getID() {
+        return id;
+    }
+
+    /**
+     * @return the item after the change, or null if it was deleted. Do not
+     * modify it; it is shared by every subscriber.
+     */
+    public T getItem() {
+        return item;
+    }
+
+    @Override
+    public String toString() {
+        return "Change[" + sequence + " " + type + " id=" + id + "]";
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * This file is part of Blocks.
+ * 
+ * Blocks is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * Blocks is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with Blocks. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.ddns.advaith.blocks.model;
+
+/**
+ * Signalled to a change feed subscriber (see {@link GenericDAO#changes()})
+ * that fell so far behind that its buffer filled up. The subscription is
+ * cancelled; to carry on, the subscriber has to reload whatever it was
+ * keeping up to date and subscribe again.
+ *
+ * @since 0.1.0
+ * @author Advaith Menon
+ */
+public class ChangeOverflowException extends DAOException {
+    private static final long serialVersionUID = 1L;
+
+    // the sequence number of the last change delivered
+    private final long lastDelivered;
+
+    /**
+     * Create a new ChangeOverflowException.
+     *
+     * @param message The message to show to the user.
+     * @param lastDelivered The sequence number of the last change that was
+     * delivered, or 0 if none was.
+     */
+    public ChangeOverflowException(String message, long lastDelivered) {
+        super(message);
+        this.lastDelivered = lastDelivered;
+    }
+
+    /**
+     * @return the sequence number of the last change delivered before the
+     * overflow, or 0 if none was.
+     */
+    public long getLastDelivered() {
+        return lastDelivered;
+    }
+}
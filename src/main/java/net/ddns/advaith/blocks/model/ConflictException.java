@@ -0,0 +1,80 @@
+/*
+ * This file is part of Blocks.
+ * 
+ * Blocks is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * Blocks is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with Blocks. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.ddns.advaith.blocks.model;
+
+/**
+ * Thrown by {@link GenericDAO#update(Object)} and {@link
+ * GenericDAO#delete(Object)} when the stored item has changed since the
+ * caller read it, i.e. its version is no longer the one the caller had (see
+ * {@link Task#getVersion()}). Nothing has been written. The usual response
+ * is to read the item again, redo the change on the fresh copy and retry, or
+ * to show the user what changed.
+ *
+ * @since 0.1.0
+ * @author Advaith Menon
+ */
+public class ConflictException extends DAOException {
+    private static final long serialVersionUID = 1L;
+
+    // the ID of the item
+    private final long id;
+
+    // the version the caller expected
+    private final long expected;
+
+    // the version that is stored, -1 if the item is gone
+    private final long actual;
+
+    /**
+     * Create a new ConflictException.
+     *
+     * @param id The ID of the item.
+     * @param expected The version the caller had.
+     * @param actual The version that is stored, or -1 if the item has been
+     * deleted.
+     */
+    public ConflictException(long id, long expected, long actual) {
+        super("Item " + id + " is at version " + (actual == -1 ? "none"
+                    : String.valueOf(actual)) + ", not " + expected);
+        this.id = id;
+        this.expected = expected;
+        this.actual = actual;
+    }
+
+    /**
+     * @return the ID of the item.
+     */
+    public long getID() {
+        return id;
+    }
+
+    /**
+     * @return the version the caller expected.
+     */
+    public long getExpectedVersion() {
+        return expected;
+    }
+
+    /**
+     * @return the version that is stored, or -1 if the item has been
+     * deleted.
+     */
+    public long getActualVersion() {
+        return actual;
+    }
+}
@@ -54,6 +54,49 @@ public final class Field<T> {
         this.table = table;
     }
 
+    /**
+     * @return the name of this field.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the table this field belongs to.
+     */
+    public String getTable() {
+        return table;
+    }
+
+    /**
+     * Two fields are equal if they have the same name and belong to the same
+     * table.
+     *
+     * @param o The object to compare to.
+     * @return true if o is an equal Field.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof Field)) {
+            return false;
+        }
+        Field<?> f = (Field<?>) o;
+        return name.equals(f.name) && table.equals(f.table);
+    }
+
+    @Override
+    public int hashCode() {
+        return name.hashCode() * 31 + table.hashCode();
+    }
+
+    /**
+     * @return the field in the form table.name.
+     */
+    @Override
+    public String toString() {
+        return table + "." + name;
+    }
+
     /**
      * Create a new WhereBuilder for this field. This is mainly done for the
      * enablement of Java generics.
@@ -17,6 +17,9 @@
 
 package net.ddns.advaith.blocks.model;
 
+import java.util.List;
+import java.util.concurrent.Flow;
+
 /**
  * Interface to represent a generic DAO.
  *
@@ -26,7 +29,10 @@ package net.ddns.advaith.blocks.model;
  */
 public interface GenericDAO<T> {
     /**
-     * Adds a new T to the storage backend.
+     * Adds a new T to the storage backend. If the item has a version (see
+     * {@link Task#getVersion()}), it is stored with it, e.g. when it is moved
+     * from another backend; otherwise it starts at version 0, which is set on
+     * the item.
      *
      * @param item The item to add
      * @throws net.ddns.advaith.blocks.model.DAOException if the operation could
@@ -34,28 +40,67 @@ public interface GenericDAO<T> {
      */
     void add(T item);
 
+    /**
+     * Adds several new items to the storage backend. Backends that can write
+     * many items in one go (e.g. in a single transaction) should override
+     * this; by default, the items are added one at a time with {@link
+     * #add(Object)}.
+     *
+     * The items are added in order. If one of them fails, the ones before it
+     * stay added, it and the ones after it are not, and the index of the
+     * failing item is given by {@link BatchWriteException#getWritten()}. An
+     * implementation that rolls the whole batch back reports 0.
+     *
+     * @param items The items to add.
+     * @throws BatchWriteException if an item could not be added.
+     */
+    default void addAll(List<T> items) {
+        for (int i = 0; i < items.size(); ++i) {
+            try {
+                add(items.get(i));
+            } catch (RuntimeException e) {
+                throw new BatchWriteException(i, e);
+            }
+        }
+    }
+
     /**
      * Updates all fields of T in the storage backend, based on the ID.
      *
+     * Items with a version (see {@link Task#getVersion()}) are updated with
+     * compare-and-set semantics: the update only goes through if the stored
+     * item still has the same version, and the stored version then goes up
+     * by one and is set on the item. Backends should do this in one step,
+     * e.g. with {@code UPDATE ... WHERE id = ? AND version = ?} (see {@link
+     * net.ddns.advaith.blocks.store.Sql#update(String, Task, List)}), or a
+     * CAS on an in-memory entry, rather than by locking. Items without a
+     * version are written regardless.
+     *
      * @param item The item to update
      * @throws IllegalArgumentException if the ID is -1
+     * @throws ConflictException if the stored item has another version.
      * @throws net.ddns.advaith.blocks.model.DAOException if the operation could
      * not be completed or failed for any reason.
      */
     void update(T item);
 
     /**
-     * Deletes the item T from the storage backend.
+     * Deletes the item T from the storage backend. Like {@link
+     * #update(Object)}, if the item has a version, it is only deleted if the
+     * stored item still has that version, and it is a conflict if there is
+     * no stored item any more.
      *
      * @param item The item to delete
      * @throws IllegalArgumentException if the ID is -1
+     * @throws ConflictException if the stored item has another version, or
+     * the item has a version and is not stored.
      * @throws net.ddns.advaith.blocks.model.DAOException if the operation could
      * not be completed or failed for any reason.
      */
     void delete(T item);
 
     /**
-     * Deletes the item T from the storage backend.
+     * Deletes the item T from the storage backend, whatever its version.
      *
      * @param id The ID of the item to delete
      * @throws IllegalArgumentException if the ID is less than 0
@@ -76,6 +121,24 @@ public interface GenericDAO<T> {
      */
     Paginated<T> fetchAll();
 
+    /**
+     * Resume a {@link #fetchAll()} from a continuation token (see {@link
+     * Paginated#getContinuationToken()}). DAOs that support this must return
+     * the results of fetchAll() in a stable key order, such as {@link
+     * TaskKey#ORDER}, and should seek to the token directly rather than
+     * skipping the elements before it. This method is optional to implement.
+     *
+     * @param token The token, or null to start from the beginning.
+     * @return A paginated version of the objects after the token.
+     * @throws IllegalArgumentException if the token is malformed.
+     * @throws UnsupportedOperationException by default.
+     * @throws net.ddns.advaith.blocks.model.DAOException if the operation could
+     * not be completed or failed for any reason.
+     */
+    default Paginated<T> fetchAll(String token) {
+        throw new UnsupportedOperationException();
+    }
+
     /**
      * Query for a specific object based on a single equals query.
      *
@@ -89,16 +152,92 @@ public interface GenericDAO<T> {
     Paginated<T> fetchEquals(int column, Object target);
 
     /**
-     * Advanced Select Query. This method will always be optional to implement.
-     * However, it hasn't been implemented as of 0.1.0. In the future, we will
-     * make use of an inefficient implementation using Paginated objects from
-     * the fetchAll method. Currently, it just throws
-     * UnsupportedOperationEception.
+     * Advanced Select Query: the whole objects matching the WHERE clause, in
+     * the order of the ORDER BY, after the OFFSET and up to the LIMIT.
+     * Implementations should let the storage backend filter, sort and limit,
+     * or use an index of their own, so that only the matching objects are
+     * read. The selected fields are ignored; use {@link #select(Query)} for
+     * narrow rows.
+     *
+     * This method is optional to implement: implementations that cannot
+     * answer a query throw UnsupportedOperationException. Callers that need
+     * an answer either way can fall back to {@link
+     * net.ddns.advaith.blocks.dao.TaskQueries#evaluate(Paginated, Query)}
+     * over {@link #fetchAll()}, which reads one page at a time.
      *
      * @param query The Select Query to perform.
-     * @return a Paginated result set
+     * @return a Paginated result set, in the requested order.
+     * @throws UnsupportedOperationException if queries are not supported.
      * @throws net.ddns.advaith.blocks.model.DAOException if the operation could
      * not be completed or failed for any reason.
      */
     Paginated<T> query(Query query);
+
+    /**
+     * Select Query with projection, ordering and limits. Implementations
+     * should push as much of the query as they can down to the storage
+     * backend: only read the fields in {@link Query#getFields()}, and let the
+     * backend apply the ORDER BY, LIMIT and OFFSET, so that e.g. listing the
+     * next 50 deadlines only transfers 50 narrow rows. If no fields were
+     * selected, every field is returned.
+     *
+     * This method is optional to implement. Callers that need an answer
+     * either way should use {@link
+     * net.ddns.advaith.blocks.dao.TaskQueries#select(GenericDAO, Query)},
+     * which falls back to evaluating the query over {@link #fetchAll()}.
+     *
+     * @param query The Select Query to perform.
+     * @return a Paginated result set, in the requested order.
+     * @throws UnsupportedOperationException by default.
+     * @throws net.ddns.advaith.blocks.model.DAOException if the operation could
+     * not be completed or failed for any reason.
+     */
+    default Paginated<Row> select(Query query) {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Aggregate Query: COUNT, MIN and MAX over the rows matching the WHERE
+     * clause, optionally grouped by a field or by day (see {@link
+     * Query.QueryBuilder#aggregate(Query.Aggregate...)}). Implementations
+     * should let the storage backend compute the aggregates, so that only
+     * one small {@link Group} per group is transferred.
+     *
+     * This method is optional to implement. Callers that need an answer
+     * either way should use {@link
+     * net.ddns.advaith.blocks.dao.TaskQueries#aggregate(GenericDAO, Query)},
+     * which falls back to counting over {@link #fetchAll()} a page at a time.
+     *
+     * @param query The aggregate query to perform.
+     * @return One group per distinct key, sorted by key. Without a GROUP BY,
+     * exactly one group, even if no rows match.
+     * @throws UnsupportedOperationException by default.
+     * @throws net.ddns.advaith.blocks.model.DAOException if the operation could
+     * not be completed or failed for any reason.
+     */
+    default List<Group> aggregate(Query query) {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Get the change feed of this DAO: every successful add, update and
+     * delete, as a {@link Change} with a sequence number one higher than the
+     * previous one. Subscribers only see changes made after they subscribed,
+     * and control how fast they are sent changes through {@link
+     * Flow.Subscription#request(long)}. A subscriber that falls too far
+     * behind gets a {@link ChangeOverflowException} and has to reload.
+     *
+     * This lets the UI, caches and indexes apply changes as they happen
+     * instead of re-reading {@link #fetchAll()}. Implementations can use
+     * {@link net.ddns.advaith.blocks.dao.ChangeFeed}; for DAOs that do not
+     * implement it, wrap them in a {@link
+     * net.ddns.advaith.blocks.dao.ObservableTaskDAO}. This method is optional
+     * to implement.
+     *
+     * @return The change feed.
+     * @throws UnsupportedOperationException by default.
+     */
+    default Flow.Publisher<Change<T>> changes() {
+        throw new UnsupportedOperationException();
+    }
 }
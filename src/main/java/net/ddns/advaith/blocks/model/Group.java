@@ -0,0 +1,119 @@
+/*
+ * This file is part of Blocks.
+ * 
+ * Blocks is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * Blocks is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with Blocks. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.ddns.advaith.blocks.model;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * A single result of an aggregate query: the key of a group, and the value
+ * of each aggregate over the rows in it. See {@link
+ * Query.QueryBuilder#aggregate(Query.Aggregate...)}.
+ *
+ * @since 0.1.0
+ * @author Advaith Menon
+ */
+public final class Group {
+    // the key, null if the query has no GROUP BY
+    private final Object key;
+
+    // the aggregates, in the order they were asked for
+    private final List<Query.Aggregate<?>> aggregates;
+
+    // the value of each aggregate, at the same index
+    private final Object[] values;
+
+    /**
+     * Create a new Group.
+     *
+     * @param key The key of the group: a {@link java.time.LocalDate} when
+     * grouping by day, the value of the field when grouping by a field, or
+     * null if there is no GROUP BY.
+     * @param aggregates The aggregates of the query.
+     * @param values The value of each aggregate, in the same order. Counts
+     * must be {@link Long}s.
+     * @throws IllegalArgumentException if aggregates or values is null, or
+     * their lengths differ.
+     */
+    public Group(Object key, List<Query.Aggregate<?>> aggregates,
+            Object... values) {
+        if (aggregates == null || values == null) {
+            throw new IllegalArgumentException("aggregates and values cannot "
+                    + "be null.");
+        } else if (aggregates.size() != values.length) {
+            throw new IllegalArgumentException("Expected "
+                    + aggregates.size() + " values, got " + values.length
+                    + ".");
+        }
+        this.key = key;
+        this.aggregates = List.copyOf(aggregates);
+        this.values = values.clone();
+    }
+
+    /**
+     * @return the key of this group, or null if the query has no GROUP BY.
+     */
+    public Object getKey() {
+        return key;
+    }
+
+    /**
+     * Get the value of an aggregate.
+     *
+     * @param <T> The Java type of the result.
+     * @param aggregate The aggregate, as passed to the query.
+     * @return The value. Counts are never null; MIN and MAX are null if no
+     * row had a value.
+     * @throws IllegalArgumentException if the query did not compute it.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(Query.Aggregate<T> aggregate) {
+        int i = aggregates.indexOf(aggregate);
+        if (i < 0) {
+            throw new IllegalArgumentException(aggregate + " was not "
+                    + "computed.");
+        }
+        return (T) values[i];
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof Group)) {
+            return false;
+        }
+        Group g = (Group) o;
+        return Objects.equals(key, g.key) && aggregates.equals(g.aggregates)
+            && Arrays.equals(values, g.values);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(key) * 31 + Arrays.hashCode(values);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder b = new StringBuilder("Group[key=").append(key);
+        for (int i = 0; i < values.length; ++i) {
+            b.append(", ").append(aggregates.get(i)).append('=')
+                .append(values[i]);
+        }
+        return b.append(']').toString();
+    }
+}
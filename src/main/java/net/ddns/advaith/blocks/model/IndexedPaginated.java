@@ -0,0 +1,220 @@
+/*
+ * This file is part of Blocks.
+ * 
+ * Blocks is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * Blocks is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with Blocks. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.ddns.advaith.blocks.model;
+
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * Adds {@link #page(int)}, {@link #pageCount()} and {@link #totalSize()} to a
+ * Paginated that can only move forward. As pages are visited, the
+ * continuation token at the start of every stride-th page is remembered in a
+ * sparse page index. Jumping to a page reopens the source at the nearest
+ * remembered page at or before it, and reads forward from there, so after the
+ * first visit a jump costs at most one stride of pages, however deep it is.
+ * Jumping ahead of everything visited so far still has to read the pages in
+ * between, once.
+ *
+ * If the source does not support continuation tokens, only the first page is
+ * remembered: jumping forward continues from the current position, and
+ * jumping back starts over.
+ *
+ * @param <T> The object this Paginated returns a list of
+ * @since 0.1.0
+ * @author Advaith Menon
+ */
+public final class IndexedPaginated<T> implements Paginated<T> {
+    // opens the source at a continuation token, null for the beginning
+    private final Function<String, Paginated<T>> open;
+
+    // counts the entries, or null to count by reading to the end
+    private final LongSupplier counter;
+
+    // remember the start of every stride-th page
+    private final int stride;
+
+    // page number to the token at its start
+    private final TreeMap<Integer, String> index;
+
+    // entries per page
+    private int perPage;
+
+    // the open source, or null
+    private Paginated<T> cursor;
+
+    // the page the cursor returns next
+    private int cursorPage;
+
+    // the page nextPage() returns
+    private int next;
+
+    // whether the source supports continuation tokens
+    private boolean tokens;
+
+    // the total size once it has been counted, -1 before
+    private long size;
+
+    // whether a page has been returned
+    private boolean started;
+
+    /**
+     * Create a new IndexedPaginated.
+     *
+     * @param open Opens the source from a continuation token, or from the
+     * beginning if the token is null - for example {@link
+     * GenericDAO#fetchAll(String)}. Every source it opens must return the
+     * same entries in the same order.
+     * @param counter Counts the entries, e.g. with an aggregate query (see
+     * {@link GenericDAO#aggregate(Query)}), or null to count them by reading
+     * to the end once.
+     * @param perPage The number of entries per page.
+     * @param stride Remember the start of every stride-th page. Lower
+     * values make jumps cheaper and use more memory.
+     * @throws IllegalArgumentException if open is null, or perPage or stride
+     * is not positive.
+     */
+    public IndexedPaginated(Function<String, Paginated<T>> open,
+            LongSupplier counter, int perPage, int stride) {
+        if (open == null) {
+            throw new IllegalArgumentException("open cannot be null");
+        } else if (perPage <= 0 || stride <= 0) {
+            throw new IllegalArgumentException("perPage and stride must be "
+                    + "positive");
+        }
+        this.open = open;
+        this.counter = counter;
+        this.perPage = perPage;
+        this.stride = stride;
+        this.index = new TreeMap<>();
+        index.put(0, null);
+        tokens = true;
+        size = -1;
+    }
+
+    @Override
+    public void setEntriesPerPage(int x) {
+        if (started) {
+            throw new IllegalStateException("Cannot change the page size "
+                    + "after the first page was fetched.");
+        } else if (x <= 0) {
+            throw new IllegalArgumentException("x must be positive");
+        }
+        perPage = x;
+        // pages that were remembered start somewhere else now
+        cursor = null;
+        index.clear();
+        index.put(0, null);
+    }
+
+    @Override
+    public boolean hasNextPage() {
+        seek(next);
+        return cursor.hasNextPage();
+    }
+
+    @Override
+    public List<T> nextPage() {
+        return page(next);
+    }
+
+    @Override
+    public List<T> page(int n) {
+        if (n < 0) {
+            throw new IllegalArgumentException("n cannot be negative");
+        }
+        seek(n);
+        if (!cursor.hasNextPage()) {
+            throw new NoSuchElementException();
+        }
+        started = true;
+        next = n + 1;
+        return read();
+    }
+
+    @Override
+    public int pageCount() {
+        return (int) ((totalSize() + perPage - 1) / perPage);
+    }
+
+    @Override
+    public long totalSize() {
+        if (counter != null) {
+            return counter.getAsLong();
+        } else if (size < 0) {
+            // read to the end from the furthest known position
+            seek(Math.max(index.lastKey(), cursor == null ? 0 : cursorPage));
+            long n = (long) cursorPage * perPage;
+            while (cursor.hasNextPage()) {
+                n += read().size();
+            }
+            size = n;
+        }
+        return size;
+    }
+
+    /**
+     * @return the number of pages whose start is remembered.
+     */
+    public int indexedPages() {
+        return index.size();
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * This is the token of the source after the last page returned by
+     * {@link #nextPage()} or {@link #page(int)}.
+     */
+    @Override
+    public String getContinuationToken() {
+        seek(next);
+        return cursor.getContinuationToken();
+    }
+
+    // position the cursor so that the next page it returns is page n
+    private void seek(int n) {
+        Map.Entry<Integer, String> e = index.floorEntry(n);
+        if (cursor == null || cursorPage > n || e.getKey() > cursorPage) {
+            cursor = open.apply(e.getValue());
+            cursor.setEntriesPerPage(perPage);
+            cursorPage = e.getKey();
+        }
+        while (cursorPage < n && cursor.hasNextPage()) {
+            read();
+        }
+    }
+
+    // read the cursor's next page, remembering where it started
+    private List<T> read() {
+        if (tokens && cursorPage % stride == 0
+                && !index.containsKey(cursorPage)) {
+            try {
+                index.put(cursorPage, cursor.getContinuationToken());
+            } catch (UnsupportedOperationException e) {
+                tokens = false;
+            }
+        }
+        List<T> page = cursor.nextPage();
+        ++cursorPage;
+        return page;
+    }
+}
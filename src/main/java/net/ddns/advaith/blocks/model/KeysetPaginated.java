@@ -0,0 +1,212 @@
+/*
+ * This file is part of Blocks.
+ * 
+ * Blocks is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * Blocks is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with Blocks. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.ddns.advaith.blocks.model;
+
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * A Paginated that fetches each page by seeking past the key of the last
+ * element of the previous one, instead of counting rows from the start. Every
+ * page costs the same no matter how deep into the results it is, and the
+ * position can be saved as a continuation token at any time and resumed from
+ * later - even by another process - in constant time.
+ *
+ * The backend only has to answer "the first n elements after this key", e.g.
+ * with {@code WHERE (deadline, id) > (?, ?) ORDER BY deadline, id LIMIT ?}
+ * (see {@link net.ddns.advaith.blocks.store.Sql#after(String, TaskKey, int,
+ * List)}).
+ *
+ * Pages are either all the same size, or sized one at a time by a {@link
+ * PageSizer} from how long the previous ones took and how big they were.
+ *
+ * @param <T> The object this Paginated returns a list of
+ * @since 0.1.0
+ * @author Advaith Menon
+ */
+public final class KeysetPaginated<T> implements Paginated<T> {
+    /**
+     * Fetches a page of elements in key order.
+     *
+     * @param <T> The element type.
+     * @since 0.1.0
+     */
+    @FunctionalInterface
+    public interface Seek<T> {
+        /**
+         * Get the first elements after a key.
+         *
+         * @param token The token of the last element already seen, or null
+         * to start from the beginning.
+         * @param limit The maximum number of elements to return.
+         * @return Up to limit elements, in key order. Fewer than limit
+         * elements (including none) means there are no more.
+         * @throws IllegalArgumentException if the token is malformed.
+         * @throws DAOException if the backend fails.
+         */
+        List<T> after(String token, int limit);
+    }
+
+    // fetches pages
+    private final Seek<T> seek;
+
+    // the token of an element
+    private final Function<T, String> tokenOf;
+
+    // entries per page, unless sized adaptively
+    private int perPage;
+
+    // sizes pages adaptively; null for a fixed size
+    private PageSizer sizer;
+
+    // the bytes of an element, for the sizer
+    private final ToLongFunction<? super T> bytesOf;
+
+    // the token of the last element returned, null if none yet
+    private String token;
+
+    // the next page, if it has been fetched already
+    private List<T> next;
+
+    // whether the backend has run out
+    private boolean exhausted;
+
+    // whether nextPage() has been called
+    private boolean started;
+
+    /**
+     * Create a new KeysetPaginated.
+     *
+     * @param seek Fetches pages.
+     * @param tokenOf Turns an element into the token of its key.
+     * @param perPage The number of entries per page.
+     * @param token The continuation token to resume from, or null to start
+     * from the beginning.
+     * @throws IllegalArgumentException if seek or tokenOf is null, or
+     * perPage is not positive.
+     */
+    public KeysetPaginated(Seek<T> seek, Function<T, String> tokenOf,
+            int perPage, String token) {
+        if (seek == null || tokenOf == null) {
+            throw new IllegalArgumentException("seek and tokenOf cannot be "
+                    + "null.");
+        } else if (perPage <= 0) {
+            throw new IllegalArgumentException("perPage must be positive");
+        }
+        this.seek = seek;
+        this.tokenOf = tokenOf;
+        this.perPage = perPage;
+        this.token = token;
+        this.sizer = null;
+        this.bytesOf = null;
+    }
+
+    /**
+     * Create a new KeysetPaginated whose pages are sized adaptively.
+     *
+     * @param seek Fetches pages.
+     * @param tokenOf Turns an element into the token of its key.
+     * @param sizer Sizes the pages, and learns from each one fetched.
+     * @param bytesOf Estimates the bytes an element holds, e.g. {@link
+     * PageSizer#bytesOf(Task)}.
+     * @param token The continuation token to resume from, or null to start
+     * from the beginning.
+     * @throws IllegalArgumentException if anything but the token is null.
+     */
+    public KeysetPaginated(Seek<T> seek, Function<T, String> tokenOf,
+            PageSizer sizer, ToLongFunction<? super T> bytesOf,
+            String token) {
+        if (seek == null || tokenOf == null || sizer == null
+                || bytesOf == null) {
+            throw new IllegalArgumentException("seek, tokenOf, sizer and "
+                    + "bytesOf cannot be null.");
+        }
+        this.seek = seek;
+        this.tokenOf = tokenOf;
+        this.perPage = sizer.next();
+        this.token = token;
+        this.sizer = sizer;
+        this.bytesOf = bytesOf;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * This also turns adaptive sizing off.
+     */
+    @Override
+    public void setEntriesPerPage(int x) {
+        if (started) {
+            throw new IllegalStateException("Cannot change the page size "
+                    + "after the first page was fetched.");
+        } else if (x <= 0) {
+            throw new IllegalArgumentException("x must be positive");
+        }
+        perPage = x;
+        sizer = null;
+    }
+
+    @Override
+    public boolean hasNextPage() {
+        if (next == null && !exhausted) {
+            int n = sizer == null ? perPage : sizer.next();
+            long start = System.nanoTime();
+            List<T> page = seek.after(token, n);
+            if (sizer != null) {
+                long bytes = 0;
+                for (T t: page) {
+                    bytes += bytesOf.applyAsLong(t);
+                }
+                sizer.record(n, page.size(), System.nanoTime() - start,
+                        bytes);
+            }
+            if (page.isEmpty()) {
+                exhausted = true;
+            } else {
+                next = page;
+                exhausted = page.size() < n;
+            }
+        }
+        return next != null;
+    }
+
+    @Override
+    public List<T> nextPage() {
+        if (!hasNextPage()) {
+            throw new NoSuchElementException();
+        }
+        started = true;
+        List<T> page = next;
+        next = null;
+        token = tokenOf.apply(page.get(page.size() - 1));
+        return page;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Pages fetched ahead of time by {@link #hasNextPage()} do not count as
+     * seen.
+     */
+    @Override
+    public String getContinuationToken() {
+        return token;
+    }
+}
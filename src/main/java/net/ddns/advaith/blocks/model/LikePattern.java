@@ -0,0 +1,133 @@
+/*
+ * This file is part of Blocks.
+ *
+ * Blocks is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Blocks is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with Blocks. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.ddns.advaith.blocks.model;
+
+import java.util.Locale;
+
+/**
+ * A compiled pattern for the {@link Query.Operator#LIKE} operator. The
+ * semantics follow SQL: {@code %} matches any run of characters (including
+ * none), {@code _} matches exactly one character, and everything else matches
+ * itself. Like SQLite, matching ignores case. There is no escape character,
+ * so a literal % or _ cannot be matched.
+ *
+ * @since 0.1.0
+ * @author Advaith Menon
+ */
+public final class LikePattern {
+    /**
+     * Matches any run of characters.
+     */
+    public static final char ANY = '%';
+
+    /**
+     * Matches any single character.
+     */
+    public static final char ONE = '_';
+
+    // the pattern as given
+    private final String pattern;
+
+    // the pattern in lower case, which is what we match with
+    private final String folded;
+
+    private LikePattern(String pattern) {
+        this.pattern = pattern;
+        this.folded = pattern.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Compile a LIKE pattern.
+     *
+     * @param pattern The pattern.
+     * @return The compiled pattern.
+     * @throws IllegalArgumentException if pattern is null.
+     */
+    public static LikePattern compile(String pattern) {
+        if (pattern == null) {
+            throw new IllegalArgumentException("pattern cannot be null");
+        }
+        return new LikePattern(pattern);
+    }
+
+    /**
+     * Build a pattern that matches any text containing a string.
+     *
+     * @param s The string to look for. It must not contain % or _.
+     * @return The pattern %s%.
+     * @throws IllegalArgumentException if s is null.
+     */
+    public static LikePattern contains(String s) {
+        if (s == null) {
+            throw new IllegalArgumentException("s cannot be null");
+        }
+        return new LikePattern(ANY + s + ANY);
+    }
+
+    /**
+     * @return the pattern, as it was given.
+     */
+    public String getPattern() {
+        return pattern;
+    }
+
+    /**
+     * Check if some text matches this pattern.
+     *
+     * @param text The text. SQL NULL never matches, and neither does null.
+     * @return true if the whole text matches.
+     */
+    public boolean matches(String text) {
+        if (text == null) {
+            return false;
+        }
+        String t = text.toLowerCase(Locale.ROOT);
+        String p = folded;
+
+        // the usual wildcard walk: remember the last % and where we were in
+        // the text when we saw it, and backtrack there on a mismatch
+        int ti = 0;
+        int pi = 0;
+        int star = -1;
+        int mark = 0;
+        while (ti < t.length()) {
+            if (pi < p.length() && p.charAt(pi) != ANY
+                    && (p.charAt(pi) == ONE || p.charAt(pi) == t.charAt(ti))) {
+                ++ti;
+                ++pi;
+            } else if (pi < p.length() && p.charAt(pi) == ANY) {
+                star = pi++;
+                mark = ti;
+            } else if (star >= 0) {
+                pi = star + 1;
+                ti = ++mark;
+            } else {
+                return false;
+            }
+        }
+        while (pi < p.length() && p.charAt(pi) == ANY) {
+            ++pi;
+        }
+        return pi == p.length();
+    }
+
+    @Override
+    public String toString() {
+        return pattern;
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * This file is part of Blocks.
+ *
+ * Blocks is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Blocks is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with Blocks. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.ddns.advaith.blocks.model;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * A Paginated over a list that is already in memory. Pages are views of the
+ * list, so nothing is copied. Useful for results that are small by nature,
+ * like a lookup by ID, or for DAOs that keep everything in memory anyway.
+ *
+ * @param <T> The object this Paginated returns a list of
+ * @since 0.1.0
+ * @author Advaith Menon
+ */
+public final class ListPaginated<T> implements Paginated<T> {
+    // the backing list
+    private final List<T> list;
+
+    // entries per page
+    private int perPage;
+
+    // start of the next page
+    private int pos;
+
+    // whether nextPage() has been called
+    private boolean started;
+
+    /**
+     * Create a new ListPaginated.
+     *
+     * @param list The list to paginate. It should not be modified while this
+     * object is in use.
+     * @param perPage The number of entries per page.
+     * @throws IllegalArgumentException if list is null or perPage is not
+     * positive.
+     */
+    public ListPaginated(List<T> list, int perPage) {
+        if (list == null) {
+            throw new IllegalArgumentException("list cannot be null");
+        } else if (perPage <= 0) {
+            throw new IllegalArgumentException("perPage must be positive");
+        }
+        this.list = list;
+        this.perPage = perPage;
+    }
+
+    /**
+     * @param <T> The element type.
+     * @return an empty Paginated, with no pages at all.
+     */
+    public static <T> ListPaginated<T> empty() {
+        return new ListPaginated<>(Collections.emptyList(), 1);
+    }
+
+    @Override
+    public void setEntriesPerPage(int x) {
+        if (started) {
+            throw new IllegalStateException("Cannot change the page size "
+                    + "after the first page was fetched.");
+        } else if (x <= 0) {
+            throw new IllegalArgumentException("x must be positive");
+        }
+        perPage = x;
+    }
+
+    @Override
+    public boolean hasNextPage() {
+        return pos < list.size();
+    }
+
+    @Override
+    public List<T> nextPage() {
+        if (!hasNextPage()) {
+            throw new NoSuchElementException();
+        }
+        started = true;
+        int end = Math.min(pos + perPage, list.size());
+        List<T> page = list.subList(pos, end);
+        pos = end;
+        return page;
+    }
+
+    @Override
+    public List<T> page(int n) {
+        if (n < 0) {
+            throw new IllegalArgumentException("n cannot be negative");
+        } else if (n >= pageCount()) {
+            throw new NoSuchElementException();
+        }
+        pos = n * perPage;
+        return nextPage();
+    }
+
+    @Override
+    public int pageCount() {
+        return (int) (((long) list.size() + perPage - 1) / perPage);
+    }
+
+    @Override
+    public long totalSize() {
+        return list.size();
+    }
+}
@@ -0,0 +1,274 @@
+/*
+ * This file is part of Blocks.
+ * 
+ * Blocks is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * Blocks is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with Blocks. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.ddns.advaith.blocks.model;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Merges several Paginated results into one, lazily, e.g. the results of the
+ * same query on several shards. If every source is sorted, so is the result.
+ *
+ * The sources are opened and read in parallel on an executor: every source
+ * has its first page fetched as soon as the first page of the result is
+ * needed, and the next page of a source is fetched in the background while
+ * the current one is being merged. At most two pages per source are held in
+ * memory, however long the sources are.
+ *
+ * @param <T> The object this Paginated returns a list of
+ * @since 0.1.0
+ * @author Advaith Menon
+ */
+public final class MergedPaginated<T> implements Paginated<T> {
+    /**
+     * A source being merged.
+     */
+    private final class Source {
+        // opens the source
+        private final Supplier<? extends Paginated<T>> opener;
+
+        // the source, once opened
+        private Paginated<T> paginated;
+
+        // the page being merged
+        private List<T> page;
+
+        // the position in page
+        private int pos;
+
+        // the next page, being fetched
+        private CompletableFuture<List<T>> pending;
+
+        Source(Supplier<? extends Paginated<T>> opener) {
+            this.opener = opener;
+        }
+
+        T head() {
+            return page.get(pos);
+        }
+
+        void fetch() {
+            pending = CompletableFuture.supplyAsync(() -> {
+                if (paginated == null) {
+                    paginated = opener.get();
+                }
+                return paginated.hasNextPage() ? paginated.nextPage() : null;
+            }, executor);
+        }
+
+        // wait for the next page; false if the source is exhausted
+        boolean advance() {
+            List<T> next = await();
+            // a source may return an empty page before its last one
+            while (next != null && next.isEmpty()) {
+                fetch();
+                next = await();
+            }
+            if (next == null) {
+                return false;
+            }
+            page = next;
+            pos = 0;
+            fetch();
+            return true;
+        }
+
+        private List<T> await() {
+            try {
+                return pending.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw new DAOException("Could not fetch a page.",
+                        e.getCause());
+            } finally {
+                pending = null;
+            }
+        }
+    }
+
+    // the sources
+    private final List<Source> sources;
+
+    // the sources with a head, smallest head first
+    private final PriorityQueue<Source> heap;
+
+    // opens and reads the sources
+    private final Executor executor;
+
+    // the number of merged elements to skip
+    private final long skip;
+
+    // the most elements to return, -1 for no limit
+    private final long limit;
+
+    // the token of an element, or null if tokens are not supported
+    private final Function<T, String> tokenOf;
+
+    // entries per page
+    private int perPage;
+
+    // the number of elements returned or skipped
+    private long taken;
+
+    // the token of the last element returned
+    private String token;
+
+    // whether the first pages have been fetched
+    private boolean started;
+
+    /**
+     * Create a new MergedPaginated.
+     *
+     * @param sources Opens each source. They are called on the executor.
+     * @param order The order of the elements. Each source must return its
+     * elements in this order for the result to be in it.
+     * @param executor Opens and reads the sources.
+     * @param perPage The number of entries per page.
+     * @throws IllegalArgumentException if anything is null or perPage is not
+     * positive.
+     */
+    public MergedPaginated(List<? extends Supplier<? extends Paginated<T>>>
+            sources, Comparator<? super T> order, Executor executor,
+            int perPage) {
+        this(sources, order, executor, perPage, 0, -1, null, null);
+    }
+
+    /**
+     * Create a new MergedPaginated that only returns a slice of the merged
+     * elements, and supports continuation tokens.
+     *
+     * @param sources Opens each source. They are called on the executor.
+     * @param order The order of the elements. Each source must return its
+     * elements in this order for the result to be in it.
+     * @param executor Opens and reads the sources.
+     * @param perPage The number of entries per page.
+     * @param skip The number of merged elements to skip, like an OFFSET.
+     * @param limit The most elements to return, or -1 for no limit.
+     * @param tokenOf Gives the continuation token of an element, or null if
+     * tokens are not supported.
+     * @param token The token the sources were opened from, or null.
+     * @throws IllegalArgumentException if sources, order or executor is null,
+     * perPage is not positive, skip is negative or limit is less than -1.
+     */
+    public MergedPaginated(List<? extends Supplier<? extends Paginated<T>>>
+            sources, Comparator<? super T> order, Executor executor,
+            int perPage, long skip, long limit, Function<T, String> tokenOf,
+            String token) {
+        if (sources == null || order == null || executor == null) {
+            throw new IllegalArgumentException("sources, order and executor "
+                    + "cannot be null");
+        } else if (perPage <= 0) {
+            throw new IllegalArgumentException("perPage must be positive");
+        } else if (skip < 0 || limit < -1) {
+            throw new IllegalArgumentException("Invalid slice.");
+        }
+        this.sources = new ArrayList<>(sources.size());
+        for (Supplier<? extends Paginated<T>> s: sources) {
+            this.sources.add(new Source(s));
+        }
+        this.heap = new PriorityQueue<>(Math.max(1, sources.size()),
+                (a, b) -> order.compare(a.head(), b.head()));
+        this.executor = executor;
+        this.perPage = perPage;
+        this.skip = skip;
+        this.limit = limit;
+        this.tokenOf = tokenOf;
+        this.token = token;
+    }
+
+    @Override
+    public void setEntriesPerPage(int x) {
+        if (taken > skip) {
+            throw new IllegalStateException("Cannot change the page size "
+                    + "after the first page was fetched.");
+        } else if (x <= 0) {
+            throw new IllegalArgumentException("x must be positive");
+        }
+        perPage = x;
+    }
+
+    @Override
+    public boolean hasNextPage() {
+        start();
+        while (taken < skip && !heap.isEmpty()) {
+            take();
+        }
+        return !heap.isEmpty() && (limit < 0 || taken - skip < limit);
+    }
+
+    @Override
+    public List<T> nextPage() {
+        if (!hasNextPage()) {
+            throw new NoSuchElementException();
+        }
+        List<T> out = new ArrayList<>(perPage);
+        while (out.size() < perPage && hasNextPage()) {
+            T t = take();
+            out.add(t);
+            if (tokenOf != null) {
+                token = tokenOf.apply(t);
+            }
+        }
+        return out;
+    }
+
+    @Override
+    public String getContinuationToken() {
+        if (tokenOf == null) {
+            throw new UnsupportedOperationException();
+        }
+        return token;
+    }
+
+    // fetch the first page of every source, in parallel
+    private void start() {
+        if (started) {
+            return;
+        }
+        started = true;
+        for (Source s: sources) {
+            s.fetch();
+        }
+        for (Source s: sources) {
+            if (s.advance()) {
+                heap.add(s);
+            }
+        }
+    }
+
+    // remove the smallest head
+    private T take() {
+        Source s = heap.poll();
+        T t = s.head();
+        ++taken;
+        if (++s.pos < s.page.size() || s.advance()) {
+            heap.add(s);
+        }
+        return t;
+    }
+}
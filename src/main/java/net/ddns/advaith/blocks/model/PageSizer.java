@@ -0,0 +1,338 @@
+/*
+ * This file is part of Blocks.
+ * 
+ * Blocks is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * Blocks is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with Blocks. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package net.ddns.advaith.blocks.model;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.time.format.DateTimeParseException;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.ddns.advaith.blocks.config.ConfigManager;
+
+/**
+ * Picks the size of each page from how the previous ones went. Small pages
+ * waste round trips on slow backends, and large ones hold a lot of memory
+ * when tasks have long details, so no single number suits every backend.
+ *
+ * Starting from the configured page size, every page fetched is recorded
+ * with the time it took and the bytes it holds. From smoothed per-row
+ * figures, the next page is sized so that it takes about the target
+ * latency and holds at most the target bytes, but never more than twice or
+ * less than half the previous size, and always within the configured
+ * bounds. A backend with a fixed cost per page settles on the size where
+ * that cost and the per-row cost add up to the target.
+ *
+ * One PageSizer can be shared by every Paginated of a DAO, so that each walk
+ * starts where the last one left off. See {@link KeysetPaginated} for one
+ * that uses it. The sizes chosen can be published over JMX, see {@link
+ * PageSizerMXBean}.
+ *
+ * @since 0.1.0
+ * @author Advaith Menon
+ */
+public final class PageSizer implements PageSizerMXBean {
+    // Logger
+    private static final Logger LOGGER = LoggerFactory.getLogger(
+            PageSizer.class);
+
+    /**
+     * The configuration key for the number of entries per page, and the
+     * size of the first page of an adaptive one.
+     */
+    public static final String PER_PAGE_KEY =
+        "net.ddns.advaith.blocks.paging.perPage";
+
+    /**
+     * The configuration key for the smallest adaptive page.
+     */
+    public static final String MIN_KEY = "net.ddns.advaith.blocks.paging.min";
+
+    /**
+     * The configuration key for the largest adaptive page.
+     */
+    public static final String MAX_KEY = "net.ddns.advaith.blocks.paging.max";
+
+    /**
+     * The configuration key for how long fetching a page should take, as an
+     * ISO-8601 duration, e.g. PT0.05S.
+     */
+    public static final String LATENCY_KEY =
+        "net.ddns.advaith.blocks.paging.targetLatency";
+
+    /**
+     * The configuration key for the most bytes a page should hold.
+     */
+    public static final String BYTES_KEY =
+        "net.ddns.advaith.blocks.paging.targetBytes";
+
+    /**
+     * The number of entries per page if none is configured.
+     */
+    public static final int DEFAULT_PER_PAGE = 50;
+
+    /**
+     * The domain of the published beans.
+     */
+    public static final String DOMAIN = "net.ddns.advaith.blocks";
+
+    // how much of each new figure goes into the smoothed one
+    private static final double WEIGHT = 0.3;
+
+    // the bounds and the targets
+    private final int min;
+    private final int max;
+    private final long targetNanos;
+    private final long targetBytes;
+
+    // the size of the next page
+    private int size;
+
+    // the range of sizes chosen
+    private int smallest;
+    private int largest;
+
+    // the totals
+    private long pages;
+    private long rows;
+
+    // smoothed nanoseconds and bytes per row; 0 until the first page
+    private double rowNanos;
+    private double rowBytes;
+
+    /**
+     * Create a new PageSizer.
+     *
+     * @param initial The size of the first page.
+     * @param min The smallest page.
+     * @param max The largest page.
+     * @param targetLatency How long fetching a page should take.
+     * @param targetBytes The most bytes a page should hold.
+     * @throws IllegalArgumentException if min is not positive, initial is
+     * not between min and max, or a target is not positive.
+     */
+    public PageSizer(int initial, int min, int max, Duration targetLatency,
+            long targetBytes) {
+        if (min <= 0 || initial < min || initial > max) {
+            throw new IllegalArgumentException("Need 0 < min <= initial <= "
+                    + "max");
+        } else if (targetLatency == null || targetLatency.isNegative()
+                || targetLatency.isZero() || targetBytes <= 0) {
+            throw new IllegalArgumentException("Targets must be positive");
+        }
+        this.min = min;
+        this.max = max;
+        this.targetNanos = targetLatency.toNanos();
+        this.targetBytes = targetBytes;
+        this.size = initial;
+        this.smallest = initial;
+        this.largest = initial;
+    }
+
+    /**
+     * Read the settings from the configuration. Missing or malformed values
+     * are left at their defaults: 50 to start, between 10 and 1000 per
+     * page, 50 ms and 256 KiB per page. Malformed ones are logged.
+     *
+     * @param config The configuration.
+     * @return A new PageSizer.
+     */
+    public static PageSizer fromConfig(ConfigManager config) {
+        int initial = intProperty(config, PER_PAGE_KEY, DEFAULT_PER_PAGE);
+        int min = Math.min(intProperty(config, MIN_KEY, 10), initial);
+        int max = Math.max(intProperty(config, MAX_KEY, 1000), initial);
+        Duration latency = Duration.ofMillis(50);
+        String s = config.getProperty(LATENCY_KEY);
+        try {
+            if (s != null) {
+                Duration d = Duration.parse(s);
+                if (d.isNegative() || d.isZero()) {
+                    throw new IllegalArgumentException();
+                }
+                latency = d;
+            }
+        } catch (DateTimeParseException | IllegalArgumentException e) {
+            LOGGER.warn("Ignoring malformed {}", LATENCY_KEY);
+        }
+        long bytes = 256 * 1024;
+        s = config.getProperty(BYTES_KEY);
+        try {
+            if (s != null) {
+                long b = Long.parseLong(s);
+                if (b <= 0) {
+                    throw new IllegalArgumentException();
+                }
+                bytes = b;
+            }
+        } catch (IllegalArgumentException e) {
+            LOGGER.warn("Ignoring malformed {}", BYTES_KEY);
+        }
+        return new PageSizer(initial, min, max, latency, bytes);
+    }
+
+    /**
+     * Get the configured number of entries per page. Paginated
+     * implementations and DAO factories should start from this instead of
+     * a number of their own.
+     *
+     * @return The value of {@link #PER_PAGE_KEY}, or {@link
+     * #DEFAULT_PER_PAGE} if it is missing or malformed.
+     */
+    public static int defaultPerPage() {
+        return intProperty(ConfigManager.getInstance(), PER_PAGE_KEY,
+                DEFAULT_PER_PAGE);
+    }
+
+    /**
+     * @return the size to fetch the next page with.
+     */
+    public synchronized int next() {
+        return size;
+    }
+
+    /**
+     * Record a page that was fetched, and size the next one from it.
+     *
+     * @param requested The size it was fetched with.
+     * @param fetched The number of rows it had.
+     * @param nanos How long fetching it took.
+     * @param bytes The bytes it holds; see {@link #bytesOf(Task)}.
+     */
+    public synchronized void record(int requested, int fetched, long nanos,
+            long bytes) {
+        ++pages;
+        rows += fetched;
+        if (fetched <= 0) {
+            return;
+        }
+        double n = (double) nanos / fetched;
+        double b = (double) bytes / fetched;
+        rowNanos = rowNanos == 0 ? n : rowNanos + WEIGHT * (n - rowNanos);
+        rowBytes = rowBytes == 0 ? b : rowBytes + WEIGHT * (b - rowBytes);
+        double ideal = Math.min(targetNanos / Math.max(rowNanos, 1),
+                targetBytes / Math.max(rowBytes, 1));
+        // a short last page says nothing about how big pages could be
+        double cap = fetched < requested ? Math.max(size, requested)
+            : requested * 2.0;
+        double next = Math.max(requested / 2.0, Math.min(cap, ideal));
+        size = (int) Math.max(min, Math.min(max, Math.round(next)));
+        smallest = Math.min(smallest, size);
+        largest = Math.max(largest, size);
+    }
+
+    /**
+     * Publish this PageSizer over JMX, on the platform MBean server.
+     * Failures are logged, not thrown.
+     *
+     * @param name The name to publish it under, e.g. the DAO it sizes
+     * pages for.
+     * @return The name of the bean, or null if it could not be published.
+     */
+    public ObjectName publish(String name) {
+        try {
+            ObjectName o = new ObjectName(DOMAIN + ":type=PageSizer,name="
+                    + ObjectName.quote(name));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, o);
+            return o;
+        } catch (JMException e) {
+            LOGGER.warn("Could not publish the page sizes of {}", name, e);
+            return null;
+        }
+    }
+
+    /**
+     * Estimate the bytes a task holds: its strings, plus a fixed amount for
+     * the object, its deadline and its numbers.
+     *
+     * @param t The task.
+     * @return The estimate.
+     */
+    public static long bytesOf(Task t) {
+        String details = t.getDetails();
+        return 128 + 2L * (t.getTitle().length()
+                + (details == null ? 0 : details.length()));
+    }
+
+    @Override
+    public synchronized int getPageSize() {
+        return size;
+    }
+
+    @Override
+    public synchronized int getSmallestPageSize() {
+        return smallest;
+    }
+
+    @Override
+    public synchronized int getLargestPageSize() {
+        return largest;
+    }
+
+    @Override
+    public synchronized long getPages() {
+        return pages;
+    }
+
+    @Override
+    public synchronized long getRows() {
+        return rows;
+    }
+
+    @Override
+    public synchronized double getRowLatency() {
+        return rowNanos / 1000;
+    }
+
+    @Override
+    public synchronized double getRowBytes() {
+        return rowBytes;
+    }
+
+    @Override
+    public long getTargetLatency() {
+        return targetNanos / 1_000_000;
+    }
+
+    @Override
+    public long getTargetBytes() {
+        return targetBytes;
+    }
+
+    private static int intProperty(ConfigManager config, String key,
+            int fallback) {
+        String s = config.getProperty(key);
+        if (s == null) {
+            return fallback;
+        }
+        try {
+            int x = Integer.parseInt(s.trim());
+            if (x > 0) {
+                return x;
+            }
+        } catch (NumberFormatException e) {
+            // logged below
+        }
+        LOGGER.warn("Ignoring malformed {}", key);
+        return fallback;
+    }
+}
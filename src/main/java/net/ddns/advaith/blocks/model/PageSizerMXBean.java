@@ -0,0 +1,73 @@
+/*
+ * This file is part of Blocks.
+ * 
+ * Blocks is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * Blocks is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with Blocks. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package net.ddns.advaith.blocks.model;
+
+/**
+ * The page sizes a {@link PageSizer} has chosen, as seen over JMX under
+ * {@code net.ddns.advaith.blocks:type=PageSizer,name=<name>}.
+ *
+ * @since 0.1.0
+ * @author Advaith Menon
+ */
+public interface PageSizerMXBean {
+    /**
+     * @return the size the next page will be fetched with.
+     */
+    int getPageSize();
+
+    /**
+     * @return the smallest page size chosen so far.
+     */
+    int getSmallestPageSize();
+
+    /**
+     * @return the largest page size chosen so far.
+     */
+    int getLargestPageSize();
+
+    /**
+     * @return the number of pages fetched.
+     */
+    long getPages();
+
+    /**
+     * @return the number of rows fetched.
+     */
+    long getRows();
+
+    /**
+     * @return the smoothed time to fetch one row, in microseconds.
+     */
+    double getRowLatency();
+
+    /**
+     * @return the smoothed size of one row, in bytes.
+     */
+    double getRowBytes();
+
+    /**
+     * @return the time a page should take, in milliseconds.
+     */
+    long getTargetLatency();
+
+    /**
+     * @return the most bytes a page should hold.
+     */
+    long getTargetBytes();
+}
@@ -26,7 +26,7 @@ import java.util.Iterator;
  * create some sort of wrapper interface around it. One good reason why this
  * might be a good idea is that if one is displaying a paginated result set in a
  * GUI, this will make it easy rather than having to iterate n times and then
- * retrieve the pages.
+ * retrieve the pages - see {@link #page(int)}.
  *
  * This class still implements the Iterator, though it is not recommended.
  * @since 0.1.0
@@ -41,8 +41,10 @@ public interface Paginated<T> extends Iterable {
      * instead.
      *
      * <b>Note:</b> If you are writing an implementation, be sure to take the
-     * defaut value of this class from (TODO: fill the class name here) with the
-     * key (TODO:fill the key here). DO NOT HARDCODE A DEFAULT VALUE!
+     * default value from {@link PageSizer#defaultPerPage()}, which reads the
+     * key {@link PageSizer#PER_PAGE_KEY}. DO NOT HARDCODE A DEFAULT VALUE!
+     * Implementations that fetch pages from a slow backend can size them
+     * adaptively with a {@link PageSizer} instead.
      *
      * @param x The number of entries per page
      */
@@ -60,6 +62,60 @@ public interface Paginated<T> extends Iterable {
      */
     List<T> nextPage();
 
+    /**
+     * Jump to a page. The next call to {@link #nextPage()} returns the page
+     * after it. Like nextPage(), this locks {@link #setEntriesPerPage(int)}.
+     *
+     * Backends that can seek cheaply should implement this natively. Others
+     * can be wrapped in an {@link IndexedPaginated}, which remembers where
+     * pages start as they are visited. This method is optional to implement.
+     *
+     * @param n The page number, starting from 0.
+     * @return The page.
+     * @throws IllegalArgumentException if n is negative.
+     * @throws java.util.NoSuchElementException if there is no such page.
+     * @throws UnsupportedOperationException by default.
+     */
+    default List<T> page(int n) {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * @return the number of pages. This method is optional to implement.
+     * @throws UnsupportedOperationException by default.
+     */
+    default int pageCount() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * @return the number of entries over all pages. This method is optional
+     * to implement.
+     * @throws UnsupportedOperationException by default.
+     */
+    default long totalSize() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Get an opaque token for the position after the last page returned by
+     * {@link #nextPage()}. The DAO that created this Paginated can reopen it
+     * from the token (see {@link GenericDAO#fetchAll(String)}), and carries on
+     * right after the last element seen, without reading or skipping the
+     * ones before it. This allows long jobs to checkpoint and resume.
+     *
+     * Tokens are based on the key of the last element (see {@link TaskKey}),
+     * not on its index, so they stay valid while elements are added or
+     * removed. This method is optional to implement.
+     *
+     * @return The token, or null if no page has been returned yet and this
+     * Paginated started from the beginning.
+     * @throws UnsupportedOperationException by default.
+     */
+    default String getContinuationToken() {
+        throw new UnsupportedOperationException();
+    }
+
     @Override
     default Iterator<T> iterator() {
         return new PageIterator<T>(this);
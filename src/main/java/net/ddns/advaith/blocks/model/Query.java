@@ -17,8 +17,14 @@
 
 package net.ddns.advaith.blocks.model;
 
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.LinkedList;
+import java.util.Objects;
 
 /**
  * This class is used to build queries. While this need not be a SQL query in
@@ -72,6 +78,152 @@ public class Query {
         DELETE
     }
 
+    /**
+     * The direction of an ORDER BY term.
+     *
+     * @since 0.1.0
+     */
+    public static enum Order {
+        ASC,
+        DESC
+    }
+
+    /**
+     * The aggregate functions supported in an aggregate query.
+     *
+     * @since 0.1.0
+     */
+    public static enum Function {
+        COUNT,
+        MIN,
+        MAX
+    }
+
+    /**
+     * An aggregate function applied to a field, e.g. {@code MIN(deadline)}.
+     * Obtained from {@link Query#count()}, {@link Query#count(Field)}, {@link
+     * Query#min(Field)} and {@link Query#max(Field)}. As in SQL, null values
+     * are ignored, except by {@code COUNT(*)}.
+     *
+     * @param <T> The Java type of the result.
+     * @since 0.1.0
+     */
+    public static final class Aggregate<T> {
+        private final Function function;
+        private final Field<?> field;
+
+        private Aggregate(Function function, Field<?> field) {
+            this.function = function;
+            this.field = field;
+        }
+
+        /**
+         * @return The aggregate function.
+         */
+        public Function getFunction() {
+            return function;
+        }
+
+        /**
+         * @return The field it is applied to, or null for {@code COUNT(*)}.
+         */
+        public Field<?> getField() {
+            return field;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Aggregate)) {
+                return false;
+            }
+            Aggregate<?> a = (Aggregate<?>) o;
+            return function == a.function && Objects.equals(field, a.field);
+        }
+
+        @Override
+        public int hashCode() {
+            return function.hashCode() * 31 + Objects.hashCode(field);
+        }
+
+        @Override
+        public String toString() {
+            return function + "(" + (field == null ? "*" : field) + ")";
+        }
+    }
+
+    /**
+     * Used to represent the GROUP BY clause of an aggregate query. Rows are
+     * either grouped by the value of a field, or, for deadlines, by the day
+     * they fall on in a time zone.
+     *
+     * @since 0.1.0
+     */
+    public static final class GroupBy {
+        private final Field<?> field;
+        private final ZoneId zone;
+
+        private GroupBy(Field<?> field, ZoneId zone) {
+            this.field = field;
+            this.zone = zone;
+        }
+
+        /**
+         * @return The field to group by.
+         */
+        public Field<?> getField() {
+            return field;
+        }
+
+        /**
+         * @return The time zone whose days rows are grouped by, or null if
+         * rows are grouped by the value of the field itself.
+         */
+        public ZoneId getZone() {
+            return zone;
+        }
+
+        /**
+         * @return true if rows are grouped by day.
+         */
+        public boolean isByDay() {
+            return zone != null;
+        }
+    }
+
+    /**
+     * Used to represent a single term of an ORDER BY clause.
+     *
+     * @since 0.1.0
+     */
+    public static final class OrderBy {
+        private final Field<?> field;
+        private final Order order;
+
+        private OrderBy(Field<?> field, Order order) {
+            this.field = field;
+            this.order = order;
+        }
+
+        /**
+         * @return The field to sort by.
+         */
+        public Field<?> getField() {
+            return field;
+        }
+
+        /**
+         * @return The direction to sort in.
+         */
+        public Order getOrder() {
+            return order;
+        }
+
+        @Override
+        public String toString() {
+            return field + " " + order;
+        }
+    }
+
     /**
      * Used to represent a WHERE clause in a friendly manner.
      *
@@ -122,7 +274,14 @@ public class Query {
         }
     }
 
-    static final class WhereBuilder<T> {
+    /**
+     * Builds a single condition of a WHERE clause. Obtained from {@link
+     * QueryBuilder#where(Field)}.
+     *
+     * @param <T> The Java type of the field.
+     * @since 0.1.0
+     */
+    public static final class WhereBuilder<T> {
         private Field<T> field;
 
         // the private QueryBuilder object
@@ -146,7 +305,7 @@ public class Query {
          * @param value The value to compare the field to.
          * @return the querybuilder object supplied during construction.
          */
-        private WhereBuilder is(Operator operator, T value) {
+        private WhereBuilder is(Operator operator, Object value) {
             if (where != null) {
                 throw new IllegalStateException("Already set condition - method"
                         + " can only be called once. Use logical operators to "
@@ -226,6 +385,22 @@ public class Query {
             return is(Operator.LIKE, value);
         }
 
+        /**
+         * Represents the IN operator. The field has to equal one of the
+         * values.
+         *
+         * @param values The values to compare the field to. They are copied.
+         * @return the querybuilder object supplied during construction.
+         * @throws IllegalArgumentException if values is null.
+         */
+        public WhereBuilder in(Collection<? extends T> values) {
+            if (values == null) {
+                throw new IllegalArgumentException("values cannot be null");
+            }
+            return is(Operator.IN, Collections.unmodifiableList(
+                        new ArrayList<>(values)));
+        }
+
         /**
          * Chains any logical operator to the previous condition, and returns
          * the query builder.
@@ -273,7 +448,12 @@ public class Query {
         }
     }
 
-    static class QueryBuilder {
+    /**
+     * Builds a {@link Query}. Obtained from {@link Query#select()}.
+     *
+     * @since 0.1.0
+     */
+    public static class QueryBuilder {
         // The query type
         private Type type;
 
@@ -283,9 +463,31 @@ public class Query {
         // The list of where clauses
         private List<Where> where;
 
+        // The fields to return, empty for all of them
+        private List<Field<?>> fields;
+
+        // The ORDER BY terms, most significant first
+        private List<OrderBy> orderBy;
+
+        // The maximum number of results, -1 for no limit
+        private int limit;
+
+        // The number of results to skip
+        private int offset;
+
+        // The aggregates to compute, empty if this is not an aggregate query
+        private List<Aggregate<?>> aggregates;
+
+        // The GROUP BY clause, or null
+        private GroupBy groupBy;
+
         private QueryBuilder(Type type) {
             this.type = type;
             where = new LinkedList<>();
+            fields = new ArrayList<>();
+            orderBy = new ArrayList<>();
+            limit = -1;
+            aggregates = new ArrayList<>();
         }
 
         /**
@@ -315,6 +517,187 @@ public class Query {
             wb.setQueryBuilder(this);
             return wb;
         }
+
+        /**
+         * Set the fields the query returns, replacing any set before.
+         *
+         * @param fields The fields to return, in order. If none are given,
+         * every field is returned.
+         * @return The QueryBuilder object.
+         * @throws IllegalArgumentException if any field is null or given
+         * twice.
+         */
+        public QueryBuilder fields(Field<?>... fields) {
+            List<Field<?>> out = new ArrayList<>(fields.length);
+            for (Field<?> f: fields) {
+                if (f == null) {
+                    throw new IllegalArgumentException("fields cannot "
+                            + "contain null.");
+                } else if (out.contains(f)) {
+                    throw new IllegalArgumentException("Field " + f
+                            + " selected twice.");
+                }
+                out.add(f);
+            }
+            this.fields = out;
+            return this;
+        }
+
+        /**
+         * Sort the results by a field, in ascending order. Can be called
+         * several times; the first call gives the most significant term.
+         *
+         * @param field The field to sort by.
+         * @return The QueryBuilder object.
+         * @throws IllegalArgumentException if field is null.
+         */
+        public QueryBuilder orderBy(Field<?> field) {
+            return orderBy(field, Order.ASC);
+        }
+
+        /**
+         * Sort the results by a field. Can be called several times; the first
+         * call gives the most significant term. Null values come first in
+         * ascending order, as in SQLite.
+         *
+         * @param field The field to sort by.
+         * @param order The direction to sort in.
+         * @return The QueryBuilder object.
+         * @throws IllegalArgumentException if field or order is null.
+         */
+        public QueryBuilder orderBy(Field<?> field, Order order) {
+            if (field == null || order == null) {
+                throw new IllegalArgumentException("field and order cannot "
+                        + "be null.");
+            }
+            orderBy.add(new OrderBy(field, order));
+            return this;
+        }
+
+        /**
+         * Return at most a number of results.
+         *
+         * @param limit The maximum number of results.
+         * @return The QueryBuilder object.
+         * @throws IllegalArgumentException if limit is negative.
+         */
+        public QueryBuilder limit(int limit) {
+            if (limit < 0) {
+                throw new IllegalArgumentException("limit cannot be "
+                        + "negative.");
+            }
+            this.limit = limit;
+            return this;
+        }
+
+        /**
+         * Skip a number of results before returning any. Without an ORDER BY,
+         * which results are skipped is up to the storage backend.
+         *
+         * @param offset The number of results to skip.
+         * @return The QueryBuilder object.
+         * @throws IllegalArgumentException if offset is negative.
+         */
+        public QueryBuilder offset(int offset) {
+            if (offset < 0) {
+                throw new IllegalArgumentException("offset cannot be "
+                        + "negative.");
+            }
+            this.offset = offset;
+            return this;
+        }
+
+        /**
+         * Turn this into an aggregate query, which returns one {@link Group}
+         * per group instead of the matching rows. See {@link
+         * GenericDAO#aggregate(Query)}.
+         *
+         * @param aggregates The aggregates to compute, in order.
+         * @return The QueryBuilder object.
+         * @throws IllegalArgumentException if no aggregates are given, or
+         * any is null.
+         */
+        public QueryBuilder aggregate(Aggregate<?>... aggregates) {
+            if (aggregates.length == 0) {
+                throw new IllegalArgumentException("At least one aggregate "
+                        + "is needed.");
+            }
+            for (Aggregate<?> a: aggregates) {
+                if (a == null) {
+                    throw new IllegalArgumentException("aggregates cannot "
+                            + "contain null.");
+                }
+                this.aggregates.add(a);
+            }
+            return this;
+        }
+
+        /**
+         * Group the rows of an aggregate query by the value of a field.
+         *
+         * @param field The field to group by.
+         * @return The QueryBuilder object.
+         * @throws IllegalArgumentException if field is null.
+         */
+        public QueryBuilder groupBy(Field<?> field) {
+            if (field == null) {
+                throw new IllegalArgumentException("field cannot be null.");
+            }
+            groupBy = new GroupBy(field, null);
+            return this;
+        }
+
+        /**
+         * Group the rows of an aggregate query by the day a date-time field
+         * falls on. The key of each {@link Group} is then a {@link
+         * java.time.LocalDate}.
+         *
+         * @param field The field to group by.
+         * @param zone The time zone that decides where days start and end.
+         * @return The QueryBuilder object.
+         * @throws IllegalArgumentException if field or zone is null.
+         */
+        public QueryBuilder groupByDay(Field<ZonedDateTime> field,
+                ZoneId zone) {
+            if (field == null || zone == null) {
+                throw new IllegalArgumentException("field and zone cannot be "
+                        + "null.");
+            }
+            groupBy = new GroupBy(field, zone);
+            return this;
+        }
+
+        /**
+         * Create the Query.
+         *
+         * @return A new Query with everything set on this builder so far.
+         * @throws IllegalStateException if the last condition was chained
+         * with AND or OR, but no condition followed, or if a GROUP BY or
+         * selected fields are combined with the wrong kind of query.
+         */
+        public Query build() {
+            if (!where.isEmpty() && where.get(where.size() - 1)
+                    .getNextLogicalOperator() != null) {
+                throw new IllegalStateException("Dangling logical operator at"
+                        + " the end of the WHERE clause.");
+            } else if (groupBy != null && aggregates.isEmpty()) {
+                throw new IllegalStateException("GROUP BY needs at least one "
+                        + "aggregate.");
+            } else if (!aggregates.isEmpty() && !fields.isEmpty()) {
+                throw new IllegalStateException("An aggregate query cannot "
+                        + "select fields.");
+            }
+            Query q = new Query(type);
+            q.table = table;
+            q.where = new ArrayList<>(where);
+            q.fields = List.copyOf(fields);
+            q.orderBy = List.copyOf(orderBy);
+            q.limit = limit;
+            q.offset = offset;
+            q.aggregates = List.copyOf(aggregates);
+            q.groupBy = groupBy;
+            return q;
+        }
     }
 
     // Fields
@@ -328,11 +711,33 @@ public class Query {
     // The list of where clauses
     private List<Where> where;
 
+    // The fields to return, empty for all of them
+    private List<Field<?>> fields;
+
+    // The ORDER BY terms, most significant first
+    private List<OrderBy> orderBy;
+
+    // The maximum number of results, -1 for no limit
+    private int limit;
+
+    // The number of results to skip
+    private int offset;
+
+    // The aggregates to compute, empty if this is not an aggregate query
+    private List<Aggregate<?>> aggregates;
+
+    // The GROUP BY clause, or null
+    private GroupBy groupBy;
+
 
     // Create a query
     private Query(Type type) {
         this.type = type;
         where = new LinkedList<>();
+        fields = List.of();
+        orderBy = List.of();
+        limit = -1;
+        aggregates = List.of();
     }
 
     /**
@@ -343,5 +748,172 @@ public class Query {
     public static final QueryBuilder select() {
         return new QueryBuilder(Type.SELECT);
     }
+
+    /**
+     * Create a SELECT query that only returns some fields, without specifying
+     * a table. Storage backends that support it only read and transfer these
+     * fields; see {@link GenericDAO#select(Query)}.
+     *
+     * @param fields The fields to return, in order. If none are given, every
+     * field is returned.
+     * @return a new Query object.
+     * @throws IllegalArgumentException if any field is null or given twice.
+     */
+    public static final QueryBuilder select(Field<?>... fields) {
+        return new QueryBuilder(Type.SELECT).fields(fields);
+    }
+
+    /**
+     * {@code COUNT(*)}: the number of rows.
+     *
+     * @return The aggregate.
+     */
+    public static Aggregate<Long> count() {
+        return new Aggregate<>(Function.COUNT, null);
+    }
+
+    /**
+     * {@code COUNT(field)}: the number of rows where a field is not null.
+     *
+     * @param field The field.
+     * @return The aggregate.
+     * @throws IllegalArgumentException if field is null.
+     */
+    public static Aggregate<Long> count(Field<?> field) {
+        return new Aggregate<>(Function.COUNT, requireField(field));
+    }
+
+    /**
+     * {@code MIN(field)}: the smallest value of a field, or null if there
+     * are no rows.
+     *
+     * @param <T> The Java type of the field.
+     * @param field The field.
+     * @return The aggregate.
+     * @throws IllegalArgumentException if field is null.
+     */
+    public static <T> Aggregate<T> min(Field<T> field) {
+        return new Aggregate<>(Function.MIN, requireField(field));
+    }
+
+    /**
+     * {@code MAX(field)}: the largest value of a field, or null if there
+     * are no rows.
+     *
+     * @param <T> The Java type of the field.
+     * @param field The field.
+     * @return The aggregate.
+     * @throws IllegalArgumentException if field is null.
+     */
+    public static <T> Aggregate<T> max(Field<T> field) {
+        return new Aggregate<>(Function.MAX, requireField(field));
+    }
+
+    private static Field<?> requireField(Field<?> field) {
+        if (field == null) {
+            throw new IllegalArgumentException("field cannot be null.");
+        }
+        return field;
+    }
+
+    /**
+     * Create a builder with everything set on this query, e.g. to run a
+     * variation of it.
+     *
+     * @return a new QueryBuilder.
+     */
+    public QueryBuilder toBuilder() {
+        QueryBuilder qb = new QueryBuilder(type);
+        qb.table = table;
+        qb.where.addAll(where);
+        qb.fields = new ArrayList<>(fields);
+        qb.orderBy.addAll(orderBy);
+        qb.limit = limit;
+        qb.offset = offset;
+        qb.aggregates.addAll(aggregates);
+        qb.groupBy = groupBy;
+        return qb;
+    }
+
+    /**
+     * @return the type of this query.
+     */
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * @return the table this query is performed on, or null if none was
+     * specified.
+     */
+    public String getTable() {
+        return table;
+    }
+
+    /**
+     * Get the conditions of the WHERE clause, in order. Each condition is
+     * combined with the next one using its {@link
+     * Where#getNextLogicalOperator()}; the last one has none. AND and OR are
+     * applied strictly left to right, there is no precedence.
+     *
+     * @return An unmodifiable list of the conditions, empty if there is no
+     * WHERE clause.
+     */
+    public List<Where> getWhere() {
+        return Collections.unmodifiableList(where);
+    }
+
+    /**
+     * @return the fields this query returns, in order. An empty list means
+     * every field.
+     */
+    public List<Field<?>> getFields() {
+        return fields;
+    }
+
+    /**
+     * @return the ORDER BY terms, most significant first. Empty if the order
+     * of the results does not matter.
+     */
+    public List<OrderBy> getOrderBy() {
+        return orderBy;
+    }
+
+    /**
+     * @return the maximum number of results, or -1 if there is no limit.
+     */
+    public int getLimit() {
+        return limit;
+    }
+
+    /**
+     * @return the number of results to skip before returning any.
+     */
+    public int getOffset() {
+        return offset;
+    }
+
+    /**
+     * @return the aggregates to compute, in order. Empty if this is not an
+     * aggregate query.
+     */
+    public List<Aggregate<?>> getAggregates() {
+        return aggregates;
+    }
+
+    /**
+     * @return true if this is an aggregate query.
+     */
+    public boolean isAggregate() {
+        return !aggregates.isEmpty();
+    }
+
+    /**
+     * @return the GROUP BY clause, or null if an aggregate query returns a
+     * single group.
+     */
+    public GroupBy getGroupBy() {
+        return groupBy;
+    }
 }
 // TODO: implement it
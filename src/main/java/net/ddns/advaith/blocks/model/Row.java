@@ -0,0 +1,108 @@
+/*
+ * This file is part of Blocks.
+ * 
+ * Blocks is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * Blocks is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with Blocks. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.ddns.advaith.blocks.model;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A single result of a query that only selected some fields (see {@link
+ * Query#select(Field...)}). Unlike a {@link Task}, a Row only holds the
+ * fields that were asked for, so storage backends do not have to read or
+ * transfer the rest.
+ *
+ * @since 0.1.0
+ * @author Advaith Menon
+ */
+public final class Row {
+    // the fields, in the order they were selected
+    private final List<Field<?>> fields;
+
+    // the value of each field, at the same index
+    private final Object[] values;
+
+    /**
+     * Create a new Row.
+     *
+     * @param fields The selected fields.
+     * @param values The value of each field, in the same order. Null values
+     * are allowed.
+     * @throws IllegalArgumentException if fields or values is null, or their
+     * lengths differ.
+     */
+    public Row(List<Field<?>> fields, Object... values) {
+        if (fields == null || values == null) {
+            throw new IllegalArgumentException("fields and values cannot be "
+                    + "null.");
+        } else if (fields.size() != values.length) {
+            throw new IllegalArgumentException("Expected " + fields.size()
+                    + " values, got " + values.length + ".");
+        }
+        this.fields = List.copyOf(fields);
+        this.values = values.clone();
+    }
+
+    /**
+     * @return the fields of this row, in the order they were selected.
+     */
+    public List<Field<?>> getFields() {
+        return fields;
+    }
+
+    /**
+     * Get the value of a field.
+     *
+     * @param <T> The Java type of the field.
+     * @param field The field.
+     * @return The value, which may be null.
+     * @throws IllegalArgumentException if the field was not selected.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(Field<T> field) {
+        int i = fields.indexOf(field);
+        if (i < 0) {
+            throw new IllegalArgumentException("Field " + field + " was not "
+                    + "selected.");
+        }
+        return (T) values[i];
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof Row)) {
+            return false;
+        }
+        Row r = (Row) o;
+        return fields.equals(r.fields) && Arrays.equals(values, r.values);
+    }
+
+    @Override
+    public int hashCode() {
+        return fields.hashCode() * 31 + Arrays.hashCode(values);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder b = new StringBuilder("Row[");
+        for (int i = 0; i < values.length; ++i) {
+            b.append(i == 0 ? "" : ", ").append(fields.get(i).getName())
+                .append('=').append(values[i]);
+        }
+        return b.append(']').toString();
+    }
+}
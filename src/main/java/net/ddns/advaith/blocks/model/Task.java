@@ -53,6 +53,34 @@ public class Task {
      */
     public static final int DEADLINE = 3;
 
+    /**
+     * The name of the table tasks are stored in, as used by {@link Query}.
+     */
+    public static final String TABLE = "tasks";
+
+    /**
+     * Field for the ID, for use in a {@link Query}.
+     */
+    public static final Field<Long> ID_FIELD = new Field<>("id", TABLE);
+
+    /**
+     * Field for the title, for use in a {@link Query}.
+     */
+    public static final Field<String> TITLE_FIELD = new Field<>("title",
+            TABLE);
+
+    /**
+     * Field for the details, for use in a {@link Query}.
+     */
+    public static final Field<String> DETAILS_FIELD = new Field<>("details",
+            TABLE);
+
+    /**
+     * Field for the deadline, for use in a {@link Query}.
+     */
+    public static final Field<ZonedDateTime> DEADLINE_FIELD = new Field<>(
+            "deadline", TABLE);
+
     // Properties
 
     /**
@@ -76,6 +104,12 @@ public class Task {
      */
     private ZonedDateTime deadline;
 
+    /**
+     * The version of the task, as stored. Goes up by one every time the
+     * stored task is updated.
+     */
+    private long version = -1;
+
     /**
      * A zero-argument constructor, only to be used when inheriting. This can
      * make creating constructors with fewer arguments possible in an inherited
@@ -101,6 +135,95 @@ public class Task {
         setDeadline(deadline);
     }
 
+    /**
+     * Recreate a task that has already been stored. This behaves like the 4
+     * argument constructor, except that the deadline may be in the past - a
+     * task that was valid when it was stored could have become overdue since,
+     * and storage backends must still be able to hand it back.
+     *
+     * @param id The unique ID of the task, in the range [-1, Long.MAX_VALUE].
+     * @param title The title of the task.
+     * @param details The details of the task.
+     * @param deadline The deadline of the task. Cannot be null.
+     * @return The recreated task.
+     * @throws IllegalArgumentException if any of the values are invalid.
+     */
+    public static Task restore(long id, String title, String details,
+            ZonedDateTime deadline) {
+        if (deadline == null) {
+            throw new IllegalArgumentException("Deadline cannot be null.");
+        }
+        Task t = new Task();
+        t.setID(id);
+        t.setTitle(title);
+        t.setDetails(details);
+        t.deadline = deadline;
+        return t;
+    }
+
+    /**
+     * Recreate a task that has already been stored, along with its version.
+     * See {@link #restore(long, String, String, ZonedDateTime)}.
+     *
+     * @param id The unique ID of the task, in the range [-1, Long.MAX_VALUE].
+     * @param title The title of the task.
+     * @param details The details of the task.
+     * @param deadline The deadline of the task. Cannot be null.
+     * @param version The version of the task, in the range [-1,
+     * Long.MAX_VALUE].
+     * @return The recreated task.
+     * @throws IllegalArgumentException if any of the values are invalid.
+     */
+    public static Task restore(long id, String title, String details,
+            ZonedDateTime deadline, long version) {
+        Task t = restore(id, title, details, deadline);
+        t.setVersion(version);
+        return t;
+    }
+
+    /**
+     * Get the column identifier for a field, for use with {@link
+     * GenericDAO#fetchEquals(int, java.lang.Object)}.
+     *
+     * @param field One of the *_FIELD constants of this class.
+     * @return The column identifier, e.g. {@link #TITLE}.
+     * @throws IllegalArgumentException if the field is not a Task field.
+     */
+    public static int columnOf(Field<?> field) {
+        if (ID_FIELD.equals(field)) {
+            return ID;
+        } else if (TITLE_FIELD.equals(field)) {
+            return TITLE;
+        } else if (DETAILS_FIELD.equals(field)) {
+            return DETAILS;
+        } else if (DEADLINE_FIELD.equals(field)) {
+            return DEADLINE;
+        }
+        throw new IllegalArgumentException("Not a Task field: " + field);
+    }
+
+    /**
+     * Get the value of a field of this task.
+     *
+     * @param <T> The Java type of the field.
+     * @param field One of the *_FIELD constants of this class.
+     * @return The value. Only the details may be null.
+     * @throws IllegalArgumentException if the field is not a Task field.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(Field<T> field) {
+        switch (columnOf(field)) {
+            case ID:
+                return (T) Long.valueOf(getID());
+            case TITLE:
+                return (T) getTitle();
+            case DETAILS:
+                return (T) getDetails();
+            default:
+                return (T) getDeadline();
+        }
+    }
+
     /**
      * @return the ID of this task, -1 denotes it's yet to be assigned i.e not
      * stored yet or deleted.
@@ -124,6 +247,37 @@ public class Task {
         this.id = id;
     }
 
+    /**
+     * @return the version of this task when it was read from or written to
+     * a DAO, -1 denotes it's not known i.e not stored yet, or made without
+     * reading it back.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Set the version of this task. DAOs use this for optimistic concurrency
+     * control: {@link GenericDAO#update(Object)} and {@link
+     * GenericDAO#delete(Object)} only go through if the stored task still has
+     * this version, and throw a {@link ConflictException} otherwise. A
+     * version of -1 skips the check, and the last write wins.
+     *
+     * DAOs set the version of the tasks they hand out and of the tasks they
+     * add and update, so callers rarely need to call this.
+     *
+     * @param version The version of this task, in the range [-1,
+     * Long.MAX_VALUE].
+     * @throws IllegalArgumentException if the version is less than -1.
+     */
+    public void setVersion(long version) {
+        if (version < -1) {
+            throw new IllegalArgumentException("Version cannot be less than "
+                    + "-1.");
+        }
+        this.version = version;
+    }
+
     /**
      * @return the title of this task.
      * @throws NoSuchElementException if the title is null. This only happens if
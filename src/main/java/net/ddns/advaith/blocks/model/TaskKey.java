@@ -0,0 +1,161 @@
+/*
+ * This file is part of Blocks.
+ * 
+ * Blocks is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * Blocks is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with Blocks. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.ddns.advaith.blocks.model;
+
+import java.nio.ByteBuffer;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Comparator;
+
+/**
+ * The position of a task in keyset order: by deadline, then by ID. Since IDs
+ * are unique, no two tasks have the same key, so "everything after this key"
+ * is well defined even while tasks are added and removed. This is what makes
+ * continuation tokens (see {@link Paginated#getContinuationToken()}) work:
+ * resuming only needs the key of the last task that was seen, and a backend
+ * with an index on (deadline, id) can seek to it directly, instead of
+ * skipping over everything before it like an OFFSET does.
+ *
+ * Deadlines are compared by the instant they refer to, not by their zone.
+ *
+ * @since 0.1.0
+ * @author Advaith Menon
+ */
+public final class TaskKey implements Comparable<TaskKey> {
+    /**
+     * Orders tasks by their key.
+     */
+    public static final Comparator<Task> ORDER = (a, b) -> of(a)
+        .compareTo(of(b));
+
+    // the version of the token format
+    private static final byte VERSION = 1;
+
+    // the deadline
+    private final Instant deadline;
+
+    // the ID
+    private final long id;
+
+    /**
+     * Create a new TaskKey.
+     *
+     * @param deadline The deadline.
+     * @param id The ID, at least 0.
+     * @throws IllegalArgumentException if deadline is null or id is
+     * negative.
+     */
+    public TaskKey(Instant deadline, long id) {
+        if (deadline == null) {
+            throw new IllegalArgumentException("deadline cannot be null.");
+        } else if (id < 0) {
+            throw new IllegalArgumentException("id cannot be negative.");
+        }
+        this.deadline = deadline;
+        this.id = id;
+    }
+
+    /**
+     * Get the key of a task.
+     *
+     * @param task The task. It must have an ID.
+     * @return The key.
+     * @throws IllegalArgumentException if the task has no ID.
+     */
+    public static TaskKey of(Task task) {
+        return new TaskKey(task.getDeadline().toInstant(), task.getID());
+    }
+
+    /**
+     * @return the deadline.
+     */
+    public Instant getDeadline() {
+        return deadline;
+    }
+
+    /**
+     * @return the ID.
+     */
+    public long getID() {
+        return id;
+    }
+
+    /**
+     * @return this key as an opaque, URL safe token.
+     */
+    public String toToken() {
+        ByteBuffer b = ByteBuffer.allocate(21);
+        b.put(VERSION).putLong(deadline.getEpochSecond())
+            .putInt(deadline.getNano()).putLong(id);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(
+                b.array());
+    }
+
+    /**
+     * Read a key back from a token made by {@link #toToken()}.
+     *
+     * @param token The token.
+     * @return The key.
+     * @throws IllegalArgumentException if the token is null or malformed.
+     */
+    public static TaskKey parse(String token) {
+        if (token == null) {
+            throw new IllegalArgumentException("token cannot be null.");
+        }
+        try {
+            byte[] bytes = Base64.getUrlDecoder().decode(token);
+            if (bytes.length != 21 || bytes[0] != VERSION) {
+                throw new IllegalArgumentException("Not a task token: "
+                        + token);
+            }
+            ByteBuffer b = ByteBuffer.wrap(bytes, 1, 20);
+            Instant deadline = Instant.ofEpochSecond(b.getLong(),
+                    b.getInt());
+            return new TaskKey(deadline, b.getLong());
+        } catch (DateTimeException e) {
+            throw new IllegalArgumentException("Not a task token: " + token,
+                    e);
+        }
+    }
+
+    @Override
+    public int compareTo(TaskKey o) {
+        int c = deadline.compareTo(o.deadline);
+        return c != 0 ? c : Long.compare(id, o.id);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof TaskKey)) {
+            return false;
+        }
+        TaskKey k = (TaskKey) o;
+        return id == k.id && deadline.equals(k.deadline);
+    }
+
+    @Override
+    public int hashCode() {
+        return deadline.hashCode() * 31 + Long.hashCode(id);
+    }
+
+    @Override
+    public String toString() {
+        return "TaskKey[deadline=" + deadline + ", id=" + id + "]";
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * This file is part of Blocks.
+ * 
+ * Blocks is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * Blocks is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with Blocks. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package net.ddns.advaith.blocks.plugin;
+
+import java.util.List;
+import java.util.concurrent.Flow;
+
+import net.ddns.advaith.blocks.model.Change;
+import net.ddns.advaith.blocks.model.GenericDAO;
+import net.ddns.advaith.blocks.model.Group;
+import net.ddns.advaith.blocks.model.Paginated;
+import net.ddns.advaith.blocks.model.Query;
+import net.ddns.advaith.blocks.model.Row;
+
+/**
+ * A plugin's DAO, with every call, and every page of every result, counted
+ * towards the plugin by a {@link PluginAccounting}. Pages are read lazily,
+ * long after the call that returned them, so they are counted one by one.
+ *
+ * @since 0.1.0
+ * @author Advaith Menon
+ * @param <T> The type of the items.
+ */
+final class AccountedDAO<T> implements GenericDAO<T> {
+    private final PluginAccounting accounting;
+    private final PluginUsage usage;
+    private final GenericDAO<T> dao;
+
+    AccountedDAO(PluginAccounting accounting, PluginUsage usage,
+            GenericDAO<T> dao) {
+        this.accounting = accounting;
+        this.usage = usage;
+        this.dao = dao;
+    }
+
+    @Override
+    public void add(T item) {
+        accounting.run(usage, () -> dao.add(item));
+    }
+
+    @Override
+    public void addAll(List<T> items) {
+        accounting.run(usage, () -> dao.addAll(items));
+    }
+
+    @Override
+    public void update(T item) {
+        accounting.run(usage, () -> dao.update(item));
+    }
+
+    @Override
+    public void delete(T item) {
+        accounting.run(usage, () -> dao.delete(item));
+    }
+
+    @Override
+    public void delete(long id) {
+        accounting.run(usage, () -> dao.delete(id));
+    }
+
+    @Override
+    public Paginated<T> fetchAll() {
+        return wrap(accounting.call(usage, dao::fetchAll));
+    }
+
+    @Override
+    public Paginated<T> fetchAll(String token) {
+        return wrap(accounting.call(usage, () -> dao.fetchAll(token)));
+    }
+
+    @Override
+    public Paginated<T> fetchEquals(int column, Object target) {
+        return wrap(accounting.call(usage, () -> dao.fetchEquals(column,
+                        target)));
+    }
+
+    @Override
+    public Paginated<T> query(Query query) {
+        return wrap(accounting.call(usage, () -> dao.query(query)));
+    }
+
+    @Override
+    public Paginated<Row> select(Query query) {
+        return wrap(accounting.call(usage, () -> dao.select(query)));
+    }
+
+    @Override
+    public List<Group> aggregate(Query query) {
+        return accounting.call(usage, () -> dao.aggregate(query));
+    }
+
+    @Override
+    public Flow.Publisher<Change<T>> changes() {
+        return accounting.call(usage, dao::changes);
+    }
+
+    private <E> Paginated<E> wrap(Paginated<E> p) {
+        return p == null ? null : new Pages<>(p);
+    }
+
+    // a result, read a page at a time on the plugin's account
+    private final class Pages<E> implements Paginated<E> {
+        private final Paginated<E> p;
+
+        Pages(Paginated<E> p) {
+            this.p = p;
+        }
+
+        @Override
+        public void setEntriesPerPage(int x) {
+            accounting.run(usage, () -> p.setEntriesPerPage(x));
+        }
+
+        @Override
+        public boolean hasNextPage() {
+            return accounting.call(usage, p::hasNextPage);
+        }
+
+        @Override
+        public List<E> nextPage() {
+            return accounting.call(usage, p::nextPage);
+        }
+
+        @Override
+        public List<E> page(int n) {
+            return accounting.call(usage, () -> p.page(n));
+        }
+
+        @Override
+        public int pageCount() {
+            return accounting.call(usage, p::pageCount);
+        }
+
+        @Override
+        public long totalSize() {
+            return accounting.call(usage, p::totalSize);
+        }
+
+        @Override
+        public String getContinuationToken() {
+            return accounting.call(usage, p::getContinuationToken);
+        }
+    }
+}
@@ -17,6 +17,8 @@
 
 package net.ddns.advaith.blocks.plugin;
 
+import net.ddns.advaith.blocks.model.PageSizer;
+
 /**
  * Factory for a DAOProxy object. The only useful constructor setting I could
  * think of was setting the number of entities per page, since the settings
@@ -39,6 +41,19 @@ public interface DAOFactory {
         throw new UnsupportedOperationException();
     }
 
+    /**
+     * Size the pages of the DAOs built from now on adaptively, instead of
+     * with a fixed number of elements, where they fetch pages lazily. The
+     * sizer may be shared by several DAOs, and published over JMX by the
+     * caller. This method is optional to implement.
+     *
+     * @param sizer Sizes the pages, or null to go back to a fixed size.
+     * @throws UnsupportedOperationException by default
+     */
+    default void setPageSizer(PageSizer sizer) {
+        throw new UnsupportedOperationException();
+    }
+
     /**
      * Create the new DAOProxy object.
      *
@@ -17,6 +17,9 @@
 
 package net.ddns.advaith.blocks.plugin;
 
+import java.util.concurrent.Flow;
+
+import net.ddns.advaith.blocks.model.Change;
 import net.ddns.advaith.blocks.model.GenericDAO;
 import net.ddns.advaith.blocks.model.Task;
 
@@ -34,4 +37,15 @@ public interface DAOProxy {
      * @return The Task DAO.
      */
     GenericDAO<Task> getTaskDAO();
+
+    /**
+     * Return the change feed of the Task DAO. See {@link
+     * GenericDAO#changes()}.
+     *
+     * @return The change feed.
+     * @throws UnsupportedOperationException if the Task DAO has none.
+     */
+    default Flow.Publisher<Change<Task>> getTaskChanges() {
+        return getTaskDAO().changes();
+    }
 }
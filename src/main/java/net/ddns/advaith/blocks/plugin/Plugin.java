@@ -19,6 +19,8 @@ package net.ddns.advaith.blocks.plugin;
 
 import java.util.UUID;
 
+import net.ddns.advaith.blocks.reminder.ReminderListener;
+
 /**
  * Represents a plugin's entrypoint. All plugins must have a name, version and a
  * UUID. While most other event handlers can be registered using the API, there
@@ -79,4 +81,16 @@ public interface Plugin {
      * makes no sense.
      */
     DAOFactory getDAOFactory();
+
+    /**
+     * Get the listener to tell about upcoming deadlines. It is called on the
+     * reminder thread, so it should hand anything slow off to a thread of
+     * its own.
+     *
+     * @return The listener, or null if the plugin has none, which is the
+     * default.
+     */
+    default ReminderListener getReminderListener() {
+        return null;
+    }
 }
@@ -0,0 +1,448 @@
+/*
+ * This file is part of Blocks.
+ * 
+ * Blocks is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * Blocks is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with Blocks. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package net.ddns.advaith.blocks.plugin;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.ddns.advaith.blocks.config.ConfigManager;
+import net.ddns.advaith.blocks.model.PageSizer;
+
+/**
+ * Attributes CPU time, allocated bytes and threads to plugins, publishes
+ * them over JMX (see {@link PluginUsageMXBean}) and applies {@link
+ * PluginLimits}.
+ *
+ * Work is attributed in two ways:
+ * <ul>
+ * <li>Calls into a plugin made through {@link #call(PluginUsage, Supplier)}:
+ * its hooks, its factory and, through {@link #wrap(PluginUsage,
+ * DAOFactory)}, every DAO method and every page read. The CPU time and
+ * allocation of the calling thread during the call are measured with the
+ * {@link ThreadMXBean}. A call made from inside another one counts towards
+ * the outer plugin only.</li>
+ * <li>The plugin's own threads. During a call, the context class loader of
+ * the thread is the plugin's, so every thread the plugin starts inherits
+ * it; threads whose class comes from the plugin count too. These are found
+ * and measured each time the accounting samples, so what a thread does
+ * between its last sample and its end is missed. Threads a plugin borrows
+ * from a shared pool are not its own, so their work is only counted while
+ * they run a call.</li>
+ * </ul>
+ *
+ * Plugins loaded by the application's own class loader, e.g. in tests, only
+ * have their calls counted, since their threads cannot be told apart.
+ *
+ * @since 0.1.0
+ * @author Advaith Menon
+ */
+public class PluginAccounting {
+    // Logger
+    private static final Logger LOGGER = LoggerFactory.getLogger(
+            PluginAccounting.class);
+
+    /**
+     * The JMX domain of the per-plugin beans.
+     */
+    public static final String DOMAIN = "net.ddns.advaith.blocks";
+
+    // the shortest and longest delay added to calls when throttling
+    static final long MIN_DELAY = TimeUnit.MILLISECONDS.toNanos(1);
+    static final long MAX_DELAY = TimeUnit.MILLISECONDS.toNanos(100);
+
+    // the JVM's view of threads
+    private static final ThreadMXBean THREADS =
+        ManagementFactory.getThreadMXBean();
+
+    // the same, where allocation can be measured; null otherwise
+    private static final com.sun.management.ThreadMXBean ALLOCATION;
+
+    // whether allocation is measured at all
+    static final boolean ALLOCATION_SUPPORTED;
+
+    static {
+        if (THREADS.isThreadCpuTimeSupported()
+                && !THREADS.isThreadCpuTimeEnabled()) {
+            THREADS.setThreadCpuTimeEnabled(true);
+        }
+        com.sun.management.ThreadMXBean a = null;
+        if (THREADS instanceof com.sun.management.ThreadMXBean) {
+            a = (com.sun.management.ThreadMXBean) THREADS;
+            if (!a.isThreadAllocatedMemorySupported()) {
+                a = null;
+            } else if (!a.isThreadAllocatedMemoryEnabled()) {
+                a.setThreadAllocatedMemoryEnabled(true);
+            }
+        }
+        ALLOCATION = a;
+        ALLOCATION_SUPPORTED = a != null;
+    }
+
+    // the process-wide instance
+    private static PluginAccounting instance;
+
+    // the plugins, by UUID
+    private final Map<UUID, PluginUsage> usages;
+
+    // the limits
+    private final PluginLimits limits;
+
+    // where the beans go; null for none
+    private final MBeanServer server;
+
+    // the plugin the current thread is calling into, if any
+    private final ThreadLocal<PluginUsage> current;
+
+    // when the last sample was taken
+    private long lastSample;
+
+    // runs sample() periodically, once started
+    private ScheduledExecutorService sampler;
+
+    /**
+     * Create a new PluginAccounting. It does not sample until {@link
+     * #start(Duration)} is called.
+     *
+     * @param limits The soft limits for every plugin.
+     * @param server The MBean server to publish to, or null to not publish.
+     * @throws IllegalArgumentException if limits is null.
+     */
+    public PluginAccounting(PluginLimits limits, MBeanServer server) {
+        if (limits == null) {
+            throw new IllegalArgumentException("limits cannot be null");
+        }
+        this.limits = limits;
+        this.server = server;
+        usages = new ConcurrentHashMap<>();
+        current = new ThreadLocal<>();
+        lastSample = System.nanoTime();
+    }
+
+    /**
+     * Get the process-wide PluginAccounting: limits from the {@link
+     * ConfigManager}, beans on the platform MBean server, sampling every
+     * second.
+     *
+     * @return The PluginAccounting. This is never null.
+     */
+    public static synchronized PluginAccounting getInstance() {
+        if (instance == null) {
+            instance = new PluginAccounting(PluginLimits.fromConfig(
+                        ConfigManager.getInstance()),
+                    ManagementFactory.getPlatformMBeanServer());
+            instance.start(Duration.ofSeconds(1));
+        }
+        return instance;
+    }
+
+    /**
+     * Start accounting for a loaded plugin.
+     *
+     * @param w The plugin.
+     * @return Its usage. Registering the same plugin again returns the same
+     * usage.
+     */
+    public PluginUsage register(PluginWrapper w) {
+        return register(w.getName(), w.getUUID(),
+                w.getPlugin().getClass().getClassLoader());
+    }
+
+    /**
+     * Start accounting for a plugin.
+     *
+     * @param name The name of the plugin.
+     * @param uuid The UUID of the plugin.
+     * @param loader The class loader of the plugin.
+     * @return Its usage. Registering the same UUID again returns the same
+     * usage.
+     */
+    public PluginUsage register(String name, UUID uuid, ClassLoader loader) {
+        return usages.computeIfAbsent(uuid, k -> {
+            boolean own = loader != null
+                && loader != PluginAccounting.class.getClassLoader();
+            PluginUsage u = new PluginUsage(name, uuid, own ? loader : null);
+            if (server != null) {
+                try {
+                    server.registerMBean(u, objectName(u));
+                } catch (JMException e) {
+                    LOGGER.warn("Could not publish the usage of plugin {}",
+                            name, e);
+                }
+            }
+            return u;
+        });
+    }
+
+    /**
+     * @param u A plugin's usage.
+     * @return the name of its bean.
+     */
+    public static ObjectName objectName(PluginUsage u) {
+        try {
+            return new ObjectName(DOMAIN + ":type=Plugin,name="
+                    + ObjectName.quote(u.getName() + " " + u.getUUID()));
+        } catch (JMException e) {
+            // the name is quoted, so it is always valid
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @param uuid The UUID of a plugin.
+     * @return its usage, or null if it is not registered.
+     */
+    public PluginUsage getUsage(UUID uuid) {
+        return usages.get(uuid);
+    }
+
+    /**
+     * @return the usage of every registered plugin.
+     */
+    public Collection<PluginUsage> getUsages() {
+        return Collections.unmodifiableCollection(usages.values());
+    }
+
+    /**
+     * Call into a plugin, counting what the call uses towards it. If the
+     * plugin is being throttled, the call is delayed first.
+     *
+     * @param <T> The type of the result.
+     * @param u The plugin's usage.
+     * @param work The call.
+     * @return What the call returned.
+     */
+    public <T> T call(PluginUsage u, Supplier<T> work) {
+        Thread t = Thread.currentThread();
+        ClassLoader context = t.getContextClassLoader();
+        if (current.get() != null || (u.getLoader() != null
+                    && context == u.getLoader())) {
+            // counted already, by an outer call or as the plugin's thread
+            return work.get();
+        }
+        long delay = u.getThrottleDelay();
+        if (delay > 0) {
+            long start = System.nanoTime();
+            LockSupport.parkNanos(delay);
+            u.recordThrottle(System.nanoTime() - start);
+        }
+        current.set(u);
+        if (u.getLoader() != null) {
+            t.setContextClassLoader(u.getLoader());
+        }
+        long cpu = cpuTime();
+        long allocated = allocated(t.getId());
+        try {
+            return work.get();
+        } finally {
+            u.recordCall(cpuTime() - cpu, allocated < 0 ? -1
+                    : allocated(t.getId()) - allocated);
+            t.setContextClassLoader(context);
+            current.remove();
+        }
+    }
+
+    /**
+     * Call into a plugin, like {@link #call(PluginUsage, Supplier)}.
+     *
+     * @param u The plugin's usage.
+     * @param work The call.
+     */
+    public void run(PluginUsage u, Runnable work) {
+        call(u, () -> {
+            work.run();
+            return null;
+        });
+    }
+
+    /**
+     * Wrap a plugin's factory, so that building the DAOs and every call to
+     * them and their pages is counted towards the plugin.
+     *
+     * @param u The plugin's usage.
+     * @param factory The factory.
+     * @return The wrapped factory.
+     */
+    public DAOFactory wrap(PluginUsage u, DAOFactory factory) {
+        return new DAOFactory() {
+            @Override
+            public void setNumPerPage(int x) {
+                PluginAccounting.this.run(u, () -> factory.setNumPerPage(x));
+            }
+
+            @Override
+            public void setPageSizer(PageSizer sizer) {
+                PluginAccounting.this.run(u,
+                        () -> factory.setPageSizer(sizer));
+            }
+
+            @Override
+            public DAOProxy build() {
+                DAOProxy proxy = call(u, factory::build);
+                return () -> new AccountedDAO<>(PluginAccounting.this, u,
+                        call(u, proxy::getTaskDAO));
+            }
+        };
+    }
+
+    /**
+     * Find the threads of every plugin, bring the usage up to date and
+     * apply the limits. This is called periodically once started, but can
+     * also be called directly.
+     */
+    public synchronized void sample() {
+        long now = System.nanoTime();
+        long wall = now - lastSample;
+        lastSample = now;
+
+        Map<PluginUsage, Map<Long, long[]>> owned = new HashMap<>();
+        for (PluginUsage u: usages.values()) {
+            if (u.getLoader() != null) {
+                owned.put(u, new HashMap<>());
+            }
+        }
+        if (!owned.isEmpty()) {
+            for (Thread t: liveThreads()) {
+                PluginUsage u = ownerOf(t, owned.keySet());
+                long cpu = u == null ? -1 : THREADS.getThreadCpuTime(
+                        t.getId());
+                // -1 if it has just died, or CPU time is not supported
+                if (cpu >= 0) {
+                    owned.get(u).put(t.getId(), new long[] {cpu,
+                        allocated(t.getId())});
+                }
+            }
+        }
+
+        for (PluginUsage u: usages.values()) {
+            Map<Long, long[]> threads = owned.get(u);
+            if (threads != null) {
+                u.recordThreads(threads);
+            }
+            boolean wasOver = u.isOver();
+            String broken = u.sample(wall, limits);
+            if (broken != null && !wasOver) {
+                LOGGER.warn("Plugin {} is over its soft limits: {}{}",
+                        u.getName(), broken, limits.isThrottle()
+                        ? "; throttling" : "");
+            } else if (broken == null && wasOver) {
+                LOGGER.info("Plugin {} is back within its limits",
+                        u.getName());
+            }
+        }
+    }
+
+    /**
+     * Start sampling periodically, on a daemon thread.
+     *
+     * @param interval The time between samples.
+     * @throws IllegalArgumentException if interval is not positive.
+     * @throws IllegalStateException if already started.
+     */
+    public synchronized void start(Duration interval) {
+        if (interval.isNegative() || interval.isZero()) {
+            throw new IllegalArgumentException("interval must be positive");
+        } else if (sampler != null) {
+            throw new IllegalStateException("Already started.");
+        }
+        sampler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "blocks-plugin-accounting");
+            t.setDaemon(true);
+            return t;
+        });
+        long n = interval.toNanos();
+        sampler.scheduleAtFixedRate(() -> {
+            try {
+                sample();
+            } catch (RuntimeException e) {
+                LOGGER.error("Could not sample plugin usage", e);
+            }
+        }, n, n, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Stop sampling. The usage stays published.
+     */
+    public synchronized void stop() {
+        if (sampler != null) {
+            sampler.shutdownNow();
+            sampler = null;
+        }
+    }
+
+    // the plugin a thread belongs to, if any
+    private static PluginUsage ownerOf(Thread t, Collection<PluginUsage> us) {
+        ClassLoader context = t.getContextClassLoader();
+        ClassLoader own = t.getClass().getClassLoader();
+        for (PluginUsage u: us) {
+            if (u.getLoader() == context || u.getLoader() == own) {
+                return u;
+            }
+        }
+        return null;
+    }
+
+    // every live thread
+    private static List<Thread> liveThreads() {
+        ThreadGroup root = Thread.currentThread().getThreadGroup();
+        while (root.getParent() != null) {
+            root = root.getParent();
+        }
+        Thread[] all = new Thread[root.activeCount() + 16];
+        int n;
+        while ((n = root.enumerate(all, true)) == all.length) {
+            all = new Thread[all.length * 2];
+        }
+        List<Thread> out = new ArrayList<>(n);
+        for (int i = 0; i < n; ++i) {
+            out.add(all[i]);
+        }
+        return out;
+    }
+
+    private static long cpuTime() {
+        return THREADS.isCurrentThreadCpuTimeSupported()
+            ? THREADS.getCurrentThreadCpuTime() : 0;
+    }
+
+    private static long allocated(long id) {
+        return ALLOCATION == null ? -1 : ALLOCATION.getThreadAllocatedBytes(
+                id);
+    }
+}
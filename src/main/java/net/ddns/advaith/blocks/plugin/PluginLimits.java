@@ -0,0 +1,188 @@
+/*
+ * This file is part of Blocks.
+ * 
+ * Blocks is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * Blocks is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with Blocks. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package net.ddns.advaith.blocks.plugin;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.ddns.advaith.blocks.config.ConfigManager;
+
+/**
+ * Soft limits on the resources a plugin may use, checked by {@link
+ * PluginAccounting} every time it samples. A plugin over any of them is
+ * logged, and if the action is to throttle, every call into it is delayed
+ * until it is back under. Nothing is ever killed: the limits are there to
+ * find the offender, not to enforce isolation.
+ *
+ * @since 0.1.0
+ * @author Advaith Menon
+ */
+public final class PluginLimits {
+    // Logger
+    private static final Logger LOGGER = LoggerFactory.getLogger(
+            PluginLimits.class);
+
+    /**
+     * The configuration key for the CPU limit, in cores: 0.5 is half of one
+     * core. Unset or 0 means no limit.
+     */
+    public static final String CPU_KEY =
+        "net.ddns.advaith.blocks.plugin.limits.cpu";
+
+    /**
+     * The configuration key for the allocation limit, in bytes per second.
+     * Unset or 0 means no limit.
+     */
+    public static final String ALLOCATION_KEY =
+        "net.ddns.advaith.blocks.plugin.limits.allocation";
+
+    /**
+     * The configuration key for the limit on live threads. Unset or 0 means
+     * no limit.
+     */
+    public static final String THREADS_KEY =
+        "net.ddns.advaith.blocks.plugin.limits.threads";
+
+    /**
+     * The configuration key for what to do about a plugin over its limits:
+     * "log" (the default) or "throttle".
+     */
+    public static final String ACTION_KEY =
+        "net.ddns.advaith.blocks.plugin.limits.action";
+
+    /**
+     * No limits at all.
+     */
+    public static final PluginLimits NONE = new PluginLimits(0, 0, 0, false);
+
+    private final double cpu;
+    private final long allocation;
+    private final int threads;
+    private final boolean throttle;
+
+    /**
+     * Create new PluginLimits.
+     *
+     * @param cpu The CPU limit in cores, or 0 for none.
+     * @param allocation The allocation limit in bytes per second, or 0 for
+     * none.
+     * @param threads The limit on live threads, or 0 for none.
+     * @param throttle true to throttle a plugin over its limits, false to
+     * only log it.
+     * @throws IllegalArgumentException if a limit is negative.
+     */
+    public PluginLimits(double cpu, long allocation, int threads,
+            boolean throttle) {
+        if (!(cpu >= 0) || allocation < 0 || threads < 0) {
+            throw new IllegalArgumentException("limits cannot be negative");
+        }
+        this.cpu = cpu;
+        this.allocation = allocation;
+        this.threads = threads;
+        this.throttle = throttle;
+    }
+
+    /**
+     * Read the limits from the configuration. Malformed values are logged
+     * and treated as no limit.
+     *
+     * @param config The configuration.
+     * @return The limits.
+     */
+    public static PluginLimits fromConfig(ConfigManager config) {
+        double cpu = 0;
+        long allocation = 0;
+        int threads = 0;
+        try {
+            String s = config.getProperty(CPU_KEY);
+            cpu = s == null ? 0 : Math.max(0, Double.parseDouble(s));
+        } catch (NumberFormatException e) {
+            LOGGER.warn("Ignoring malformed {}", CPU_KEY);
+        }
+        try {
+            String s = config.getProperty(ALLOCATION_KEY);
+            allocation = s == null ? 0 : Math.max(0, Long.parseLong(s));
+        } catch (NumberFormatException e) {
+            LOGGER.warn("Ignoring malformed {}", ALLOCATION_KEY);
+        }
+        try {
+            String s = config.getProperty(THREADS_KEY);
+            threads = s == null ? 0 : Math.max(0, Integer.parseInt(s));
+        } catch (NumberFormatException e) {
+            LOGGER.warn("Ignoring malformed {}", THREADS_KEY);
+        }
+        return new PluginLimits(cpu, allocation, threads,
+                "throttle".equals(config.getProperty(ACTION_KEY)));
+    }
+
+    /**
+     * @return the CPU limit in cores, or 0 for none.
+     */
+    public double getCpu() {
+        return cpu;
+    }
+
+    /**
+     * @return the allocation limit in bytes per second, or 0 for none.
+     */
+    public long getAllocation() {
+        return allocation;
+    }
+
+    /**
+     * @return the limit on live threads, or 0 for none.
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * @return true if a plugin over its limits is throttled, false if it is
+     * only logged.
+     */
+    public boolean isThrottle() {
+        return throttle;
+    }
+
+    /**
+     * Describe how a plugin's usage breaks these limits.
+     *
+     * @param cpuRate The cores used over the last interval.
+     * @param allocationRate The bytes per second allocated over the last
+     * interval.
+     * @param liveThreads The live threads.
+     * @return A description, or null if the usage is within the limits.
+     */
+    String check(double cpuRate, double allocationRate, int liveThreads) {
+        StringBuilder sb = new StringBuilder();
+        if (cpu > 0 && cpuRate > cpu) {
+            sb.append(String.format("CPU %.2f of %.2f cores; ", cpuRate,
+                        cpu));
+        }
+        if (allocation > 0 && allocationRate > allocation) {
+            sb.append(String.format("allocation %.0f of %d bytes/s; ",
+                        allocationRate, allocation));
+        }
+        if (threads > 0 && liveThreads > threads) {
+            sb.append("threads ").append(liveThreads).append(" of ")
+                .append(threads).append("; ");
+        }
+        return sb.length() == 0 ? null : sb.substring(0, sb.length() - 2);
+    }
+}
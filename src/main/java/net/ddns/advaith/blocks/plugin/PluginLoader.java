@@ -30,6 +30,9 @@ import java.net.URISyntaxException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Map;
 import java.util.List;
 import java.util.HashMap;
@@ -72,25 +75,43 @@ public class PluginLoader {
     public static PluginLoader getInstance() {
         if (instance == null) {
             instance = new PluginLoader();
-            Path primary;
-            try {
-                primary = new File(PluginLoader.class
-                        .getProtectionDomain().getCodeSource().getLocation()
-                        .toURI()).getParentFile().toPath();
-            } catch (URISyntaxException e) {
-                LOGGER.error("Could not get primary directory", e);
-                throw new NullPointerException("Could not create instance");
-            }
-            instance.loadPluginsFromDirectory(primary.resolve("plugins"), true);
-            String pluginsDir = ConfigManager.getInstance().getProperty(
-                    "net.ddns.advaith.blocks.pluginsDir");
-            if (pluginsDir != null) {
-                instance.loadPluginsFromDirectory(Paths.get(pluginsDir), true);
+            for (Path dir: pluginDirectories()) {
+                instance.loadPluginsFromDirectory(dir, true);
             }
         }
         return instance;
     }
 
+    /**
+     * Get the directories {@link #getInstance()} loads plugins from: {@code
+     * $INSTALLDIR/plugins}, and the configuration property {@code
+     * net.ddns.advaith.blocks.pluginsDir}, if it exists. The directories
+     * need not exist.
+     *
+     * @return The directories, in the order they are loaded.
+     * @throws NullPointerException if the installation directory could not
+     * be worked out.
+     */
+    public static List<Path> pluginDirectories() {
+        List<Path> out = new ArrayList<>(2);
+        Path primary;
+        try {
+            primary = new File(PluginLoader.class
+                    .getProtectionDomain().getCodeSource().getLocation()
+                    .toURI()).getParentFile().toPath();
+        } catch (URISyntaxException e) {
+            LOGGER.error("Could not get primary directory", e);
+            throw new NullPointerException("Could not create instance");
+        }
+        out.add(primary.resolve("plugins"));
+        String pluginsDir = ConfigManager.getInstance().getProperty(
+                "net.ddns.advaith.blocks.pluginsDir");
+        if (pluginsDir != null) {
+            out.add(Paths.get(pluginsDir));
+        }
+        return out;
+    }
+
 
     /**
      * Create a new PluginLoader.
@@ -278,4 +299,40 @@ public class PluginLoader {
             }
         }
     }
+
+    /**
+     * @return the plugins loaded so far, in no particular order. The
+     * collection cannot be modified.
+     */
+    public Collection<PluginWrapper> getPlugins() {
+        return Collections.unmodifiableCollection(plugins.values());
+    }
+
+    /**
+     * Choose the plugin to run with when there is no UI to ask the user,
+     * e.g. for a server or a load test.
+     *
+     * @param uuid The UUID of the plugin, or null to use the only one.
+     * @return The plugin.
+     * @throws IllegalStateException if there is no such plugin, or uuid is
+     * null and several plugins are loaded.
+     * @throws IllegalArgumentException if uuid is not a UUID.
+     */
+    public PluginWrapper choosePlugin(String uuid) {
+        if (uuid != null) {
+            PluginWrapper w = plugins.get(UUID.fromString(uuid));
+            if (w == null) {
+                throw new IllegalStateException("No storage plugin " + uuid
+                        + " found.");
+            }
+            return w;
+        } else if (plugins.size() > 1) {
+            throw new IllegalStateException("Several plugins are installed; "
+                    + "choose one by UUID.");
+        } else if (plugins.isEmpty()) {
+            throw new IllegalStateException("No storage plugin is "
+                    + "installed.");
+        }
+        return plugins.values().iterator().next();
+    }
 }
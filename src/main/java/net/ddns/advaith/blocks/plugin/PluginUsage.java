@@ -0,0 +1,238 @@
+/*
+ * This file is part of Blocks.
+ * 
+ * Blocks is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * Blocks is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with Blocks. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package net.ddns.advaith.blocks.plugin;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The resources used by one plugin, kept up to date by {@link
+ * PluginAccounting}. Counters for calls are updated by the calling threads;
+ * everything about the plugin's own threads, the rates and the throttle are
+ * updated when the accounting samples.
+ *
+ * @since 0.1.0
+ * @author Advaith Menon
+ */
+public final class PluginUsage implements PluginUsageMXBean {
+    private final String name;
+    private final UUID uuid;
+
+    // the class loader of the plugin; threads that carry it are its own
+    private final ClassLoader loader;
+
+    // calls into the plugin
+    private final LongAdder calls = new LongAdder();
+
+    // CPU time and allocation of those calls
+    private final LongAdder callCpu = new LongAdder();
+    private final LongAdder callAllocated = new LongAdder();
+
+    // total time calls were held back
+    private final LongAdder throttled = new LongAdder();
+
+    // thread ID to the CPU time and allocation last seen for it. Only
+    // touched while sampling.
+    private final Map<Long, long[]> threads = new HashMap<>();
+
+    // CPU time and allocation of threads that have since died
+    private long deadCpu;
+    private long deadAllocated;
+
+    // the plugin's threads, counted when sampling
+    private volatile int threadsCreated;
+    private volatile int liveThreads;
+
+    // the rates over the last interval
+    private volatile double cpuRate;
+    private volatile double allocationRate;
+
+    // the totals at the last sample, to work out the rates
+    private long lastCpu;
+    private long lastAllocated;
+
+    private volatile long breaches;
+    private volatile long throttleDelay;
+
+    // whether the plugin was over its limits at the last sample
+    private boolean over;
+
+    /**
+     * Create a new PluginUsage.
+     *
+     * @param name The name of the plugin.
+     * @param uuid The UUID of the plugin.
+     * @param loader The class loader of the plugin, or null if its threads
+     * cannot be told apart from the application's.
+     */
+    PluginUsage(String name, UUID uuid, ClassLoader loader) {
+        this.name = name;
+        this.uuid = uuid;
+        this.loader = loader;
+    }
+
+    ClassLoader getLoader() {
+        return loader;
+    }
+
+    void recordCall(long cpu, long allocated) {
+        calls.increment();
+        callCpu.add(cpu);
+        if (allocated >= 0) {
+            callAllocated.add(allocated);
+        }
+    }
+
+    void recordThrottle(long nanos) {
+        throttled.add(nanos);
+    }
+
+    /**
+     * Record what the plugin's threads have used so far.
+     *
+     * @param seen Thread ID to its CPU time and allocation, for the
+     * plugin's live threads.
+     */
+    synchronized void recordThreads(Map<Long, long[]> seen) {
+        for (Map.Entry<Long, long[]> e: threads.entrySet()) {
+            if (!seen.containsKey(e.getKey())) {
+                deadCpu += e.getValue()[0];
+                deadAllocated += Math.max(0, e.getValue()[1]);
+            }
+        }
+        threads.keySet().retainAll(seen.keySet());
+        for (Map.Entry<Long, long[]> e: seen.entrySet()) {
+            if (threads.put(e.getKey(), e.getValue()) == null) {
+                ++threadsCreated;
+            }
+        }
+        liveThreads = seen.size();
+    }
+
+    /**
+     * Work out the rates since the last sample, and adjust the throttle.
+     *
+     * @param wall The time since the last sample, in nanoseconds.
+     * @param limits The limits.
+     * @return A description of how the limits are broken, or null.
+     */
+    synchronized String sample(long wall, PluginLimits limits) {
+        long cpu = getCpuTime();
+        long allocated = Math.max(0, getAllocatedBytes());
+        if (wall > 0) {
+            cpuRate = (cpu - lastCpu) / (double) wall;
+            allocationRate = (allocated - lastAllocated) * 1e9 / wall;
+        }
+        lastCpu = cpu;
+        lastAllocated = allocated;
+
+        String broken = limits.check(cpuRate, allocationRate, liveThreads);
+        over = broken != null;
+        if (over) {
+            ++breaches;
+            if (limits.isThrottle()) {
+                // back off harder while it stays over
+                throttleDelay = Math.min(Math.max(throttleDelay * 2,
+                            PluginAccounting.MIN_DELAY),
+                        PluginAccounting.MAX_DELAY);
+            }
+        } else {
+            long d = throttleDelay / 2;
+            throttleDelay = d < PluginAccounting.MIN_DELAY ? 0 : d;
+        }
+        return broken;
+    }
+
+    synchronized boolean isOver() {
+        return over;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String getUUID() {
+        return uuid.toString();
+    }
+
+    @Override
+    public long getCalls() {
+        return calls.sum();
+    }
+
+    @Override
+    public synchronized long getCpuTime() {
+        long sum = callCpu.sum() + deadCpu;
+        for (long[] t: threads.values()) {
+            sum += t[0];
+        }
+        return sum;
+    }
+
+    @Override
+    public synchronized long getAllocatedBytes() {
+        if (!PluginAccounting.ALLOCATION_SUPPORTED) {
+            return -1;
+        }
+        long sum = callAllocated.sum() + deadAllocated;
+        for (long[] t: threads.values()) {
+            sum += Math.max(0, t[1]);
+        }
+        return sum;
+    }
+
+    @Override
+    public int getThreadsCreated() {
+        return threadsCreated;
+    }
+
+    @Override
+    public int getLiveThreads() {
+        return liveThreads;
+    }
+
+    @Override
+    public double getCpuRate() {
+        return cpuRate;
+    }
+
+    @Override
+    public double getAllocationRate() {
+        return allocationRate;
+    }
+
+    @Override
+    public long getLimitBreaches() {
+        return breaches;
+    }
+
+    @Override
+    public long getThrottleDelay() {
+        return throttleDelay;
+    }
+
+    @Override
+    public long getThrottledTime() {
+        return throttled.sum();
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * This file is part of Blocks.
+ * 
+ * Blocks is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * Blocks is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with Blocks. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package net.ddns.advaith.blocks.plugin;
+
+/**
+ * The resources a plugin has used, as seen over JMX under {@code
+ * net.ddns.advaith.blocks:type=Plugin,name=<name>}. See {@link
+ * PluginAccounting} for how they are attributed.
+ *
+ * @since 0.1.0
+ * @author Advaith Menon
+ */
+public interface PluginUsageMXBean {
+    /**
+     * @return the name of the plugin.
+     */
+    String getName();
+
+    /**
+     * @return the UUID of the plugin.
+     */
+    String getUUID();
+
+    /**
+     * @return the number of calls into the plugin: hooks, DAO methods and
+     * pages.
+     */
+    long getCalls();
+
+    /**
+     * @return the CPU time used by calls into the plugin and by its own
+     * threads, in nanoseconds.
+     */
+    long getCpuTime();
+
+    /**
+     * @return the bytes allocated by calls into the plugin and by its own
+     * threads, or -1 if the JVM cannot tell.
+     */
+    long getAllocatedBytes();
+
+    /**
+     * @return the number of threads the plugin has started.
+     */
+    int getThreadsCreated();
+
+    /**
+     * @return the number of the plugin's threads still alive.
+     */
+    int getLiveThreads();
+
+    /**
+     * @return the cores used over the last sampling interval.
+     */
+    double getCpuRate();
+
+    /**
+     * @return the bytes per second allocated over the last sampling
+     * interval.
+     */
+    double getAllocationRate();
+
+    /**
+     * @return the number of sampling intervals in which the plugin was over
+     * its soft limits.
+     */
+    long getLimitBreaches();
+
+    /**
+     * @return the delay currently added to every call into the plugin, in
+     * nanoseconds.
+     */
+    long getThrottleDelay();
+
+    /**
+     * @return the total time calls have been delayed by throttling, in
+     * nanoseconds.
+     */
+    long getThrottledTime();
+}
@@ -17,6 +17,8 @@
 
 package net.ddns.advaith.blocks.plugin;
 
+import net.ddns.advaith.blocks.reminder.ReminderListener;
+
 /**
  * Class to represent a Plugin.
  *
@@ -31,6 +33,9 @@ public final class PluginWrapper {
 
     private final Plugin plugin;
 
+    // what the plugin has used; registered on first use
+    private PluginUsage usage;
+
     /**
      * Create a new PluginWrapper.
      *
@@ -93,4 +98,66 @@ public final class PluginWrapper {
     public Plugin getPlugin() {
         return plugin;
     }
+
+    /**
+     * Get the resources the plugin has used, as counted by {@link
+     * PluginAccounting#getInstance()}. The plugin is registered with it the
+     * first time this is called.
+     *
+     * @return The usage. This cannot be null.
+     */
+    public synchronized PluginUsage getUsage() {
+        if (usage == null) {
+            usage = PluginAccounting.getInstance().register(this);
+        }
+        return usage;
+    }
+
+    /**
+     * Run the plugin's {@link Plugin#onInitialize()} hook, on its account.
+     */
+    public void initialize() {
+        PluginAccounting.getInstance().run(getUsage(), plugin::onInitialize);
+    }
+
+    /**
+     * Run the plugin's {@link Plugin#onLoad()} hook, on its account.
+     */
+    public void load() {
+        PluginAccounting.getInstance().run(getUsage(), plugin::onLoad);
+    }
+
+    /**
+     * Run the plugin's {@link Plugin#onClose()} hook, on its account.
+     */
+    public void close() {
+        PluginAccounting.getInstance().run(getUsage(), plugin::onClose);
+    }
+
+    /**
+     * Get the plugin's DAO factory, wrapped so that the DAOs it builds, and
+     * everything done with them, are counted towards the plugin. Prefer
+     * this to calling {@link Plugin#getDAOFactory()} directly.
+     *
+     * @return The factory, or null if the plugin has none.
+     */
+    public DAOFactory getDAOFactory() {
+        PluginAccounting a = PluginAccounting.getInstance();
+        DAOFactory f = a.call(getUsage(), plugin::getDAOFactory);
+        return f == null ? null : a.wrap(getUsage(), f);
+    }
+
+    /**
+     * Get the plugin's reminder listener, wrapped so that the reminders it
+     * handles are counted towards the plugin. Prefer this to calling {@link
+     * Plugin#getReminderListener()} directly.
+     *
+     * @return The listener, or null if the plugin has none.
+     */
+    public ReminderListener getReminderListener() {
+        PluginAccounting a = PluginAccounting.getInstance();
+        ReminderListener l = a.call(getUsage(),
+                plugin::getReminderListener);
+        return l == null ? null : r -> a.run(getUsage(), () -> l.remind(r));
+    }
 }
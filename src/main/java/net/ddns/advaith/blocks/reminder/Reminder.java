@@ -0,0 +1,84 @@
+/*
+ * This file is part of Blocks.
+ * 
+ * Blocks is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * Blocks is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with Blocks. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package net.ddns.advaith.blocks.reminder;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import net.ddns.advaith.blocks.model.Task;
+
+/**
+ * A reminder that a task is due: the task, and how long before its deadline
+ * the reminder was set for.
+ *
+ * @since 0.1.0
+ * @author Advaith Menon
+ */
+public final class Reminder {
+    // the task, as it was when the reminder was scheduled
+    private final Task task;
+
+    // how long before the deadline
+    private final Duration lead;
+
+    /**
+     * Create a new Reminder.
+     *
+     * @param task The task.
+     * @param lead How long before the deadline it is for.
+     * @throws IllegalArgumentException if anything is null.
+     */
+    public Reminder(Task task, Duration lead) {
+        if (task == null || lead == null) {
+            throw new IllegalArgumentException("task and lead cannot be "
+                    + "null");
+        }
+        this.task = task;
+        this.lead = lead;
+    }
+
+    /**
+     * @return the task, as it was when the reminder was scheduled.
+     */
+    public Task getTask() {
+        return task;
+    }
+
+    /**
+     * @return how long before the deadline the reminder is for; zero for
+     * one at the deadline itself.
+     */
+    public Duration getLead() {
+        return lead;
+    }
+
+    /**
+     * @return when the reminder is due. It can fire later than this, e.g.
+     * if the machine was asleep.
+     */
+    public Instant getTime() {
+        return task.getDeadline().toInstant().minus(lead);
+    }
+
+    @Override
+    public String toString() {
+        return "Reminder[" + task.getID() + " " + lead + " before "
+            + task.getDeadline() + "]";
+    }
+}
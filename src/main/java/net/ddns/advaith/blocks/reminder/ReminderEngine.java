@@ -0,0 +1,457 @@
+/*
+ * This file is part of Blocks.
+ * 
+ * Blocks is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * Blocks is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with Blocks. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package net.ddns.advaith.blocks.reminder;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.Flow;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.ddns.advaith.blocks.config.ConfigManager;
+import net.ddns.advaith.blocks.model.Change;
+import net.ddns.advaith.blocks.model.ChangeOverflowException;
+import net.ddns.advaith.blocks.model.GenericDAO;
+import net.ddns.advaith.blocks.model.Paginated;
+import net.ddns.advaith.blocks.model.Task;
+import net.ddns.advaith.blocks.store.LongHashIndex;
+
+/**
+ * Reminds listeners of upcoming deadlines. Every task gets one reminder per
+ * configured lead time before its deadline, kept on a {@link TimingWheel},
+ * so adding, moving and removing reminders takes constant time and a tick
+ * only costs as much as the reminders it fires, however many tasks there
+ * are.
+ *
+ * Tasks are scheduled with {@link #schedule(Task)} and {@link
+ * #cancel(long)}, or by following the change feed of a Task DAO with {@link
+ * #follow(GenericDAO)}. Reminders whose time has passed when a task is
+ * scheduled are left out.
+ *
+ * The wheel follows the clock, not the time elapsed: if the clock jumps
+ * forward, e.g. after the machine slept, every reminder it skipped fires on
+ * the next tick, late; if it jumps back, the reminders are placed again so
+ * that they fire when the clock reaches their time once more.
+ *
+ * Listeners are called on the ticking thread, one after the other; one that
+ * throws is logged and does not stop the others.
+ *
+ * @since 0.1.0
+ * @author Advaith Menon
+ */
+public class ReminderEngine {
+    // Logger
+    private static final Logger LOGGER = LoggerFactory.getLogger(
+            ReminderEngine.class);
+
+    /**
+     * The configuration key for the lead times, as a comma separated list
+     * of ISO-8601 durations, e.g. "PT1H,PT0S" for an hour before the
+     * deadline and at the deadline.
+     */
+    public static final String LEADS_KEY =
+        "net.ddns.advaith.blocks.reminder.leads";
+
+    /**
+     * The configuration key for the length of a tick, as an ISO-8601
+     * duration. Reminders fire up to one tick late.
+     */
+    public static final String TICK_KEY =
+        "net.ddns.advaith.blocks.reminder.tick";
+
+    // the reminders
+    private final TimingWheel<Reminder> wheel;
+
+    // task ID to its entries on the wheel
+    private final LongHashIndex<List<TimingWheel.Entry<Reminder>>> byID;
+
+    // how long before the deadline to remind
+    private final List<Duration> leads;
+
+    // tells the time
+    private final Clock clock;
+
+    // who to tell
+    private final List<ReminderListener> listeners;
+
+    // IDs changed while loading from a DAO; null when not loading
+    private LongHashIndex<Boolean> touched;
+
+    // the engine's thread: ticks once started, and reloads after the
+    // change feed overflows; created when first needed
+    private ScheduledExecutorService worker;
+
+    // the periodic tick, once started
+    private ScheduledFuture<?> ticking;
+
+    /**
+     * Create a new ReminderEngine.
+     *
+     * @param leads How long before the deadline to remind, e.g. zero for at
+     * the deadline.
+     * @param tick The length of a tick. Reminders fire up to one tick late.
+     * @param clock Tells the time.
+     * @throws IllegalArgumentException if anything is null, a lead is
+     * negative, or tick is shorter than a millisecond.
+     */
+    public ReminderEngine(List<Duration> leads, Duration tick, Clock clock) {
+        if (leads == null || tick == null || clock == null) {
+            throw new IllegalArgumentException("leads, tick and clock cannot "
+                    + "be null");
+        } else if (tick.toMillis() <= 0) {
+            throw new IllegalArgumentException("tick must be at least 1 ms");
+        }
+        for (Duration d: leads) {
+            if (d == null || d.isNegative()) {
+                throw new IllegalArgumentException("Leads cannot be null or "
+                        + "negative");
+            }
+        }
+        this.leads = List.copyOf(leads);
+        this.clock = clock;
+        this.wheel = new TimingWheel<>(tick.toMillis(), clock.millis());
+        this.byID = new LongHashIndex<>();
+        this.listeners = new CopyOnWriteArrayList<>();
+    }
+
+    /**
+     * Create a ReminderEngine on the system clock, with the lead times and
+     * tick from the configuration. Missing or malformed values are logged
+     * and left at their defaults: a reminder at the deadline, and a tick of
+     * one second.
+     *
+     * @param config The configuration.
+     * @return The engine.
+     */
+    public static ReminderEngine fromConfig(ConfigManager config) {
+        List<Duration> leads = List.of(Duration.ZERO);
+        String s = config.getProperty(LEADS_KEY);
+        if (s != null) {
+            try {
+                List<Duration> l = new ArrayList<>();
+                for (String part: s.split(",")) {
+                    Duration d = Duration.parse(part.trim());
+                    if (d.isNegative()) {
+                        throw new IllegalArgumentException();
+                    }
+                    l.add(d);
+                }
+                leads = l;
+            } catch (DateTimeParseException | IllegalArgumentException e) {
+                LOGGER.warn("Ignoring malformed {}", LEADS_KEY);
+            }
+        }
+        Duration tick = Duration.ofSeconds(1);
+        s = config.getProperty(TICK_KEY);
+        try {
+            if (s != null) {
+                Duration d = Duration.parse(s);
+                if (d.toMillis() <= 0) {
+                    throw new IllegalArgumentException();
+                }
+                tick = d;
+            }
+        } catch (DateTimeParseException | IllegalArgumentException e) {
+            LOGGER.warn("Ignoring malformed {}", TICK_KEY);
+        }
+        return new ReminderEngine(leads, tick, Clock.systemUTC());
+    }
+
+    /**
+     * @param l The listener to tell about reminders.
+     * @throws IllegalArgumentException if l is null.
+     */
+    public void addListener(ReminderListener l) {
+        if (l == null) {
+            throw new IllegalArgumentException("l cannot be null");
+        }
+        listeners.add(l);
+    }
+
+    /**
+     * @param l A listener to stop telling about reminders.
+     */
+    public void removeListener(ReminderListener l) {
+        listeners.remove(l);
+    }
+
+    /**
+     * @return the number of reminders waiting.
+     */
+    public synchronized int size() {
+        return wheel.size();
+    }
+
+    /**
+     * Schedule the reminders of a new or changed task, replacing the ones
+     * it had.
+     *
+     * @param task The task. It must have an ID.
+     * @throws IllegalArgumentException if the task has no ID.
+     */
+    public synchronized void schedule(Task task) {
+        long id = task.getID();
+        if (id < 0) {
+            throw new IllegalArgumentException("Task must have an ID.");
+        }
+        cancel(id);
+        long now = clock.millis();
+        long deadline = task.getDeadline().toInstant().toEpochMilli();
+        List<TimingWheel.Entry<Reminder>> entries = null;
+        for (Duration lead: leads) {
+            long at = deadline - lead.toMillis();
+            if (at < now) {
+                continue;
+            }
+            if (entries == null) {
+                entries = new ArrayList<>(leads.size());
+                task = copy(task);
+            }
+            entries.add(wheel.schedule(at, new Reminder(task, lead)));
+        }
+        if (entries != null) {
+            byID.put(id, entries);
+        }
+    }
+
+    /**
+     * Cancel the reminders of a task.
+     *
+     * @param id The ID of the task.
+     */
+    public synchronized void cancel(long id) {
+        List<TimingWheel.Entry<Reminder>> entries = byID.remove(id);
+        if (entries != null) {
+            for (TimingWheel.Entry<Reminder> e: entries) {
+                wheel.cancel(e);
+            }
+        }
+    }
+
+    /**
+     * Keep the reminders in step with a Task DAO: subscribe to its change
+     * feed, then schedule every task it has, and cancel the reminders of
+     * tasks it does not have. If the feed overflows, this starts over on the
+     * engine's own thread, so the tasks deleted in the changes that were
+     * missed lose their reminders too.
+     *
+     * @param dao The DAO.
+     * @throws UnsupportedOperationException if the DAO has no change feed;
+     * wrap it in an {@link net.ddns.advaith.blocks.dao.ObservableTaskDAO}.
+     * @throws net.ddns.advaith.blocks.model.DAOException if the tasks
+     * cannot be read.
+     */
+    public void follow(GenericDAO<Task> dao) {
+        Flow.Publisher<Change<Task>> feed = dao.changes();
+        synchronized (this) {
+            touched = new LongHashIndex<>();
+        }
+        feed.subscribe(new Flow.Subscriber<Change<Task>>() {
+            @Override
+            public void onSubscribe(Flow.Subscription s) {
+                s.request(Long.MAX_VALUE);
+            }
+
+            @Override
+            public void onNext(Change<Task> c) {
+                apply(c);
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                if (t instanceof ChangeOverflowException) {
+                    LOGGER.warn("Reminders fell behind, reloading.");
+                    reload(dao);
+                } else {
+                    LOGGER.error("Reminders lost their change feed.", t);
+                }
+            }
+
+            @Override
+            public void onComplete() {
+                // the DAO is shutting down
+            }
+        });
+        // changes made from here on are in the feed, so load the rest
+        LongHashIndex<Boolean> seen = new LongHashIndex<>();
+        try {
+            Paginated<Task> all = dao.fetchAll();
+            while (all.hasNextPage()) {
+                List<Task> page = all.nextPage();
+                synchronized (this) {
+                    for (Task t: page) {
+                        seen.put(t.getID(), Boolean.TRUE);
+                        if (!touched.containsKey(t.getID())) {
+                            schedule(t);
+                        }
+                    }
+                }
+            }
+            synchronized (this) {
+                // what the DAO no longer has, and the feed has not told us
+                // about since, was deleted
+                List<Long> gone = new ArrayList<>();
+                byID.forEach((entries, id) -> {
+                    if (!seen.containsKey(id) && !touched.containsKey(id)) {
+                        gone.add(id);
+                    }
+                });
+                for (long id: gone) {
+                    cancel(id);
+                }
+            }
+        } finally {
+            synchronized (this) {
+                touched = null;
+            }
+        }
+    }
+
+    // follow the DAO again, on the engine's thread rather than the feed's
+    private synchronized void reload(GenericDAO<Task> dao) {
+        try {
+            worker().execute(() -> {
+                try {
+                    follow(dao);
+                } catch (RuntimeException e) {
+                    LOGGER.error("Could not reload reminders", e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            LOGGER.error("Could not reload reminders", e);
+        }
+    }
+
+    /**
+     * Fire every reminder that is due by the clock. This is what the thread
+     * started by {@link #start()} calls; call it directly to drive the
+     * engine from elsewhere.
+     *
+     * @return The number of reminders fired.
+     */
+    public int tick() {
+        List<Reminder> due = new ArrayList<>();
+        synchronized (this) {
+            long now = clock.millis();
+            if (now < wheel.getTime()) {
+                LOGGER.info("The clock went back by {} ms, placing {} "
+                        + "reminders again", wheel.getTime() - now,
+                        wheel.size());
+                wheel.rewind(now);
+            }
+            wheel.advance(now, e -> {
+                Reminder r = e.getValue();
+                due.add(r);
+                forget(r.getTask().getID());
+            });
+        }
+        for (Reminder r: due) {
+            for (ReminderListener l: listeners) {
+                try {
+                    l.remind(r);
+                } catch (RuntimeException e) {
+                    LOGGER.error("Reminder listener failed on {}", r, e);
+                }
+            }
+        }
+        return due.size();
+    }
+
+    /**
+     * Start ticking, on a daemon thread, once per tick.
+     *
+     * @throws IllegalStateException if already started.
+     */
+    public synchronized void start() {
+        if (ticking != null) {
+            throw new IllegalStateException("Already started.");
+        }
+        long n = wheel.getTickMillis();
+        ticking = worker().scheduleAtFixedRate(() -> {
+            try {
+                tick();
+            } catch (RuntimeException e) {
+                LOGGER.error("Could not fire reminders", e);
+            }
+        }, n, n, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stop ticking. Reminders stay scheduled.
+     */
+    public synchronized void stop() {
+        if (worker != null) {
+            worker.shutdownNow();
+            worker = null;
+            ticking = null;
+        }
+    }
+
+    // the engine's thread, started if need be
+    private ScheduledExecutorService worker() {
+        if (worker == null) {
+            worker = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "blocks-reminders");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        return worker;
+    }
+
+    private synchronized void apply(Change<Task> c) {
+        if (touched != null) {
+            touched.put(c.getID(), Boolean.TRUE);
+        }
+        if (c.getType() == Change.Type.DELETE) {
+            cancel(c.getID());
+        } else {
+            schedule(c.getItem());
+        }
+    }
+
+    // drop the entries of a task once none of them is scheduled
+    private void forget(long id) {
+        List<TimingWheel.Entry<Reminder>> entries = byID.get(id);
+        if (entries == null) {
+            return;
+        }
+        for (TimingWheel.Entry<Reminder> e: entries) {
+            if (e.isScheduled()) {
+                return;
+            }
+        }
+        byID.remove(id);
+    }
+
+    private static Task copy(Task t) {
+        return Task.restore(t.getID(), t.getTitle(), t.getDetails(),
+                t.getDeadline(), t.getVersion());
+    }
+}
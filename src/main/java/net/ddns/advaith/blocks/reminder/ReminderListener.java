@@ -0,0 +1,37 @@
+/*
+ * This file is part of Blocks.
+ * 
+ * Blocks is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * Blocks is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with Blocks. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package net.ddns.advaith.blocks.reminder;
+
+/**
+ * Gets told when a reminder is due. Plugins can provide one with {@link
+ * net.ddns.advaith.blocks.plugin.Plugin#getReminderListener()}.
+ *
+ * @since 0.1.0
+ * @author Advaith Menon
+ */
+@FunctionalInterface
+public interface ReminderListener {
+    /**
+     * Called when a reminder is due, on the thread of the {@link
+     * ReminderEngine}. Do not block; hand slow work off to another thread.
+     *
+     * @param reminder The reminder.
+     */
+    void remind(Reminder reminder);
+}
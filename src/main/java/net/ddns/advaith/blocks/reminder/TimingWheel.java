@@ -0,0 +1,381 @@
+/*
+ * This file is part of Blocks.
+ * 
+ * Blocks is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * Blocks is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with Blocks. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package net.ddns.advaith.blocks.reminder;
+
+import java.util.function.Consumer;
+
+/**
+ * A hierarchical timing wheel: schedules values to be handed out once the
+ * time passes a given instant, with constant-time scheduling and
+ * cancelling however many values are waiting.
+ *
+ * Time is counted in ticks of a fixed length. The lowest level has one slot
+ * per tick for the next {@value #SLOTS} ticks; every level above has slots
+ * {@value #SLOTS} times as long, so a handful of levels covers any date.
+ * A value goes into the lowest level whose range reaches its time. Whenever
+ * time crosses the start of a slot on a higher level, that slot's values are
+ * moved down, until they reach the lowest level and are handed out on their
+ * tick. Each value is moved at most once per level.
+ *
+ * Values fire on the first tick at or after their time, so never early and
+ * at most one tick late. Advancing over a long stretch with nothing due
+ * skips the empty slots instead of stepping through every tick, so a jump
+ * of the clock costs about the number of values it makes due.
+ *
+ * This class is not thread safe.
+ *
+ * @param <T> The type of the values.
+ * @since 0.1.0
+ * @author Advaith Menon
+ */
+public final class TimingWheel<T> {
+    /**
+     * The number of slots per level.
+     */
+    public static final int SLOTS = 64;
+
+    // log2(SLOTS)
+    private static final int BITS = 6;
+
+    // enough levels for any tick count
+    private static final int LEVELS = (Long.SIZE + BITS - 1) / BITS;
+
+    /**
+     * A scheduled value, and the handle to cancel it with.
+     *
+     * @param <T> The type of the value.
+     * @since 0.1.0
+     */
+    public static final class Entry<T> {
+        private final long time;
+        private final T value;
+
+        // the tick it fires on
+        private final long tick;
+
+        // the list it is in, -1 for the due list, -2 for none
+        private int level = -2;
+        private int slot;
+        private Entry<T> prev;
+        private Entry<T> next;
+
+        private Entry(long time, long tick, T value) {
+            this.time = time;
+            this.tick = tick;
+            this.value = value;
+        }
+
+        // a list head
+        private Entry() {
+            this(0, 0, null);
+            prev = this;
+            next = this;
+        }
+
+        /**
+         * @return the time it was scheduled for, in milliseconds since the
+         * epoch.
+         */
+        public long getTime() {
+            return time;
+        }
+
+        /**
+         * @return the value.
+         */
+        public T getValue() {
+            return value;
+        }
+
+        /**
+         * @return true if it has neither fired nor been cancelled yet.
+         */
+        public boolean isScheduled() {
+            return level != -2;
+        }
+    }
+
+    // the length of a tick in milliseconds
+    private final long tickMillis;
+
+    // [level][slot] list heads, created as levels are first used
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private final Entry<T>[][] wheels = new Entry[LEVELS][];
+
+    // the number of entries on each level
+    private final int[] counts = new int[LEVELS];
+
+    // entries whose tick has already passed, handed out on the next advance
+    private final Entry<T> due = new Entry<>();
+
+    // the current tick
+    private long now;
+
+    // the number of entries
+    private int size;
+
+    /**
+     * Create a new, empty TimingWheel.
+     *
+     * @param tickMillis The length of a tick in milliseconds.
+     * @param startMillis The current time, in milliseconds since the epoch.
+     * @throws IllegalArgumentException if tickMillis is not positive or
+     * startMillis is negative.
+     */
+    public TimingWheel(long tickMillis, long startMillis) {
+        if (tickMillis <= 0) {
+            throw new IllegalArgumentException("tickMillis must be positive");
+        } else if (startMillis < 0) {
+            throw new IllegalArgumentException("startMillis cannot be "
+                    + "negative");
+        }
+        this.tickMillis = tickMillis;
+        this.now = startMillis / tickMillis;
+    }
+
+    /**
+     * @return the number of values waiting.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the length of a tick in milliseconds.
+     */
+    public long getTickMillis() {
+        return tickMillis;
+    }
+
+    /**
+     * @return the time the wheel has advanced to, in milliseconds since the
+     * epoch, rounded down to a tick.
+     */
+    public long getTime() {
+        return now * tickMillis;
+    }
+
+    /**
+     * Schedule a value. A time that has already passed is handed out on
+     * the next call to {@link #advance(long, Consumer)}.
+     *
+     * @param timeMillis When to hand it out, in milliseconds since the
+     * epoch.
+     * @param value The value.
+     * @return The entry, to cancel it with.
+     * @throws IllegalArgumentException if timeMillis is negative.
+     */
+    public Entry<T> schedule(long timeMillis, T value) {
+        if (timeMillis < 0) {
+            throw new IllegalArgumentException("timeMillis cannot be "
+                    + "negative");
+        }
+        // round up, so that nothing fires early
+        long tick = timeMillis / tickMillis
+            + (timeMillis % tickMillis == 0 ? 0 : 1);
+        Entry<T> e = new Entry<>(timeMillis, tick, value);
+        place(e);
+        ++size;
+        return e;
+    }
+
+    /**
+     * Cancel a value.
+     *
+     * @param e The entry returned when it was scheduled.
+     * @return true if it was cancelled, false if it had already fired or
+     * been cancelled.
+     */
+    public boolean cancel(Entry<T> e) {
+        if (!e.isScheduled()) {
+            return false;
+        }
+        unlink(e);
+        --size;
+        return true;
+    }
+
+    /**
+     * Move the wheel forward, handing out every value whose time is at or
+     * before the new time, in the order of their ticks. Moving backwards
+     * does nothing; see {@link #rewind(long)}.
+     *
+     * @param nowMillis The current time, in milliseconds since the epoch.
+     * @param fire Called with each value that is due. It may schedule and
+     * cancel values.
+     * @return The number of values handed out.
+     */
+    public int advance(long nowMillis, Consumer<? super Entry<T>> fire) {
+        long target = nowMillis / tickMillis;
+        int fired = fireDue(fire);
+        while (now < target) {
+            if (size == 0) {
+                now = target;
+                break;
+            }
+            long next = now + 1;
+            if (counts[0] == 0) {
+                // nothing fires before the next slot with entries starts on
+                // the lowest level that has any
+                int level = 1;
+                while (level < LEVELS && counts[level] == 0) {
+                    ++level;
+                }
+                int shift = BITS * level;
+                next = level == LEVELS ? target + 1
+                    : ((now >>> shift) + 1) << shift;
+                if (next > target || next < 0) {
+                    now = target;
+                    break;
+                }
+            }
+            now = next;
+            for (int level = LEVELS - 1; level > 0; --level) {
+                int shift = BITS * level;
+                if (counts[level] > 0
+                        && (now & ((1L << shift) - 1)) == 0) {
+                    cascade(level, (int) ((now >>> shift) & (SLOTS - 1)));
+                }
+            }
+            if (wheels[0] != null) {
+                Entry<T> head = wheels[0][(int) (now & (SLOTS - 1))];
+                while (head.next != head) {
+                    Entry<T> e = head.next;
+                    unlink(e);
+                    --size;
+                    ++fired;
+                    fire.accept(e);
+                }
+            }
+            fired += fireDue(fire);
+        }
+        return fired;
+    }
+
+    /**
+     * Set the wheel back to an earlier time, e.g. after the system clock
+     * was turned back, so that values are handed out by the new clock and
+     * not the old one. Every waiting value is placed again, so this takes
+     * time proportional to their number.
+     *
+     * @param nowMillis The current time, in milliseconds since the epoch.
+     * @throws IllegalArgumentException if nowMillis is negative.
+     */
+    public void rewind(long nowMillis) {
+        if (nowMillis < 0) {
+            throw new IllegalArgumentException("nowMillis cannot be "
+                    + "negative");
+        }
+        Entry<T> all = new Entry<>();
+        for (int level = -1; level < LEVELS; ++level) {
+            if (level >= 0 && wheels[level] == null) {
+                continue;
+            }
+            for (int slot = 0; slot < (level < 0 ? 1 : SLOTS); ++slot) {
+                Entry<T> head = level < 0 ? due : wheels[level][slot];
+                while (head.next != head) {
+                    Entry<T> e = head.next;
+                    unlink(e);
+                    append(all, e);
+                }
+            }
+        }
+        now = nowMillis / tickMillis;
+        while (all.next != all) {
+            Entry<T> e = all.next;
+            remove(e);
+            place(e);
+        }
+    }
+
+    private int fireDue(Consumer<? super Entry<T>> fire) {
+        int fired = 0;
+        while (due.next != due) {
+            Entry<T> e = due.next;
+            unlink(e);
+            --size;
+            ++fired;
+            fire.accept(e);
+        }
+        return fired;
+    }
+
+    // move a slot's entries down now that its time has come
+    private void cascade(int level, int slot) {
+        Entry<T> head = wheels[level][slot];
+        while (head.next != head) {
+            Entry<T> e = head.next;
+            unlink(e);
+            place(e);
+        }
+    }
+
+    private void place(Entry<T> e) {
+        if (e.tick <= now) {
+            e.level = -1;
+            append(due, e);
+            return;
+        }
+        for (int level = 0; level < LEVELS; ++level) {
+            int shift = BITS * level;
+            if ((e.tick >>> shift) - (now >>> shift) < SLOTS) {
+                if (wheels[level] == null) {
+                    wheels[level] = newLevel();
+                }
+                e.level = level;
+                e.slot = (int) ((e.tick >>> shift) & (SLOTS - 1));
+                ++counts[level];
+                append(wheels[level][e.slot], e);
+                return;
+            }
+        }
+        throw new IllegalStateException("No level for tick " + e.tick);
+    }
+
+    private void unlink(Entry<T> e) {
+        if (e.level >= 0) {
+            --counts[e.level];
+        }
+        remove(e);
+        e.level = -2;
+    }
+
+    private static <T> void remove(Entry<T> e) {
+        e.prev.next = e.next;
+        e.next.prev = e.prev;
+        e.prev = null;
+        e.next = null;
+    }
+
+    private static <T> void append(Entry<T> head, Entry<T> e) {
+        e.prev = head.prev;
+        e.next = head;
+        head.prev.next = e;
+        head.prev = e;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private Entry<T>[] newLevel() {
+        Entry<T>[] slots = new Entry[SLOTS];
+        for (int i = 0; i < SLOTS; ++i) {
+            slots[i] = new Entry<>();
+        }
+        return slots;
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * This file is part of Blocks.
+ * 
+ * Blocks is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * Blocks is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with Blocks. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.ddns.advaith.blocks.server;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.ddns.advaith.blocks.config.ConfigManager;
+import net.ddns.advaith.blocks.dao.ObservableTaskDAO;
+import net.ddns.advaith.blocks.model.GenericDAO;
+import net.ddns.advaith.blocks.model.PageSizer;
+import net.ddns.advaith.blocks.model.Task;
+import net.ddns.advaith.blocks.plugin.DAOFactory;
+import net.ddns.advaith.blocks.plugin.PluginLoader;
+import net.ddns.advaith.blocks.plugin.PluginWrapper;
+import net.ddns.advaith.blocks.reminder.ReminderEngine;
+import net.ddns.advaith.blocks.reminder.ReminderListener;
+
+/**
+ * Runs Blocks as a headless HTTP server (see {@link TaskServer}) instead of
+ * the JavaFX application, so it can run where there is no display:
+ * <pre>
+ * java -cp blocks.jar:... net.ddns.advaith.blocks.server.ServerMain [port]
+ * </pre>
+ * The tasks come from a storage plugin, loaded the same way as for the
+ * application. If more than one plugin is installed, set {@code
+ * net.ddns.advaith.blocks.server.plugin} to the UUID of the one to use. The
+ * port is the first argument, or {@code net.ddns.advaith.blocks.server.port},
+ * or 8080.
+ *
+ * Deadline reminders are logged, and handed to every plugin that listens
+ * for them; see {@link ReminderEngine}.
+ *
+ * @since 0.1.0
+ * @author Advaith Menon
+ */
+public final class ServerMain {
+    private static final Logger LOGGER = LoggerFactory.getLogger(
+            ServerMain.class);
+
+    /**
+     * The configuration key for the UUID of the storage plugin.
+     */
+    public static final String PLUGIN_KEY =
+        "net.ddns.advaith.blocks.server.plugin";
+
+    /**
+     * The configuration key for the port.
+     */
+    public static final String PORT_KEY = "net.ddns.advaith.blocks.server.port";
+
+    private ServerMain() {}
+
+    /**
+     * Start the server, and stop it when the JVM shuts down.
+     *
+     * @param args The port, optionally.
+     * @throws IOException if the server cannot listen on the port.
+     */
+    public static void main(String[] args) throws IOException {
+        ConfigManager config = ConfigManager.getInstance();
+        String port = args.length > 0 ? args[0] : config.getProperty(PORT_KEY);
+        PluginWrapper plugin = choosePlugin(config.getProperty(PLUGIN_KEY));
+        plugin.initialize();
+
+        DAOFactory factory = plugin.getDAOFactory();
+        PageSizer sizer = PageSizer.fromConfig(config);
+        try {
+            factory.setPageSizer(sizer);
+            sizer.publish(plugin.getName());
+        } catch (UnsupportedOperationException e) {
+            // the plugin sizes its own pages
+        }
+        GenericDAO<Task> dao = factory.build().getTaskDAO();
+        try {
+            dao.changes();
+        } catch (UnsupportedOperationException e) {
+            // the reminders follow the change feed
+            dao = new ObservableTaskDAO(dao);
+        }
+        ReminderEngine reminders = startReminders(config, dao);
+        TaskServer server = new TaskServer(dao, new InetSocketAddress(
+                    port == null ? 8080 : Integer.parseInt(port)));
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.stop(5);
+            reminders.stop();
+            plugin.close();
+        }, "blocks-shutdown"));
+        server.start();
+    }
+
+    private static ReminderEngine startReminders(ConfigManager config,
+            GenericDAO<Task> dao) {
+        ReminderEngine engine = ReminderEngine.fromConfig(config);
+        engine.addListener(r -> LOGGER.info("Reminder: {}", r));
+        for (PluginWrapper p: PluginLoader.getInstance().getPlugins()) {
+            ReminderListener l = p.getReminderListener();
+            if (l != null) {
+                engine.addListener(l);
+            }
+        }
+        engine.follow(dao);
+        engine.start();
+        return engine;
+    }
+
+    private static PluginWrapper choosePlugin(String uuid) {
+        PluginWrapper chosen;
+        try {
+            chosen = PluginLoader.getInstance().choosePlugin(uuid);
+        } catch (IllegalStateException e) {
+            throw new IllegalStateException(e.getMessage() + " (see "
+                    + PLUGIN_KEY + ")", e);
+        }
+        LOGGER.info("Using plugin {} {}", chosen.getName(),
+                chosen.getVersion());
+        return chosen;
+    }
+}
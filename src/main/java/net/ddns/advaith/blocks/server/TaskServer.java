@@ -0,0 +1,568 @@
+/*
+ * This file is part of Blocks.
+ * 
+ * Blocks is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * Blocks is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with Blocks. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.ddns.advaith.blocks.server;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.reflect.InvocationTargetException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.ddns.advaith.blocks.dao.TaskQueries;
+import net.ddns.advaith.blocks.io.Json;
+import net.ddns.advaith.blocks.io.TaskFormat;
+import net.ddns.advaith.blocks.model.ConflictException;
+import net.ddns.advaith.blocks.model.DAOException;
+import net.ddns.advaith.blocks.model.Field;
+import net.ddns.advaith.blocks.model.GenericDAO;
+import net.ddns.advaith.blocks.model.ListPaginated;
+import net.ddns.advaith.blocks.model.Paginated;
+import net.ddns.advaith.blocks.model.Query;
+import net.ddns.advaith.blocks.model.Task;
+
+/**
+ * Serves a Task DAO over HTTP with JSON, using the HTTP server that comes
+ * with the JDK. Nothing here touches JavaFX.
+ *
+ * Tasks are written as in {@link TaskFormat#JSONL}. The API is:
+ * <ul>
+ * <li>{@code GET /tasks} streams every task, one JSON object per line
+ * ({@code application/x-ndjson}), reading the DAO a page at a time. With
+ * {@code limit=n}, at most n tasks are sent, and if there are more, the
+ * {@code Blocks-Continuation-Token} header holds a token to pass back as
+ * {@code token=...} to get the next ones.</li>
+ * <li>{@code GET /tasks?title=Shop&deadline.lt=2025-01-01T00:00Z} filters
+ * with a {@link Query}: {@code field=value} tests for equality, and {@code
+ * field.op=value} uses {@code ne}, {@code lt}, {@code le}, {@code gt},
+ * {@code ge} or {@code like}. All conditions must hold. {@code
+ * order=deadline,-title} sorts (a leading minus sorts descending), and
+ * {@code limit} and {@code offset} slice the result.</li>
+ * <li>{@code GET /tasks/{id}} returns one task, with its version (see
+ * {@link Task#getVersion()}) as the {@code ETag}.</li>
+ * <li>{@code POST /tasks} adds the task in the body and returns it with its
+ * ID.</li>
+ * <li>{@code PUT /tasks/{id}} replaces a task.</li>
+ * <li>{@code DELETE /tasks/{id}} deletes a task.</li>
+ * </ul>
+ * PUT and DELETE take an {@code If-Match} header with the ETag the client
+ * read, and then only go through if nobody has changed the task since.
+ * Errors are sent as {@code {"error":"..."}}, with 400 for bad requests, 404
+ * for unknown tasks, 412 when the task has changed, 413 for bodies over
+ * {@link #MAX_BODY} bytes, 501 for things the DAO cannot do and 500 for DAO
+ * failures.
+ *
+ * On Java 21 and later, every request is handled on its own virtual thread
+ * from {@link #newExecutor()}, so a request waiting on a slow DAO does not
+ * hold up the others. Before that, a fixed number of platform threads
+ * handle them, and the rest wait their turn.
+ *
+ * @since 0.1.0
+ * @author Advaith Menon
+ */
+public class TaskServer {
+    private static final Logger LOGGER = LoggerFactory.getLogger(
+            TaskServer.class);
+
+    /**
+     * The response header with the continuation token of a limited listing.
+     */
+    public static final String TOKEN_HEADER = "Blocks-Continuation-Token";
+
+    /**
+     * The most bytes a request body may have. Bodies hold a single task.
+     */
+    public static final int MAX_BODY = 1 << 20;
+
+    // the most bytes of a body over MAX_BODY read and thrown away
+    private static final long DRAIN = 16L * MAX_BODY;
+
+    // platform threads per processor, when there are no virtual threads;
+    // most of their time goes to waiting on the DAO
+    private static final int THREADS_PER_CPU = 8;
+
+    static {
+        // responses are written as headers and then a body, and with Nagle's
+        // algorithm on, the body waits for the client's delayed ACK of the
+        // headers, adding ~40 ms to every request. The JDK server reads this
+        // once, when the first server is created.
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    // the fields, by name
+    private static final List<Field<?>> FIELDS = List.of(Task.ID_FIELD,
+            Task.TITLE_FIELD, Task.DETAILS_FIELD, Task.DEADLINE_FIELD);
+
+    // the DAO we are serving
+    private final GenericDAO<Task> dao;
+
+    // the HTTP server
+    private final HttpServer server;
+
+    // handles the requests
+    private final ExecutorService executor;
+
+    /**
+     * Create a new TaskServer. It does not accept requests until {@link
+     * #start()} is called.
+     *
+     * @param dao The DAO to serve.
+     * @param address Where to listen. Port 0 picks a free port.
+     * @throws IllegalArgumentException if dao or address is null.
+     * @throws IOException if the server cannot listen on the address.
+     */
+    public TaskServer(GenericDAO<Task> dao, InetSocketAddress address)
+            throws IOException {
+        if (dao == null || address == null) {
+            throw new IllegalArgumentException("dao and address cannot be "
+                    + "null");
+        }
+        this.dao = dao;
+        this.server = HttpServer.create(address, 0);
+        this.executor = newExecutor();
+        server.setExecutor(executor);
+        server.createContext("/tasks", this::handle);
+        server.createContext("/health", ex -> send(ex, 200,
+                    "application/json", "{\"status\":\"ok\"}"));
+    }
+
+    /**
+     * Create the executor requests are handled on: a new virtual thread per
+     * request on Java 21 and later, and before that a pool of platform
+     * threads, 8 per processor, with the requests beyond that queued.
+     * Virtual threads are looked up by reflection, since Blocks is built for
+     * Java 17.
+     *
+     * @return The executor.
+     */
+    public static ExecutorService newExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod(
+                    "newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            LOGGER.info("No virtual threads, using a thread pool.");
+        } catch (InvocationTargetException e) {
+            // e.g. a preview feature that was not enabled
+            LOGGER.info("Virtual threads are not available, using a thread "
+                    + "pool.", e.getCause());
+        }
+        int n = THREADS_PER_CPU * Runtime.getRuntime().availableProcessors();
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(n, n, 60,
+                TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+                    Thread t = new Thread(r, "blocks-http");
+                    t.setDaemon(true);
+                    return t;
+                });
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    /**
+     * Start accepting requests.
+     */
+    public void start() {
+        server.start();
+        LOGGER.info("Serving tasks on port {}", getPort());
+    }
+
+    /**
+     * Stop accepting requests, and wait for the ones in progress to finish.
+     *
+     * @param delay The most seconds to wait.
+     */
+    public void stop(int delay) {
+        server.stop(delay);
+        executor.shutdown();
+    }
+
+    /**
+     * @return the port the server listens on.
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    private void handle(HttpExchange ex) throws IOException {
+        try {
+            route(ex);
+        } catch (NotFound e) {
+            error(ex, 404, e.getMessage());
+        } catch (TooLarge e) {
+            error(ex, 413, e.getMessage());
+        } catch (IllegalArgumentException e) {
+            error(ex, 400, e.getMessage());
+        } catch (UnsupportedOperationException e) {
+            error(ex, 501, "Not supported by this store.");
+        } catch (ConflictException e) {
+            error(ex, 412, e.getMessage());
+        } catch (DAOException e) {
+            LOGGER.error("DAO failed", e);
+            error(ex, 500, e.getMessage());
+        } finally {
+            ex.close();
+        }
+    }
+
+    private void route(HttpExchange ex) throws IOException {
+        String method = ex.getRequestMethod();
+        String rest = ex.getRequestURI().getPath().substring(
+                "/tasks".length());
+        if (rest.isEmpty() || rest.equals("/")) {
+            if (method.equals("GET")) {
+                list(ex);
+            } else if (method.equals("POST")) {
+                Task t = validate(TaskFormat.JSONL.parse(body(ex)));
+                if (t.getID() != -1) {
+                    throw new IllegalArgumentException("New tasks cannot "
+                            + "have an ID.");
+                }
+                dao.add(t);
+                ex.getResponseHeaders().set("Location", "/tasks/"
+                        + t.getID());
+                send(ex, 201, "application/json", TaskFormat.JSONL.format(t));
+            } else {
+                error(ex, 405, "Use GET or POST.");
+            }
+            return;
+        }
+
+        long id;
+        try {
+            id = Long.parseLong(rest.substring(1));
+        } catch (NumberFormatException e) {
+            throw new NotFound("No such resource.");
+        }
+        if (method.equals("GET")) {
+            Task t = find(id);
+            etag(ex, t);
+            send(ex, 200, "application/json", TaskFormat.JSONL.format(t));
+        } else if (method.equals("PUT")) {
+            find(id);
+            Task t = validate(TaskFormat.JSONL.parse(body(ex)));
+            if (t.getID() != -1 && t.getID() != id) {
+                throw new IllegalArgumentException("The ID in the body does "
+                        + "not match the URL.");
+            }
+            t.setID(id);
+            t.setVersion(ifMatch(ex));
+            dao.update(t);
+            etag(ex, t);
+            send(ex, 200, "application/json", TaskFormat.JSONL.format(t));
+        } else if (method.equals("DELETE")) {
+            Task t = find(id);
+            t.setVersion(ifMatch(ex));
+            dao.delete(t);
+            ex.sendResponseHeaders(204, -1);
+        } else {
+            error(ex, 405, "Use GET, PUT or DELETE.");
+        }
+    }
+
+    private void list(HttpExchange ex) throws IOException {
+        List<String[]> params = params(ex.getRequestURI().getRawQuery());
+        String token = null;
+        int limit = -1;
+        boolean filtered = false;
+        Query.QueryBuilder qb = Query.select().from(Task.TABLE);
+        Query.WhereBuilder<?> w = null;
+        for (String[] p: params) {
+            switch (p[0]) {
+                case "token":
+                    token = p[1];
+                    break;
+                case "limit":
+                    limit = number(p);
+                    qb.limit(limit);
+                    break;
+                case "offset":
+                    qb.offset(number(p));
+                    filtered = true;
+                    break;
+                case "order":
+                    for (String o: p[1].split(",")) {
+                        boolean desc = o.startsWith("-");
+                        qb.orderBy(field(desc ? o.substring(1) : o),
+                                desc ? Query.Order.DESC : Query.Order.ASC);
+                    }
+                    filtered = true;
+                    break;
+                default:
+                    w = where(w == null ? qb : w.and(), p);
+                    filtered = true;
+            }
+        }
+
+        Paginated<Task> result;
+        if (filtered) {
+            if (token != null) {
+                throw new IllegalArgumentException("token cannot be used "
+                        + "with filters.");
+            }
+            Query q = w == null ? qb.build() : w.finish().build();
+            try {
+                result = dao.query(q);
+            } catch (UnsupportedOperationException e) {
+                result = new ListPaginated<>(TaskQueries.evaluate(
+                            dao.fetchAll(), q), 100);
+            }
+        } else {
+            result = token == null ? dao.fetchAll() : dao.fetchAll(token);
+        }
+
+        if (!filtered && limit >= 0) {
+            List<Task> page = List.of();
+            if (limit > 0) {
+                result.setEntriesPerPage(limit);
+                page = result.hasNextPage() ? result.nextPage() : page;
+            }
+            if (result.hasNextPage()) {
+                ex.getResponseHeaders().set(TOKEN_HEADER,
+                        result.getContinuationToken());
+            }
+            // small enough to send in one go, with a length
+            StringBuilder sb = new StringBuilder();
+            for (Task t: page) {
+                sb.append(TaskFormat.JSONL.format(t)).append('\n');
+            }
+            send(ex, 200, "application/x-ndjson", sb.toString());
+            return;
+        }
+        stream(ex, result);
+    }
+
+    // send every task, a page at a time
+    private void stream(HttpExchange ex, Paginated<Task> tasks)
+            throws IOException {
+        // fetch the first page before committing to a 200
+        tasks.hasNextPage();
+        ex.getResponseHeaders().set("Content-Type", "application/x-ndjson");
+        ex.sendResponseHeaders(200, 0);
+        try (Writer w = new BufferedWriter(new OutputStreamWriter(
+                        ex.getResponseBody(), StandardCharsets.UTF_8))) {
+            while (tasks.hasNextPage()) {
+                for (Task t: tasks.nextPage()) {
+                    w.write(TaskFormat.JSONL.format(t));
+                    w.write('\n');
+                }
+            }
+        } catch (RuntimeException e) {
+            // too late to send an error; cut the response short instead
+            LOGGER.error("Failed while streaming tasks", e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Query.WhereBuilder<?> where(Query.QueryBuilder qb,
+            String[] p) {
+        int dot = p[0].indexOf('.');
+        String op = dot < 0 ? "eq" : p[0].substring(dot + 1);
+        Field<?> f = field(dot < 0 ? p[0] : p[0].substring(0, dot));
+        Query.WhereBuilder<Object> w = qb.where((Field<Object>) f);
+        Object v = value(f, p[1]);
+        switch (op) {
+            case "eq":
+                return w.equal(v);
+            case "ne":
+                return w.notEquals(v);
+            case "lt":
+                return w.lessThan(v);
+            case "le":
+                return w.lessThanOrEquals(v);
+            case "gt":
+                return w.greaterThan(v);
+            case "ge":
+                return w.greaterThanOrEquals(v);
+            case "like":
+                return w.like(v);
+            default:
+                throw new IllegalArgumentException("Unknown operator " + op);
+        }
+    }
+
+    private static Field<?> field(String name) {
+        for (Field<?> f: FIELDS) {
+            if (f.getName().equals(name)) {
+                return f;
+            }
+        }
+        throw new IllegalArgumentException("Unknown field " + name);
+    }
+
+    private static Object value(Field<?> f, String s) {
+        try {
+            if (f.equals(Task.ID_FIELD)) {
+                return Long.parseLong(s);
+            } else if (f.equals(Task.DEADLINE_FIELD)) {
+                return ZonedDateTime.parse(s);
+            }
+            return s;
+        } catch (NumberFormatException | DateTimeParseException e) {
+            throw new IllegalArgumentException("Bad value for " + f.getName()
+                    + ": " + s);
+        }
+    }
+
+    private static int number(String[] p) {
+        try {
+            int n = Integer.parseInt(p[1]);
+            if (n >= 0) {
+                return n;
+            }
+        } catch (NumberFormatException e) {
+            // fall through
+        }
+        throw new IllegalArgumentException(p[0] + " must be a non-negative "
+                + "integer.");
+    }
+
+    private static List<String[]> params(String query) {
+        List<String[]> out = new ArrayList<>();
+        if (query == null || query.isEmpty()) {
+            return out;
+        }
+        for (String pair: query.split("&")) {
+            int eq = pair.indexOf('=');
+            String k = eq < 0 ? pair : pair.substring(0, eq);
+            String v = eq < 0 ? "" : pair.substring(eq + 1);
+            out.add(new String[] {URLDecoder.decode(k, StandardCharsets.UTF_8),
+                URLDecoder.decode(v, StandardCharsets.UTF_8)});
+        }
+        return out;
+    }
+
+    private Task find(long id) {
+        List<Task> found = new ArrayList<>();
+        Paginated<Task> p = dao.fetchEquals(Task.ID, id);
+        if (p.hasNextPage()) {
+            found.addAll(p.nextPage());
+        }
+        if (found.isEmpty()) {
+            throw new NotFound("No task with ID " + id);
+        }
+        return found.get(0);
+    }
+
+    // the version in If-Match, -1 if there is none
+    private static long ifMatch(HttpExchange ex) {
+        String v = ex.getRequestHeaders().getFirst("If-Match");
+        if (v == null || v.equals("*")) {
+            return -1;
+        }
+        try {
+            long version = Long.parseLong(v.replace("\"", "").trim());
+            if (version >= 0) {
+                return version;
+            }
+        } catch (NumberFormatException e) {
+            // fall through
+        }
+        throw new IllegalArgumentException("Bad If-Match: " + v);
+    }
+
+    private static void etag(HttpExchange ex, Task t) {
+        if (t.getVersion() >= 0) {
+            ex.getResponseHeaders().set("ETag", "\"" + t.getVersion()
+                    + "\"");
+        }
+    }
+
+    // apply the same rules as the UI, e.g. no deadlines in the past
+    private static Task validate(Task t) {
+        return new Task(t.getID(), t.getTitle(), t.getDetails(),
+                t.getDeadline());
+    }
+
+    // the body, which is never held in memory if it is too long
+    private static String body(HttpExchange ex) throws IOException {
+        try (InputStream in = ex.getRequestBody()) {
+            byte[] bytes = in.readNBytes(MAX_BODY + 1);
+            if (bytes.length > MAX_BODY) {
+                // a client still sending when the connection closes gets a
+                // reset instead of the response, so read on for a while.
+                // Not with skip(), which bypasses the length of the body
+                byte[] buf = new byte[8192];
+                long left = DRAIN;
+                for (int n; left > 0 && (n = in.read(buf)) >= 0;) {
+                    left -= n;
+                }
+                throw new TooLarge();
+            }
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+
+    private static void error(HttpExchange ex, int status, String message)
+            throws IOException {
+        if (ex.getResponseCode() != -1) {
+            // the response has already started
+            return;
+        }
+        StringBuilder sb = new StringBuilder("{\"error\":");
+        Json.quote(message, sb);
+        send(ex, status, "application/json", sb.append('}').toString());
+    }
+
+    private static void send(HttpExchange ex, int status, String type,
+            String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        ex.getResponseHeaders().set("Content-Type", type);
+        ex.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = ex.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    // a request for something that does not exist
+    private static final class NotFound extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        NotFound(String message) {
+            super(message);
+        }
+    }
+
+    // a request body over MAX_BODY
+    private static final class TooLarge extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        TooLarge() {
+            super("The body is over " + MAX_BODY + " bytes.");
+        }
+    }
+}
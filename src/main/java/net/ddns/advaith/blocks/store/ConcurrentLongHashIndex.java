@@ -0,0 +1,232 @@
+/*
+ * This file is part of Blocks.
+ *
+ * Blocks is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Blocks is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with Blocks. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.ddns.advaith.blocks.store;
+
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.ObjLongConsumer;
+
+/**
+ * A thread safe version of {@link LongHashIndex}.
+ *
+ * The keys are split over a fixed number of segments, each of which is a
+ * LongHashIndex guarded by its own {@link StampedLock}. Writers lock one
+ * segment, so writers to different segments never contend. Readers do not
+ * lock at all in the common case: they read optimistically and only take the
+ * read lock if a writer touched the same segment in the meantime.
+ *
+ * @param <V> The type of the values.
+ * @since 0.1.0
+ * @author Advaith Menon
+ */
+public class ConcurrentLongHashIndex<V> {
+    // default number of segments
+    private static final int DEFAULT_SEGMENTS = 16;
+
+    // the segments, and the lock for each
+    private final LongHashIndex<V>[] segments;
+    private final StampedLock[] locks;
+
+    // 32 - log2(number of segments)
+    private final int shift;
+
+    /**
+     * Create a new, empty index with the default number of segments.
+     */
+    public ConcurrentLongHashIndex() {
+        this(DEFAULT_SEGMENTS, 0);
+    }
+
+    /**
+     * Create a new, empty index.
+     *
+     * @param segments The number of segments, i.e. the number of writers that
+     * can work at the same time. Rounded up to a power of two.
+     * @param expected The total number of mappings expected.
+     * @throws IllegalArgumentException if segments is not positive or
+     * expected is negative.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public ConcurrentLongHashIndex(int segments, int expected) {
+        if (segments <= 0) {
+            throw new IllegalArgumentException("segments must be positive");
+        } else if (expected < 0) {
+            throw new IllegalArgumentException("expected cannot be negative");
+        }
+        int n = 1;
+        while (n < segments) {
+            n <<= 1;
+        }
+        this.segments = new LongHashIndex[n];
+        this.locks = new StampedLock[n];
+        for (int i = 0; i < n; ++i) {
+            this.segments[i] = new LongHashIndex<>(expected / n);
+            this.locks[i] = new StampedLock();
+        }
+        shift = 32 - Integer.numberOfTrailingZeros(n);
+    }
+
+    /**
+     * Get the value for a key. This does not block unless a writer is
+     * modifying the same segment.
+     *
+     * @param key The key.
+     * @return The value, or null if the key is not in the index.
+     */
+    public V get(long key) {
+        int s = segment(key);
+        StampedLock lock = locks[s];
+        long stamp = lock.tryOptimisticRead();
+        V v;
+        try {
+            v = segments[s].get(key);
+        } catch (RuntimeException e) {
+            // the table was resized under us - the stamp will not validate
+            v = null;
+        }
+        if (lock.validate(stamp)) {
+            return v;
+        }
+
+        stamp = lock.readLock();
+        try {
+            return segments[s].get(key);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * @param key The key.
+     * @return true if the key is in the index.
+     */
+    public boolean containsKey(long key) {
+        return get(key) != null;
+    }
+
+    /**
+     * Map a key to a value, replacing any previous value.
+     *
+     * @param key The key.
+     * @param value The value. Cannot be null.
+     * @return The previous value, or null if there was none.
+     * @throws IllegalArgumentException if value is null.
+     */
+    public V put(long key, V value) {
+        int s = segment(key);
+        long stamp = locks[s].writeLock();
+        try {
+            return segments[s].put(key, value);
+        } finally {
+            locks[s].unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Map a key to a value, unless it is already mapped.
+     *
+     * @param key The key.
+     * @param value The value. Cannot be null.
+     * @return The existing value, or null if the new value was added.
+     * @throws IllegalArgumentException if value is null.
+     */
+    public V putIfAbsent(long key, V value) {
+        int s = segment(key);
+        long stamp = locks[s].writeLock();
+        try {
+            V old = segments[s].get(key);
+            if (old == null) {
+                segments[s].put(key, value);
+            }
+            return old;
+        } finally {
+            locks[s].unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Remove a key from the index.
+     *
+     * @param key The key.
+     * @return The value the key was mapped to, or null if there was none.
+     */
+    public V remove(long key) {
+        int s = segment(key);
+        long stamp = locks[s].writeLock();
+        try {
+            return segments[s].remove(key);
+        } finally {
+            locks[s].unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * @return the number of mappings. With concurrent writers this is only
+     * an estimate.
+     */
+    public int size() {
+        int n = 0;
+        for (int i = 0; i < segments.length; ++i) {
+            long stamp = locks[i].readLock();
+            try {
+                n += segments[i].size();
+            } finally {
+                locks[i].unlockRead(stamp);
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Remove every mapping.
+     */
+    public void clear() {
+        for (int i = 0; i < segments.length; ++i) {
+            long stamp = locks[i].writeLock();
+            try {
+                segments[i].clear();
+            } finally {
+                locks[i].unlockWrite(stamp);
+            }
+        }
+    }
+
+    /**
+     * Call an action for every mapping, one segment at a time. Each segment is
+     * read locked while its mappings are visited, so the action must not
+     * modify this index.
+     *
+     * @param action The action to call with every value and its key.
+     */
+    public void forEach(ObjLongConsumer<? super V> action) {
+        for (int i = 0; i < segments.length; ++i) {
+            long stamp = locks[i].readLock();
+            try {
+                segments[i].forEach(action);
+            } finally {
+                locks[i].unlockRead(stamp);
+            }
+        }
+    }
+
+    // a different multiplier from LongHashIndex, so the segment and the slot
+    // within it are picked from independent bits
+    private int segment(long key) {
+        return shift == 32 ? 0
+            : Long.hashCode(key * 0xC2B2AE3D27D4EB4FL) >>> shift;
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * This file is part of Blocks.
+ *
+ * Blocks is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Blocks is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with Blocks. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.ddns.advaith.blocks.store;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.StringJoiner;
+
+import net.ddns.advaith.blocks.model.LikePattern;
+
+/**
+ * Translates LIKE patterns and search box text into SQLite FTS5 MATCH
+ * expressions, using the same rules as {@link TaskSearchIndex}, so that
+ * SQLite-backed DAOs can answer the same queries from an FTS5 table.
+ *
+ * The FTS5 table should use the unicode61 tokenizer without diacritic
+ * folding, which splits text the same way {@link Tokenizer} does:
+ * <pre>
+ * CREATE VIRTUAL TABLE tasks_fts USING fts5(title, details,
+ *     content='tasks', content_rowid='id',
+ *     tokenize="unicode61 remove_diacritics 0");
+ * </pre>
+ *
+ * Like the in-memory index, a MATCH on a LIKE pattern only narrows the rows
+ * down, so keep the LIKE itself in the query. Words that may start inside a
+ * word of the text, as in {@code %ilk%}, cannot be expressed with unicode61
+ * and are left out of the MATCH:
+ * <pre>
+ * SELECT * FROM tasks WHERE id IN (SELECT rowid FROM tasks_fts
+ *     WHERE tasks_fts MATCH ?) AND title LIKE ?
+ * </pre>
+ *
+ * @since 0.1.0
+ * @author Advaith Menon
+ */
+public final class Fts5 {
+    private Fts5() {}
+
+    /**
+     * Build the MATCH expression for a LIKE condition on one column.
+     *
+     * @param column The FTS5 column, e.g. "title".
+     * @param pattern The LIKE pattern.
+     * @return The MATCH expression, or null if the pattern has no words that
+     * start a word of the text, in which case the plain LIKE has to be used
+     * on its own.
+     */
+    public static String match(String column, LikePattern pattern) {
+        List<Tokenizer.Term> usable = new ArrayList<>();
+        for (Tokenizer.Term t: Tokenizer.requiredTerms(pattern)) {
+            if (!t.isInfix()) {
+                usable.add(t);
+            }
+        }
+        String terms = and(usable);
+        return terms == null ? null : column + " : (" + terms + ")";
+    }
+
+    /**
+     * Build the MATCH expression for a search box lookup over all columns.
+     * Unlike {@link #match(String, LikePattern)}, this is exact.
+     *
+     * @param text What the user typed.
+     * @return The MATCH expression, or null if the text has no words.
+     */
+    public static String search(String text) {
+        return and(Tokenizer.searchTerms(text));
+    }
+
+    private static String and(List<Tokenizer.Term> terms) {
+        if (terms.isEmpty()) {
+            return null;
+        }
+        StringJoiner j = new StringJoiner(" AND ");
+        for (Tokenizer.Term t: terms) {
+            String q = "\"" + t.getText().replace("\"", "\"\"") + "\"";
+            j.add(t.isPrefix() ? q + "*" : q);
+        }
+        return j.toString();
+    }
+}
@@ -0,0 +1,264 @@
+/*
+ * This file is part of Blocks.
+ *
+ * Blocks is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Blocks is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with Blocks. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.ddns.advaith.blocks.store;
+
+import java.util.Arrays;
+import java.util.function.ObjLongConsumer;
+
+/**
+ * A hash map from primitive {@code long} keys to objects, using open
+ * addressing with linear probing.
+ *
+ * Keys live in a plain {@code long[]} and values in a parallel {@code
+ * Object[]}, so there is no boxed Long and no entry object per mapping - about
+ * 12 to 24 bytes per entry instead of the 50 or so a {@code HashMap<Long, V>}
+ * needs. Removal shifts the following entries back instead of leaving
+ * tombstones, so lookups never slow down after heavy churn.
+ *
+ * Null values are not allowed; a null slot marks an empty one. This class is
+ * not thread safe, see {@link ConcurrentLongHashIndex} for that.
+ *
+ * @param <V> The type of the values.
+ * @since 0.1.0
+ * @author Advaith Menon
+ */
+public class LongHashIndex<V> {
+    // the table is resized when it gets fuller than this
+    private static final float LOAD_FACTOR = 0.6f;
+
+    // the smallest table we allocate
+    private static final int MIN_CAPACITY = 8;
+
+    // the keys of the table
+    private long[] keys;
+
+    // the values of the table, null for an empty slot
+    private Object[] values;
+
+    // number of mappings
+    private int size;
+
+    // 64 - log2(capacity), used to pick the top bits of the hash
+    private int shift;
+
+    // resize once size reaches this
+    private int threshold;
+
+    /**
+     * Create a new, empty index.
+     */
+    public LongHashIndex() {
+        this(MIN_CAPACITY);
+    }
+
+    /**
+     * Create a new, empty index sized for a number of mappings.
+     *
+     * @param expected The number of mappings expected.
+     * @throws IllegalArgumentException if expected is negative.
+     */
+    public LongHashIndex(int expected) {
+        if (expected < 0) {
+            throw new IllegalArgumentException("expected cannot be negative");
+        }
+        allocate(tableSizeFor(expected));
+    }
+
+    /**
+     * @return the number of mappings in this index.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return true if this index has no mappings.
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Get the value for a key.
+     *
+     * @param key The key.
+     * @return The value, or null if the key is not in the index.
+     */
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+        final long[] k = keys;
+        final Object[] v = values;
+        final int mask = v.length - 1;
+        // bounded, so a racy read (see ConcurrentLongHashIndex) cannot spin
+        for (int i = slot(key), n = 0; n <= mask; i = (i + 1) & mask, ++n) {
+            Object o = v[i];
+            if (o == null) {
+                return null;
+            } else if (k[i] == key) {
+                return (V) o;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param key The key.
+     * @return true if the key is in the index.
+     */
+    public boolean containsKey(long key) {
+        return get(key) != null;
+    }
+
+    /**
+     * Map a key to a value, replacing any previous value.
+     *
+     * @param key The key.
+     * @param value The value. Cannot be null.
+     * @return The previous value, or null if there was none.
+     * @throws IllegalArgumentException if value is null.
+     */
+    @SuppressWarnings("unchecked")
+    public V put(long key, V value) {
+        if (value == null) {
+            throw new IllegalArgumentException("value cannot be null");
+        }
+        final int mask = values.length - 1;
+        int i = slot(key);
+        Object o;
+        while ((o = values[i]) != null) {
+            if (keys[i] == key) {
+                values[i] = value;
+                return (V) o;
+            }
+            i = (i + 1) & mask;
+        }
+        keys[i] = key;
+        values[i] = value;
+        if (++size >= threshold) {
+            rehash(values.length << 1);
+        }
+        return null;
+    }
+
+    /**
+     * Remove a key from the index.
+     *
+     * @param key The key.
+     * @return The value the key was mapped to, or null if there was none.
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(long key) {
+        final int mask = values.length - 1;
+        int i = slot(key);
+        Object o;
+        while ((o = values[i]) != null) {
+            if (keys[i] == key) {
+                shiftBack(i);
+                --size;
+                return (V) o;
+            }
+            i = (i + 1) & mask;
+        }
+        return null;
+    }
+
+    /**
+     * Remove every mapping. The table keeps its current size.
+     */
+    public void clear() {
+        Arrays.fill(values, null);
+        size = 0;
+    }
+
+    /**
+     * Call an action for every mapping, in no particular order. The index must
+     * not be modified by the action.
+     *
+     * @param action The action to call with every value and its key.
+     */
+    @SuppressWarnings("unchecked")
+    public void forEach(ObjLongConsumer<? super V> action) {
+        for (int i = 0; i < values.length; ++i) {
+            if (values[i] != null) {
+                action.accept((V) values[i], keys[i]);
+            }
+        }
+    }
+
+    // fibonacci hashing: multiply, then take the top bits
+    private int slot(long key) {
+        return (int) ((key * 0x9E3779B97F4A7C15L) >>> shift);
+    }
+
+    // close the gap at hole by moving back any entry that probed past it
+    private void shiftBack(int hole) {
+        final int mask = values.length - 1;
+        int j = hole;
+        while (true) {
+            j = (j + 1) & mask;
+            if (values[j] == null) {
+                break;
+            }
+            int home = slot(keys[j]);
+            // entries whose home slot is cyclically in (hole, j] stay put
+            boolean stays = hole <= j ? (hole < home && home <= j)
+                : (hole < home || home <= j);
+            if (!stays) {
+                keys[hole] = keys[j];
+                values[hole] = values[j];
+                hole = j;
+            }
+        }
+        values[hole] = null;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+        allocate(capacity);
+        final int mask = capacity - 1;
+        for (int i = 0; i < oldValues.length; ++i) {
+            if (oldValues[i] != null) {
+                int j = slot(oldKeys[i]);
+                while (values[j] != null) {
+                    j = (j + 1) & mask;
+                }
+                keys[j] = oldKeys[i];
+                values[j] = oldValues[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        shift = 64 - Integer.numberOfTrailingZeros(capacity);
+        threshold = (int) (capacity * LOAD_FACTOR);
+        // publish values last; get() sizes its probe from values
+        keys = new long[capacity];
+        values = new Object[capacity];
+    }
+
+    // smallest power of two that holds expected entries under the load factor
+    static int tableSizeFor(int expected) {
+        long needed = (long) Math.ceil(expected / (double) LOAD_FACTOR) + 1;
+        int cap = MIN_CAPACITY;
+        while (cap < needed) {
+            cap <<= 1;
+        }
+        return cap;
+    }
+}
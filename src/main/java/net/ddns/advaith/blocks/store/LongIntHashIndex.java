@@ -0,0 +1,165 @@
+/*
+ * This file is part of Blocks.
+ *
+ * Blocks is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Blocks is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with Blocks. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.ddns.advaith.blocks.store;
+
+import java.util.Arrays;
+
+/**
+ * The same open addressing table as {@link LongHashIndex}, but mapping to
+ * non-negative {@code int}s, so that row numbers can be indexed without
+ * boxing them either. A value of 0 in the table marks an empty slot, so
+ * values are stored off by one.
+ *
+ * @since 0.1.0
+ * @author Advaith Menon
+ */
+final class LongIntHashIndex {
+    // the table is resized when it gets fuller than this
+    private static final float LOAD_FACTOR = 0.6f;
+
+    private long[] keys;
+
+    // value + 1, or 0 for an empty slot
+    private int[] values;
+
+    private int size;
+
+    private int shift;
+
+    private int threshold;
+
+    LongIntHashIndex(int expected) {
+        allocate(LongHashIndex.tableSizeFor(expected));
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return the value for the key, or -1 if there is none.
+     */
+    int get(long key) {
+        final int mask = values.length - 1;
+        int i = slot(key);
+        int v;
+        while ((v = values[i]) != 0) {
+            if (keys[i] == key) {
+                return v - 1;
+            }
+            i = (i + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * @return the previous value, or -1 if there was none.
+     */
+    int put(long key, int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("value cannot be negative");
+        }
+        final int mask = values.length - 1;
+        int i = slot(key);
+        int v;
+        while ((v = values[i]) != 0) {
+            if (keys[i] == key) {
+                values[i] = value + 1;
+                return v - 1;
+            }
+            i = (i + 1) & mask;
+        }
+        keys[i] = key;
+        values[i] = value + 1;
+        if (++size >= threshold) {
+            rehash(values.length << 1);
+        }
+        return -1;
+    }
+
+    /**
+     * @return the removed value, or -1 if there was none.
+     */
+    int remove(long key) {
+        final int mask = values.length - 1;
+        int i = slot(key);
+        int v;
+        while ((v = values[i]) != 0) {
+            if (keys[i] == key) {
+                shiftBack(i);
+                --size;
+                return v - 1;
+            }
+            i = (i + 1) & mask;
+        }
+        return -1;
+    }
+
+    void clear() {
+        Arrays.fill(values, 0);
+        size = 0;
+    }
+
+    private int slot(long key) {
+        return (int) ((key * 0x9E3779B97F4A7C15L) >>> shift);
+    }
+
+    private void shiftBack(int hole) {
+        final int mask = values.length - 1;
+        int j = hole;
+        while (true) {
+            j = (j + 1) & mask;
+            if (values[j] == 0) {
+                break;
+            }
+            int home = slot(keys[j]);
+            boolean stays = hole <= j ? (hole < home && home <= j)
+                : (hole < home || home <= j);
+            if (!stays) {
+                keys[hole] = keys[j];
+                values[hole] = values[j];
+                hole = j;
+            }
+        }
+        values[hole] = 0;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(capacity);
+        final int mask = capacity - 1;
+        for (int i = 0; i < oldValues.length; ++i) {
+            if (oldValues[i] != 0) {
+                int j = slot(oldKeys[i]);
+                while (values[j] != 0) {
+                    j = (j + 1) & mask;
+                }
+                keys[j] = oldKeys[i];
+                values[j] = oldValues[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        shift = 64 - Integer.numberOfTrailingZeros(capacity);
+        threshold = (int) (capacity * LOAD_FACTOR);
+        keys = new long[capacity];
+        values = new int[capacity];
+    }
+}
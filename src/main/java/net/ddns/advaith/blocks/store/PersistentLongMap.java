@@ -0,0 +1,248 @@
+/*
+ * This file is part of Blocks.
+ * 
+ * Blocks is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * Blocks is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with Blocks. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package net.ddns.advaith.blocks.store;
+
+/**
+ * An immutable map from primitive {@code long} keys to objects, as a hash
+ * array mapped trie. Writing returns a new map and leaves this one as it
+ * was, but the two share everything except the path to the key that
+ * changed, so a write allocates O(log n) small nodes instead of copying the
+ * whole map, and keeping an old version around costs only what has changed
+ * since.
+ *
+ * Each level of the trie takes five bits of the key, lowest first, and a
+ * node only has room for the children it has, found through a 32-bit
+ * bitmap. Keys are used as they are, not hashed: IDs handed out in order
+ * fill nodes densely, and no two keys can collide.
+ *
+ * Null values are not allowed. Being immutable, the map can be shared
+ * between threads freely.
+ *
+ * @param <V> The type of the values.
+ * @since 0.1.0
+ * @author Advaith Menon
+ */
+public final class PersistentLongMap<V> {
+    // the bits of the key each level takes
+    private static final int BITS = 5;
+
+    // the empty map
+    private static final PersistentLongMap<?> EMPTY = new PersistentLongMap<>(
+            new Node(0, new Object[0]), 0);
+
+    // the root, never null
+    private final Node root;
+
+    // number of mappings
+    private final int size;
+
+    /**
+     * A node of the trie: a bitmap of the slots in use, and an array with
+     * a {@link Leaf} or a Node for each of them, in slot order.
+     */
+    private static final class Node {
+        private final int bitmap;
+        private final Object[] children;
+
+        private Node(int bitmap, Object[] children) {
+            this.bitmap = bitmap;
+            this.children = children;
+        }
+    }
+
+    /**
+     * A mapping.
+     */
+    private static final class Leaf {
+        private final long key;
+        private final Object value;
+
+        private Leaf(long key, Object value) {
+            this.key = key;
+            this.value = value;
+        }
+    }
+
+    private PersistentLongMap(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    /**
+     * @param <V> The type of the values.
+     * @return the empty map.
+     */
+    @SuppressWarnings("unchecked")
+    public static <V> PersistentLongMap<V> empty() {
+        return (PersistentLongMap<V>) EMPTY;
+    }
+
+    /**
+     * @return the number of mappings.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return true if there are no mappings.
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @param key The key.
+     * @return the value mapped to the key, or null if there is none.
+     */
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+        Node n = root;
+        for (int shift = 0; ; shift += BITS) {
+            int bit = bit(key, shift);
+            if ((n.bitmap & bit) == 0) {
+                return null;
+            }
+            Object o = n.children[index(n.bitmap, bit)];
+            if (o instanceof Leaf) {
+                Leaf l = (Leaf) o;
+                return l.key == key ? (V) l.value : null;
+            }
+            n = (Node) o;
+        }
+    }
+
+    /**
+     * @param key The key.
+     * @return true if the key is mapped to a value.
+     */
+    public boolean containsKey(long key) {
+        return get(key) != null;
+    }
+
+    /**
+     * Map a key to a value.
+     *
+     * @param key The key.
+     * @param value The value.
+     * @return A map with the mapping, replacing any the key had.
+     * @throws IllegalArgumentException if value is null.
+     */
+    public PersistentLongMap<V> put(long key, V value) {
+        if (value == null) {
+            throw new IllegalArgumentException("Null values are not allowed");
+        }
+        boolean[] added = new boolean[1];
+        Node r = put(root, 0, new Leaf(key, value), added);
+        return new PersistentLongMap<>(r, added[0] ? size + 1 : size);
+    }
+
+    /**
+     * Remove a key.
+     *
+     * @param key The key.
+     * @return A map without the key; this one if it did not have it.
+     */
+    public PersistentLongMap<V> remove(long key) {
+        if (!containsKey(key)) {
+            return this;
+        }
+        Object r = remove(root, 0, key);
+        if (r == null) {
+            return empty();
+        }
+        // the root is always a node, even with a single leaf left
+        Node n = r instanceof Leaf
+            ? new Node(bit(((Leaf) r).key, 0), new Object[] {r}) : (Node) r;
+        return new PersistentLongMap<>(n, size - 1);
+    }
+
+    private static Node put(Node n, int shift, Leaf leaf, boolean[] added) {
+        int bit = bit(leaf.key, shift);
+        int i = index(n.bitmap, bit);
+        if ((n.bitmap & bit) == 0) {
+            added[0] = true;
+            Object[] c = new Object[n.children.length + 1];
+            System.arraycopy(n.children, 0, c, 0, i);
+            c[i] = leaf;
+            System.arraycopy(n.children, i, c, i + 1, n.children.length - i);
+            return new Node(n.bitmap | bit, c);
+        }
+        Object o = n.children[i];
+        Object child;
+        if (o instanceof Node) {
+            child = put((Node) o, shift + BITS, leaf, added);
+        } else if (((Leaf) o).key == leaf.key) {
+            child = leaf;
+        } else {
+            added[0] = true;
+            child = pair(shift + BITS, (Leaf) o, leaf);
+        }
+        Object[] c = n.children.clone();
+        c[i] = child;
+        return new Node(n.bitmap, c);
+    }
+
+    // a node holding two leaves whose keys agree below shift
+    private static Node pair(int shift, Leaf a, Leaf b) {
+        int ba = bit(a.key, shift);
+        int bb = bit(b.key, shift);
+        if (ba == bb) {
+            return new Node(ba, new Object[] {pair(shift + BITS, a, b)});
+        }
+        return new Node(ba | bb, Integer.compareUnsigned(ba, bb) < 0
+                ? new Object[] {a, b} : new Object[] {b, a});
+    }
+
+    // the node without the key, a lone leaf if that is all that is left, or
+    // null if nothing is; the key must be there
+    private static Object remove(Node n, int shift, long key) {
+        int bit = bit(key, shift);
+        int i = index(n.bitmap, bit);
+        Object o = n.children[i];
+        Object child = o instanceof Node
+            ? remove((Node) o, shift + BITS, key) : null;
+        if (child == null) {
+            if (n.children.length == 1) {
+                return null;
+            } else if (n.children.length == 2
+                    && n.children[1 - i] instanceof Leaf) {
+                return n.children[1 - i];
+            }
+            Object[] c = new Object[n.children.length - 1];
+            System.arraycopy(n.children, 0, c, 0, i);
+            System.arraycopy(n.children, i + 1, c, i, c.length - i);
+            return new Node(n.bitmap & ~bit, c);
+        } else if (child instanceof Leaf && n.children.length == 1) {
+            // pull a lone leaf up a level
+            return child;
+        }
+        Object[] c = n.children.clone();
+        c[i] = child;
+        return new Node(n.bitmap, c);
+    }
+
+    private static int bit(long key, int shift) {
+        return 1 << (int) ((key >>> shift) & 31);
+    }
+
+    private static int index(int bitmap, int bit) {
+        return Integer.bitCount(bitmap & (bit - 1));
+    }
+}
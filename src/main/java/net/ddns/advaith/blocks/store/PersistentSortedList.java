@@ -0,0 +1,317 @@
+/*
+ * This file is part of Blocks.
+ * 
+ * Blocks is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * Blocks is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with Blocks. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package net.ddns.advaith.blocks.store;
+
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.ToIntFunction;
+
+/**
+ * An immutable list kept sorted by a comparator, as a treap - a binary
+ * search tree balanced by random priorities - where each node knows the
+ * size of its subtree. Adding or removing returns a new list and leaves
+ * this one as it was; the two share every node off the path that changed,
+ * so a write allocates O(log n) nodes rather than copying the list, and an
+ * old version can be iterated at leisure while newer ones are made.
+ *
+ * Looking an element up by position and finding where a key would go both
+ * take O(log n). Elements the comparator finds equal replace each other,
+ * so the comparator should tell every element apart.
+ *
+ * Being immutable, the list can be shared between threads freely.
+ *
+ * @param <E> The type of the elements.
+ * @since 0.1.0
+ * @author Advaith Menon
+ */
+public final class PersistentSortedList<E> implements Iterable<E> {
+    // the order
+    private final Comparator<? super E> order;
+
+    // the root, null if empty
+    private final Node<E> root;
+
+    /**
+     * A node of the tree. Its priority is at least that of its children.
+     */
+    private static final class Node<E> {
+        private final E value;
+        private final int priority;
+        private final Node<E> left;
+        private final Node<E> right;
+        private final int size;
+
+        private Node(E value, int priority, Node<E> left, Node<E> right) {
+            this.value = value;
+            this.priority = priority;
+            this.left = left;
+            this.right = right;
+            this.size = size(left) + size(right) + 1;
+        }
+
+        // this node with other children
+        private Node<E> with(Node<E> left, Node<E> right) {
+            return new Node<>(value, priority, left, right);
+        }
+    }
+
+    private PersistentSortedList(Comparator<? super E> order, Node<E> root) {
+        this.order = order;
+        this.root = root;
+    }
+
+    /**
+     * Create an empty list.
+     *
+     * @param <E> The type of the elements.
+     * @param order The order to keep the elements in.
+     * @return The list.
+     * @throws IllegalArgumentException if order is null.
+     */
+    public static <E> PersistentSortedList<E> empty(
+            Comparator<? super E> order) {
+        if (order == null) {
+            throw new IllegalArgumentException("order cannot be null");
+        }
+        return new PersistentSortedList<>(order, null);
+    }
+
+    /**
+     * @return the number of elements.
+     */
+    public int size() {
+        return size(root);
+    }
+
+    /**
+     * @return true if there are no elements.
+     */
+    public boolean isEmpty() {
+        return root == null;
+    }
+
+    /**
+     * @param index The position.
+     * @return the element at a position.
+     * @throws IndexOutOfBoundsException if there is no such position.
+     */
+    public E get(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        Node<E> n = root;
+        while (true) {
+            int left = size(n.left);
+            if (index < left) {
+                n = n.left;
+            } else if (index == left) {
+                return n.value;
+            } else {
+                index -= left + 1;
+                n = n.right;
+            }
+        }
+    }
+
+    /**
+     * @param e An element.
+     * @return true if the list has an element equal to it.
+     */
+    public boolean contains(E e) {
+        Node<E> n = root;
+        while (n != null) {
+            int c = order.compare(e, n.value);
+            if (c == 0) {
+                return true;
+            }
+            n = c < 0 ? n.left : n.right;
+        }
+        return false;
+    }
+
+    /**
+     * Find where the elements after a key start.
+     *
+     * @param compareToKey Compares an element to the key, negative if it
+     * comes before the key, 0 if it is the key, and positive if after.
+     * @return The number of elements that do not come after the key.
+     */
+    public int indexAfter(ToIntFunction<? super E> compareToKey) {
+        int count = 0;
+        Node<E> n = root;
+        while (n != null) {
+            if (compareToKey.applyAsInt(n.value) <= 0) {
+                count += size(n.left) + 1;
+                n = n.right;
+            } else {
+                n = n.left;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Add an element.
+     *
+     * @param e The element.
+     * @return A list with the element, in place of any equal one.
+     * @throws IllegalArgumentException if e is null.
+     */
+    public PersistentSortedList<E> add(E e) {
+        if (e == null) {
+            throw new IllegalArgumentException("e cannot be null");
+        }
+        return new PersistentSortedList<>(order, add(root, e,
+                    ThreadLocalRandom.current().nextInt()));
+    }
+
+    /**
+     * Remove an element.
+     *
+     * @param e The element.
+     * @return A list without the element equal to e; this one if there is
+     * none.
+     */
+    public PersistentSortedList<E> remove(E e) {
+        if (e == null || !contains(e)) {
+            return this;
+        }
+        return new PersistentSortedList<>(order, remove(root, e));
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return iterator(0);
+    }
+
+    /**
+     * Iterate from a position on. Getting to the position takes O(log n),
+     * and every step after it O(1) on average.
+     *
+     * @param from The position of the first element.
+     * @return The iterator.
+     * @throws IndexOutOfBoundsException if from is negative or past the
+     * end.
+     */
+    public Iterator<E> iterator(int from) {
+        if (from < 0 || from > size()) {
+            throw new IndexOutOfBoundsException(from);
+        }
+        // the nodes still to visit, each before its right subtree
+        Deque<Node<E>> path = new ArrayDeque<>();
+        Node<E> n = root;
+        while (n != null) {
+            int left = size(n.left);
+            if (from < left) {
+                path.push(n);
+                n = n.left;
+            } else if (from == left) {
+                path.push(n);
+                break;
+            } else {
+                from -= left + 1;
+                n = n.right;
+            }
+        }
+        return new Iterator<E>() {
+            @Override
+            public boolean hasNext() {
+                return !path.isEmpty();
+            }
+
+            @Override
+            public E next() {
+                if (path.isEmpty()) {
+                    throw new NoSuchElementException();
+                }
+                Node<E> n = path.pop();
+                for (Node<E> m = n.right; m != null; m = m.left) {
+                    path.push(m);
+                }
+                return n.value;
+            }
+        };
+    }
+
+    private Node<E> add(Node<E> n, E e, int priority) {
+        if (n == null) {
+            return new Node<>(e, priority, null, null);
+        }
+        int c = order.compare(e, n.value);
+        if (c == 0) {
+            return new Node<>(e, n.priority, n.left, n.right);
+        } else if (priority > n.priority) {
+            Node<E>[] parts = split(n, e);
+            return new Node<>(e, priority, parts[0], parts[1]);
+        } else if (c < 0) {
+            return n.with(add(n.left, e, priority), n.right);
+        }
+        return n.with(n.left, add(n.right, e, priority));
+    }
+
+    // the elements before e and after e; one equal to e is left out
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private Node<E>[] split(Node<E> n, E e) {
+        if (n == null) {
+            return new Node[2];
+        }
+        int c = order.compare(n.value, e);
+        if (c < 0) {
+            Node<E>[] parts = split(n.right, e);
+            parts[0] = n.with(n.left, parts[0]);
+            return parts;
+        } else if (c > 0) {
+            Node<E>[] parts = split(n.left, e);
+            parts[1] = n.with(parts[1], n.right);
+            return parts;
+        }
+        return new Node[] {n.left, n.right};
+    }
+
+    // e must be there
+    private Node<E> remove(Node<E> n, E e) {
+        int c = order.compare(e, n.value);
+        if (c == 0) {
+            return merge(n.left, n.right);
+        } else if (c < 0) {
+            return n.with(remove(n.left, e), n.right);
+        }
+        return n.with(n.left, remove(n.right, e));
+    }
+
+    // join two trees, every element of a coming before every one of b
+    private static <E> Node<E> merge(Node<E> a, Node<E> b) {
+        if (a == null) {
+            return b;
+        } else if (b == null) {
+            return a;
+        } else if (a.priority > b.priority) {
+            return a.with(a.left, merge(a.right, b));
+        }
+        return b.with(merge(a, b.left), b.right);
+    }
+
+    private static int size(Node<?> n) {
+        return n == null ? 0 : n.size;
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * This file is part of Blocks.
+ *
+ * Blocks is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Blocks is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with Blocks. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.ddns.advaith.blocks.store;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A sorted set of IDs, kept in a plain {@code long[]}. IDs are usually handed
+ * out in increasing order, so most additions are appends. Also has the set
+ * operations used to combine posting lists.
+ *
+ * @since 0.1.0
+ * @author Advaith Menon
+ */
+final class PostingList {
+    private long[] ids = new long[4];
+    private int size;
+
+    int size() {
+        return size;
+    }
+
+    void add(long id) {
+        if (size > 0 && ids[size - 1] < id) {
+            append(id);
+            return;
+        }
+        int i = Arrays.binarySearch(ids, 0, size, id);
+        if (i >= 0) {
+            return;
+        }
+        i = -i - 1;
+        if (size == ids.length) {
+            ids = Arrays.copyOf(ids, size * 2);
+        }
+        System.arraycopy(ids, i, ids, i + 1, size - i);
+        ids[i] = id;
+        ++size;
+    }
+
+    void remove(long id) {
+        int i = Arrays.binarySearch(ids, 0, size, id);
+        if (i >= 0) {
+            System.arraycopy(ids, i + 1, ids, i, size - i - 1);
+            --size;
+        }
+    }
+
+    long[] toArray() {
+        return Arrays.copyOf(ids, size);
+    }
+
+    private void append(long id) {
+        if (size == ids.length) {
+            ids = Arrays.copyOf(ids, size * 2);
+        }
+        ids[size++] = id;
+    }
+
+    /**
+     * Intersect two sorted arrays. If one is much smaller, its elements are
+     * binary searched in the other instead of merging both.
+     */
+    static long[] intersect(long[] a, long[] b) {
+        if (a.length > b.length) {
+            long[] t = a;
+            a = b;
+            b = t;
+        }
+        long[] out = new long[a.length];
+        int k = 0;
+        if (a.length * 16 < b.length) {
+            int from = 0;
+            for (long x: a) {
+                int i = Arrays.binarySearch(b, from, b.length, x);
+                if (i >= 0) {
+                    out[k++] = x;
+                    from = i + 1;
+                } else {
+                    from = -i - 1;
+                }
+            }
+        } else {
+            int i = 0;
+            int j = 0;
+            while (i < a.length && j < b.length) {
+                if (a[i] < b[j]) {
+                    ++i;
+                } else if (a[i] > b[j]) {
+                    ++j;
+                } else {
+                    out[k++] = a[i];
+                    ++i;
+                    ++j;
+                }
+            }
+        }
+        return Arrays.copyOf(out, k);
+    }
+
+    /**
+     * Union of any number of sorted arrays, sorted and without duplicates.
+     */
+    static long[] union(List<long[]> lists) {
+        if (lists.size() == 1) {
+            return lists.get(0);
+        }
+        int total = 0;
+        for (long[] l: lists) {
+            total += l.length;
+        }
+        long[] all = new long[total];
+        int k = 0;
+        for (long[] l: lists) {
+            System.arraycopy(l, 0, all, k, l.length);
+            k += l.length;
+        }
+        Arrays.sort(all);
+        int n = 0;
+        for (int i = 0; i < all.length; ++i) {
+            if (n == 0 || all[n - 1] != all[i]) {
+                all[n++] = all[i];
+            }
+        }
+        return Arrays.copyOf(all, n);
+    }
+}
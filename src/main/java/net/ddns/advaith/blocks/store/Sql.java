@@ -0,0 +1,362 @@
+/*
+ * This file is part of Blocks.
+ * 
+ * Blocks is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * Blocks is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with Blocks. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.ddns.advaith.blocks.store;
+
+import java.time.Instant;
+import java.time.zone.ZoneRules;
+import java.util.Collection;
+import java.util.List;
+import java.util.StringJoiner;
+
+import net.ddns.advaith.blocks.model.Field;
+import net.ddns.advaith.blocks.model.Query;
+import net.ddns.advaith.blocks.model.Task;
+import net.ddns.advaith.blocks.model.TaskKey;
+
+/**
+ * Renders a {@link Query} as a parameterised SQLite SELECT statement, for
+ * SQL-backed DAOs that want to push queries down to the database. Only the
+ * selected fields are read, and ORDER BY, LIMIT and OFFSET are applied by the
+ * database, so e.g.
+ * <pre>
+ * Query.select(Task.ID_FIELD, Task.DEADLINE_FIELD).from(Task.TABLE)
+ *     .orderBy(Task.DEADLINE_FIELD).limit(50).build()
+ * </pre>
+ * becomes {@code SELECT "id", "deadline" FROM "tasks" ORDER BY "deadline" ASC
+ * LIMIT 50}. With an index on the deadline column, SQLite answers this by
+ * reading 50 index entries.
+ *
+ * Values are never inlined; they are added to a parameter list, in the order
+ * of the ? placeholders, for the caller to bind. How values such as deadlines
+ * are converted when binding is up to the caller, but it must preserve their
+ * order for ORDER BY and comparisons to work.
+ *
+ * @since 0.1.0
+ * @author Advaith Menon
+ */
+public final class Sql {
+    /**
+     * The column that holds the version of a task (see {@link
+     * Task#getVersion()}), for {@link #update(String, Task, List)} and {@link
+     * #delete(String, Task, List)}.
+     */
+    public static final String VERSION_COLUMN = "version";
+
+    private Sql() {}
+
+    /**
+     * Render a SELECT query.
+     *
+     * @param query The query. It must have a table.
+     * @param params The list to add the parameters to.
+     * @return The SQL statement.
+     * @throws IllegalArgumentException if the query is not a SELECT, has no
+     * table, or uses IN without a Collection value.
+     * @throws UnsupportedOperationException if the query uses an operator
+     * that cannot be rendered.
+     */
+    public static String select(Query query, List<Object> params) {
+        if (query.getType() != Query.Type.SELECT) {
+            throw new IllegalArgumentException("Not a SELECT query.");
+        } else if (query.getTable() == null) {
+            throw new IllegalArgumentException("Query has no table.");
+        }
+
+        StringBuilder sql = new StringBuilder("SELECT ");
+        if (query.getFields().isEmpty()) {
+            sql.append('*');
+        } else {
+            StringJoiner j = new StringJoiner(", ");
+            for (Field<?> f: query.getFields()) {
+                j.add(quote(f.getName()));
+            }
+            sql.append(j);
+        }
+        sql.append(" FROM ").append(quote(query.getTable()));
+
+        if (!query.getWhere().isEmpty()) {
+            sql.append(" WHERE ").append(where(query.getWhere(), params));
+        }
+
+        if (!query.getOrderBy().isEmpty()) {
+            StringJoiner j = new StringJoiner(", ");
+            for (Query.OrderBy o: query.getOrderBy()) {
+                j.add(quote(o.getField().getName()) + " " + o.getOrder());
+            }
+            sql.append(" ORDER BY ").append(j);
+        }
+
+        if (query.getLimit() >= 0) {
+            sql.append(" LIMIT ").append(query.getLimit());
+        } else if (query.getOffset() > 0) {
+            // SQLite only accepts OFFSET after a LIMIT
+            sql.append(" LIMIT -1");
+        }
+        if (query.getOffset() > 0) {
+            sql.append(" OFFSET ").append(query.getOffset());
+        }
+        return sql.toString();
+    }
+
+    /**
+     * Render an aggregate query. The result has one row per group, sorted by
+     * key: the key first if there is a GROUP BY, then one column per
+     * aggregate.
+     *
+     * Grouping by day assumes the column holds epoch milliseconds, as {@link
+     * TaskTable} stores them. SQLite has no time zone rules, so only zones
+     * with a fixed offset (such as UTC) can be rendered; for other zones the
+     * caller has to fall back to {@link
+     * net.ddns.advaith.blocks.dao.TaskQueries#aggregate(
+     * net.ddns.advaith.blocks.model.Paginated, Query)}, or group by UTC day.
+     *
+     * @param query The aggregate query. It must have a table.
+     * @param params The list to add the parameters to.
+     * @return The SQL statement.
+     * @throws IllegalArgumentException if the query is not an aggregate
+     * SELECT, or has no table.
+     * @throws UnsupportedOperationException if the query uses an operator
+     * that cannot be rendered, or groups by day in a zone without a fixed
+     * offset.
+     */
+    public static String aggregate(Query query, List<Object> params) {
+        if (query.getType() != Query.Type.SELECT || !query.isAggregate()) {
+            throw new IllegalArgumentException("Not an aggregate SELECT "
+                    + "query.");
+        } else if (query.getTable() == null) {
+            throw new IllegalArgumentException("Query has no table.");
+        }
+
+        Query.GroupBy g = query.getGroupBy();
+        String key = null;
+        String offset = null;
+        if (g != null && g.isByDay()) {
+            ZoneRules rules = g.getZone().getRules();
+            if (!rules.isFixedOffset()) {
+                throw new UnsupportedOperationException("Cannot group by "
+                        + "day in " + g.getZone() + " in SQL.");
+            }
+            int minutes = rules.getOffset(Instant.EPOCH).getTotalSeconds()
+                / 60;
+            offset = (minutes < 0 ? "" : "+") + minutes + " minutes";
+            key = "date(" + quote(g.getField().getName())
+                + " / 1000, 'unixepoch', ?)";
+        } else if (g != null) {
+            key = quote(g.getField().getName());
+        }
+
+        StringJoiner cols = new StringJoiner(", ");
+        if (key != null) {
+            cols.add(key);
+            if (offset != null) {
+                params.add(offset);
+            }
+        }
+        for (Query.Aggregate<?> a: query.getAggregates()) {
+            cols.add(a.getFunction() + "(" + (a.getField() == null ? "*"
+                        : quote(a.getField().getName())) + ")");
+        }
+
+        StringBuilder sql = new StringBuilder("SELECT ").append(cols)
+            .append(" FROM ").append(quote(query.getTable()));
+        if (!query.getWhere().isEmpty()) {
+            sql.append(" WHERE ").append(where(query.getWhere(), params));
+        }
+        if (key != null) {
+            // refer to the key by position, so its parameter is bound once
+            sql.append(" GROUP BY 1 ORDER BY 1");
+        }
+        return sql.toString();
+    }
+
+    /**
+     * Render a keyset page over a table of tasks: the first tasks after a
+     * key, in {@link TaskKey} order. With an index on (deadline, id), SQLite
+     * seeks straight to the key, so every page costs the same however far
+     * into the table it is. Use it to implement {@link
+     * net.ddns.advaith.blocks.model.KeysetPaginated.Seek}.
+     *
+     * Like {@link #aggregate(Query, List)}, this assumes deadlines are
+     * stored as epoch milliseconds.
+     *
+     * @param table The table.
+     * @param after The key of the last task seen, or null to start from the
+     * beginning.
+     * @param limit The maximum number of tasks to return.
+     * @param params The list to add the parameters to.
+     * @return The SQL statement.
+     * @throws IllegalArgumentException if table is null or limit is not
+     * positive.
+     */
+    public static String after(String table, TaskKey after, int limit,
+            List<Object> params) {
+        if (table == null) {
+            throw new IllegalArgumentException("table cannot be null.");
+        } else if (limit <= 0) {
+            throw new IllegalArgumentException("limit must be positive.");
+        }
+        String deadline = quote(Task.DEADLINE_FIELD.getName());
+        String id = quote(Task.ID_FIELD.getName());
+        StringBuilder sql = new StringBuilder("SELECT * FROM ")
+            .append(quote(table));
+        if (after != null) {
+            sql.append(" WHERE (").append(deadline).append(", ").append(id)
+                .append(") > (?, ?)");
+            params.add(after.getDeadline().toEpochMilli());
+            params.add(after.getID());
+        }
+        sql.append(" ORDER BY ").append(deadline).append(" ASC, ").append(id)
+            .append(" ASC LIMIT ?");
+        params.add(limit);
+        return sql.toString();
+    }
+
+    /**
+     * Render the UPDATE of a task, as a compare-and-set: if the task has a
+     * version, the row is only changed if it still has that version. Either
+     * way the version goes up by one. If the statement changes no row, the
+     * task has either been deleted or changed by someone else; read its
+     * version to tell which, and throw a {@link
+     * net.ddns.advaith.blocks.model.ConflictException} in the latter case.
+     * If it changes a row, the task's version plus one is what is now
+     * stored.
+     *
+     * Like {@link #aggregate(Query, List)}, this assumes deadlines are
+     * stored as epoch milliseconds.
+     *
+     * @param table The table.
+     * @param task The task. It must have an ID.
+     * @param params The list to add the parameters to.
+     * @return The SQL statement.
+     * @throws IllegalArgumentException if table is null or the task has no
+     * ID.
+     */
+    public static String update(String table, Task task,
+            List<Object> params) {
+        check(table, task);
+        StringBuilder sql = new StringBuilder("UPDATE ").append(quote(table))
+            .append(" SET ");
+        sql.append(quote(Task.TITLE_FIELD.getName())).append(" = ?, ");
+        params.add(task.getTitle());
+        sql.append(quote(Task.DETAILS_FIELD.getName())).append(" = ?, ");
+        params.add(task.getDetails());
+        sql.append(quote(Task.DEADLINE_FIELD.getName())).append(" = ?, ");
+        params.add(task.getDeadline().toInstant().toEpochMilli());
+        String version = quote(VERSION_COLUMN);
+        sql.append(version).append(" = ").append(version).append(" + 1");
+        return sql.append(versioned(task, params)).toString();
+    }
+
+    /**
+     * Render the DELETE of a task. As with {@link #update(String, Task,
+     * List)}, a task with a version is only deleted if the row still has
+     * that version.
+     *
+     * @param table The table.
+     * @param task The task. It must have an ID.
+     * @param params The list to add the parameters to.
+     * @return The SQL statement.
+     * @throws IllegalArgumentException if table is null or the task has no
+     * ID.
+     */
+    public static String delete(String table, Task task,
+            List<Object> params) {
+        check(table, task);
+        return "DELETE FROM " + quote(table) + versioned(task, params);
+    }
+
+    /**
+     * Quote an identifier.
+     *
+     * @param name The identifier.
+     * @return The quoted identifier.
+     */
+    public static String quote(String name) {
+        return "\"" + name.replace("\"", "\"\"") + "\"";
+    }
+
+    private static void check(String table, Task task) {
+        if (table == null) {
+            throw new IllegalArgumentException("table cannot be null.");
+        } else if (task.getID() < 0) {
+            throw new IllegalArgumentException("Task has no ID.");
+        }
+    }
+
+    // the WHERE clause of a compare-and-set
+    private static String versioned(Task task, List<Object> params) {
+        String out = " WHERE " + quote(Task.ID_FIELD.getName()) + " = ?";
+        params.add(task.getID());
+        if (task.getVersion() != -1) {
+            out += " AND " + quote(VERSION_COLUMN) + " = ?";
+            params.add(task.getVersion());
+        }
+        return out;
+    }
+
+    // SQL gives AND precedence over OR, but Query applies them left to
+    // right, so parenthesise whenever the operator changes
+    private static String where(List<Query.Where> where,
+            List<Object> params) {
+        StringBuilder out = new StringBuilder();
+        Query.Operator prev = null;
+        Query.Operator next = null;
+        for (Query.Where w: where) {
+            if (next != null) {
+                if (prev != null && prev != next) {
+                    out.insert(0, '(').append(')');
+                }
+                out.append(' ').append(next).append(' ');
+                prev = next;
+            }
+            out.append(condition(w, params));
+            next = w.getNextLogicalOperator();
+        }
+        return out.toString();
+    }
+
+    private static String condition(Query.Where w, List<Object> params) {
+        String column = quote(w.getField().getName());
+        Object v = w.getValue();
+        switch (w.getOperator()) {
+            case EQUALS:
+            case NOT_EQUALS:
+            case GREATER_THAN:
+            case LESS_THAN:
+            case GREATER_THAN_OR_EQUALS:
+            case LESS_THAN_OR_EQUALS:
+            case LIKE:
+                params.add(v);
+                return column + " " + w.getOperator() + " ?";
+            case IN:
+                if (!(v instanceof Collection)) {
+                    throw new IllegalArgumentException("IN needs a "
+                            + "Collection value.");
+                }
+                StringJoiner j = new StringJoiner(", ", "(", ")");
+                for (Object o: (Collection<?>) v) {
+                    params.add(o);
+                    j.add("?");
+                }
+                return column + " IN " + j;
+            default:
+                throw new UnsupportedOperationException("Operator "
+                        + w.getOperator() + " is not supported.");
+        }
+    }
+}
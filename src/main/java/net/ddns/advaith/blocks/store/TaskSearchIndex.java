@@ -0,0 +1,197 @@
+/*
+ * This file is part of Blocks.
+ *
+ * Blocks is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Blocks is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with Blocks. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.ddns.advaith.blocks.store;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import net.ddns.advaith.blocks.model.Field;
+import net.ddns.advaith.blocks.model.LikePattern;
+import net.ddns.advaith.blocks.model.Query;
+import net.ddns.advaith.blocks.model.Task;
+
+/**
+ * Full text index over the title and details of tasks. Keep it up to date by
+ * calling {@link #add(Task)}, {@link #update(Task)} and {@link #delete(long)}
+ * alongside the corresponding DAO operations.
+ *
+ * LIKE conditions are answered in two steps: the index produces a set of
+ * candidate IDs from the words in the pattern, and the caller checks only
+ * those candidates with {@link LikePattern#matches(String)}. The index never
+ * leaves out a matching task, but it may include some that do not match.
+ * Words in the middle of a pattern, as in {@code %ab%} from {@link
+ * LikePattern#contains(String)}, are looked up as pieces of the indexed
+ * words, see {@link TextIndex}. Only if a pattern has no words at all (e.g.
+ * {@code %_%}) do the candidate methods return null, and the caller has to
+ * fall back to checking every task.
+ *
+ * This class is not thread safe.
+ *
+ * @since 0.1.0
+ * @author Advaith Menon
+ */
+public class TaskSearchIndex {
+    // the title column
+    private final TextIndex titles;
+
+    // the details column
+    private final TextIndex details;
+
+    /**
+     * Create a new, empty TaskSearchIndex.
+     */
+    public TaskSearchIndex() {
+        titles = new TextIndex();
+        details = new TextIndex();
+    }
+
+    /**
+     * Index a new task.
+     *
+     * @param task The task. It must have an ID.
+     * @throws IllegalArgumentException if the task has no ID.
+     */
+    public void add(Task task) {
+        update(task);
+    }
+
+    /**
+     * Re-index a task that has changed.
+     *
+     * @param task The task. It must have an ID.
+     * @throws IllegalArgumentException if the task has no ID.
+     */
+    public void update(Task task) {
+        long id = task.getID();
+        if (id < 0) {
+            throw new IllegalArgumentException("Task must have an ID.");
+        }
+        titles.put(id, task.getTitle());
+        details.put(id, task.getDetails());
+    }
+
+    /**
+     * Remove a task from the index.
+     *
+     * @param id The ID of the task.
+     */
+    public void delete(long id) {
+        titles.remove(id);
+        details.remove(id);
+    }
+
+    /**
+     * Remove every task from the index.
+     */
+    public void clear() {
+        titles.clear();
+        details.clear();
+    }
+
+    /**
+     * @return the number of tasks in the index.
+     */
+    public int size() {
+        return titles.size();
+    }
+
+    /**
+     * Find the candidates for a LIKE condition on a single field.
+     *
+     * @param field {@link Task#TITLE_FIELD} or {@link Task#DETAILS_FIELD}.
+     * @param pattern The LIKE pattern.
+     * @return The IDs of the candidates, sorted, or null if the index cannot
+     * narrow the search down.
+     */
+    public long[] candidates(Field<?> field, LikePattern pattern) {
+        TextIndex index = indexOf(field);
+        if (index == null) {
+            return null;
+        }
+        return index.lookupAll(Tokenizer.requiredTerms(pattern));
+    }
+
+    /**
+     * Find the candidates for every LIKE condition in a query's WHERE clause.
+     * Conditions on other operators are left for the caller to check. The
+     * index is only used if all conditions are joined with AND, since with OR
+     * a single unindexable condition can match any task.
+     *
+     * @param query The query.
+     * @return The IDs of the candidates, sorted, or null if the index cannot
+     * narrow the search down.
+     */
+    public long[] candidates(Query query) {
+        long[] out = null;
+        for (Query.Where w: query.getWhere()) {
+            if (w.getNextLogicalOperator() == Query.Operator.OR) {
+                return null;
+            }
+        }
+        for (Query.Where w: query.getWhere()) {
+            if (w.getOperator() != Query.Operator.LIKE
+                    || !(w.getValue() instanceof String)) {
+                continue;
+            }
+            long[] c = candidates(w.getField(),
+                    LikePattern.compile((String) w.getValue()));
+            if (c != null) {
+                out = out == null ? c : PostingList.intersect(out, c);
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Search box lookup: find the tasks where every word of the text appears
+     * in either the title or the details. The last word is treated as a
+     * prefix while it is still being typed. Unlike the candidate methods, the
+     * result is exact.
+     *
+     * @param text What the user typed.
+     * @return The IDs of the matching tasks, sorted, or null if the text has
+     * no words, i.e. everything matches.
+     */
+    public long[] search(String text) {
+        List<Tokenizer.Term> terms = Tokenizer.searchTerms(text);
+        if (terms.isEmpty()) {
+            return null;
+        }
+        long[] out = null;
+        for (Tokenizer.Term t: terms) {
+            List<long[]> both = new ArrayList<>(2);
+            both.add(titles.lookup(t));
+            both.add(details.lookup(t));
+            long[] ids = PostingList.union(both);
+            out = out == null ? ids : PostingList.intersect(out, ids);
+            if (out.length == 0) {
+                break;
+            }
+        }
+        return out;
+    }
+
+    private TextIndex indexOf(Field<?> field) {
+        if (Task.TITLE_FIELD.equals(field)) {
+            return titles;
+        } else if (Task.DETAILS_FIELD.equals(field)) {
+            return details;
+        }
+        return null;
+    }
+}
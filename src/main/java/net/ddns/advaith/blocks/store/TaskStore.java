@@ -0,0 +1,435 @@
+/*
+ * This file is part of Blocks.
+ * 
+ * Blocks is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * Blocks is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with Blocks. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.ddns.advaith.blocks.store;
+
+import java.util.AbstractList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.ddns.advaith.blocks.model.Change;
+import net.ddns.advaith.blocks.model.ConflictException;
+import net.ddns.advaith.blocks.model.Task;
+import net.ddns.advaith.blocks.model.TaskKey;
+
+/**
+ * A thread safe, in-memory set of tasks built from immutable snapshots.
+ *
+ * Readers never lock: {@link #snapshot()} is a single volatile read, and the
+ * snapshot it returns never changes, so it can be iterated or paged through
+ * at leisure while writers carry on. A snapshot keeps its tasks in {@link
+ * TaskKey} order, with a second index by ID for lookups, so both ordered
+ * scans and point lookups are cheap.
+ *
+ * Writers are optimistic. A writer builds the next snapshot from the current
+ * one without holding any lock, then briefly locks to check that nobody
+ * else got there first and, if so, installs it; otherwise it starts again
+ * from the newer snapshot. A snapshot is a {@link PersistentSortedList} in
+ * {@link TaskKey} order and a {@link PersistentLongMap} by ID, so the next
+ * one shares all but O(log n) nodes with the last: a write allocates little
+ * however many tasks there are, and holding on to an old snapshot only
+ * keeps what has changed since alive.
+ *
+ * Listeners hear about every change in order, with the version of the
+ * snapshot that the change produced as its sequence number. They are called
+ * while the writer holds the lock, so they must be quick, e.g. hand the
+ * change to a queue.
+ *
+ * Every stored task has a version (see {@link Task#getVersion()}), which
+ * goes up by one with every update. Updates and deletes of a task that has a
+ * version are compare-and-set: they fail with a {@link ConflictException} if
+ * the stored task has moved on, so concurrent editors cannot silently
+ * overwrite each other. The check is made against the snapshot the write is
+ * built from, and installing it fails if that snapshot is stale, so no lock
+ * is held while comparing.
+ *
+ * Tasks are mutable, so the store keeps its own copies and hands out copies.
+ *
+ * @since 0.1.0
+ * @author Advaith Menon
+ */
+public final class TaskStore {
+    private static final Logger LOGGER = LoggerFactory.getLogger(
+            TaskStore.class);
+
+    /**
+     * An immutable view of the store at one point in time.
+     *
+     * @since 0.1.0
+     */
+    public static final class Snapshot {
+        // the empty store
+        static final Snapshot EMPTY = new Snapshot(0, 0,
+                PersistentSortedList.empty(TaskKey.ORDER),
+                PersistentLongMap.empty());
+
+        private final long version;
+        private final long nextID;
+
+        // tasks in TaskKey order
+        private final PersistentSortedList<Task> byKey;
+
+        // the same tasks by ID
+        private final PersistentLongMap<Task> byID;
+
+        private Snapshot(long version, long nextID,
+                PersistentSortedList<Task> byKey,
+                PersistentLongMap<Task> byID) {
+            this.version = version;
+            this.nextID = nextID;
+            this.byKey = byKey;
+            this.byID = byID;
+        }
+
+        /**
+         * @return the version, which goes up by one with every change.
+         */
+        public long getVersion() {
+            return version;
+        }
+
+        /**
+         * @return the number of tasks.
+         */
+        public int size() {
+            return byKey.size();
+        }
+
+        /**
+         * Look a task up by ID.
+         *
+         * @param id The ID.
+         * @return A copy of the task, or null if there is none.
+         */
+        public Task get(long id) {
+            Task t = find(id);
+            return t == null ? null : copy(t);
+        }
+
+        /**
+         * @param id The ID.
+         * @return true if there is a task with the ID.
+         */
+        public boolean contains(long id) {
+            return byID.containsKey(id);
+        }
+
+        /**
+         * @return the tasks in {@link TaskKey} order. The list cannot be
+         * modified, and hands out a copy of a task each time it is read.
+         * Reading by position takes O(log n); iterating is cheaper.
+         */
+        public List<Task> tasks() {
+            return new AbstractList<Task>() {
+                @Override
+                public Task get(int i) {
+                    return copy(byKey.get(i));
+                }
+
+                @Override
+                public int size() {
+                    return byKey.size();
+                }
+
+                @Override
+                public Iterator<Task> iterator() {
+                    Iterator<Task> it = byKey.iterator();
+                    return new Iterator<Task>() {
+                        @Override
+                        public boolean hasNext() {
+                            return it.hasNext();
+                        }
+
+                        @Override
+                        public Task next() {
+                            return copy(it.next());
+                        }
+                    };
+                }
+            };
+        }
+
+        /**
+         * Copy a run of tasks out, in {@link TaskKey} order.
+         *
+         * @param from The index in {@link #tasks()} of the first task.
+         * @param limit The most tasks to copy.
+         * @return Copies of the tasks; a list that cannot be modified.
+         * @throws IndexOutOfBoundsException if from is negative or past the
+         * end.
+         */
+        public List<Task> tasks(int from, int limit) {
+            Task[] out = new Task[Math.max(0, Math.min(limit,
+                        size() - from))];
+            Iterator<Task> it = byKey.iterator(from);
+            for (int i = 0; i < out.length; ++i) {
+                out[i] = copy(it.next());
+            }
+            return List.of(out);
+        }
+
+        /**
+         * Find where the tasks after a key start.
+         *
+         * @param key The key.
+         * @return The index in {@link #tasks()} of the first task after the
+         * key.
+         */
+        public int indexAfter(TaskKey key) {
+            return byKey.indexAfter(t -> TaskKey.of(t).compareTo(key));
+        }
+
+        // the stored task with an ID, or null
+        Task find(long id) {
+            return byID.get(id);
+        }
+
+        // a snapshot with a task put in, replacing one with the same ID
+        Snapshot put(Task t) {
+            Task old = byID.get(t.getID());
+            PersistentSortedList<Task> k = old == null ? byKey
+                : byKey.remove(old);
+            return new Snapshot(version + 1, Math.max(nextID, t.getID() + 1),
+                    k.add(t), byID.put(t.getID(), t));
+        }
+
+        // a snapshot without a task; this one if there is no such task
+        Snapshot remove(long id) {
+            Task old = byID.get(id);
+            if (old == null) {
+                return this;
+            }
+            return new Snapshot(version + 1, nextID, byKey.remove(old),
+                    byID.remove(id));
+        }
+    }
+
+    // the current snapshot
+    private volatile Snapshot current = Snapshot.EMPTY;
+
+    // held while installing a snapshot and telling the listeners
+    private final Object lock = new Object();
+
+    // told about every change
+    private final List<Consumer<Change<Task>>> listeners =
+        new CopyOnWriteArrayList<>();
+
+    /**
+     * @return the current snapshot. It never changes, however the store is
+     * written to afterwards.
+     */
+    public Snapshot snapshot() {
+        return current;
+    }
+
+    /**
+     * Look a task up by ID in the current snapshot.
+     *
+     * @param id The ID.
+     * @return A copy of the task, or null if there is none.
+     */
+    public Task get(long id) {
+        return current.get(id);
+    }
+
+    /**
+     * Add a task. A task without an ID is given the next free one, and a task
+     * without a version starts at version 0; both are set on the task passed
+     * in.
+     *
+     * @param task The task.
+     * @throws IllegalArgumentException if a task with the same ID exists.
+     */
+    public void add(Task task) {
+        addAll(List.of(task));
+    }
+
+    /**
+     * Add several tasks in one change of snapshot: either all of them are
+     * added or, if one of them fails, none are. Listeners still hear about
+     * each task separately.
+     *
+     * @param tasks The tasks. Those without an ID are given one.
+     * @throws IllegalArgumentException if a task with the same ID as one of
+     * them exists, or two of them have the same ID.
+     */
+    public void addAll(List<Task> tasks) {
+        long[] assigned = new long[tasks.size()];
+        long[] versions = new long[tasks.size()];
+        Task[] copies = new Task[tasks.size()];
+        Snapshot base;
+        Snapshot next;
+        do {
+            base = current;
+            next = base;
+            for (int i = 0; i < copies.length; ++i) {
+                Task t = tasks.get(i);
+                long id = t.getID() == -1 ? next.nextID : t.getID();
+                if (next.contains(id)) {
+                    throw new IllegalArgumentException("A task with ID " + id
+                            + " already exists.");
+                }
+                assigned[i] = id;
+                versions[i] = Math.max(t.getVersion(), 0);
+                copies[i] = Task.restore(id, t.getTitle(), t.getDetails(),
+                        t.getDeadline(), versions[i]);
+                next = next.put(copies[i]);
+            }
+        } while (!install(base, next, copies, assigned, Change.Type.INSERT));
+        for (int i = 0; i < copies.length; ++i) {
+            tasks.get(i).setID(assigned[i]);
+            tasks.get(i).setVersion(versions[i]);
+        }
+    }
+
+    /**
+     * Replace a task. If the task has a version, it only replaces a stored
+     * task with the same version. The stored task's version goes up by one,
+     * and the new version is set on the task passed in.
+     *
+     * @param task The task, with its ID.
+     * @return false if there is no task with the ID.
+     * @throws IllegalArgumentException if the task has no ID.
+     * @throws ConflictException if the stored task has another version.
+     */
+    public boolean update(Task task) {
+        long id = task.getID();
+        if (id == -1) {
+            throw new IllegalArgumentException("Task has no ID.");
+        }
+        long[] version = new long[1];
+        boolean done = modify(s -> {
+            Task old = s.find(id);
+            if (old == null) {
+                return s;
+            }
+            check(old, task.getVersion());
+            version[0] = old.getVersion() + 1;
+            return s.put(Task.restore(id, task.getTitle(), task.getDetails(),
+                        task.getDeadline(), version[0]));
+        }, id, Change.Type.UPDATE);
+        if (done) {
+            task.setVersion(version[0]);
+        }
+        return done;
+    }
+
+    /**
+     * Delete a task, whatever its version.
+     *
+     * @param id The ID of the task.
+     * @return false if there is no task with the ID.
+     */
+    public boolean delete(long id) {
+        return delete(id, -1);
+    }
+
+    /**
+     * Delete a task if it is at a version.
+     *
+     * @param id The ID of the task.
+     * @param version The version, or -1 to delete it whatever its version.
+     * @return false if there is no task with the ID.
+     * @throws ConflictException if the stored task has another version.
+     */
+    public boolean delete(long id, long version) {
+        return modify(s -> {
+            Task old = s.find(id);
+            if (old != null) {
+                check(old, version);
+            }
+            return s.remove(id);
+        }, id, Change.Type.DELETE);
+    }
+
+    /**
+     * Listen to every change made from now on.
+     *
+     * @param listener The listener.
+     */
+    public void addListener(Consumer<Change<Task>> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Stop listening.
+     *
+     * @param listener The listener.
+     */
+    public void removeListener(Consumer<Change<Task>> listener) {
+        listeners.remove(listener);
+    }
+
+    // apply a change to a single task; false if it changed nothing
+    private boolean modify(UnaryOperator<Snapshot> op, long id,
+            Change.Type type) {
+        while (true) {
+            Snapshot base = current;
+            Snapshot next = op.apply(base);
+            if (next == base) {
+                return false;
+            } else if (install(base, next, new Task[] {next.find(id)},
+                        new long[] {id}, type)) {
+                return true;
+            }
+        }
+    }
+
+    // install a snapshot unless another writer got there first
+    private boolean install(Snapshot base, Snapshot next, Task[] items,
+            long[] ids, Change.Type type) {
+        synchronized (lock) {
+            if (current != base) {
+                return false;
+            }
+            current = next;
+            long seq = base.version;
+            for (int i = 0; i < ids.length; ++i) {
+                Change<Task> c = new Change<>(type, ++seq, ids[i],
+                        items[i] == null ? null : copy(items[i]));
+                for (Consumer<Change<Task>> l: listeners) {
+                    try {
+                        l.accept(c);
+                    } catch (RuntimeException e) {
+                        // the change has been made; do not fail the writer
+                        LOGGER.error("Listener failed", e);
+                    }
+                }
+            }
+            return true;
+        }
+    }
+
+    // the compare in compare-and-set
+    private static void check(Task stored, long expected) {
+        if (expected != -1 && stored.getVersion() != expected) {
+            throw new ConflictException(stored.getID(), expected,
+                    stored.getVersion());
+        }
+    }
+
+    private static Task copy(Task t) {
+        return Task.restore(t.getID(), t.getTitle(), t.getDetails(),
+                t.getDeadline(), t.getVersion());
+    }
+}
@@ -0,0 +1,503 @@
+/*
+ * This file is part of Blocks.
+ *
+ * Blocks is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Blocks is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with Blocks. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.ddns.advaith.blocks.store;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import net.ddns.advaith.blocks.model.Task;
+
+/**
+ * A column oriented ("struct of arrays") in-memory table of tasks.
+ *
+ * Instead of keeping one {@link Task} object per row, every field is stored in
+ * its own array: IDs and deadlines (as epoch milliseconds) in {@code long[]}
+ * columns, and titles and details as offsets into a single shared character
+ * pool. Scans over the primitive columns walk contiguous memory in simple
+ * counted loops, which the JIT can unroll and vectorize, and they never
+ * allocate. Task objects are only created for the rows a caller actually asks
+ * for, using {@link #get(int)} or {@link #materialize(int[], int)}.
+ *
+ * Rows are kept dense: deleting a row moves the last row into its place, so
+ * row numbers are only stable until the next deletion. Use IDs to refer to a
+ * task for longer than that.
+ *
+ * This class is not thread safe.
+ *
+ * @since 0.1.0
+ * @author Advaith Menon
+ */
+public final class TaskTable {
+    // default number of rows to allocate
+    private static final int DEFAULT_CAPACITY = 64;
+
+    // number of rows in use
+    private int size;
+
+    // the ID column
+    private long[] ids;
+
+    // ID to row, so lookups by ID do not have to scan the ID column
+    private final LongIntHashIndex rows;
+
+    // the deadline column, in milliseconds since the epoch
+    private long[] deadlines;
+
+    // index into zonePool for every row, so deadlines keep their zone
+    private int[] zones;
+
+    // every distinct zone seen so far. There are only ever a handful.
+    private final List<ZoneId> zonePool;
+
+    // where each row's title starts in the pool, and how long it is
+    private int[] titleStart;
+    private int[] titleLength;
+
+    // the same for details. A length of -1 means the details are null.
+    private int[] detailsStart;
+    private int[] detailsLength;
+
+    // the string pool, and how much of it is used
+    private char[] chars;
+    private int charsUsed;
+
+    // characters in the pool no longer referenced by any row
+    private int charsDead;
+
+    /**
+     * Create a new, empty TaskTable.
+     */
+    public TaskTable() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Create a new, empty TaskTable with room for a number of rows.
+     *
+     * @param capacity The number of rows to allocate up front.
+     * @throws IllegalArgumentException if capacity is negative.
+     */
+    public TaskTable(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("capacity cannot be negative");
+        }
+        ids = new long[capacity];
+        deadlines = new long[capacity];
+        zones = new int[capacity];
+        titleStart = new int[capacity];
+        titleLength = new int[capacity];
+        detailsStart = new int[capacity];
+        detailsLength = new int[capacity];
+        chars = new char[capacity * 32];
+        zonePool = new ArrayList<>();
+        rows = new LongIntHashIndex(capacity);
+    }
+
+    /**
+     * @return the number of rows in this table.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Add a task as a new row.
+     *
+     * @param task The task to add. It must already have an ID.
+     * @return The row the task was stored in.
+     * @throws IllegalArgumentException if the task has no ID, title or
+     * deadline, or a task with the same ID is already in the table.
+     */
+    public int add(Task task) {
+        long id = task.getID();
+        if (id < 0) {
+            throw new IllegalArgumentException("Task must have an ID.");
+        } else if (rowOf(id) >= 0) {
+            throw new IllegalArgumentException("Duplicate ID " + id);
+        }
+        check(task);
+
+        if (size == ids.length) {
+            grow();
+        }
+        // fill the row in before it can be found
+        int row = size;
+        set(row, task);
+        ids[row] = id;
+        rows.put(id, row);
+        ++size;
+        return row;
+    }
+
+    /**
+     * Replace the row with the same ID as a task with the task's values.
+     *
+     * @param task The task to update.
+     * @return true if a row was updated, false if there is no such ID.
+     * @throws IllegalArgumentException if the task has no title or deadline.
+     */
+    public boolean update(Task task) {
+        int row = rowOf(task.getID());
+        if (row < 0) {
+            return false;
+        }
+        check(task);
+        release(row);
+        set(row, task);
+        compactIfWasteful();
+        return true;
+    }
+
+    /**
+     * Delete the row with the given ID. The last row takes its place.
+     *
+     * @param id The ID to delete.
+     * @return true if a row was deleted, false if there is no such ID.
+     */
+    public boolean delete(long id) {
+        int row = rows.remove(id);
+        if (row < 0) {
+            return false;
+        }
+        release(row);
+
+        int last = --size;
+        if (row != last) {
+            rows.put(ids[last], row);
+            ids[row] = ids[last];
+            deadlines[row] = deadlines[last];
+            zones[row] = zones[last];
+            titleStart[row] = titleStart[last];
+            titleLength[row] = titleLength[last];
+            detailsStart[row] = detailsStart[last];
+            detailsLength[row] = detailsLength[last];
+        }
+        compactIfWasteful();
+        return true;
+    }
+
+    /**
+     * Remove every row.
+     */
+    public void clear() {
+        size = 0;
+        rows.clear();
+        charsUsed = 0;
+        charsDead = 0;
+    }
+
+    /**
+     * Find the row a task is stored in.
+     *
+     * @param id The ID to look for.
+     * @return The row, or -1 if there is no such ID.
+     */
+    public int rowOf(long id) {
+        return rows.get(id);
+    }
+
+    /**
+     * @param row The row.
+     * @return the ID stored in the row.
+     * @throws IndexOutOfBoundsException if the row does not exist.
+     */
+    public long getID(int row) {
+        checkRow(row);
+        return ids[row];
+    }
+
+    /**
+     * @param row The row.
+     * @return the deadline stored in the row, in milliseconds since the
+     * epoch.
+     * @throws IndexOutOfBoundsException if the row does not exist.
+     */
+    public long getDeadlineMillis(int row) {
+        checkRow(row);
+        return deadlines[row];
+    }
+
+    /**
+     * @param row The row.
+     * @return the title stored in the row.
+     * @throws IndexOutOfBoundsException if the row does not exist.
+     */
+    public String getTitle(int row) {
+        checkRow(row);
+        return new String(chars, titleStart[row], titleLength[row]);
+    }
+
+    /**
+     * @param row The row.
+     * @return the details stored in the row, which may be null.
+     * @throws IndexOutOfBoundsException if the row does not exist.
+     */
+    public String getDetails(int row) {
+        checkRow(row);
+        int len = detailsLength[row];
+        return len < 0 ? null : new String(chars, detailsStart[row], len);
+    }
+
+    /**
+     * Create a Task from a row.
+     *
+     * @param row The row.
+     * @return A new Task with the values stored in the row.
+     * @throws IndexOutOfBoundsException if the row does not exist.
+     */
+    public Task get(int row) {
+        checkRow(row);
+        return Task.restore(ids[row], getTitle(row), getDetails(row),
+                ZonedDateTime.ofInstant(Instant.ofEpochMilli(deadlines[row]),
+                    zonePool.get(zones[row])));
+    }
+
+    /**
+     * Create Tasks for the result rows of a scan.
+     *
+     * @param rows The rows, as filled in by one of the select methods.
+     * @param n The number of rows to use from the array.
+     * @return A list of new Tasks, in the same order as the rows.
+     */
+    public List<Task> materialize(int[] rows, int n) {
+        List<Task> out = new ArrayList<>(n);
+        for (int i = 0; i < n; ++i) {
+            out.add(get(rows[i]));
+        }
+        return out;
+    }
+
+    /**
+     * Count the rows with a deadline in [from, to).
+     *
+     * @param from The lower bound, inclusive, in epoch milliseconds.
+     * @param to The upper bound, exclusive, in epoch milliseconds.
+     * @return The number of matching rows.
+     */
+    public int countDeadlineBetween(long from, long to) {
+        final long[] col = deadlines;
+        final int n = size;
+        int count = 0;
+        // non short-circuiting & keeps the loop body branch free
+        for (int i = 0; i < n; ++i) {
+            long d = col[i];
+            count += (d >= from & d < to) ? 1 : 0;
+        }
+        return count;
+    }
+
+    /**
+     * Find the rows with a deadline in [from, to).
+     *
+     * @param from The lower bound, inclusive, in epoch milliseconds.
+     * @param to The upper bound, exclusive, in epoch milliseconds.
+     * @param out Where to write the matching rows. This must have room for at
+     * least {@link #size()} rows; it can be reused between scans.
+     * @return The number of rows written to out.
+     * @throws IllegalArgumentException if out is too small.
+     */
+    public int selectDeadlineBetween(long from, long to, int[] out) {
+        checkOut(out);
+        final long[] col = deadlines;
+        final int n = size;
+        int k = 0;
+        // always write, only advance on a match: no unpredictable branch
+        for (int i = 0; i < n; ++i) {
+            long d = col[i];
+            out[k] = i;
+            k += (d >= from & d < to) ? 1 : 0;
+        }
+        return k;
+    }
+
+    /**
+     * Count the rows with a given deadline.
+     *
+     * @param deadline The deadline, in epoch milliseconds.
+     * @return The number of matching rows.
+     */
+    public int countDeadlineEquals(long deadline) {
+        final long[] col = deadlines;
+        final int n = size;
+        int count = 0;
+        for (int i = 0; i < n; ++i) {
+            count += col[i] == deadline ? 1 : 0;
+        }
+        return count;
+    }
+
+    /**
+     * Find the rows with a given deadline.
+     *
+     * @param deadline The deadline, in epoch milliseconds.
+     * @param out Where to write the matching rows. This must have room for at
+     * least {@link #size()} rows.
+     * @return The number of rows written to out.
+     * @throws IllegalArgumentException if out is too small.
+     */
+    public int selectDeadlineEquals(long deadline, int[] out) {
+        checkOut(out);
+        final long[] col = deadlines;
+        final int n = size;
+        int k = 0;
+        for (int i = 0; i < n; ++i) {
+            out[k] = i;
+            k += col[i] == deadline ? 1 : 0;
+        }
+        return k;
+    }
+
+    /**
+     * Find the rows with an ID in [from, to).
+     *
+     * @param from The lower bound, inclusive.
+     * @param to The upper bound, exclusive.
+     * @param out Where to write the matching rows. This must have room for at
+     * least {@link #size()} rows.
+     * @return The number of rows written to out.
+     * @throws IllegalArgumentException if out is too small.
+     */
+    public int selectIDBetween(long from, long to, int[] out) {
+        checkOut(out);
+        final long[] col = ids;
+        final int n = size;
+        int k = 0;
+        for (int i = 0; i < n; ++i) {
+            long v = col[i];
+            out[k] = i;
+            k += (v >= from & v < to) ? 1 : 0;
+        }
+        return k;
+    }
+
+    // write a task's values (except the ID) into a row
+    private void set(int row, Task task) {
+        ZonedDateTime deadline = task.getDeadline();
+        deadlines[row] = deadline.toInstant().toEpochMilli();
+        zones[row] = zoneIndex(deadline.getZone());
+
+        String title = task.getTitle();
+        titleStart[row] = append(title);
+        titleLength[row] = title.length();
+
+        String details = task.getDetails();
+        if (details == null) {
+            detailsStart[row] = 0;
+            detailsLength[row] = -1;
+        } else {
+            detailsStart[row] = append(details);
+            detailsLength[row] = details.length();
+        }
+    }
+
+    // the values set() cannot store
+    private static void check(Task task) {
+        try {
+            if (task.getTitle() != null && task.getDeadline() != null) {
+                return;
+            }
+        } catch (NoSuchElementException e) {
+            // no deadline was set
+        }
+        throw new IllegalArgumentException("Task must have a title and a "
+                + "deadline.");
+    }
+
+    // mark a row's strings as garbage
+    private void release(int row) {
+        charsDead += titleLength[row] + Math.max(detailsLength[row], 0);
+    }
+
+    // look up or add a zone in the pool
+    private int zoneIndex(ZoneId zone) {
+        int i = zonePool.indexOf(zone);
+        if (i < 0) {
+            i = zonePool.size();
+            zonePool.add(zone);
+        }
+        return i;
+    }
+
+    // append a string to the pool and return where it starts
+    private int append(String s) {
+        int len = s.length();
+        if (charsUsed + len > chars.length) {
+            chars = Arrays.copyOf(chars,
+                    Math.max(chars.length * 2, charsUsed + len));
+        }
+        int start = charsUsed;
+        s.getChars(0, len, chars, start);
+        charsUsed += len;
+        return start;
+    }
+
+    // rewrite the pool without garbage once more than half of it is garbage
+    private void compactIfWasteful() {
+        if (charsDead <= charsUsed / 2) {
+            return;
+        }
+        char[] fresh = new char[Math.max(charsUsed - charsDead, 16)];
+        int used = 0;
+        for (int i = 0; i < size; ++i) {
+            int len = titleLength[i];
+            System.arraycopy(chars, titleStart[i], fresh, used, len);
+            titleStart[i] = used;
+            used += len;
+
+            len = detailsLength[i];
+            if (len > 0) {
+                System.arraycopy(chars, detailsStart[i], fresh, used, len);
+                detailsStart[i] = used;
+                used += len;
+            }
+        }
+        chars = fresh;
+        charsUsed = used;
+        charsDead = 0;
+    }
+
+    // double the capacity of every column
+    private void grow() {
+        int cap = Math.max(ids.length * 2, DEFAULT_CAPACITY);
+        ids = Arrays.copyOf(ids, cap);
+        deadlines = Arrays.copyOf(deadlines, cap);
+        zones = Arrays.copyOf(zones, cap);
+        titleStart = Arrays.copyOf(titleStart, cap);
+        titleLength = Arrays.copyOf(titleLength, cap);
+        detailsStart = Arrays.copyOf(detailsStart, cap);
+        detailsLength = Arrays.copyOf(detailsLength, cap);
+    }
+
+    private void checkRow(int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("No such row: " + row);
+        }
+    }
+
+    private void checkOut(int[] out) {
+        if (out == null || out.length < size) {
+            throw new IllegalArgumentException("out must have room for "
+                    + size + " rows");
+        }
+    }
+}
@@ -0,0 +1,249 @@
+/*
+ * This file is part of Blocks.
+ *
+ * Blocks is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Blocks is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with Blocks. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.ddns.advaith.blocks.store;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * An inverted index over one text column. For every term (see {@link
+ * Tokenizer}) it keeps a sorted posting list of the IDs whose text contains
+ * it, and for every ID the terms it was indexed with, so that updates and
+ * deletes only touch the posting lists that actually change.
+ *
+ * Terms are kept in a sorted map, so prefix lookups only visit the terms that
+ * start with the prefix. For infix lookups, e.g. for {@code %ilk%}, every
+ * term is also filed under the trigrams (three letter pieces) it contains;
+ * only the terms filed under the rarest trigram of the infix are checked.
+ * Infixes shorter than a trigram are checked against every distinct term,
+ * which is still far fewer than the texts in the index.
+ *
+ * This class is not thread safe.
+ *
+ * @since 0.1.0
+ * @author Advaith Menon
+ */
+public class TextIndex {
+    // the length of the pieces terms are filed under for infix lookups
+    private static final int GRAM = 3;
+
+    // term to the IDs containing it
+    private final TreeMap<String, PostingList> postings;
+
+    // trigram to the terms containing it
+    private final HashMap<String, Set<String>> grams;
+
+    // ID to the terms it was indexed with
+    private final LongHashIndex<String[]> docs;
+
+    /**
+     * Create a new, empty TextIndex.
+     */
+    public TextIndex() {
+        postings = new TreeMap<>();
+        grams = new HashMap<>();
+        docs = new LongHashIndex<>();
+    }
+
+    /**
+     * Index the text of an ID, replacing whatever it was indexed with before.
+     *
+     * @param id The ID.
+     * @param text The text. A null text removes the ID from the index.
+     */
+    public void put(long id, String text) {
+        if (text == null) {
+            remove(id);
+            return;
+        }
+        Set<String> terms = Tokenizer.tokenize(text);
+        String[] old = docs.get(id);
+        if (old != null) {
+            for (String term: old) {
+                if (!terms.contains(term)) {
+                    unpost(term, id);
+                }
+            }
+        }
+        for (String term: terms) {
+            PostingList l = postings.get(term);
+            if (l == null) {
+                l = new PostingList();
+                postings.put(term, l);
+                file(term);
+            }
+            l.add(id);
+        }
+        docs.put(id, terms.toArray(new String[0]));
+    }
+
+    /**
+     * Remove an ID from the index.
+     *
+     * @param id The ID.
+     */
+    public void remove(long id) {
+        String[] old = docs.remove(id);
+        if (old != null) {
+            for (String term: old) {
+                unpost(term, id);
+            }
+        }
+    }
+
+    /**
+     * Remove everything from the index.
+     */
+    public void clear() {
+        postings.clear();
+        grams.clear();
+        docs.clear();
+    }
+
+    /**
+     * @return the number of IDs in the index.
+     */
+    public int size() {
+        return docs.size();
+    }
+
+    /**
+     * @return the number of distinct terms in the index.
+     */
+    public int termCount() {
+        return postings.size();
+    }
+
+    /**
+     * Find the IDs whose text contains a term.
+     *
+     * @param term The term.
+     * @return The IDs, sorted. Never null.
+     */
+    public long[] lookup(Tokenizer.Term term) {
+        if (term.isInfix()) {
+            return infix(term);
+        } else if (!term.isPrefix()) {
+            PostingList l = postings.get(term.getText());
+            return l == null ? new long[0] : l.toArray();
+        }
+        List<long[]> lists = new ArrayList<>();
+        String p = term.getText();
+        for (PostingList l: postings.subMap(p, true, p + Character.MAX_VALUE,
+                    false).values()) {
+            lists.add(l.toArray());
+        }
+        return lists.isEmpty() ? new long[0] : PostingList.union(lists);
+    }
+
+    /**
+     * Find the IDs whose text contains every one of some terms. The rarest
+     * terms are intersected first, so the work is bounded by the shortest
+     * posting list rather than by the size of the index.
+     *
+     * @param terms The terms.
+     * @return The IDs, sorted, or null if terms is empty.
+     */
+    public long[] lookupAll(List<Tokenizer.Term> terms) {
+        if (terms.isEmpty()) {
+            return null;
+        }
+        List<Tokenizer.Term> sorted = new ArrayList<>(terms);
+        sorted.sort(Comparator.comparingInt(this::estimate));
+        long[] out = null;
+        for (Tokenizer.Term t: sorted) {
+            long[] ids = lookup(t);
+            out = out == null ? ids : PostingList.intersect(out, ids);
+            if (out.length == 0) {
+                break;
+            }
+        }
+        return out;
+    }
+
+    // a cheap guess of how many IDs a term matches, to order intersections
+    private int estimate(Tokenizer.Term t) {
+        if (t.isPrefix() || t.isInfix()) {
+            // these merge several lists; do them after exact ones
+            return Integer.MAX_VALUE;
+        }
+        PostingList l = postings.get(t.getText());
+        return l == null ? 0 : l.size();
+    }
+
+    // the IDs of every term an infix term matches. Only the terms filed
+    // under the rarest trigram of the infix are checked, or every term if
+    // the infix is too short to have one.
+    private long[] infix(Tokenizer.Term term) {
+        String s = term.getText();
+        Collection<String> words = postings.keySet();
+        for (int i = 0; i + GRAM <= s.length(); ++i) {
+            Set<String> w = grams.get(s.substring(i, i + GRAM));
+            if (w == null) {
+                return new long[0];
+            } else if (w.size() < words.size()) {
+                words = w;
+            }
+        }
+        List<long[]> lists = new ArrayList<>();
+        for (String w: words) {
+            if (term.matches(w)) {
+                lists.add(postings.get(w).toArray());
+            }
+        }
+        return lists.isEmpty() ? new long[0] : PostingList.union(lists);
+    }
+
+    // file a new term under its trigrams
+    private void file(String term) {
+        for (int i = 0; i + GRAM <= term.length(); ++i) {
+            grams.computeIfAbsent(term.substring(i, i + GRAM),
+                    k -> new HashSet<>()).add(term);
+        }
+    }
+
+    private void unpost(String term, long id) {
+        PostingList l = postings.get(term);
+        if (l != null) {
+            l.remove(id);
+            if (l.size() == 0) {
+                postings.remove(term);
+                unfile(term);
+            }
+        }
+    }
+
+    private void unfile(String term) {
+        for (int i = 0; i + GRAM <= term.length(); ++i) {
+            String g = term.substring(i, i + GRAM);
+            Set<String> w = grams.get(g);
+            if (w != null) {
+                w.remove(term);
+                if (w.isEmpty()) {
+                    grams.remove(g);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ * This file is part of Blocks.
+ *
+ * Blocks is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Blocks is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with Blocks. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.ddns.advaith.blocks.store;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import net.ddns.advaith.blocks.model.LikePattern;
+
+/**
+ * Splits text into the terms used by {@link TextIndex}. A term is a maximal
+ * run of letters and digits, in lower case; everything else separates terms.
+ * This is close to what the SQLite FTS5 unicode61 tokenizer does, so the same
+ * terms can be handed to FTS5 (see {@link Fts5}).
+ *
+ * @since 0.1.0
+ * @author Advaith Menon
+ */
+public final class Tokenizer {
+    /**
+     * A term to look up in an index: a whole word, a prefix or suffix of one,
+     * or a piece from anywhere inside one.
+     *
+     * @since 0.1.0
+     */
+    public static final class Term {
+        private final String text;
+        private final boolean prefix;
+        private final boolean infix;
+
+        Term(String text, boolean prefix) {
+            this(text, prefix, false);
+        }
+
+        Term(String text, boolean prefix, boolean infix) {
+            this.text = text;
+            this.prefix = prefix;
+            this.infix = infix;
+        }
+
+        /**
+         * @return the term, in lower case.
+         */
+        public String getText() {
+            return text;
+        }
+
+        /**
+         * @return true if any word starting with the term matches, false if
+         * only the exact word does.
+         */
+        public boolean isPrefix() {
+            return prefix;
+        }
+
+        /**
+         * @return true if the term may start anywhere in a word, false if it
+         * starts at the start of one. A term that is both a prefix and an
+         * infix matches any word containing it.
+         */
+        public boolean isInfix() {
+            return infix;
+        }
+
+        /**
+         * Check if a word of the text matches the term.
+         *
+         * @param word A word, in lower case.
+         * @return true if it matches.
+         */
+        public boolean matches(String word) {
+            if (infix) {
+                return prefix ? word.contains(text) : word.endsWith(text);
+            }
+            return prefix ? word.startsWith(text) : word.equals(text);
+        }
+
+        @Override
+        public String toString() {
+            return (infix ? "*" : "") + text + (prefix ? "*" : "");
+        }
+    }
+
+    private Tokenizer() {}
+
+    /**
+     * Split text into its distinct terms.
+     *
+     * @param text The text. May be null.
+     * @return The distinct terms, in the order they first appear.
+     */
+    public static Set<String> tokenize(String text) {
+        Set<String> out = new LinkedHashSet<>();
+        if (text == null) {
+            return out;
+        }
+        String s = text.toLowerCase(Locale.ROOT);
+        int n = s.length();
+        int i = 0;
+        while (i < n) {
+            if (!isWord(s.charAt(i))) {
+                ++i;
+                continue;
+            }
+            int start = i;
+            while (i < n && isWord(s.charAt(i))) {
+                ++i;
+            }
+            out.add(s.substring(start, i));
+        }
+        return out;
+    }
+
+    /**
+     * Work out which terms any text matching a LIKE pattern must contain.
+     *
+     * A word in the pattern starts a word in the text if it is at the very
+     * beginning of the pattern or preceded by a literal separator; it is an
+     * exact term if its end is known too, and a prefix term if it runs into
+     * a wildcard. A word that starts right after a wildcard could be the tail
+     * end of a longer word, so it is an infix term: some word of the text
+     * contains it, e.g. {@code %ilk%} needs a word containing "ilk". Infix
+     * terms are the most expensive to look up, see {@link TextIndex}.
+     *
+     * @param pattern The LIKE pattern.
+     * @return The required terms. If this is empty, the index cannot help and
+     * every row has to be checked.
+     */
+    public static List<Term> requiredTerms(LikePattern pattern) {
+        List<Term> out = new ArrayList<>();
+        String p = pattern.getPattern().toLowerCase(Locale.ROOT);
+        int n = p.length();
+        int i = 0;
+        while (i < n) {
+            if (!isWord(p.charAt(i))) {
+                ++i;
+                continue;
+            }
+            int start = i;
+            while (i < n && isWord(p.charAt(i))) {
+                ++i;
+            }
+            boolean infix = start > 0 && isWildcard(p.charAt(start - 1));
+            boolean prefix = i < n && isWildcard(p.charAt(i));
+            out.add(new Term(p.substring(start, i), prefix, infix));
+        }
+        return out;
+    }
+
+    /**
+     * Turn what the user typed into a search box into terms. Every word must
+     * be present; the last one is a prefix unless it is followed by a
+     * separator, so that results narrow down while the user is typing.
+     *
+     * @param query The search text.
+     * @return The terms, empty if the text has no words.
+     */
+    public static List<Term> searchTerms(String query) {
+        List<Term> out = new ArrayList<>();
+        if (query == null) {
+            return out;
+        }
+        List<String> words = new ArrayList<>(tokenize(query));
+        String s = query.toLowerCase(Locale.ROOT);
+        boolean trailing = !s.isEmpty() && isWord(s.charAt(s.length() - 1));
+        for (int i = 0; i < words.size(); ++i) {
+            out.add(new Term(words.get(i), trailing && i == words.size() - 1));
+        }
+        return out;
+    }
+
+    private static boolean isWord(char c) {
+        return Character.isLetterOrDigit(c);
+    }
+
+    private static boolean isWildcard(char c) {
+        return c == LikePattern.ANY || c == LikePattern.ONE;
+    }
+}
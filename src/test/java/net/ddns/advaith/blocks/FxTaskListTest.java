@@ -0,0 +1,85 @@
+/*
+ * This file is part of Blocks.
+ * 
+ * Blocks is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * Blocks is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with Blocks. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.ddns.advaith.blocks;
+
+import java.time.ZonedDateTime;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Queue;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import net.ddns.advaith.blocks.model.Task;
+import net.ddns.advaith.blocks.store.TaskStore;
+
+/**
+ * Tests for FxTaskList. The FX thread is stood in for by a queue that the
+ * test runs by hand.
+ *
+ * @since 0.1.0
+ * @author Advaith Menon
+ */
+class FxTaskListTest {
+    private static final ZonedDateTime BASE = ZonedDateTime.now()
+        .plusYears(1);
+
+    private final Queue<Runnable> fxQueue = new ArrayDeque<>();
+
+    private int runFx() {
+        int n = 0;
+        Runnable r;
+        while ((r = fxQueue.poll()) != null) {
+            r.run();
+            ++n;
+        }
+        return n;
+    }
+
+    private static List<String> titles(FxTaskList l) {
+        return l.getTasks().stream().map(Task::getTitle).toList();
+    }
+
+    @Test
+    void testMirror() {
+        TaskStore store = new TaskStore();
+        store.add(new Task(-1, "B", null, BASE.plusHours(2)));
+        FxTaskList list = new FxTaskList(store, fxQueue::add);
+        assertTrue(list.getTasks().isEmpty());
+        store.add(new Task(-1, "A", null, BASE.plusHours(1)));
+        // nothing changes until the FX thread runs
+        assertTrue(list.getTasks().isEmpty());
+        assertEquals(1, runFx());
+        assertEquals(List.of("A", "B"), titles(list));
+
+        // a burst of writes is one trip to the FX thread
+        Task c = new Task(-1, "C", null, BASE);
+        store.add(c);
+        c.setDeadline(BASE.plusHours(3));
+        store.update(c);
+        store.delete(0);
+        assertEquals(1, runFx());
+        assertEquals(List.of("A", "C"), titles(list));
+
+        list.dispose();
+        store.delete(1);
+        runFx();
+        assertEquals(List.of("A", "C"), titles(list));
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * This file is part of Blocks.
+ * 
+ * Blocks is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * Blocks is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with Blocks. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package net.ddns.advaith.blocks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import net.ddns.advaith.blocks.datamodel.TodoData;
+import net.ddns.advaith.blocks.datamodel.TodoItem;
+
+/**
+ * Tests for StartupLoader, and for Main only saving what was fully loaded.
+ * The FX thread is stood in for by a queue that the test runs by hand.
+ *
+ * @since 0.1.0
+ * @author Advaith Menon
+ */
+class StartupLoaderTest {
+    private final Queue<Runnable> fxQueue = new ConcurrentLinkedQueue<>();
+
+    private final TodoData data = TodoData.getInstance();
+
+    @TempDir
+    Path dir;
+
+    private Path file;
+
+    @BeforeEach
+    void setUp() {
+        file = dir.resolve("items.txt");
+        TodoData.setFilename(file.toString());
+        data.getTodoItems().clear();
+    }
+
+    @AfterEach
+    void tearDown() {
+        TodoData.setFilename("TodoListItems.txt");
+        data.getTodoItems().clear();
+        data.setLoading(false);
+    }
+
+    private void runFx() {
+        Runnable r;
+        while ((r = fxQueue.poll()) != null) {
+            r.run();
+        }
+    }
+
+    private static List<String> lines(int n) {
+        List<String> out = new ArrayList<>();
+        for (int i = 0; i < n; ++i) {
+            out.add("Item " + i + "\tDetails " + i + "\t01-02-2030");
+        }
+        return out;
+    }
+
+    @Test
+    void testLoad() throws IOException {
+        Files.write(file, lines(600));
+        StartupLoader loader = new StartupLoader(data, 256, fxQueue::add);
+        loader.start();
+        assertTrue(loader.awaitItems());
+        assertEquals(600, data.getTodoItems().size());
+        assertEquals("Item 599",
+                data.getTodoItems().get(599).getShortDescription());
+        runFx();
+        assertFalse(data.loadingProperty().get());
+        assertThrows(IllegalStateException.class, loader::start);
+    }
+
+    @Test
+    void testMalformed() throws IOException {
+        List<String> lines = lines(300);
+        lines.add(100, "no tabs here");
+        Files.write(file, lines);
+        byte[] before = Files.readAllBytes(file);
+
+        StartupLoader loader = new StartupLoader(data, 50, fxQueue::add);
+        loader.start();
+        assertFalse(loader.awaitItems());
+        // the chunks before the bad line made it, the rest did not
+        assertEquals(100, data.getTodoItems().size());
+        assertFalse(Main.storeItems(loader, data));
+        assertArrayEquals(before, Files.readAllBytes(file));
+    }
+
+    @Test
+    void testNoFile() throws IOException {
+        StartupLoader loader = new StartupLoader(data, 50, fxQueue::add);
+        assertThrows(IllegalStateException.class, loader::whenLoaded);
+        loader.start();
+        // the futures are there for any thread as soon as start() returns
+        CompletableFuture.supplyAsync(loader::whenLoaded).join().join();
+        assertTrue(loader.awaitItems());
+        assertTrue(data.getTodoItems().isEmpty());
+        // a first run still saves
+        assertTrue(Main.storeItems(loader, data));
+        assertTrue(Files.exists(file));
+    }
+
+    @Test
+    void testDeletedCap() throws IOException {
+        Files.write(file, lines(3));
+        StartupLoader loader = new StartupLoader(data, 50, fxQueue::add);
+        loader.start();
+        assertTrue(loader.awaitItems());
+        loader.whenLoaded().join();
+        // the cap from the configuration is set on the FX thread
+        runFx();
+
+        TodoItem item = data.getTodoItems().get(1);
+        data.deleteTodoItem(item);
+        assertEquals(2, data.getTodoItems().size());
+        assertSame(item, data.undoDelete());
+        assertSame(item, data.getTodoItems().get(1));
+
+        // a smaller cap drops what no longer fits
+        data.deleteTodoItem(item);
+        data.setDeletedCap(1);
+        assertNull(data.undoDelete());
+        data.setDeletedCap(16L << 20);
+        assertThrows(IllegalArgumentException.class,
+                () -> data.setDeletedCap(0));
+    }
+}
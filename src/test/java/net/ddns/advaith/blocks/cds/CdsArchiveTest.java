@@ -0,0 +1,95 @@
+/*
+ * This file is part of Blocks.
+ * 
+ * Blocks is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * Blocks is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with Blocks. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package net.ddns.advaith.blocks.cds;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests the fingerprint of an installation and when an archive counts as
+ * stale.
+ *
+ * @since 0.1.0
+ * @author Advaith Menon
+ */
+class CdsArchiveTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void testFingerprintFollowsPlugins() throws Exception {
+        Path app = Files.writeString(dir.resolve("blocks.jar"), "app");
+        Path plugins = Files.createDirectory(dir.resolve("plugins"));
+        List<Path> cp = List.of(app);
+        List<Path> dirs = List.of(plugins, dir.resolve("missing"));
+
+        String empty = CdsArchive.fingerprint(cp, dirs);
+        assertEquals(empty, CdsArchive.fingerprint(cp, dirs));
+
+        Path sqlite = Files.createDirectory(plugins.resolve("sqlite"));
+        Path jar = Files.writeString(sqlite.resolve("sqlite-1.0.jar"), "v1");
+        String one = CdsArchive.fingerprint(cp, dirs);
+        assertNotEquals(empty, one);
+
+        // an upgrade in place
+        Files.writeString(jar, "v1.1");
+        Files.setLastModifiedTime(jar, FileTime.fromMillis(0));
+        String upgraded = CdsArchive.fingerprint(cp, dirs);
+        assertNotEquals(one, upgraded);
+
+        // other files in a plugin directory do not matter
+        Files.writeString(sqlite.resolve("notes.txt"), "x");
+        assertEquals(upgraded, CdsArchive.fingerprint(cp, dirs));
+
+        Files.writeString(app, "app 2");
+        Files.setLastModifiedTime(app, FileTime.fromMillis(0));
+        assertNotEquals(upgraded, CdsArchive.fingerprint(cp, dirs));
+    }
+
+    @Test
+    void testStaleness() throws Exception {
+        CdsArchive a = new CdsArchive(dir.resolve("cds").resolve("b.jsa"));
+        assertFalse(a.isUsable("one"));
+        a.clear();
+        assertThrows(IllegalStateException.class, () -> a.commit("one"));
+
+        // the JVM writes the archive; the fingerprint follows on success
+        Files.writeString(a.getPath(), "archive");
+        assertFalse(a.isUsable("one"));
+        a.commit("one");
+        assertTrue(a.isUsable("one"));
+        assertFalse(a.isUsable("two"));
+
+        a.clear();
+        assertFalse(Files.exists(a.getPath()));
+        assertFalse(a.isUsable("one"));
+        assertEquals(List.of("-XX:ArchiveClassesAtExit=" + a.getPath()),
+                a.trainOptions());
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * This file is part of Blocks.
+ * 
+ * Blocks is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * Blocks is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with Blocks. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package net.ddns.advaith.blocks.cds;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Tests the command lines the launcher builds and how it reads the
+ * milestones of a measuring run.
+ *
+ * @since 0.1.0
+ * @author Advaith Menon
+ */
+class LauncherTest {
+    @Test
+    void testCommand() {
+        CdsArchive a = new CdsArchive(Path.of("/tmp/b.jsa"));
+        Launcher l = new Launcher(a, List.of("java", "-Xmx1g", "-cp",
+                    "blocks.jar"), "id");
+        assertEquals(List.of("java", "-XX:SharedArchiveFile=/tmp/b.jsa",
+                    "-Xshare:auto", "-Xmx1g", "-cp", "blocks.jar",
+                    "net.ddns.advaith.blocks.Main", "--x"),
+                l.command(a.useOptions(), null, List.of("--x")));
+        assertEquals(List.of("java", "-XX:ArchiveClassesAtExit=/tmp/b.jsa",
+                    "-Dnet.ddns.advaith.blocks.startup.mode=training",
+                    "-Xmx1g", "-cp", "blocks.jar",
+                    "net.ddns.advaith.blocks.Main"),
+                l.command(a.trainOptions(), "training", List.of()));
+
+        assertEquals(List.of("-Xmx1g", "-Dfoo=bar"), Launcher.passOn(
+                    List.of("-Xmx1g", "-XX:SharedArchiveFile=/x.jsa",
+                        "-Xshare:auto", "-Dfoo=bar",
+                        "-Dnet.ddns.advaith.blocks.startup.mode=measure")));
+    }
+
+    @Test
+    void testMilestone() {
+        List<String> out = List.of("[INFO] starting", "startup init 120",
+                "startup firstFrame 412", "startup itemsLoaded 530");
+        assertEquals(412, Launcher.milestone(out, "firstFrame"));
+        assertEquals(-1, Launcher.milestone(out, "pluginsLoaded"));
+    }
+}
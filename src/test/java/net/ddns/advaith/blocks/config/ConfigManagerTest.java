@@ -29,6 +29,7 @@ import java.util.Properties;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
 /**
@@ -60,6 +61,14 @@ class ConfigManagerTest {
         }
     }
 
+    @Test
+    void testMissingProfiles() {
+        // none of the optional profiles exist here, so only the defaults
+        // are read; a profile that failed to open must not leave a hole
+        ConfigManager cm = ConfigManager.getInstance();
+        assertNotNull(cm.getProperty("net.ddns.advaith.blocks.paging.perPage"));
+    }
+
     @Test
     void testOfFiles(@TempDir File dir) throws IOException {
         // test 0 files - throws error
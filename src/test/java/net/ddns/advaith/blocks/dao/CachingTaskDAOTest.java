@@ -0,0 +1,133 @@
+/*
+ * This file is part of Blocks.
+ * 
+ * Blocks is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * Blocks is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with Blocks. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package net.ddns.advaith.blocks.dao;
+
+import java.time.ZonedDateTime;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import net.ddns.advaith.blocks.model.Paginated;
+import net.ddns.advaith.blocks.model.Task;
+
+/**
+ * Tests for CachingTaskDAO, over a backing DAO without a change feed that
+ * counts its lookups and can write in the middle of one.
+ *
+ * @since 0.1.0
+ * @author Advaith Menon
+ */
+class CachingTaskDAOTest {
+    private static final ZonedDateTime BASE = ZonedDateTime.now()
+        .plusYears(1);
+
+    private final AtomicInteger lookups = new AtomicInteger();
+
+    // run after a lookup has read the task, before it returns
+    private Runnable afterLookup = () -> {};
+
+    private final MapTaskDAO backing = new MapTaskDAO() {
+        @Override
+        public Paginated<Task> fetchEquals(int column, Object target) {
+            lookups.incrementAndGet();
+            Paginated<Task> p = super.fetchEquals(column, target);
+            Runnable r = afterLookup;
+            afterLookup = () -> {};
+            r.run();
+            return p;
+        }
+    };
+
+    private final CachingTaskDAO dao = new CachingTaskDAO(backing, 3);
+
+    private Task fetch(long id) {
+        return Tasks.drain(dao.fetchEquals(Task.ID, id)).stream()
+            .findFirst().orElse(null);
+    }
+
+    private Task add(String title) {
+        Task t = new Task(-1, title, null, BASE);
+        dao.add(t);
+        return t;
+    }
+
+    @Test
+    void testHitAndMiss() {
+        Task t = add("A");
+        assertEquals("A", fetch(t.getID()).getTitle());
+        assertEquals(1, lookups.get());
+        assertEquals("A", fetch(t.getID()).getTitle());
+        assertEquals(1, lookups.get());
+        assertEquals(null, fetch(99));
+        assertEquals(2, lookups.get());
+        assertEquals(1, dao.cachedCount());
+    }
+
+    @Test
+    void testUpdateAndDelete() {
+        Task t = add("A");
+        fetch(t.getID());
+        t.setTitle("B");
+        dao.update(t);
+        // the write refreshes the cache without another lookup
+        assertEquals("B", fetch(t.getID()).getTitle());
+        assertEquals(1, lookups.get());
+        dao.delete(t);
+        assertEquals(null, fetch(t.getID()));
+        assertEquals(0, dao.cachedCount());
+    }
+
+    @Test
+    void testRace() {
+        Task t = add("A");
+        // an update lands between the lookup's read and it caching v0
+        afterLookup = () -> {
+            Task u = backing.fetchEquals(Task.ID, t.getID()).nextPage()
+                .get(0);
+            u.setTitle("B");
+            dao.update(u);
+        };
+        assertEquals("A", fetch(t.getID()).getTitle());
+        // the stale copy did not overwrite what the update cached
+        assertEquals("B", fetch(t.getID()).getTitle());
+        assertEquals(2, lookups.get());
+    }
+
+    @Test
+    void testCapacity() {
+        for (int i = 0; i < 10; ++i) {
+            fetch(add("T" + i).getID());
+            assertTrue(dao.cachedCount() <= 3);
+        }
+        assertEquals(3, dao.cachedCount());
+        lookups.set(0);
+        // the newest three are still cached, the oldest are not
+        fetch(9);
+        fetch(8);
+        fetch(7);
+        assertEquals(0, lookups.get());
+        fetch(0);
+        assertEquals(1, lookups.get());
+        assertThrows(IllegalArgumentException.class,
+                () -> new CachingTaskDAO(backing, 0));
+    }
+}
@@ -0,0 +1,190 @@
+/*
+ * This file is part of Blocks.
+ * 
+ * Blocks is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * Blocks is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with Blocks. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.ddns.advaith.blocks.dao;
+
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import net.ddns.advaith.blocks.model.Change;
+import net.ddns.advaith.blocks.model.ChangeOverflowException;
+import net.ddns.advaith.blocks.model.Task;
+
+/**
+ * Tests for ChangeFeed and the DAOs that use it.
+ *
+ * @since 0.1.0
+ * @author Advaith Menon
+ */
+class ChangeFeedTest {
+    private static final ZonedDateTime LATER = ZonedDateTime.now()
+        .plusYears(1);
+
+    /**
+     * Records every signal.
+     */
+    private static class Recorder implements Flow.Subscriber<Change<Task>> {
+        final List<Change<Task>> changes = new ArrayList<>();
+        final CountDownLatch finished = new CountDownLatch(1);
+        final long initial;
+        Flow.Subscription subscription;
+        Throwable error;
+        boolean complete;
+
+        Recorder(long initial) {
+            this.initial = initial;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription s) {
+            subscription = s;
+            s.request(initial);
+        }
+
+        @Override
+        public void onNext(Change<Task> c) {
+            changes.add(c);
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            error = t;
+            finished.countDown();
+        }
+
+        @Override
+        public void onComplete() {
+            complete = true;
+            finished.countDown();
+        }
+    }
+
+    private static Task task(long id, String title) {
+        return new Task(id, title, null, LATER);
+    }
+
+    @Test
+    void testBackpressure() {
+        ChangeFeed<Task> feed = new ChangeFeed<>(Runnable::run, 16);
+        Recorder r = new Recorder(2);
+        feed.subscribe(r);
+        for (int i = 0; i < 5; ++i) {
+            feed.publish(Change.Type.INSERT, i, task(i, "T" + i));
+        }
+        assertEquals(2, r.changes.size());
+        r.subscription.request(10);
+        assertEquals(5, r.changes.size());
+        for (int i = 0; i < 5; ++i) {
+            assertEquals(i + 1, r.changes.get(i).getSequence());
+        }
+
+        feed.publish(Change.Type.DELETE, 3, null);
+        assertEquals(Change.Type.DELETE, r.changes.get(5).getType());
+        assertNull(r.changes.get(5).getItem());
+        feed.close();
+        assertTrue(r.complete);
+        assertEquals(0, feed.getSubscriberCount());
+    }
+
+    @Test
+    void testOverflowAndCancel() {
+        ChangeFeed<Task> feed = new ChangeFeed<>(Runnable::run, 4);
+        Recorder slow = new Recorder(1);
+        Recorder gone = new Recorder(Long.MAX_VALUE);
+        feed.subscribe(slow);
+        feed.subscribe(gone);
+        gone.subscription.cancel();
+        for (int i = 0; i < 10; ++i) {
+            feed.publish(Change.Type.INSERT, i, task(i, "T" + i));
+        }
+        assertInstanceOf(ChangeOverflowException.class, slow.error);
+        assertEquals(1, ((ChangeOverflowException) slow.error)
+                .getLastDelivered());
+        assertEquals(0, gone.changes.size());
+        assertEquals(0, feed.getSubscriberCount());
+        assertEquals(10, feed.getSequence());
+
+        Recorder bad = new Recorder(0);
+        feed.subscribe(bad);
+        assertInstanceOf(IllegalArgumentException.class, bad.error);
+    }
+
+    @Test
+    void testConcurrentWriters() throws InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        ChangeFeed<Task> feed = new ChangeFeed<>(pool, 100_000);
+        Recorder r = new Recorder(Long.MAX_VALUE);
+        feed.subscribe(r);
+        Thread[] writers = new Thread[4];
+        for (int w = 0; w < writers.length; ++w) {
+            int base = w * 1000;
+            writers[w] = new Thread(() -> {
+                for (int i = 0; i < 1000; ++i) {
+                    feed.publish(Change.Type.INSERT, base + i,
+                            task(base + i, "T"));
+                }
+            });
+            writers[w].start();
+        }
+        for (Thread t: writers) {
+            t.join();
+        }
+        feed.close();
+        assertTrue(r.finished.await(10, TimeUnit.SECONDS));
+        pool.shutdown();
+        assertEquals(4000, r.changes.size());
+        for (int i = 0; i < 4000; ++i) {
+            assertEquals(i + 1, r.changes.get(i).getSequence());
+        }
+    }
+
+    @Test
+    void testCacheFollowsFeed() {
+        MapTaskDAO store = new MapTaskDAO();
+        ObservableTaskDAO observed = new ObservableTaskDAO(store,
+                new ChangeFeed<>(Runnable::run, 16));
+        CachingTaskDAO cache = new CachingTaskDAO(observed);
+        Recorder r = new Recorder(Long.MAX_VALUE);
+        cache.changes().subscribe(r);
+
+        cache.add(task(1, "Old"));
+        assertEquals("Old", Tasks.drain(cache.fetchEquals(Task.ID, 1L)).get(0)
+                .getTitle());
+        // someone else writes, bypassing the cache
+        observed.update(task(1, "New"));
+        assertEquals("New", Tasks.drain(cache.fetchEquals(Task.ID, 1L)).get(0)
+                .getTitle());
+        observed.delete(1);
+        assertTrue(Tasks.drain(cache.fetchEquals(Task.ID, 1L)).isEmpty());
+
+        assertEquals(List.of(Change.Type.INSERT, Change.Type.UPDATE,
+                    Change.Type.DELETE), r.changes.stream()
+                .map(Change::getType).toList());
+    }
+}
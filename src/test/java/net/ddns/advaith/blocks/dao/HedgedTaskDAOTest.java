@@ -0,0 +1,180 @@
+/*
+ * This file is part of Blocks.
+ * 
+ * Blocks is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * Blocks is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with Blocks. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.ddns.advaith.blocks.dao;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.BooleanSupplier;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import net.ddns.advaith.blocks.model.DAOException;
+import net.ddns.advaith.blocks.model.Paginated;
+import net.ddns.advaith.blocks.model.Task;
+
+/**
+ * Tests for HedgedTaskDAO and LocalReplica.
+ *
+ * @since 0.1.0
+ * @author Advaith Menon
+ */
+class HedgedTaskDAOTest {
+    private static final ZonedDateTime BASE = ZonedDateTime.now()
+        .plusYears(1);
+
+    private final ExecutorService pool = Executors.newCachedThreadPool();
+
+    // released at the end of every test, so stuck reads finish
+    private final CountDownLatch gate = new CountDownLatch(1);
+
+    @AfterEach
+    void shutdown() {
+        gate.countDown();
+        pool.shutdownNow();
+    }
+
+    // a primary whose reads wait for the gate while slow is set
+    private final class SlowDAO extends MapTaskDAO {
+        private volatile boolean slow;
+
+        @Override
+        protected void beforeRead() {
+            if (slow) {
+                try {
+                    gate.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+
+    // a DAO whose lookups always fail
+    private static final class BrokenDAO extends MapTaskDAO {
+        private final String message;
+
+        BrokenDAO(String message) {
+            this.message = message;
+        }
+
+        @Override
+        public Paginated<Task> fetchEquals(int column, Object target) {
+            throw new DAOException(message);
+        }
+    }
+
+    private static void fill(MapTaskDAO dao, int n) {
+        for (int i = 0; i < n; ++i) {
+            dao.add(new Task(-1, "Task " + i, null, BASE.plusHours(i)));
+        }
+    }
+
+    private static void waitFor(BooleanSupplier condition)
+            throws InterruptedException {
+        for (int i = 0; i < 500 && !condition.getAsBoolean(); ++i) {
+            Thread.sleep(10);
+        }
+        assertTrue(condition.getAsBoolean());
+    }
+
+    @Test
+    void testFastPrimary() {
+        SlowDAO primary = new SlowDAO();
+        fill(primary, 5);
+        HedgedTaskDAO dao = new HedgedTaskDAO(primary,
+                new LocalReplica(primary, 10), pool);
+        for (int i = 0; i < 100; ++i) {
+            assertEquals(5, Tasks.drain(dao.fetchAll()).size());
+        }
+        assertEquals(100, dao.getReadCount());
+        // once the delay is down to the primary's latency, a pause of the
+        // test's thread can still hedge the odd read
+        assertTrue(dao.getHedgeCount() <= 5);
+        // the delay has come down from the maximum to the primary's latency
+        assertTrue(dao.getHedgeDelay().compareTo(Duration.ofMillis(500)) < 0);
+
+        Task t = new Task(-1, "New", null, BASE);
+        dao.add(t);
+        assertEquals(6, primary.size());
+    }
+
+    @Test
+    void testSlowPrimary() {
+        SlowDAO primary = new SlowDAO();
+        fill(primary, 5);
+        HedgedTaskDAO dao = new HedgedTaskDAO(primary,
+                new LocalReplica(primary, 10), pool, 95, Duration.ZERO,
+                Duration.ofMillis(20));
+        primary.slow = true;
+        List<Task> all = Tasks.drain(dao.fetchAll());
+        assertEquals(5, all.size());
+        assertEquals(1, dao.getHedgeCount());
+        assertEquals(1, dao.getReplicaWinCount());
+    }
+
+    @Test
+    void testFailover() {
+        MapTaskDAO replica = new MapTaskDAO();
+        fill(replica, 3);
+        // the primary fails long before the hedge delay
+        HedgedTaskDAO dao = new HedgedTaskDAO(new BrokenDAO("primary"),
+                replica, pool, 95, Duration.ofSeconds(30),
+                Duration.ofSeconds(30));
+        assertEquals(1, Tasks.drain(dao.fetchEquals(Task.ID, 1L)).size());
+        assertEquals(1, dao.getReplicaWinCount());
+
+        HedgedTaskDAO broken = new HedgedTaskDAO(new BrokenDAO("primary"),
+                new BrokenDAO("replica"), pool);
+        DAOException e = assertThrows(DAOException.class,
+                () -> broken.fetchEquals(Task.ID, 1L));
+        assertEquals("primary", e.getMessage());
+    }
+
+    @Test
+    void testLocalReplica() throws InterruptedException {
+        ObservableTaskDAO primary = new ObservableTaskDAO(new MapTaskDAO());
+        Task a = new Task(-1, "A", null, BASE);
+        Task b = new Task(-1, "B", null, BASE.plusHours(1));
+        primary.add(a);
+        primary.add(b);
+        LocalReplica replica = new LocalReplica(primary, 10);
+        assertEquals(2, replica.size());
+        assertThrows(UnsupportedOperationException.class,
+                () -> replica.add(new Task(-1, "C", null, BASE)));
+
+        Task c = new Task(-1, "C", null, BASE.plusHours(2));
+        primary.add(c);
+        b.setTitle("B2");
+        primary.update(b);
+        primary.delete(a);
+        waitFor(() -> Tasks.drain(replica.fetchEquals(Task.TITLE, "B2"))
+                .size() == 1 && replica.size() == 2);
+        assertEquals(List.of(b.getID(), c.getID()), Tasks.drain(
+                    replica.fetchAll()).stream().map(Task::getID).toList());
+        assertTrue(Tasks.drain(replica.fetchEquals(Task.ID, a.getID()))
+                .isEmpty());
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * This file is part of Blocks.
+ * 
+ * Blocks is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * Blocks is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with Blocks. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.ddns.advaith.blocks.dao;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests for LatencyWindow.
+ *
+ * @since 0.1.0
+ * @author Advaith Menon
+ */
+class LatencyWindowTest {
+    @Test
+    void testPercentile() {
+        LatencyWindow w = new LatencyWindow(100);
+        assertEquals(-1, w.percentile(50));
+        for (int i = 100; i >= 1; --i) {
+            w.record(i);
+        }
+        assertEquals(50, w.percentile(50));
+        assertEquals(95, w.percentile(95));
+        assertEquals(100, w.percentile(100));
+        assertEquals(1, w.percentile(0.1));
+        assertThrows(IllegalArgumentException.class, () -> w.percentile(0));
+    }
+
+    @Test
+    void testAgeing() {
+        LatencyWindow w = new LatencyWindow(10);
+        for (int i = 0; i < 10; ++i) {
+            w.record(1000);
+        }
+        for (int i = 0; i < 10; ++i) {
+            w.record(5);
+        }
+        assertEquals(5, w.percentile(100));
+        assertEquals(20, w.count());
+    }
+}
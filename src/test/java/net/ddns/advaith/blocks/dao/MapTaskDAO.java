@@ -0,0 +1,175 @@
+/*
+ * This file is part of Blocks.
+ * 
+ * Blocks is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * Blocks is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with Blocks. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.ddns.advaith.blocks.dao;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import net.ddns.advaith.blocks.model.ConflictException;
+import net.ddns.advaith.blocks.model.GenericDAO;
+import net.ddns.advaith.blocks.model.KeysetPaginated;
+import net.ddns.advaith.blocks.model.ListPaginated;
+import net.ddns.advaith.blocks.model.Paginated;
+import net.ddns.advaith.blocks.model.Query;
+import net.ddns.advaith.blocks.model.Task;
+import net.ddns.advaith.blocks.model.TaskKey;
+
+/**
+ * A simple DAO for tests, keeping tasks in a map. fetchAll() is in {@link
+ * TaskKey} order and supports continuation tokens; query() is not
+ * implemented, so callers exercise their fallbacks.
+ *
+ * @since 0.1.0
+ * @author Advaith Menon
+ */
+public class MapTaskDAO implements GenericDAO<Task> {
+    // tasks in key order
+    private final TreeMap<TaskKey, Task> tasks = new TreeMap<>();
+
+    // ID to key
+    private final Map<Long, TaskKey> keys = new HashMap<>();
+
+    // the next ID to give out
+    private long nextID;
+
+    // entries per page
+    private final int perPage;
+
+    public MapTaskDAO() {
+        this(10);
+    }
+
+    public MapTaskDAO(int perPage) {
+        this.perPage = perPage;
+    }
+
+    /**
+     * Called before every page is read, e.g. to add latency.
+     */
+    protected void beforeRead() {}
+
+    public synchronized int size() {
+        return tasks.size();
+    }
+
+    @Override
+    public synchronized void add(Task item) {
+        if (item.getID() == -1) {
+            item.setID(nextID);
+        }
+        nextID = Math.max(nextID, item.getID() + 1);
+        item.setVersion(Math.max(item.getVersion(), 0));
+        put(item);
+    }
+
+    @Override
+    public synchronized void update(Task item) {
+        if (item.getID() == -1) {
+            throw new IllegalArgumentException("Task has no ID.");
+        }
+        item.setVersion(check(item) + 1);
+        put(item);
+    }
+
+    @Override
+    public synchronized void delete(Task item) {
+        check(item);
+        delete(item.getID());
+    }
+
+    @Override
+    public synchronized void delete(long id) {
+        TaskKey k = keys.remove(id);
+        if (k != null) {
+            tasks.remove(k);
+        }
+    }
+
+    @Override
+    public Paginated<Task> fetchAll() {
+        return fetchAll(null);
+    }
+
+    @Override
+    public Paginated<Task> fetchAll(String token) {
+        return new KeysetPaginated<>((t, limit) -> {
+            beforeRead();
+            synchronized (this) {
+                List<Task> out = new ArrayList<>(limit);
+                for (Task task: (t == null ? tasks : tasks.tailMap(
+                                TaskKey.parse(t), false)).values()) {
+                    if (out.size() == limit) {
+                        break;
+                    }
+                    out.add(Tasks.copy(task));
+                }
+                return out;
+            }
+        }, task -> TaskKey.of(task).toToken(), perPage, token);
+    }
+
+    @Override
+    public synchronized Paginated<Task> fetchEquals(int column,
+            Object target) {
+        List<Task> out = new ArrayList<>();
+        if (column == Task.ID) {
+            TaskKey k = keys.get(((Number) target).longValue());
+            if (k != null) {
+                out.add(Tasks.copy(tasks.get(k)));
+            }
+        } else {
+            for (Task t: tasks.values()) {
+                Object v = column == Task.TITLE ? t.getTitle()
+                    : column == Task.DETAILS ? t.getDetails()
+                    : t.getDeadline();
+                if (target.equals(v)) {
+                    out.add(Tasks.copy(t));
+                }
+            }
+        }
+        return new ListPaginated<>(out, perPage);
+    }
+
+    @Override
+    public Paginated<Task> query(Query query) {
+        throw new UnsupportedOperationException();
+    }
+
+    // the stored version, if the item may replace it; -1 if there is none
+    private long check(Task item) {
+        TaskKey k = keys.get(item.getID());
+        long stored = k == null ? -1 : tasks.get(k).getVersion();
+        if (k != null && item.getVersion() != -1
+                && item.getVersion() != stored) {
+            throw new ConflictException(item.getID(), item.getVersion(),
+                    stored);
+        }
+        return stored;
+    }
+
+    private void put(Task item) {
+        TaskKey old = keys.put(item.getID(), TaskKey.of(item));
+        if (old != null) {
+            tasks.remove(old);
+        }
+        tasks.put(TaskKey.of(item), Tasks.copy(item));
+    }
+}
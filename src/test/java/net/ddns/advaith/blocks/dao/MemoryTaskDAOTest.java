@@ -0,0 +1,252 @@
+/*
+ * This file is part of Blocks.
+ * 
+ * Blocks is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * Blocks is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with Blocks. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.ddns.advaith.blocks.dao;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import net.ddns.advaith.blocks.model.ConflictException;
+import net.ddns.advaith.blocks.model.DAOException;
+import net.ddns.advaith.blocks.model.ListPaginated;
+import net.ddns.advaith.blocks.model.PageSizer;
+import net.ddns.advaith.blocks.model.Paginated;
+import net.ddns.advaith.blocks.model.Query;
+import net.ddns.advaith.blocks.model.Task;
+
+/**
+ * Tests for MemoryTaskDAO.
+ *
+ * @since 0.1.0
+ * @author Advaith Menon
+ */
+class MemoryTaskDAOTest {
+    private static final ZonedDateTime BASE = ZonedDateTime.now()
+        .plusYears(1);
+
+    private static MemoryTaskDAO filled(int n) {
+        MemoryTaskDAO dao = new MemoryTaskDAO(7);
+        for (int i = 0; i < n; ++i) {
+            // several tasks share each deadline
+            dao.add(new Task(-1, "Task " + i % 5, i % 3 == 0 ? null : "x",
+                        BASE.plusHours(i % 10)));
+        }
+        return dao;
+    }
+
+    @Test
+    void testCrud() {
+        MemoryTaskDAO dao = filled(3);
+        assertThrows(DAOException.class,
+                () -> dao.add(Task.restore(1, "Dup", null, BASE)));
+        dao.add(Task.restore(10, "Ten", null, BASE));
+        Task next = new Task(-1, "Next", null, BASE);
+        dao.add(next);
+        assertEquals(11, next.getID());
+
+        Task t = Tasks.drain(dao.fetchEquals(Task.ID, 1L)).get(0);
+        Task stale = Tasks.copy(t);
+        t.setDeadline(BASE.plusDays(1));
+        dao.update(t);
+        assertEquals(1, t.getVersion());
+        assertThrows(ConflictException.class, () -> dao.update(stale));
+        assertThrows(ConflictException.class, () -> dao.delete(stale));
+        assertEquals(List.of(0L, 10L, 11L, 2L, 1L), ids(dao.fetchAll()));
+
+        dao.delete(t);
+        // the version deleted is gone, as for update()
+        assertThrows(ConflictException.class, () -> dao.delete(t));
+        dao.delete(t.getID());
+        assertEquals(4, dao.size());
+        assertThrows(DAOException.class, () -> dao.update(Task.restore(1,
+                        "Gone", null, BASE)));
+    }
+
+    @Test
+    void testQueriesMatchEvaluation() {
+        MemoryTaskDAO dao = filled(60);
+        List<Query> queries = List.of(
+                Query.select().from(Task.TABLE).build(),
+                Query.select().from(Task.TABLE).where(Task.ID_FIELD)
+                    .equal(7L).finish().build(),
+                Query.select().from(Task.TABLE).where(Task.ID_FIELD)
+                    .equal(99L).finish().build(),
+                Query.select().from(Task.TABLE).where(Task.ID_FIELD)
+                    .greaterThan(10L).and().where(Task.ID_FIELD)
+                    .lessThanOrEquals(20L).finish()
+                    .orderBy(Task.ID_FIELD, Query.Order.DESC).limit(4)
+                    .offset(2).build(),
+                Query.select().from(Task.TABLE).where(Task.DEADLINE_FIELD)
+                    .greaterThan(BASE.plusHours(3)).and()
+                    .where(Task.DEADLINE_FIELD).lessThanOrEquals(
+                        BASE.plusHours(6)).finish().build(),
+                Query.select().from(Task.TABLE).where(Task.DEADLINE_FIELD)
+                    .equal(BASE.plusHours(2)).finish().build(),
+                Query.select().from(Task.TABLE).where(Task.TITLE_FIELD)
+                    .equal("Task 2").finish()
+                    .orderBy(Task.DEADLINE_FIELD, Query.Order.DESC)
+                    .orderBy(Task.ID_FIELD, Query.Order.DESC).limit(5)
+                    .build(),
+                Query.select().from(Task.TABLE).where(Task.DETAILS_FIELD)
+                    .equal("x").or().where(Task.ID_FIELD).equal(0L)
+                    .finish().orderBy(Task.TITLE_FIELD)
+                    .orderBy(Task.ID_FIELD).build(),
+                Query.select().from(Task.TABLE).where(Task.DEADLINE_FIELD)
+                    .greaterThan(BASE.plusHours(8)).and()
+                    .where(Task.DEADLINE_FIELD).lessThan(BASE.plusHours(2))
+                    .finish().build(),
+                Query.select().from(Task.TABLE).orderBy(Task.DEADLINE_FIELD)
+                    .orderBy(Task.ID_FIELD).offset(13).limit(9).build(),
+                Query.select().from(Task.TABLE).where(Task.TITLE_FIELD)
+                    .like("Task 3%").finish().build(),
+                Query.select().from(Task.TABLE).where(Task.TITLE_FIELD)
+                    .like("%task%").and().where(Task.DEADLINE_FIELD)
+                    .greaterThan(BASE.plusHours(4)).finish()
+                    .orderBy(Task.ID_FIELD).limit(6).build(),
+                Query.select().from(Task.TABLE).where(Task.ID_FIELD)
+                    .in(List.of(5L, 3L, 5L, 99L)).finish().build(),
+                Query.select().from(Task.TABLE).where(Task.ID_FIELD)
+                    .in(List.of(9L, 1L, 9L)).finish()
+                    .orderBy(Task.ID_FIELD, Query.Order.DESC).build());
+        List<Task> all = Tasks.drain(dao.fetchAll());
+        for (Query q: queries) {
+            assertEquals(ids(new ListPaginated<>(TaskQueries.evaluate(
+                                new ListPaginated<>(all, 10), q), 10)),
+                    ids(dao.query(q)), q.toString());
+        }
+        // key order: deadline first
+        assertEquals(List.of(0L, 10L, 20L, 30L, 40L, 50L, 5L), ids(
+                    dao.fetchEquals(Task.TITLE, "Task 0")).subList(0, 7));
+    }
+
+    @Test
+    void testSearchIndex() {
+        MemoryTaskDAO dao = filled(10);
+        Task t = new Task(-1, "Buy milk", null, BASE);
+        dao.add(t);
+        Query milk = Query.select().from(Task.TABLE).where(Task.TITLE_FIELD)
+            .like("%milk%").finish().build();
+        Query bread = Query.select().from(Task.TABLE).where(Task.TITLE_FIELD)
+            .like("Buy bread").finish().build();
+        // answered from the pieces of the indexed words
+        Query ilk = Query.select().from(Task.TABLE).where(Task.TITLE_FIELD)
+            .like("%ilk%").finish().build();
+        assertEquals(List.of(t.getID()), ids(dao.query(milk)));
+        assertEquals(List.of(t.getID()), ids(dao.query(ilk)));
+        t.setTitle("Buy bread");
+        dao.update(t);
+        assertEquals(List.of(), ids(dao.query(milk)));
+        assertEquals(List.of(), ids(dao.query(ilk)));
+        assertEquals(List.of(t.getID()), ids(dao.query(bread)));
+        dao.delete(t.getID());
+        assertEquals(List.of(), ids(dao.query(bread)));
+    }
+
+    @Test
+    void testLazyPaging() {
+        MemoryTaskDAO dao = filled(20);
+        Paginated<Task> p = dao.fetchAll();
+        List<Task> seen = new ArrayList<>(p.nextPage());
+        List<Task> rest = Tasks.drain(dao.fetchAll(
+                    p.getContinuationToken()));
+        seen.addAll(rest);
+        assertEquals(ids(new ListPaginated<>(seen, 100)),
+                ids(dao.fetchAll()));
+        assertEquals(20, seen.size());
+    }
+
+    @Test
+    void testAdaptivePaging() {
+        // tasks in memory are far quicker than the target, so pages double
+        PageSizer sizer = new PageSizer(2, 1, 64, Duration.ofSeconds(10),
+                1L << 30);
+        MemoryTaskDAO dao = new MemoryTaskDAO(sizer);
+        for (int i = 0; i < 30; ++i) {
+            dao.add(new Task(-1, "Task " + i, null, BASE.plusHours(i)));
+        }
+        Paginated<Task> p = dao.fetchAll();
+        List<Integer> sizes = new ArrayList<>();
+        while (p.hasNextPage()) {
+            sizes.add(p.nextPage().size());
+        }
+        assertEquals(List.of(2, 4, 8, 16), sizes);
+        assertEquals(32, sizer.getLargestPageSize());
+        // a fixed size turns it off
+        dao.setNumPerPage(5);
+        assertEquals(5, dao.fetchAll().nextPage().size());
+    }
+
+    @Test
+    void testScansWhileTasksMove() throws Exception {
+        MemoryTaskDAO dao = filled(200);
+        AtomicBoolean stop = new AtomicBoolean();
+        Thread writer = new Thread(() -> {
+            int i = 0;
+            while (!stop.get()) {
+                // tasks 0-99 keep moving; 100-199 stay put
+                long id = i++ % 100;
+                Task t = Tasks.drain(dao.fetchEquals(Task.ID, id)).get(0);
+                t.setDeadline(BASE.plusMinutes(i % 1000));
+                dao.update(t);
+            }
+        });
+        writer.start();
+        try {
+            for (int scan = 0; scan < 50; ++scan) {
+                Set<Long> seen = new HashSet<>();
+                for (Task t: Tasks.drain(dao.query(Query.select()
+                                .from(Task.TABLE).limit(1000).build()))) {
+                    assertTrue(seen.add(t.getID()), "seen twice");
+                }
+                for (long id = 100; id < 200; ++id) {
+                    assertTrue(seen.contains(id), id + " missed");
+                }
+
+                // pages are read one at a time; each is consistent
+                seen.clear();
+                Paginated<Task> p = dao.fetchAll();
+                while (p.hasNextPage()) {
+                    Set<Long> page = new HashSet<>();
+                    for (Task t: p.nextPage()) {
+                        assertTrue(page.add(t.getID()), "seen twice");
+                        seen.add(t.getID());
+                    }
+                }
+                for (long id = 100; id < 200; ++id) {
+                    assertTrue(seen.contains(id), id + " missed");
+                }
+            }
+        } finally {
+            stop.set(true);
+            writer.join();
+        }
+    }
+
+    private static List<Long> ids(Paginated<Task> p) {
+        return Tasks.drain(p).stream().map(Task::getID).toList();
+    }
+}
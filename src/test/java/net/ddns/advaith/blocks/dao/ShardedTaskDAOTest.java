@@ -0,0 +1,233 @@
+/*
+ * This file is part of Blocks.
+ * 
+ * Blocks is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * Blocks is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with Blocks. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.ddns.advaith.blocks.dao;
+
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import net.ddns.advaith.blocks.model.Group;
+import net.ddns.advaith.blocks.model.Paginated;
+import net.ddns.advaith.blocks.model.Query;
+import net.ddns.advaith.blocks.model.Row;
+import net.ddns.advaith.blocks.model.Task;
+import net.ddns.advaith.blocks.model.TaskKey;
+
+/**
+ * Tests for ShardedTaskDAO, comparing it against a single unsharded DAO.
+ *
+ * @since 0.1.0
+ * @author Advaith Menon
+ */
+class ShardedTaskDAOTest {
+    private static final ZonedDateTime BASE = ZonedDateTime.now()
+        .plusYears(1);
+
+    private final ExecutorService pool = Executors.newFixedThreadPool(4);
+
+    @AfterEach
+    void shutdown() {
+        pool.shutdownNow();
+    }
+
+    private static List<MapTaskDAO> shards(int n) {
+        List<MapTaskDAO> out = new ArrayList<>();
+        for (int i = 0; i < n; ++i) {
+            out.add(new MapTaskDAO(7));
+        }
+        return out;
+    }
+
+    // add the same tasks to both DAOs
+    private static void fill(ShardedTaskDAO sharded, MapTaskDAO single,
+            int n) {
+        Random r = new Random(5);
+        for (int i = 0; i < n; ++i) {
+            ZonedDateTime d = BASE.plusMinutes(r.nextInt(10_000));
+            String title = "Task " + r.nextInt(20);
+            Task t = new Task(-1, title, r.nextBoolean() ? null : "x", d);
+            sharded.add(t);
+            single.add(new Task(t.getID(), title, t.getDetails(), d));
+        }
+    }
+
+    private static <T> List<T> drain(Paginated<T> p) {
+        return Tasks.drain(p);
+    }
+
+    private static List<Long> ids(List<Task> tasks) {
+        return tasks.stream().map(Task::getID).toList();
+    }
+
+    @Test
+    void testByID() {
+        List<MapTaskDAO> shards = shards(4);
+        ShardedTaskDAO dao = new ShardedTaskDAO(shards, ShardStrategy.byID(),
+                pool, 10);
+        MapTaskDAO single = new MapTaskDAO();
+        fill(dao, single, 1000);
+        for (MapTaskDAO s: shards) {
+            assertTrue(s.size() > 150, "uneven: " + s.size());
+        }
+
+        assertEquals(ids(drain(single.fetchAll())), ids(drain(dao.fetchAll())));
+        Task t = drain(dao.fetchEquals(Task.ID, 123L)).get(0);
+        assertEquals(123, t.getID());
+
+        t.setTitle("Changed");
+        dao.update(t);
+        assertEquals("Changed", drain(dao.fetchEquals(Task.ID, 123L)).get(0)
+                .getTitle());
+        dao.delete(123);
+        assertTrue(drain(dao.fetchEquals(Task.ID, 123L)).isEmpty());
+        assertEquals(999, drain(dao.fetchAll()).size());
+
+        Task added = new Task(-1, "New", null, BASE);
+        dao.add(added);
+        assertEquals(1000, added.getID());
+    }
+
+    @Test
+    void testQueries() {
+        ShardedTaskDAO dao = new ShardedTaskDAO(shards(3),
+                ShardStrategy.byID(), pool, 10);
+        MapTaskDAO single = new MapTaskDAO();
+        fill(dao, single, 500);
+
+        Query q = Query.select().from(Task.TABLE)
+            .where(Task.DETAILS_FIELD).equal("x").finish()
+            .orderBy(Task.TITLE_FIELD, Query.Order.DESC)
+            .orderBy(Task.DEADLINE_FIELD).orderBy(Task.ID_FIELD)
+            .offset(13).limit(40).build();
+        assertEquals(ids(TaskQueries.evaluate(single.fetchAll(), q)),
+                ids(drain(dao.query(q))));
+
+        // the ORDER BY fields are not selected
+        Query narrow = q.toBuilder().fields(Task.ID_FIELD).build();
+        List<Row> rows = drain(dao.select(narrow));
+        assertEquals(ids(TaskQueries.evaluate(single.fetchAll(), q)),
+                rows.stream().map(r -> r.get(Task.ID_FIELD)).toList());
+        assertEquals(List.of(Task.ID_FIELD), rows.get(0).getFields());
+
+        Query.Aggregate<Long> count = Query.count();
+        Query.Aggregate<ZonedDateTime> min = Query.min(Task.DEADLINE_FIELD);
+        Query agg = Query.select().from(Task.TABLE).aggregate(count, min)
+            .groupBy(Task.TITLE_FIELD).build();
+        List<Group> expected = TaskQueries.aggregate(single, agg);
+        List<Group> actual = dao.aggregate(agg);
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); ++i) {
+            assertEquals(expected.get(i).getKey(), actual.get(i).getKey());
+            assertEquals(expected.get(i).get(count), actual.get(i).get(count));
+            assertEquals(expected.get(i).get(min).toInstant(),
+                    actual.get(i).get(min).toInstant());
+        }
+    }
+
+    @Test
+    void testByDeadline() {
+        Instant cut = BASE.plusMinutes(5000).toInstant();
+        List<MapTaskDAO> shards = shards(2);
+        ShardedTaskDAO dao = new ShardedTaskDAO(shards,
+                ShardStrategy.byDeadline(cut), pool, 10);
+        assertThrows(IllegalArgumentException.class,
+                () -> new ShardedTaskDAO(shards(3),
+                    ShardStrategy.byDeadline(cut), pool, 10));
+
+        Task early = new Task(-1, "Early", null, BASE);
+        dao.add(early);
+        assertEquals(1, shards.get(0).size());
+
+        // moving the deadline moves the task
+        early.setDeadline(BASE.plusMinutes(6000));
+        dao.update(early);
+        assertEquals(0, shards.get(0).size());
+        assertEquals(1, shards.get(1).size());
+        assertEquals(1, drain(dao.fetchEquals(Task.ID, early.getID())).size());
+
+        dao.delete(early.getID());
+        dao.delete(12345);
+        assertEquals(0, shards.get(1).size());
+    }
+
+    @Test
+    void testResume() {
+        ShardedTaskDAO dao = new ShardedTaskDAO(shards(4),
+                ShardStrategy.byID(), pool, 10);
+        MapTaskDAO single = new MapTaskDAO();
+        fill(dao, single, 200);
+
+        Paginated<Task> p = dao.fetchAll();
+        List<Task> seen = new ArrayList<>(p.nextPage());
+        seen.addAll(p.nextPage());
+        Paginated<Task> resumed = dao.fetchAll(p.getContinuationToken());
+        seen.addAll(drain(resumed));
+        assertEquals(ids(drain(single.fetchAll())), ids(seen));
+    }
+
+    @Test
+    void testParallelFanOut() {
+        // once armed, no shard gets past its first read until all of them
+        // are reading at once
+        CountDownLatch latch = new CountDownLatch(4);
+        AtomicBoolean armed = new AtomicBoolean();
+        List<MapTaskDAO> shards = new ArrayList<>();
+        for (int i = 0; i < 4; ++i) {
+            shards.add(new MapTaskDAO() {
+                @Override
+                protected void beforeRead() {
+                    if (!armed.get()) {
+                        return;
+                    }
+                    latch.countDown();
+                    try {
+                        if (!latch.await(5, TimeUnit.SECONDS)) {
+                            throw new IllegalStateException("not parallel");
+                        }
+                    } catch (InterruptedException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+            });
+        }
+        ShardedTaskDAO dao = new ShardedTaskDAO(shards, ShardStrategy.byID(),
+                pool, 10);
+        for (int i = 0; i < 40; ++i) {
+            dao.add(new Task(-1, "T", null, BASE.plusMinutes(i)));
+        }
+        armed.set(true);
+        List<Task> all = drain(dao.fetchAll());
+        assertEquals(40, all.size());
+        for (int i = 1; i < all.size(); ++i) {
+            assertTrue(TaskKey.ORDER.compare(all.get(i - 1), all.get(i)) < 0);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * This file is part of Blocks.
+ * 
+ * Blocks is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * Blocks is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with Blocks. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.ddns.advaith.blocks.dao;
+
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import net.ddns.advaith.blocks.model.BatchWriteException;
+import net.ddns.advaith.blocks.model.DAOException;
+import net.ddns.advaith.blocks.model.Paginated;
+import net.ddns.advaith.blocks.model.Query;
+import net.ddns.advaith.blocks.model.Task;
+
+/**
+ * Tests for SnapshotTaskDAO.
+ *
+ * @since 0.1.0
+ * @author Advaith Menon
+ */
+class SnapshotTaskDAOTest {
+    private static final ZonedDateTime BASE = ZonedDateTime.now()
+        .plusYears(1);
+
+    private static SnapshotTaskDAO filled(int n) {
+        SnapshotTaskDAO dao = new SnapshotTaskDAO(4);
+        for (int i = 0; i < n; ++i) {
+            dao.add(new Task(-1, i % 2 == 0 ? "Even" : "Odd", null,
+                        BASE.plusHours(i)));
+        }
+        return dao;
+    }
+
+    @Test
+    void testCrud() {
+        SnapshotTaskDAO dao = filled(3);
+        Task t = Tasks.drain(dao.fetchEquals(Task.ID, 1L)).get(0);
+        t.setTitle("Changed");
+        dao.update(t);
+        assertEquals(List.of(1L), Tasks.drain(dao.fetchEquals(Task.TITLE,
+                        "Changed")).stream().map(Task::getID).toList());
+        assertThrows(DAOException.class,
+                () -> dao.update(Task.restore(9, "X", null, BASE)));
+        assertThrows(DAOException.class,
+                () -> dao.add(Task.restore(1, "X", null, BASE)));
+        dao.delete(1);
+        dao.delete(1);
+        assertEquals(2, Tasks.drain(dao.fetchAll()).size());
+
+        BatchWriteException e = assertThrows(BatchWriteException.class,
+                () -> dao.addAll(List.of(new Task(-1, "A", null, BASE),
+                        Task.restore(0, "Clash", null, BASE))));
+        assertEquals(0, e.getWritten());
+        assertEquals(2, dao.getStore().snapshot().size());
+    }
+
+    @Test
+    void testSnapshotPaging() {
+        SnapshotTaskDAO dao = filled(10);
+        Paginated<Task> p = dao.fetchAll();
+        List<Task> seen = new ArrayList<>(p.nextPage());
+        // writes after fetchAll are not seen by it
+        dao.delete(9);
+        dao.add(new Task(-1, "Late", null, BASE.plusHours(20)));
+        while (p.hasNextPage()) {
+            seen.addAll(p.nextPage());
+        }
+        assertEquals(List.of(0L, 1L, 2L, 3L, 4L, 5L, 6L, 7L, 8L, 9L),
+                seen.stream().map(Task::getID).toList());
+
+        // but a resumed fetch is
+        Paginated<Task> first = dao.fetchAll();
+        first.nextPage();
+        first.nextPage();
+        List<Task> rest = Tasks.drain(dao.fetchAll(
+                    first.getContinuationToken()));
+        assertEquals(List.of(8L, 10L), rest.stream().map(Task::getID)
+                .toList());
+    }
+
+    @Test
+    void testQuery() {
+        SnapshotTaskDAO dao = filled(10);
+        Query q = Query.select().from(Task.TABLE)
+            .where(Task.TITLE_FIELD).equal("Odd").finish()
+            .orderBy(Task.DEADLINE_FIELD, Query.Order.DESC).limit(2).build();
+        assertEquals(List.of(9L, 7L), Tasks.drain(dao.query(q)).stream()
+                .map(Task::getID).toList());
+    }
+}
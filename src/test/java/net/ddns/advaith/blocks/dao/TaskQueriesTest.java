@@ -0,0 +1,291 @@
+/*
+ * This file is part of Blocks.
+ * 
+ * Blocks is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * Blocks is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with Blocks. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.ddns.advaith.blocks.dao;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.function.Predicate;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import net.ddns.advaith.blocks.model.GenericDAO;
+import net.ddns.advaith.blocks.model.Group;
+import net.ddns.advaith.blocks.model.ListPaginated;
+import net.ddns.advaith.blocks.model.Paginated;
+import net.ddns.advaith.blocks.model.Query;
+import net.ddns.advaith.blocks.model.Row;
+import net.ddns.advaith.blocks.model.Task;
+
+/**
+ * Tests for the in-memory query fallback in TaskQueries.
+ *
+ * @since 0.1.0
+ * @author Advaith Menon
+ */
+class TaskQueriesTest {
+    private static final ZonedDateTime BASE = ZonedDateTime.now()
+        .plusYears(1);
+
+    /**
+     * A DAO that only supports fetchAll, and counts the pages read.
+     */
+    private static class ListDAO implements GenericDAO<Task> {
+        final List<Task> tasks = new ArrayList<>();
+        int pagesRead;
+
+        @Override
+        public void add(Task item) {
+            tasks.add(item);
+        }
+
+        @Override
+        public void update(Task item) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void delete(Task item) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void delete(long id) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Paginated<Task> fetchAll() {
+            ListPaginated<Task> p = new ListPaginated<>(tasks, 10);
+            return new Paginated<Task>() {
+                @Override
+                public void setEntriesPerPage(int x) {
+                    p.setEntriesPerPage(x);
+                }
+
+                @Override
+                public boolean hasNextPage() {
+                    return p.hasNextPage();
+                }
+
+                @Override
+                public List<Task> nextPage() {
+                    ++pagesRead;
+                    return p.nextPage();
+                }
+            };
+        }
+
+        @Override
+        public Paginated<Task> fetchEquals(int column, Object target) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Paginated<Task> query(Query query) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private static ListDAO shuffled(int n) {
+        ListDAO dao = new ListDAO();
+        for (int i = 0; i < n; ++i) {
+            dao.add(new Task(i, "Task " + (i % 7), i % 3 == 0 ? null
+                        : "details", BASE.plusHours(i)));
+        }
+        Collections.shuffle(dao.tasks, new Random(3));
+        return dao;
+    }
+
+    private static List<Row> drain(Paginated<Row> p) {
+        return Tasks.drain(p);
+    }
+
+    @Test
+    void testNextDeadlines() {
+        ListDAO dao = shuffled(500);
+        Query q = Query.select(Task.ID_FIELD, Task.DEADLINE_FIELD)
+            .from(Task.TABLE)
+            .orderBy(Task.DEADLINE_FIELD).offset(5).limit(50).build();
+        List<Row> rows = drain(TaskQueries.select(dao, q));
+        assertEquals(50, rows.size());
+        for (int i = 0; i < 50; ++i) {
+            Row r = rows.get(i);
+            assertEquals(i + 5L, r.get(Task.ID_FIELD));
+            assertEquals(BASE.plusHours(i + 5), r.get(Task.DEADLINE_FIELD));
+            assertThrows(IllegalArgumentException.class,
+                    () -> r.get(Task.TITLE_FIELD));
+        }
+    }
+
+    @Test
+    void testTopKMatchesFullSort() {
+        ListDAO dao = shuffled(300);
+        Query.QueryBuilder qb = Query.select().from(Task.TABLE)
+            .where(Task.TITLE_FIELD).like("Task 3").or()
+            .where(Task.DETAILS_FIELD).equal("details").and()
+            .where(Task.ID_FIELD).greaterThan(100L).finish()
+            .orderBy(Task.TITLE_FIELD, Query.Order.DESC)
+            .orderBy(Task.DEADLINE_FIELD);
+        List<Task> all = TaskQueries.evaluate(dao.fetchAll(), qb.build());
+        List<Task> top = TaskQueries.evaluate(dao.fetchAll(),
+                qb.offset(7).limit(20).build());
+        assertEquals(all.subList(7, 27), top);
+        for (Task t: all) {
+            assertTrue(("Task 3".equals(t.getTitle())
+                        || t.getDetails() != null) && t.getID() > 100);
+        }
+    }
+
+    @Test
+    void testPredicate() {
+        Query q = Query.select().from(Task.TABLE)
+            .where(Task.TITLE_FIELD).like("%sk 3%").and()
+            .where(Task.ID_FIELD).lessThan(100L).finish().build();
+        Predicate<Task> p = TaskQueries.predicate(q);
+        for (Task t: shuffled(200).tasks) {
+            assertEquals(TaskQueries.matches(t, q), p.test(t));
+            assertEquals("Task 3".equals(t.getTitle()) && t.getID() < 100,
+                    p.test(t));
+        }
+        assertTrue(TaskQueries.predicate(Query.select().from(Task.TABLE)
+                    .build()).test(shuffled(1).tasks.get(0)));
+        assertFalse(p.test(new Task(1, "Task 4", null, BASE)));
+    }
+
+    @Test
+    void testLimitStopsEarly() {
+        ListDAO dao = shuffled(1000);
+        Query q = Query.select().from(Task.TABLE).limit(15).build();
+        assertEquals(15, TaskQueries.evaluate(dao.fetchAll(), q).size());
+        assertEquals(2, dao.pagesRead);
+    }
+
+    @Test
+    void testNullsAndPushdown() {
+        ListDAO dao = shuffled(30);
+        Query q = Query.select().from(Task.TABLE)
+            .where(Task.DETAILS_FIELD).notEquals("x").finish().build();
+        assertEquals(20, TaskQueries.evaluate(dao.fetchAll(), q).size());
+
+        q = Query.select(Task.DETAILS_FIELD).from(Task.TABLE)
+            .orderBy(Task.DETAILS_FIELD).limit(1).build();
+        assertEquals(null, drain(TaskQueries.select(dao, q)).get(0)
+                .get(Task.DETAILS_FIELD));
+
+        Row pushed = new Row(List.of(Task.ID_FIELD), 42L);
+        GenericDAO<Task> pushdown = new ListDAO() {
+            @Override
+            public Paginated<Row> select(Query query) {
+                return new ListPaginated<>(List.of(pushed), 1);
+            }
+        };
+        assertEquals(List.of(pushed), drain(TaskQueries.select(pushdown, q)));
+    }
+
+    @Test
+    void testAggregates() {
+        ListDAO dao = shuffled(100);
+        Query.Aggregate<Long> count = Query.count();
+        Query.Aggregate<Long> withDetails = Query.count(Task.DETAILS_FIELD);
+        Query.Aggregate<ZonedDateTime> first = Query.min(Task.DEADLINE_FIELD);
+        Query.Aggregate<ZonedDateTime> last = Query.max(Task.DEADLINE_FIELD);
+
+        Query q = Query.select().from(Task.TABLE)
+            .where(Task.ID_FIELD).greaterThanOrEquals(10L).finish()
+            .aggregate(count, withDetails, first, last).build();
+        List<Group> groups = TaskQueries.aggregate(dao, q);
+        assertEquals(1, groups.size());
+        Group g = groups.get(0);
+        assertEquals(null, g.getKey());
+        assertEquals(90L, g.get(count));
+        assertEquals(60L, g.get(withDetails));
+        assertEquals(BASE.plusHours(10), g.get(first));
+        assertEquals(BASE.plusHours(99), g.get(last));
+        assertThrows(IllegalArgumentException.class,
+                () -> g.get(Query.max(Task.ID_FIELD)));
+
+        // no matches still gives a single group
+        q = Query.select().from(Task.TABLE)
+            .where(Task.ID_FIELD).lessThan(0L).finish()
+            .aggregate(count, first).build();
+        Group empty = TaskQueries.aggregate(dao, q).get(0);
+        assertEquals(0L, empty.get(count));
+        assertEquals(null, empty.get(first));
+    }
+
+    @Test
+    void testGroupByDay() {
+        ListDAO dao = shuffled(100);
+        ZoneId zone = ZoneId.of("Asia/Kolkata");
+        Query.Aggregate<Long> count = Query.count();
+        Query q = Query.select().from(Task.TABLE).aggregate(count)
+            .groupByDay(Task.DEADLINE_FIELD, zone).build();
+
+        Map<LocalDate, Long> expected = new TreeMap<>();
+        for (Task t: dao.tasks) {
+            expected.merge(t.getDeadline().withZoneSameInstant(zone)
+                    .toLocalDate(), 1L, Long::sum);
+        }
+        Map<Object, Long> actual = new LinkedHashMap<>();
+        for (Group g: TaskQueries.aggregate(dao, q)) {
+            actual.put(g.getKey(), g.get(count));
+        }
+        assertEquals(new ArrayList<>(expected.entrySet()),
+                new ArrayList<>(actual.entrySet()));
+
+        q = Query.select().from(Task.TABLE).aggregate(count)
+            .groupBy(Task.DETAILS_FIELD).build();
+        List<Group> byDetails = TaskQueries.aggregate(dao, q);
+        assertEquals(2, byDetails.size());
+        assertEquals(null, byDetails.get(0).getKey());
+        assertEquals(34L, byDetails.get(0).get(count));
+
+        Query grouped = q;
+        assertThrows(IllegalArgumentException.class,
+                () -> TaskQueries.select(dao, grouped));
+    }
+
+    @Test
+    void testBuilderValidation() {
+        assertThrows(IllegalArgumentException.class,
+                () -> Query.select(Task.ID_FIELD, Task.ID_FIELD));
+        assertThrows(IllegalArgumentException.class,
+                () -> Query.select().limit(-1));
+        assertThrows(IllegalArgumentException.class,
+                () -> Query.select().offset(-1));
+        assertThrows(IllegalArgumentException.class,
+                () -> Query.select().orderBy(null));
+        assertThrows(IllegalStateException.class,
+                () -> Query.select().groupBy(Task.TITLE_FIELD).build());
+        assertThrows(IllegalStateException.class,
+                () -> Query.select(Task.ID_FIELD).aggregate(Query.count())
+                    .build());
+    }
+}
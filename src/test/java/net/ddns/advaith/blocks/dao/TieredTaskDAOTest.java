@@ -0,0 +1,257 @@
+/*
+ * This file is part of Blocks.
+ * 
+ * Blocks is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * Blocks is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with Blocks. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package net.ddns.advaith.blocks.dao;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import net.ddns.advaith.blocks.model.ConflictException;
+import net.ddns.advaith.blocks.model.Paginated;
+import net.ddns.advaith.blocks.model.Query;
+import net.ddns.advaith.blocks.model.Task;
+
+/**
+ * Tests for TieredTaskDAO, over a cold tier that counts its reads.
+ *
+ * @since 0.1.0
+ * @author Advaith Menon
+ */
+class TieredTaskDAOTest {
+    private static final ZonedDateTime NOW = ZonedDateTime.now();
+
+    private final ExecutorService pool = Executors.newFixedThreadPool(2);
+
+    private final AtomicInteger coldReads = new AtomicInteger();
+
+    private final MapTaskDAO cold = new MapTaskDAO(3) {
+        @Override
+        protected void beforeRead() {
+            coldReads.incrementAndGet();
+        }
+    };
+
+    private final MovingClock clock = new MovingClock();
+
+    @AfterEach
+    void shutdown() {
+        pool.shutdownNow();
+    }
+
+    /**
+     * A clock that only moves when told to.
+     */
+    private static final class MovingClock extends Clock {
+        private volatile Instant now = NOW.toInstant();
+
+        void advance(Duration d) {
+            now = now.plus(d);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return NOW.getZone();
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+
+    // tasks due in 1, 3, 30 and 60 days, with IDs 0 to 3
+    private void fill() {
+        for (int days: new int[] {1, 3, 30, 60}) {
+            cold.add(new Task(-1, "Due in " + days, null,
+                        NOW.plusDays(days)));
+        }
+    }
+
+    private TieredTaskDAO tiered(TierPolicy policy) {
+        return new TieredTaskDAO(cold, policy, pool, 2, clock);
+    }
+
+    private static List<Long> ids(Paginated<Task> p) {
+        List<Long> out = new ArrayList<>();
+        for (Task t: Tasks.drain(p)) {
+            out.add(t.getID());
+        }
+        return out;
+    }
+
+    @Test
+    void testPlacement() {
+        fill();
+        TieredTaskDAO dao = tiered(TierPolicy.DEFAULT);
+        assertEquals(2, dao.getHotSize());
+        assertTrue(dao.isHot(0));
+        assertTrue(dao.isHot(1));
+        assertFalse(dao.isHot(2));
+
+        Task soon = new Task(-1, "Soon", null, NOW.plusDays(2));
+        Task later = new Task(-1, "Later", null, NOW.plusDays(40));
+        dao.add(soon);
+        dao.add(later);
+        assertTrue(dao.isHot(soon.getID()));
+        assertFalse(dao.isHot(later.getID()));
+        assertEquals(6, cold.size());
+
+        assertEquals(List.of(0L, soon.getID(), 1L, 2L, later.getID(), 3L),
+                ids(dao.fetchAll()));
+        Paginated<Task> p = dao.fetchAll();
+        p.nextPage();
+        p.nextPage();
+        assertEquals(List.of(later.getID(), 3L), ids(dao.fetchAll(
+                        p.getContinuationToken())));
+    }
+
+    @Test
+    void testQuery() {
+        fill();
+        TieredTaskDAO dao = tiered(TierPolicy.DEFAULT);
+        int before = coldReads.get();
+        Query soon = Query.select().from(Task.TABLE)
+            .where(Task.DEADLINE_FIELD).greaterThan(NOW).and()
+            .where(Task.DEADLINE_FIELD).lessThan(NOW.plusDays(5)).finish()
+            .build();
+        assertEquals(List.of(0L, 1L), ids(dao.query(soon)));
+        assertEquals(before, coldReads.get());
+
+        Query all = Query.select().from(Task.TABLE)
+            .where(Task.DEADLINE_FIELD).greaterThan(NOW).finish()
+            .orderBy(Task.DEADLINE_FIELD, Query.Order.DESC)
+            .offset(1).limit(2).build();
+        assertEquals(List.of(2L, 1L), ids(dao.query(all)));
+        assertTrue(coldReads.get() > before);
+    }
+
+    @Test
+    void testRebalance() {
+        fill();
+        TieredTaskDAO dao = tiered(TierPolicy.DEFAULT);
+        clock.advance(Duration.ofDays(28));
+        dao.rebalance();
+        assertFalse(dao.isHot(0));
+        assertFalse(dao.isHot(1));
+        assertTrue(dao.isHot(2));
+        assertEquals(1, dao.getHotSize());
+        assertEquals(3, dao.getPromotions());
+        assertEquals(2, dao.getDemotions());
+        assertEquals(List.of(0L, 1L, 2L, 3L), ids(dao.fetchAll()));
+    }
+
+    @Test
+    void testReads() {
+        fill();
+        TieredTaskDAO dao = tiered(TierPolicy.builder().promoteAfter(2)
+                .build());
+        for (int i = 0; i < 4; ++i) {
+            assertEquals(List.of(3L), ids(dao.fetchEquals(Task.ID, 3L)));
+        }
+        dao.rebalance();
+        assertTrue(dao.isHot(3));
+        int before = coldReads.get();
+        assertEquals("Due in 60", dao.fetchEquals(Task.ID, 3L).nextPage()
+                .get(0).getTitle());
+        assertEquals(before, coldReads.get());
+
+        // halved to 2, plus the read above it stays; halved to 1, it goes
+        dao.rebalance();
+        assertTrue(dao.isHot(3));
+        dao.rebalance();
+        assertFalse(dao.isHot(3));
+
+        TieredTaskDAO full = tiered(TierPolicy.builder().promoteAfter(1)
+                .capacity(0).build());
+        full.fetchEquals(Task.ID, 3L);
+        full.rebalance();
+        assertFalse(full.isHot(3));
+    }
+
+    @Test
+    void testWriteThrough() {
+        fill();
+        TieredTaskDAO dao = tiered(TierPolicy.DEFAULT);
+        Task t = dao.fetchEquals(Task.ID, 0L).nextPage().get(0);
+        t.setTitle("Changed");
+        dao.update(t);
+        Task stored = cold.fetchEquals(Task.ID, 0L).nextPage().get(0);
+        assertEquals("Changed", stored.getTitle());
+        assertEquals(stored.getVersion(), t.getVersion());
+        assertEquals(t.getVersion(), dao.fetchEquals(Task.ID, 0L).nextPage()
+                .get(0).getVersion());
+
+        // moving a cold task into the window promotes it
+        Task far = dao.fetchEquals(Task.ID, 3L).nextPage().get(0);
+        far.setDeadline(NOW.plusDays(2));
+        dao.update(far);
+        assertTrue(dao.isHot(3));
+
+        dao.delete(t);
+        assertFalse(dao.isHot(0));
+        assertFalse(cold.fetchEquals(Task.ID, 0L).hasNextPage());
+    }
+
+    @Test
+    void testWriteBack() {
+        fill();
+        TieredTaskDAO dao = tiered(TierPolicy.builder().writeBack(true)
+                .build());
+        Task t = dao.fetchEquals(Task.ID, 1L).nextPage().get(0);
+        Task stale = Tasks.copy(t);
+        t.setTitle("Changed");
+        dao.update(t);
+        assertEquals("Due in 3", cold.fetchEquals(Task.ID, 1L).nextPage()
+                .get(0).getTitle());
+        assertEquals("Changed", dao.fetchEquals(Task.ID, 1L).nextPage()
+                .get(0).getTitle());
+        assertThrows(ConflictException.class, () -> dao.update(stale));
+
+        dao.flush();
+        assertEquals("Changed", cold.fetchEquals(Task.ID, 1L).nextPage()
+                .get(0).getTitle());
+
+        t.setTitle("Again");
+        dao.update(t);
+        clock.advance(Duration.ofDays(28));
+        dao.rebalance();
+        assertFalse(dao.isHot(1));
+        assertEquals("Again", cold.fetchEquals(Task.ID, 1L).nextPage()
+                .get(0).getTitle());
+    }
+}
@@ -0,0 +1,204 @@
+/*
+ * This file is part of Blocks.
+ * 
+ * Blocks is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * Blocks is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with Blocks. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package net.ddns.advaith.blocks.dao;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import net.ddns.advaith.blocks.config.ConfigManager;
+import net.ddns.advaith.blocks.model.ConflictException;
+import net.ddns.advaith.blocks.model.Task;
+
+/**
+ * Tests for UndoableTaskDAO and UndoHistory, over a MemoryTaskDAO that
+ * counts its batch writes.
+ *
+ * @since 0.1.0
+ * @author Advaith Menon
+ */
+class UndoableTaskDAOTest {
+    private static final ZonedDateTime NOW = ZonedDateTime.now();
+
+    private final AtomicInteger batches = new AtomicInteger();
+
+    private final MemoryTaskDAO store = new MemoryTaskDAO(100) {
+        @Override
+        public void addAll(List<Task> items) {
+            batches.incrementAndGet();
+            super.addAll(items);
+        }
+    };
+
+    private final UndoableTaskDAO dao = new UndoableTaskDAO(store,
+            new UndoHistory(UndoHistory.DEFAULT_CAPACITY,
+                UndoHistory.DEFAULT_BATCH));
+
+    private static Task task(String title, int days) {
+        return new Task(-1, title, null, NOW.plusDays(days));
+    }
+
+    @Test
+    void testAddUpdateDelete() {
+        Task t = task("A", 1);
+        dao.add(t);
+        t.setTitle("B");
+        dao.update(t);
+        dao.delete(t);
+        assertNull(store.get(t.getID()));
+
+        assertEquals("Delete task", dao.undo().getLabel());
+        assertEquals("B", store.get(t.getID()).getTitle());
+        dao.undo();
+        assertEquals("A", store.get(t.getID()).getTitle());
+        dao.undo();
+        assertNull(store.get(t.getID()));
+        assertNull(dao.undo());
+
+        dao.redo();
+        dao.redo();
+        assertEquals("B", store.get(t.getID()).getTitle());
+        dao.redo();
+        assertNull(store.get(t.getID()));
+        assertNull(dao.redo());
+    }
+
+    @Test
+    void testBulkDelete() {
+        List<Task> tasks = new ArrayList<>();
+        for (int i = 0; i < 10000; ++i) {
+            tasks.add(task("Task " + i, 1 + i % 30));
+        }
+        dao.addAll(tasks);
+        dao.group("Delete 10000 tasks", () -> {
+            for (Task t: tasks) {
+                dao.delete(t);
+            }
+        });
+        assertNull(store.get(tasks.get(0).getID()));
+
+        batches.set(0);
+        TaskEdit e = dao.undo();
+        assertEquals(10000, e.size());
+        assertEquals(1, batches.get());
+        for (Task t: tasks) {
+            assertEquals(t.getTitle(), store.get(t.getID()).getTitle());
+        }
+        dao.redo();
+        assertNull(store.get(tasks.get(9999).getID()));
+        // undoing the add as well takes the tasks away
+        dao.undo();
+        dao.undo();
+        assertNull(store.get(tasks.get(9999).getID()));
+    }
+
+    @Test
+    void testGroup() {
+        Task t = task("A", 1);
+        dao.group("Make and drop", () -> {
+            dao.add(t);
+            dao.add(task("B", 2));
+            t.setTitle("C");
+            dao.update(t);
+            dao.delete(t);
+        });
+        TaskEdit e = dao.getHistory().peekUndo();
+        // A was added and deleted, so only B is left to undo
+        assertEquals(1, e.size());
+        dao.undo();
+        assertTrue(Tasks.drain(store.fetchAll()).isEmpty());
+    }
+
+    @Test
+    void testConflict() {
+        Task t = task("A", 1);
+        dao.add(t);
+        t.setTitle("B");
+        dao.update(t);
+        // changed behind the history's back
+        Task other = store.get(t.getID());
+        other.setTitle("C");
+        store.update(other);
+        assertThrows(ConflictException.class, dao::undo);
+        assertEquals("C", store.get(t.getID()).getTitle());
+        // the step is gone, the one before it is not
+        assertEquals("Add task", dao.getHistory().peekUndo().getLabel());
+    }
+
+    @Test
+    void testCapacity() {
+        Task t = task("A", 1);
+        dao.add(t);
+        long one = dao.getHistory().getBytes();
+        UndoHistory small = new UndoHistory(one * 3, 10);
+        UndoableTaskDAO capped = new UndoableTaskDAO(store, small);
+        for (int i = 0; i < 10; ++i) {
+            capped.add(task("B", 1));
+        }
+        assertTrue(small.getBytes() <= one * 3);
+        int steps = 0;
+        while (capped.undo() != null) {
+            ++steps;
+        }
+        assertEquals(3, steps);
+        // too big to keep at all
+        List<Task> many = new ArrayList<>();
+        for (int i = 0; i < 100; ++i) {
+            many.add(task("C", 1));
+        }
+        capped.addAll(many);
+        assertNull(small.peekUndo());
+        assertNull(small.peekRedo());
+    }
+
+    @Test
+    void testConfig() throws IOException {
+        assertEquals(4096, UndoHistory.capacityOf(config(
+                        UndoHistory.CAPACITY_KEY + "=4096")));
+        assertEquals(UndoHistory.DEFAULT_CAPACITY, UndoHistory.capacityOf(
+                    config(UndoHistory.CAPACITY_KEY + "=-1")));
+        UndoHistory h = UndoHistory.fromConfig(config(
+                    UndoHistory.BATCH_KEY + "=7"));
+        assertEquals(UndoHistory.DEFAULT_CAPACITY, h.getCapacity());
+        assertEquals(7, h.getBatchSize());
+    }
+
+    private static ConfigManager config(String text) throws IOException {
+        return new ConfigManager(new InputStream[] {
+            new ByteArrayInputStream(text.getBytes())}, null);
+    }
+
+    @Test
+    void testArguments() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new UndoHistory(0, 1));
+        assertThrows(IllegalArgumentException.class,
+                () -> new UndoableTaskDAO(store, null));
+    }
+}
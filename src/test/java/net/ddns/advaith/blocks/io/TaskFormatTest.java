@@ -0,0 +1,124 @@
+/*
+ * This file is part of Blocks.
+ * 
+ * Blocks is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * Blocks is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with Blocks. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.ddns.advaith.blocks.io;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import net.ddns.advaith.blocks.model.Task;
+
+/**
+ * Tests for TaskFormat.
+ *
+ * @since 0.1.0
+ * @author Advaith Menon
+ */
+class TaskFormatTest {
+    private static final ZonedDateTime DEADLINE = ZonedDateTime.of(2020, 1,
+            31, 17, 0, 0, 0, ZoneId.of("Asia/Kolkata"));
+
+    private static void assertSame(Task expected, Task actual) {
+        assertEquals(expected.getID(), actual.getID());
+        assertEquals(expected.getTitle(), actual.getTitle());
+        assertEquals(expected.getDetails(), actual.getDetails());
+        assertEquals(expected.getDeadline(), actual.getDeadline());
+    }
+
+    @Test
+    void testRoundTrip() {
+        Task[] tasks = {
+            Task.restore(1, "Plain", null, DEADLINE),
+            Task.restore(2, "Comma, \"quotes\"", "Two\nlines\r\n", DEADLINE),
+            Task.restore(-1, "Tab\tand \u0001 and é", "\\", DEADLINE),
+        };
+        for (TaskFormat f: TaskFormat.values()) {
+            for (Task t: tasks) {
+                assertSame(t, f.parse(f.format(t)));
+            }
+        }
+        assertEquals("1,Plain,,2020-01-31T17:00:00+05:30[Asia/Kolkata]",
+                TaskFormat.CSV.format(tasks[0]));
+        assertEquals("{\"id\":1,\"title\":\"Plain\",\"details\":null,"
+                + "\"deadline\":\"2020-01-31T17:00:00+05:30[Asia/Kolkata]\"}",
+                TaskFormat.JSONL.format(tasks[0]));
+    }
+
+    @Test
+    void testLenientInput() {
+        Task t = TaskFormat.JSONL.parse(" { \"title\" : \"A\\u0042\", "
+                + "\"extra\": 5, \"deadline\": \"2020-01-31T17:00Z\" } ");
+        assertEquals(-1, t.getID());
+        assertEquals("AB", t.getTitle());
+        assertNull(t.getDetails());
+        t = TaskFormat.CSV.parse(",\"A\",,2020-01-31T17:00+01:00");
+        assertEquals(-1, t.getID());
+        assertEquals("A", t.getTitle());
+    }
+
+    @Test
+    void testErrors() {
+        String[] csv = {
+            "1,A,B",
+            "1,A,B,tomorrow",
+            "x,A,B,2020-01-31T17:00Z",
+            "1,,B,2020-01-31T17:00Z",
+            "1,\"A\"x,B,2020-01-31T17:00Z",
+            "1,A\"B,C,2020-01-31T17:00Z",
+            "1,\"A,B,2020-01-31T17:00Z",
+        };
+        for (String r: csv) {
+            assertThrows(IllegalArgumentException.class,
+                    () -> TaskFormat.CSV.parse(r), r);
+        }
+        String[] jsonl = {
+            "{\"title\":\"A\"}",
+            "{\"id\":\"1\",\"title\":\"A\",\"deadline\":\"2020-01-31T17:00Z\"}",
+            "{\"id\":-2,\"title\":\"A\",\"deadline\":\"2020-01-31T17:00Z\"}",
+            "{\"title\":[],\"deadline\":\"2020-01-31T17:00Z\"}",
+            "{\"title\":\"A\",\"title\":\"B\"}",
+            "{\"title\":\"A\"} x",
+            "{\"title\":\"A",
+        };
+        for (String r: jsonl) {
+            assertThrows(IllegalArgumentException.class,
+                    () -> TaskFormat.JSONL.parse(r), r);
+        }
+    }
+
+    @Test
+    void testReadRecord() throws IOException {
+        BufferedReader in = new BufferedReader(new StringReader(
+                    "1,\"a\nb\"\"\nc\",d,e\n2,x,y,z\n"));
+        assertEquals("1,\"a\nb\"\"\nc\",d,e", TaskFormat.CSV.readRecord(in));
+        assertEquals("2,x,y,z", TaskFormat.CSV.readRecord(in));
+        assertNull(TaskFormat.CSV.readRecord(in));
+
+        in = new BufferedReader(new StringReader("{}\n\n  \n{}"));
+        assertEquals("{}", TaskFormat.JSONL.readRecord(in));
+        assertEquals("{}", TaskFormat.JSONL.readRecord(in));
+        assertNull(TaskFormat.JSONL.readRecord(in));
+    }
+}
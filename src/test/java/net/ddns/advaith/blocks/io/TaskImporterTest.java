@@ -0,0 +1,214 @@
+/*
+ * This file is part of Blocks.
+ * 
+ * Blocks is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * Blocks is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with Blocks. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.ddns.advaith.blocks.io;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import net.ddns.advaith.blocks.model.DAOException;
+import net.ddns.advaith.blocks.model.GenericDAO;
+import net.ddns.advaith.blocks.model.ListPaginated;
+import net.ddns.advaith.blocks.model.Paginated;
+import net.ddns.advaith.blocks.model.Query;
+import net.ddns.advaith.blocks.model.Task;
+
+/**
+ * Tests for TaskImporter and TaskExporter.
+ *
+ * @since 0.1.0
+ * @author Advaith Menon
+ */
+class TaskImporterTest {
+    private static final ZonedDateTime BASE = ZonedDateTime.of(2030, 1, 1, 0,
+            0, 0, 0, ZoneOffset.UTC);
+
+    // keeps tasks in a list and rejects duplicate IDs
+    private static class ListDAO implements GenericDAO<Task> {
+        private final List<Task> tasks = new ArrayList<>();
+        private final Set<Long> ids = new HashSet<>();
+        private long nextID;
+
+        @Override
+        public synchronized void add(Task item) {
+            if (item.getID() == -1) {
+                item.setID(nextID);
+            } else if (!ids.add(item.getID())) {
+                throw new DAOException("Duplicate ID " + item.getID());
+            }
+            ids.add(item.getID());
+            nextID = Math.max(nextID, item.getID() + 1);
+            tasks.add(item);
+        }
+
+        @Override
+        public void update(Task item) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void delete(Task item) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void delete(long id) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public synchronized Paginated<Task> fetchAll() {
+            return new ListPaginated<>(new ArrayList<>(tasks), 7);
+        }
+
+        @Override
+        public Paginated<Task> fetchEquals(int column, Object target) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Paginated<Task> query(Query query) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private static String csv(int n) {
+        StringBuilder sb = new StringBuilder(TaskFormat.CSV.header())
+            .append('\n');
+        for (int i = 0; i < n; ++i) {
+            sb.append(TaskFormat.CSV.format(Task.restore(i, "Task " + i,
+                            i % 3 == 0 ? "a,\n\"b\"" : null,
+                            BASE.plusMinutes(i)))).append('\n');
+        }
+        return sb.toString();
+    }
+
+    @Test
+    void testImport() throws IOException {
+        String good = csv(10_000);
+        // break record 17, add a duplicate of record 1 as record 10001
+        String input = good.replace("Task 16,", "Task 16,x,")
+            + TaskFormat.CSV.format(Task.restore(0, "Again", null, BASE))
+            + "\n";
+        ListDAO dao = new ListDAO();
+        TransferReport r = new TaskImporter(TaskFormat.CSV, 3, 64, 100)
+            .importTasks(new StringReader(input), dao);
+        assertEquals(10_001, r.getRead());
+        assertEquals(9_999, r.getWritten());
+        assertEquals(2, r.getFailed());
+        assertEquals(9_999, dao.tasks.size());
+        List<Long> bad = r.getErrors().stream()
+            .map(TransferReport.RowError::getRecord).sorted().toList();
+        assertEquals(List.of(17L, 10_001L), bad);
+        assertTrue(r.getThroughput() > 0);
+
+        Task t = dao.tasks.stream().filter(x -> x.getID() == 3).findAny()
+            .orElseThrow();
+        assertEquals("a,\n\"b\"", t.getDetails());
+    }
+
+    @Test
+    void testStrayQuote() throws IOException {
+        // at the end of the input, and past MAX_RECORD characters
+        for (int n: new int[] {100, 50_000}) {
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < n; ++i) {
+                sb.append(TaskFormat.CSV.format(Task.restore(i, "Task " + i,
+                                null, BASE.plusMinutes(i)))).append('\n');
+            }
+            assertTrue(n < 1000 || sb.length() > TaskFormat.MAX_RECORD);
+            String input = sb.toString().replace("Task 16,", "Task \"16,");
+            ListDAO dao = new ListDAO();
+            TransferReport r = new TaskImporter(TaskFormat.CSV, 2, 64, 10)
+                .importTasks(new StringReader(input), dao);
+            assertEquals(n, r.getRead());
+            assertEquals(n - 1, r.getWritten());
+            assertEquals(1, r.getFailed());
+            assertEquals(17L, r.getErrors().get(0).getRecord());
+        }
+    }
+
+    @Test
+    void testErrorCap() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 1000; ++i) {
+            sb.append("{\"title\":\"No deadline\"}\n");
+        }
+        TransferReport r = new TaskImporter(TaskFormat.JSONL, 2, 10, 5)
+            .importTasks(new StringReader(sb.toString()), new ListDAO());
+        assertEquals(1000, r.getFailed());
+        assertEquals(5, r.getErrors().size());
+        assertEquals(0, r.getWritten());
+    }
+
+    @Test
+    void testRoundTrip() throws IOException {
+        ListDAO source = new ListDAO();
+        new TaskImporter(TaskFormat.CSV).importTasks(
+                new StringReader(csv(500)), source);
+        for (TaskFormat f: TaskFormat.values()) {
+            StringWriter out = new StringWriter();
+            TransferReport r = new TaskExporter(f).export(source, out);
+            assertEquals(500, r.getWritten());
+
+            ListDAO copy = new ListDAO();
+            r = new TaskImporter(f, 2, 32, 10).importTasks(
+                    new StringReader(out.toString()), copy);
+            assertEquals(500, r.getWritten());
+            assertEquals(0, r.getFailed());
+            StringWriter again = new StringWriter();
+            copy.tasks.sort((a, b) -> Long.compare(a.getID(), b.getID()));
+            new TaskExporter(f).export(copy, again);
+            assertEquals(out.toString(), again.toString());
+        }
+    }
+
+    @Test
+    void testFatalError() {
+        ListDAO broken = new ListDAO() {
+            @Override
+            public void addAll(List<Task> items) {
+                throw new DAOException("Disk full");
+            }
+        };
+        DAOException e = assertThrows(DAOException.class,
+                () -> new TaskImporter(TaskFormat.CSV, 2, 8, 10)
+                .importTasks(new StringReader(csv(1000)), broken));
+        assertEquals("Disk full", e.getMessage());
+
+        ListDAO unreadable = new ListDAO() {
+            @Override
+            public Paginated<Task> fetchAll() {
+                throw new DAOException("Gone");
+            }
+        };
+        assertThrows(DAOException.class, () -> new TaskExporter(
+                    TaskFormat.JSONL).export(unreadable, new StringWriter()));
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * This file is part of Blocks.
+ * 
+ * Blocks is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * Blocks is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with Blocks. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.ddns.advaith.blocks.load;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for LatencyHistogram.
+ *
+ * @since 0.1.0
+ * @author Advaith Menon
+ */
+class LatencyHistogramTest {
+    @Test
+    void testBuckets() {
+        long prev = -1;
+        for (long v: new long[] {0, 1, 31, 32, 33, 63, 64, 1000, 1 << 20,
+                123_456_789L, Long.MAX_VALUE}) {
+            int i = LatencyHistogram.indexOf(v);
+            long high = LatencyHistogram.highest(i);
+            assertTrue(high >= v, v + " above its bucket");
+            assertTrue(i == 0 || LatencyHistogram.highest(i - 1) < v,
+                    v + " below its bucket");
+            // about 3% wide at most
+            assertTrue(high - v <= v / 32, v + " in a bucket too wide");
+            assertTrue(i > prev || v == 0);
+            prev = i;
+        }
+    }
+
+    @Test
+    void testPercentiles() {
+        LatencyHistogram a = new LatencyHistogram();
+        LatencyHistogram b = new LatencyHistogram();
+        assertEquals(-1, a.percentile(50));
+        for (int i = 1; i <= 1000; ++i) {
+            (i % 2 == 0 ? a : b).record(i * 1000L);
+        }
+        a.add(b);
+        assertEquals(1000, a.count());
+        assertEquals(1_000_000, a.getMax());
+        assertEquals(500_500, a.getMean(), 0.001);
+        assertClose(500_000, a.percentile(50));
+        assertClose(990_000, a.percentile(99));
+        assertEquals(1_000_000, a.percentile(100));
+        assertThrows(IllegalArgumentException.class, () -> a.percentile(0));
+    }
+
+    private static void assertClose(long expected, long actual) {
+        assertTrue(actual >= expected && actual <= expected * 33 / 32,
+                actual + " is not close to " + expected);
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * This file is part of Blocks.
+ * 
+ * Blocks is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * Blocks is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with Blocks. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.ddns.advaith.blocks.load;
+
+import java.io.StringWriter;
+import java.time.Duration;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import net.ddns.advaith.blocks.dao.MapTaskDAO;
+import net.ddns.advaith.blocks.model.GenericDAO;
+import net.ddns.advaith.blocks.model.Task;
+
+/**
+ * Tests for LoadTest and LoadReport.
+ *
+ * @since 0.1.0
+ * @author Advaith Menon
+ */
+class LoadTestTest {
+    @Test
+    void testRun() throws Exception {
+        GenericDAO<Task> dao = new MapTaskDAO(20);
+        LoadReport r = LoadTest.builder().users(8).preload(200)
+            .duration(Duration.ofMillis(500))
+            .warmup(Duration.ofMillis(100))
+            .sampleEvery(Duration.ofMillis(100)).seed(42).build()
+            .run(() -> () -> dao, "map");
+
+        assertEquals("map", r.getLabel());
+        assertEquals(Operation.values().length, r.getOperations().size());
+        for (LoadReport.OperationStats s: r.getOperations().values()) {
+            assertTrue(s.getCount() > 0, s.getOperation() + " never ran");
+            assertTrue(s.getLatencies().percentile(99) > 0);
+        }
+        // MapTaskDAO does not implement query(), so every query fails
+        LoadReport.OperationStats q = r.getOperations().get(Operation.QUERY);
+        assertEquals(q.getCount(), q.getErrors());
+        assertEquals(q.getCount(), q.getErrorTypes().get(
+                    "UnsupportedOperationException"));
+        assertEquals(0, r.getOperations().get(Operation.PAGE_WALK)
+                .getErrors());
+        assertTrue(r.getErrorRate() > 0 && r.getErrorRate() < 1);
+        assertTrue(r.getThroughput() > 0);
+
+        assertTrue(r.getSamples().size() >= 3);
+        LoadReport.Sample last = r.getSamples().get(r.getSamples().size()
+                - 1);
+        assertEquals(r.getCount(), last.getOperations());
+        assertEquals(r.getErrors(), last.getErrors());
+
+        StringWriter out = new StringWriter();
+        r.writeTo(out);
+        String json = out.toString();
+        assertTrue(json.startsWith("{\n  \"label\": \"map\",\n  \"users\": 8"));
+        assertTrue(json.contains("\"QUERY\": {\"count\": " + q.getCount()));
+        assertTrue(json.contains("\"p99_9_us\": "));
+        assertTrue(json.contains("\"error_types\": "
+                    + "{\"UnsupportedOperationException\": "));
+        assertFalse(r.summary().isEmpty());
+    }
+
+    @Test
+    void testMix() throws Exception {
+        GenericDAO<Task> dao = new MapTaskDAO(20);
+        LoadReport r = LoadTest.builder().users(2).preload(0)
+            .weight(Operation.ADD, 1).weight(Operation.UPDATE, 0)
+            .weight(Operation.DELETE, 0).weight(Operation.FETCH_ALL, 0)
+            .weight(Operation.FETCH_EQUALS, 0).weight(Operation.QUERY, 0)
+            .weight(Operation.PAGE_WALK, 0)
+            .thinkTime(Duration.ofMillis(1))
+            .duration(Duration.ofMillis(200)).build().run(dao, "adds");
+        assertEquals(1, r.getOperations().size());
+        assertEquals(r.getCount(), ((MapTaskDAO) dao).size());
+        assertEquals(0, r.getErrors());
+
+        assertThrows(IllegalStateException.class, () -> LoadTest.builder()
+                .weight(Operation.ADD, 0).weight(Operation.UPDATE, 0)
+                .weight(Operation.DELETE, 0).weight(Operation.FETCH_ALL, 0)
+                .weight(Operation.FETCH_EQUALS, 0).weight(Operation.QUERY, 0)
+                .weight(Operation.PAGE_WALK, 0).build());
+    }
+}
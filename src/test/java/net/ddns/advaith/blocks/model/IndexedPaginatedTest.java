@@ -0,0 +1,138 @@
+/*
+ * This file is part of Blocks.
+ * 
+ * Blocks is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * Blocks is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with Blocks. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.ddns.advaith.blocks.model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for random access to pages, natively in ListPaginated and through
+ * the sparse page index of IndexedPaginated.
+ *
+ * @since 0.1.0
+ * @author Advaith Menon
+ */
+class IndexedPaginatedTest {
+    // the number of entries read from the source
+    private int read;
+
+    // a keyset source over 0..n-1, with the integer itself as the token
+    private Paginated<Integer> source(int n, String token) {
+        return new KeysetPaginated<>((t, limit) -> {
+            int from = t == null ? 0 : Integer.parseInt(t) + 1;
+            List<Integer> out = new ArrayList<>();
+            for (int i = from; i < n && out.size() < limit; ++i) {
+                out.add(i);
+            }
+            read += out.size();
+            return out;
+        }, String::valueOf, 1, token);
+    }
+
+    // hides everything but the forward-only methods
+    private static <T> Paginated<T> forwardOnly(Paginated<T> p) {
+        return new Paginated<T>() {
+            @Override
+            public void setEntriesPerPage(int x) {
+                p.setEntriesPerPage(x);
+            }
+
+            @Override
+            public boolean hasNextPage() {
+                return p.hasNextPage();
+            }
+
+            @Override
+            public List<T> nextPage() {
+                return p.nextPage();
+            }
+        };
+    }
+
+    @Test
+    void testJumps() {
+        IndexedPaginated<Integer> p = new IndexedPaginated<>(
+                t -> source(100_000, t), null, 10, 16);
+        assertEquals(List.of(4000, 4001, 4002, 4003, 4004, 4005, 4006, 4007,
+                    4008, 4009), p.page(400));
+        assertEquals(4010, p.nextPage().get(0));
+
+        // jumping back only reads from the nearest remembered page
+        read = 0;
+        assertEquals(3990, p.page(399).get(0));
+        assertTrue(read <= 16 * 10 + 10, "read " + read);
+
+        // and so does jumping forward again
+        read = 0;
+        assertEquals(4000, p.page(400).get(0));
+        assertTrue(read <= 16 * 10 + 10, "read " + read);
+
+        assertEquals(100_000, p.totalSize());
+        assertEquals(10_000, p.pageCount());
+        assertEquals(4010, p.nextPage().get(0));
+        assertEquals(List.of(99_990, 99_991, 99_992, 99_993, 99_994, 99_995,
+                    99_996, 99_997, 99_998, 99_999), p.page(9999));
+        assertFalse(p.hasNextPage());
+        assertThrows(NoSuchElementException.class, () -> p.page(10_000));
+        assertTrue(p.indexedPages() <= 10_000 / 16 + 1);
+        assertThrows(IllegalStateException.class,
+                () -> p.setEntriesPerPage(5));
+    }
+
+    @Test
+    void testWithoutTokens() {
+        List<Integer> list = new ArrayList<>();
+        for (int i = 0; i < 95; ++i) {
+            list.add(i);
+        }
+        IndexedPaginated<Integer> p = new IndexedPaginated<>(
+                t -> forwardOnly(new ListPaginated<>(list, 1)),
+                () -> list.size(), 10, 4);
+        assertEquals(90, p.page(9).get(0));
+        assertEquals(5, p.page(9).size());
+        assertEquals(20, p.page(2).get(0));
+        assertEquals(30, p.nextPage().get(0));
+        assertEquals(10, p.pageCount());
+        assertEquals(1, p.indexedPages());
+    }
+
+    @Test
+    void testListPaginated() {
+        List<Integer> list = new ArrayList<>();
+        for (int i = 0; i < 25; ++i) {
+            list.add(i);
+        }
+        ListPaginated<Integer> p = new ListPaginated<>(list, 10);
+        assertEquals(3, p.pageCount());
+        assertEquals(25, p.totalSize());
+        assertEquals(List.of(20, 21, 22, 23, 24), p.page(2));
+        assertFalse(p.hasNextPage());
+        assertEquals(10, p.page(1).get(0));
+        assertEquals(20, p.nextPage().get(0));
+        assertThrows(NoSuchElementException.class, () -> p.page(3));
+        assertThrows(IllegalArgumentException.class, () -> p.page(-1));
+        assertEquals(0, ListPaginated.empty().pageCount());
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * This file is part of Blocks.
+ * 
+ * Blocks is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * Blocks is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with Blocks. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.ddns.advaith.blocks.model;
+
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests for KeysetPaginated and TaskKey tokens.
+ *
+ * @since 0.1.0
+ * @author Advaith Menon
+ */
+class KeysetPaginatedTest {
+    private static final ZonedDateTime BASE = ZonedDateTime.now()
+        .plusYears(1);
+
+    // counts how many tasks the seeks looked at
+    private int touched;
+
+    private KeysetPaginated<Task> open(NavigableMap<TaskKey, Task> tasks,
+            String token) {
+        return new KeysetPaginated<>((t, limit) -> {
+            NavigableMap<TaskKey, Task> tail = t == null ? tasks
+                : tasks.tailMap(TaskKey.parse(t), false);
+            List<Task> out = new ArrayList<>();
+            for (Task task: tail.values()) {
+                if (out.size() == limit) {
+                    break;
+                }
+                ++touched;
+                out.add(task);
+            }
+            return out;
+        }, task -> TaskKey.of(task).toToken(), 10, token);
+    }
+
+    private static NavigableMap<TaskKey, Task> tasks(int n) {
+        NavigableMap<TaskKey, Task> out = new TreeMap<>();
+        for (int i = 0; i < n; ++i) {
+            // deadlines repeat, so the ID has to break ties
+            Task t = new Task(i, "Task " + i, null, BASE.plusHours(i / 3));
+            out.put(TaskKey.of(t), t);
+        }
+        return out;
+    }
+
+    @Test
+    void testResume() {
+        NavigableMap<TaskKey, Task> tasks = tasks(95);
+        KeysetPaginated<Task> p = open(tasks, null);
+        assertNull(p.getContinuationToken());
+        List<Task> seen = new ArrayList<>();
+        seen.addAll(p.nextPage());
+        seen.addAll(p.nextPage());
+        String token = p.getContinuationToken();
+
+        // the job dies here; meanwhile tasks are added on both sides
+        Task before = new Task(1000, "Early", null,
+                BASE.plusMinutes(1));
+        Task after = new Task(1001, "Late", null, BASE.plusYears(1));
+        tasks.put(TaskKey.of(before), before);
+        tasks.put(TaskKey.of(after), after);
+
+        touched = 0;
+        KeysetPaginated<Task> resumed = open(tasks, token);
+        while (resumed.hasNextPage()) {
+            seen.addAll(resumed.nextPage());
+        }
+        // resuming did not look at anything before the token
+        assertEquals(76, touched);
+        assertEquals(96, seen.size());
+        assertFalse(seen.contains(before));
+        assertEquals(after, seen.get(seen.size() - 1));
+        for (int i = 0; i < 95; ++i) {
+            assertEquals(i, seen.get(i).getID());
+        }
+    }
+
+    @Test
+    void testPageSizeLock() {
+        KeysetPaginated<Task> p = open(tasks(5), null);
+        p.setEntriesPerPage(2);
+        assertEquals(2, p.nextPage().size());
+        assertThrows(IllegalStateException.class,
+                () -> p.setEntriesPerPage(3));
+        assertEquals(2, p.nextPage().size());
+        assertEquals(1, p.nextPage().size());
+        assertFalse(p.hasNextPage());
+    }
+
+    @Test
+    void testTokens() {
+        TaskKey k = new TaskKey(Instant.ofEpochSecond(1700000000L, 123456789),
+                42);
+        assertEquals(k, TaskKey.parse(k.toToken()));
+        assertThrows(IllegalArgumentException.class,
+                () -> TaskKey.parse("garbage!"));
+        assertThrows(IllegalArgumentException.class,
+                () -> TaskKey.parse("AAAA"));
+        assertThrows(IllegalArgumentException.class,
+                () -> TaskKey.parse(null));
+        assertThrows(UnsupportedOperationException.class,
+                () -> ListPaginated.empty().getContinuationToken());
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * This file is part of Blocks.
+ *
+ * Blocks is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Blocks is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with Blocks. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.ddns.advaith.blocks.model;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for the LikePattern class.
+ *
+ * @since 0.1.0
+ * @author Advaith Menon
+ */
+class LikePatternTest {
+    @Test
+    void testLiteral() {
+        LikePattern p = LikePattern.compile("Buy milk");
+        assertTrue(p.matches("buy MILK"));
+        assertFalse(p.matches("Buy milk!"));
+        assertFalse(p.matches(null));
+        assertThrows(IllegalArgumentException.class,
+                () -> LikePattern.compile(null));
+    }
+
+    @Test
+    void testWildcards() {
+        assertTrue(LikePattern.compile("%milk%").matches("buy milk today"));
+        assertTrue(LikePattern.compile("%milk%").matches("milk"));
+        assertFalse(LikePattern.compile("%milk%").matches("mil"));
+        assertTrue(LikePattern.compile("b_y%").matches("buy"));
+        assertFalse(LikePattern.compile("b_y%").matches("by"));
+        assertTrue(LikePattern.compile("%a%b%c").matches("xxaxxbxxbc"));
+        assertFalse(LikePattern.compile("%a%b%c").matches("xxaxxbxxbcd"));
+        assertTrue(LikePattern.compile("%").matches(""));
+        assertTrue(LikePattern.compile("").matches(""));
+        assertFalse(LikePattern.compile("_").matches(""));
+        assertTrue(LikePattern.contains("ilk").matches("Milk"));
+    }
+}
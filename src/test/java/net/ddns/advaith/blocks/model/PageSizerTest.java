@@ -0,0 +1,157 @@
+/*
+ * This file is part of Blocks.
+ * 
+ * Blocks is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * Blocks is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with Blocks. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package net.ddns.advaith.blocks.model;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import net.ddns.advaith.blocks.config.ConfigManager;
+
+/**
+ * Tests for PageSizer, and KeysetPaginated with one.
+ *
+ * @since 0.1.0
+ * @author Advaith Menon
+ */
+class PageSizerTest {
+    private static final long MS = 1_000_000;
+
+    private static PageSizer sizer(int initial) {
+        return new PageSizer(initial, 10, 1000, Duration.ofMillis(50),
+                1 << 20);
+    }
+
+    @Test
+    void testInvalid() {
+        assertThrows(IllegalArgumentException.class, () -> new PageSizer(5,
+                    10, 100, Duration.ofMillis(1), 1));
+        assertThrows(IllegalArgumentException.class, () -> new PageSizer(10,
+                    10, 100, Duration.ZERO, 1));
+        assertThrows(IllegalArgumentException.class, () -> new PageSizer(10,
+                    10, 100, Duration.ofMillis(1), 0));
+    }
+
+    @Test
+    void testGrows() {
+        PageSizer s = sizer(20);
+        int[] expected = {40, 80, 160, 320, 640, 1000, 1000};
+        for (int e: expected) {
+            int n = s.next();
+            s.record(n, n, MS, n * 100L);
+            assertEquals(e, s.next());
+        }
+        assertEquals(20, s.getSmallestPageSize());
+        assertEquals(1000, s.getLargestPageSize());
+        assertEquals(7, s.getPages());
+    }
+
+    @Test
+    void testShrinksForBytes() {
+        PageSizer s = new PageSizer(100, 10, 1000, Duration.ofSeconds(1),
+                256 * 1024);
+        // 10 kB a row: 26 rows fit, but it only halves per page
+        s.record(100, 100, MS, 100 * 10_000L);
+        assertEquals(50, s.next());
+        s.record(50, 50, MS, 50 * 10_000L);
+        assertEquals(26, s.next());
+    }
+
+    @Test
+    void testFixedCost() {
+        // 30 ms per page plus 20 us per row: 1000 rows take 50 ms
+        PageSizer s = new PageSizer(50, 10, 5000, Duration.ofMillis(50),
+                1 << 30);
+        for (int i = 0; i < 100; ++i) {
+            int n = s.next();
+            s.record(n, n, 30 * MS + n * 20_000L, n);
+        }
+        assertTrue(Math.abs(s.next() - 1000) < 50, "settled at " + s.next());
+    }
+
+    @Test
+    void testShortPage() {
+        PageSizer s = sizer(100);
+        s.record(100, 7, 1000, 700);
+        assertEquals(100, s.next());
+        s.record(100, 0, 1000, 0);
+        assertEquals(100, s.next());
+        assertEquals(2, s.getPages());
+        assertEquals(7, s.getRows());
+    }
+
+    @Test
+    void testConfig() throws Exception {
+        String props = PageSizer.PER_PAGE_KEY + "=30\n" + PageSizer.MIN_KEY
+            + "=5\n" + PageSizer.MAX_KEY + "=x\n" + PageSizer.LATENCY_KEY
+            + "=PT0.2S\n";
+        InputStream in = new ByteArrayInputStream(props.getBytes(
+                    StandardCharsets.ISO_8859_1));
+        PageSizer s = PageSizer.fromConfig(new ConfigManager(
+                    new InputStream[] {in}, null));
+        assertEquals(30, s.next());
+        assertEquals(200, s.getTargetLatency());
+        assertEquals(256 * 1024, s.getTargetBytes());
+        assertEquals(PageSizer.DEFAULT_PER_PAGE, PageSizer.defaultPerPage());
+    }
+
+    @Test
+    void testKeyset() {
+        ZonedDateTime base = ZonedDateTime.now().plusYears(1);
+        List<Task> tasks = new ArrayList<>();
+        for (int i = 0; i < 2000; ++i) {
+            tasks.add(new Task(i, "Task " + i, null, base.plusMinutes(i)));
+        }
+        KeysetPaginated.Seek<Task> seek = (t, limit) -> {
+            int from = t == null ? 0 : (int) TaskKey.parse(t).getID() + 1;
+            return List.copyOf(tasks.subList(from, Math.min(from + limit,
+                            tasks.size())));
+        };
+        PageSizer s = sizer(10);
+        KeysetPaginated<Task> p = new KeysetPaginated<>(seek,
+                t -> TaskKey.of(t).toToken(), s, PageSizer::bytesOf, null);
+        List<Integer> sizes = new ArrayList<>();
+        long next = 0;
+        while (p.hasNextPage()) {
+            List<Task> page = p.nextPage();
+            sizes.add(page.size());
+            for (Task t: page) {
+                assertEquals(next++, t.getID());
+            }
+        }
+        assertEquals(2000, next);
+        assertEquals(List.of(10, 20, 40), sizes.subList(0, 3));
+        assertEquals(s.getPages(), sizes.size());
+
+        KeysetPaginated<Task> fixed = new KeysetPaginated<>(seek,
+                t -> TaskKey.of(t).toToken(), s, PageSizer::bytesOf, null);
+        fixed.setEntriesPerPage(7);
+        assertEquals(7, fixed.nextPage().size());
+        assertEquals(7, fixed.nextPage().size());
+    }
+}
@@ -115,4 +115,26 @@ class TaskTest {
         t.setDeadline(tenDays);
         Assertions.assertEquals(tenDays, t.getDeadline());
     }
+
+    /**
+     * Test that restoring a stored task accepts deadlines in the past, but
+     * still validates everything else.
+     */
+    @Test
+    void testRestore() {
+        ZonedDateTime unix = ZonedDateTime.of(1970, 1, 1, 0, 0, 0, 0,
+                ZoneId.systemDefault());
+        Task t = Task.restore(7, "Land on the moon", null, unix);
+        Assertions.assertEquals(7, t.getID());
+        Assertions.assertEquals("Land on the moon", t.getTitle());
+        Assertions.assertNull(t.getDetails());
+        Assertions.assertEquals(unix, t.getDeadline());
+
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> Task.restore(7, "Land on the moon", null, null));
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> Task.restore(-2, "Land on the moon", null, unix));
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> Task.restore(7, " ", null, unix));
+    }
 }
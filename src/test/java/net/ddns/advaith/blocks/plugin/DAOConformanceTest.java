@@ -0,0 +1,442 @@
+/*
+ * This file is part of Blocks.
+ * 
+ * Blocks is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * Blocks is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with Blocks. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package net.ddns.advaith.blocks.plugin;
+
+import java.lang.ref.Reference;
+import java.time.Duration;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.ddns.advaith.blocks.dao.TaskQueries;
+import net.ddns.advaith.blocks.model.ConflictException;
+import net.ddns.advaith.blocks.model.GenericDAO;
+import net.ddns.advaith.blocks.model.Paginated;
+import net.ddns.advaith.blocks.model.Query;
+import net.ddns.advaith.blocks.model.Task;
+
+/**
+ * Checks a storage plugin against the contracts in the Javadoc of {@link
+ * DAOFactory}, {@link DAOProxy}, {@link GenericDAO} and {@link Paginated},
+ * and against a {@link PerformanceBudget}. To use it, add the test jar of
+ * Blocks to the plugin's test dependencies and extend this class:
+ * <pre>
+ * class MyFactoryTest extends DAOConformanceTest {
+ *     &#64;Override
+ *     protected DAOFactory createFactory() {
+ *         return new MyFactory(tempDir);
+ *     }
+ * }
+ * </pre>
+ *
+ * Optional methods may throw UnsupportedOperationException; the checks for
+ * them are then skipped rather than failed. The budget checks time real
+ * work, so run them on a quiet machine; for numbers rather than a verdict,
+ * use the DAOBenchmark in the jmh profile. They are tagged {@value #BUDGET},
+ * and the Blocks build leaves them out unless the budget profile is active.
+ *
+ * @since 0.1.0
+ * @author Advaith Menon
+ */
+public abstract class DAOConformanceTest {
+    private static final Logger LOGGER = LoggerFactory.getLogger(
+            DAOConformanceTest.class);
+
+    /**
+     * The JUnit tag of the budget checks, so that a build can leave them out
+     * on noisy machines.
+     */
+    public static final String BUDGET = "budget";
+
+    // deadline of the first task made by tasks()
+    private static final ZonedDateTime BASE = ZonedDateTime.of(2030, 1, 1,
+            9, 0, 0, 0, ZoneOffset.UTC);
+
+    // timed runs of a measurement; the median is used
+    private static final int RUNS = 5;
+
+    /**
+     * Create the factory under test. Every call must return a factory whose
+     * DAOs start out empty.
+     *
+     * @return A new factory.
+     * @throws Exception if the factory cannot be set up.
+     */
+    protected abstract DAOFactory createFactory() throws Exception;
+
+    /**
+     * @return the limits the budget checks hold the DAO to. Override this
+     * to tighten or relax them.
+     */
+    protected PerformanceBudget budget() {
+        return PerformanceBudget.builder().build();
+    }
+
+    /**
+     * Make tasks with distinct titles and deadlines an hour apart, and no
+     * IDs.
+     *
+     * @param n The number of tasks.
+     * @return The tasks.
+     */
+    protected static List<Task> tasks(int n) {
+        List<Task> out = new ArrayList<>(n);
+        for (int i = 0; i < n; ++i) {
+            out.add(new Task(-1, "Task " + i, i % 3 == 0 ? null : "x",
+                        BASE.plusHours(i)));
+        }
+        return out;
+    }
+
+    @Test
+    public void testBuild() throws Exception {
+        DAOProxy proxy = createFactory().build();
+        assertNotNull(proxy, "build() returned null");
+        assertNotNull(proxy.getTaskDAO(), "getTaskDAO() returned null");
+        assertFalse(proxy.getTaskDAO().fetchAll().hasNextPage(),
+                "a new DAO is not empty");
+    }
+
+    @Test
+    public void testCrud() throws Exception {
+        GenericDAO<Task> dao = createFactory().build().getTaskDAO();
+        Task t = new Task(-1, "Title", "Details", BASE);
+        dao.add(t);
+        assertTrue(t.getID() >= 0, "add() did not assign an ID");
+
+        Task read = only(dao.fetchEquals(Task.ID, t.getID()));
+        assertEquals("Title", read.getTitle());
+        assertEquals("Details", read.getDetails());
+        assertTrue(BASE.isEqual(read.getDeadline()), "deadline changed");
+
+        read.setTitle("Renamed");
+        read.setDeadline(BASE.plusDays(1));
+        dao.update(read);
+        read = only(dao.fetchEquals(Task.ID, t.getID()));
+        assertEquals("Renamed", read.getTitle());
+        assertTrue(BASE.plusDays(1).isEqual(read.getDeadline()),
+                "update() lost the deadline");
+
+        Task other = new Task(-1, "Other", null, BASE);
+        dao.add(other);
+        assertTrue(other.getID() != t.getID(), "IDs are not unique");
+        dao.delete(read);
+        assertFalse(dao.fetchEquals(Task.ID, t.getID()).hasNextPage());
+        dao.delete(other.getID());
+        assertFalse(dao.fetchAll().hasNextPage());
+    }
+
+    @Test
+    public void testVersions() throws Exception {
+        GenericDAO<Task> dao = createFactory().build().getTaskDAO();
+        Task t = new Task(-1, "Title", null, BASE);
+        dao.add(t);
+        assumeTrue(t.getVersion() != -1, "versions are not supported");
+
+        Task stale = only(dao.fetchEquals(Task.ID, t.getID()));
+        Task fresh = only(dao.fetchEquals(Task.ID, t.getID()));
+        fresh.setTitle("First");
+        dao.update(fresh);
+        assertTrue(fresh.getVersion() > stale.getVersion(),
+                "update() did not advance the version");
+        stale.setTitle("Second");
+        assertThrows(ConflictException.class, () -> dao.update(stale));
+        assertThrows(ConflictException.class, () -> dao.delete(stale));
+        assertEquals("First", only(dao.fetchEquals(Task.ID, t.getID()))
+                .getTitle());
+
+        // a versioned write of a task that is gone conflicts
+        dao.delete(fresh);
+        assertThrows(ConflictException.class, () -> dao.delete(fresh));
+        assertThrows(ConflictException.class, () -> dao.update(fresh));
+    }
+
+    @Test
+    public void testFetchAll() throws Exception {
+        GenericDAO<Task> dao = createFactory().build().getTaskDAO();
+        List<Task> in = tasks(237);
+        dao.addAll(in);
+        Paginated<Task> p = dao.fetchAll();
+        p.setEntriesPerPage(10);
+        Set<Long> seen = new HashSet<>();
+        while (p.hasNextPage()) {
+            List<Task> page = p.nextPage();
+            assertTrue(page.size() <= 10, "page too large: " + page.size());
+            assertFalse(page.isEmpty(), "hasNextPage() led to an empty page");
+            for (Task t: page) {
+                assertTrue(seen.add(t.getID()), t.getID() + " seen twice");
+            }
+        }
+        assertEquals(in.size(), seen.size());
+        assertThrows(NoSuchElementException.class, p::nextPage);
+    }
+
+    @Test
+    public void testEntriesPerPage() throws Exception {
+        GenericDAO<Task> dao = createFactory().build().getTaskDAO();
+        dao.addAll(tasks(20));
+        Paginated<Task> p = dao.fetchAll();
+        assertThrows(IllegalArgumentException.class,
+                () -> p.setEntriesPerPage(0));
+        p.setEntriesPerPage(6);
+        assertEquals(6, p.nextPage().size());
+        assertThrows(IllegalStateException.class,
+                () -> p.setEntriesPerPage(3));
+    }
+
+    @Test
+    public void testNumPerPage() throws Exception {
+        DAOFactory factory = createFactory();
+        try {
+            factory.setNumPerPage(7);
+        } catch (UnsupportedOperationException e) {
+            assumeTrue(false, "setNumPerPage() is not supported");
+        }
+        assertThrows(IllegalArgumentException.class,
+                () -> factory.setNumPerPage(0));
+        GenericDAO<Task> dao = factory.build().getTaskDAO();
+        dao.addAll(tasks(20));
+        assertEquals(7, dao.fetchAll().nextPage().size());
+        assertEquals(7, dao.fetchEquals(Task.DETAILS, "x").nextPage()
+                .size());
+    }
+
+    @Test
+    public void testPageJumps() throws Exception {
+        GenericDAO<Task> dao = createFactory().build().getTaskDAO();
+        dao.addAll(tasks(45));
+        Paginated<Task> walk = dao.fetchAll();
+        walk.setEntriesPerPage(10);
+        List<Long> all = ids(drain(walk));
+        Paginated<Task> p = dao.fetchAll();
+        p.setEntriesPerPage(10);
+        try {
+            assertEquals(5, p.pageCount());
+        } catch (UnsupportedOperationException e) {
+            assumeTrue(false, "pageCount() is not supported");
+            return;
+        }
+        assertEquals(all.subList(30, 40), ids(p.page(3)));
+        assertEquals(all.subList(10, 20), ids(p.page(1)));
+        assertEquals(all.subList(20, 30), ids(p.nextPage()));
+        assertEquals(all.subList(40, 45), ids(p.page(4)));
+        assertThrows(NoSuchElementException.class, () -> p.page(5));
+        assertThrows(IllegalArgumentException.class, () -> p.page(-1));
+        assertEquals(all.subList(0, 10), ids(p.page(0)));
+    }
+
+    @Test
+    public void testContinuationToken() throws Exception {
+        GenericDAO<Task> dao = createFactory().build().getTaskDAO();
+        dao.addAll(tasks(25));
+        Paginated<Task> p = dao.fetchAll();
+        p.setEntriesPerPage(10);
+        List<Long> first = ids(p.nextPage());
+        String token;
+        try {
+            token = p.getContinuationToken();
+            dao.fetchAll(token);
+        } catch (UnsupportedOperationException e) {
+            assumeTrue(false, "continuation tokens are not supported");
+            return;
+        }
+        List<Long> rest = ids(drain(p));
+        List<Long> resumed = ids(drain(dao.fetchAll(token)));
+        assertEquals(rest, resumed);
+        first.addAll(rest);
+        assertEquals(25, new HashSet<>(first).size());
+    }
+
+    @Test
+    public void testQuery() throws Exception {
+        GenericDAO<Task> dao = createFactory().build().getTaskDAO();
+        dao.addAll(tasks(60));
+        List<Query> queries = List.of(
+                Query.select().from(Task.TABLE).where(Task.DETAILS_FIELD)
+                    .equal("x").finish().orderBy(Task.TITLE_FIELD)
+                    .orderBy(Task.ID_FIELD).build(),
+                Query.select().from(Task.TABLE).where(Task.DEADLINE_FIELD)
+                    .greaterThan(BASE.plusHours(10)).and()
+                    .where(Task.DEADLINE_FIELD).lessThanOrEquals(
+                        BASE.plusHours(30)).finish()
+                    .orderBy(Task.DEADLINE_FIELD, Query.Order.DESC)
+                    .orderBy(Task.ID_FIELD).limit(5).offset(3).build(),
+                Query.select().from(Task.TABLE).where(Task.TITLE_FIELD)
+                    .like("Task 1%").finish().orderBy(Task.ID_FIELD)
+                    .build());
+        for (Query q: queries) {
+            Paginated<Task> got;
+            try {
+                got = dao.query(q);
+            } catch (UnsupportedOperationException e) {
+                assumeTrue(false, "query() is not supported");
+                return;
+            }
+            assertEquals(ids(TaskQueries.evaluate(dao.fetchAll(), q)),
+                    ids(drain(got)), q.toString());
+        }
+    }
+
+    @Test
+    @Tag(BUDGET)
+    public void testFirstPageBudget() throws Exception {
+        PerformanceBudget b = budget();
+        GenericDAO<Task> dao = createFactory().build().getTaskDAO();
+        fill(dao, b);
+
+        long[] first = new long[RUNS];
+        long[] walk = new long[RUNS];
+        for (int r = 0; r <= RUNS; ++r) {
+            long start = System.nanoTime();
+            Paginated<Task> p = dao.fetchAll();
+            assertTrue(p.hasNextPage());
+            p.nextPage();
+            long mid = System.nanoTime();
+            while (p.hasNextPage()) {
+                p.nextPage();
+            }
+            long end = System.nanoTime();
+            // the first run warms up
+            if (r > 0) {
+                first[r - 1] = mid - start;
+                walk[r - 1] = end - start;
+            }
+        }
+        Duration firstPage = Duration.ofNanos(median(first));
+        Duration whole = Duration.ofNanos(median(walk));
+        LOGGER.info("{}: first page {}, whole walk {}", getClass()
+                .getSimpleName(), firstPage, whole);
+        assertTrue(firstPage.compareTo(b.getFirstPage()) <= 0,
+                "first page took " + firstPage);
+        // allow a millisecond for walks too fast to time reliably
+        long share = Math.max((long) (whole.toNanos()
+                    * b.getFirstPageShare()), 1_000_000);
+        assertTrue(firstPage.toNanos() <= share, "first page took "
+                + firstPage + " of a " + whole + " walk; is fetchAll() "
+                + "reading everything up front?");
+    }
+
+    @Test
+    @Tag(BUDGET)
+    public void testWalkMemoryBudget() throws Exception {
+        PerformanceBudget b = budget();
+        GenericDAO<Task> dao = createFactory().build().getTaskDAO();
+        fill(dao, b);
+
+        long before = usedHeap();
+        Paginated<Task> p = dao.fetchAll();
+        long most = 0;
+        long pages = 0;
+        while (p.hasNextPage()) {
+            p.nextPage();
+            // look a few times along the way, not after every page
+            if ((++pages & (pages - 1)) == 0) {
+                most = Math.max(most, usedHeap() - before);
+            }
+        }
+        most = Math.max(most, usedHeap() - before);
+        Reference.reachabilityFence(p);
+        LOGGER.info("{}: walk of {} pages held {} bytes", getClass()
+                .getSimpleName(), pages, most);
+        assertTrue(most <= b.getWalkMemory(), "a walk over "
+                + b.getTasks() + " tasks held " + most + " bytes");
+    }
+
+    @Test
+    @Tag(BUDGET)
+    public void testInsertBudget() throws Exception {
+        PerformanceBudget b = budget();
+        GenericDAO<Task> dao = createFactory().build().getTaskDAO();
+        List<Task> all = tasks(b.getTasks());
+        long start = System.nanoTime();
+        for (int i = 0; i < all.size(); i += b.getBatchSize()) {
+            dao.addAll(all.subList(i, Math.min(all.size(),
+                            i + b.getBatchSize())));
+        }
+        double rate = all.size() * 1e9 / (System.nanoTime() - start);
+        LOGGER.info("{}: {} tasks/s", getClass().getSimpleName(),
+                Math.round(rate));
+        assertTrue(rate >= b.getInsertRate(), "only " + Math.round(rate)
+                + " tasks/s");
+    }
+
+    private static void fill(GenericDAO<Task> dao, PerformanceBudget b) {
+        List<Task> all = tasks(b.getTasks());
+        for (int i = 0; i < all.size(); i += b.getBatchSize()) {
+            dao.addAll(all.subList(i, Math.min(all.size(),
+                            i + b.getBatchSize())));
+        }
+    }
+
+    private static List<Task> drain(Paginated<Task> p) {
+        List<Task> out = new ArrayList<>();
+        while (p.hasNextPage()) {
+            out.addAll(p.nextPage());
+        }
+        return out;
+    }
+
+    private static Task only(Paginated<Task> p) {
+        List<Task> all = drain(p);
+        if (all.size() != 1) {
+            fail("expected one task, got " + all.size());
+        }
+        return all.get(0);
+    }
+
+    private static List<Long> ids(List<Task> tasks) {
+        List<Long> out = new ArrayList<>(tasks.size());
+        for (Task t: tasks) {
+            out.add(t.getID());
+        }
+        return out;
+    }
+
+    private static long median(long[] xs) {
+        long[] s = xs.clone();
+        Arrays.sort(s);
+        return s[s.length / 2];
+    }
+
+    private static long usedHeap() {
+        Runtime rt = Runtime.getRuntime();
+        for (int i = 0; i < 3; ++i) {
+            System.gc();
+        }
+        return rt.totalMemory() - rt.freeMemory();
+    }
+}
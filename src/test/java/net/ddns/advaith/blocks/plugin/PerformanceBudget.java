@@ -0,0 +1,208 @@
+/*
+ * This file is part of Blocks.
+ * 
+ * Blocks is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * Blocks is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with Blocks. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package net.ddns.advaith.blocks.plugin;
+
+import java.time.Duration;
+
+/**
+ * The performance limits {@link DAOConformanceTest} holds a DAO to. The
+ * defaults are loose enough for a laptop running a local store; a plugin
+ * that talks to a remote server can relax them by overriding {@link
+ * DAOConformanceTest#budget()}.
+ *
+ * @since 0.1.0
+ * @author Advaith Menon
+ */
+public final class PerformanceBudget {
+    /**
+     * Builds a PerformanceBudget.
+     *
+     * @since 0.1.0
+     */
+    public static final class Builder {
+        private int tasks = 100_000;
+        private Duration firstPage = Duration.ofMillis(50);
+        private double firstPageShare = 0.1;
+        private long walkMemory = 1L << 20;
+        private double insertRate = 10_000;
+        private int batchSize = 1000;
+
+        private Builder() {}
+
+        /**
+         * @param tasks The number of tasks to load before measuring reads,
+         * and to insert when measuring writes. Default 100000.
+         * @return this builder.
+         * @throws IllegalArgumentException if tasks is not positive.
+         */
+        public Builder tasks(int tasks) {
+            if (tasks <= 0) {
+                throw new IllegalArgumentException("tasks must be positive");
+            }
+            this.tasks = tasks;
+            return this;
+        }
+
+        /**
+         * @param latency The longest the first page of a fetchAll() may
+         * take, counting the call to fetchAll() itself. Default 50 ms.
+         * @return this builder.
+         * @throws IllegalArgumentException if latency is not positive.
+         */
+        public Builder firstPage(Duration latency) {
+            if (latency.isNegative() || latency.isZero()) {
+                throw new IllegalArgumentException(
+                        "latency must be positive");
+            }
+            firstPage = latency;
+            return this;
+        }
+
+        /**
+         * @param share The largest share of the time for a whole walk
+         * that the first page may take. A DAO that reads everything up
+         * front spends most of the walk before the first page. Default 0.1.
+         * @return this builder.
+         * @throws IllegalArgumentException if share is not between 0
+         * (exclusive) and 1.
+         */
+        public Builder firstPageShare(double share) {
+            if (!(share > 0 && share <= 1)) {
+                throw new IllegalArgumentException(
+                        "share must be in (0, 1]");
+            }
+            firstPageShare = share;
+            return this;
+        }
+
+        /**
+         * @param bytes The most heap a fetchAll() walk may hold on to,
+         * whatever the number of tasks. Default 1 MiB.
+         * @return this builder.
+         * @throws IllegalArgumentException if bytes is not positive.
+         */
+        public Builder walkMemory(long bytes) {
+            if (bytes <= 0) {
+                throw new IllegalArgumentException("bytes must be positive");
+            }
+            walkMemory = bytes;
+            return this;
+        }
+
+        /**
+         * @param perSecond The fewest tasks per second addAll() must store.
+         * Default 10000.
+         * @return this builder.
+         * @throws IllegalArgumentException if perSecond is not positive.
+         */
+        public Builder insertRate(double perSecond) {
+            if (!(perSecond > 0)) {
+                throw new IllegalArgumentException(
+                        "perSecond must be positive");
+            }
+            insertRate = perSecond;
+            return this;
+        }
+
+        /**
+         * @param size The number of tasks per addAll() call. Default 1000.
+         * @return this builder.
+         * @throws IllegalArgumentException if size is not positive.
+         */
+        public Builder batchSize(int size) {
+            if (size <= 0) {
+                throw new IllegalArgumentException("size must be positive");
+            }
+            batchSize = size;
+            return this;
+        }
+
+        /**
+         * @return the budget.
+         */
+        public PerformanceBudget build() {
+            return new PerformanceBudget(this);
+        }
+    }
+
+    private final int tasks;
+    private final Duration firstPage;
+    private final double firstPageShare;
+    private final long walkMemory;
+    private final double insertRate;
+    private final int batchSize;
+
+    private PerformanceBudget(Builder b) {
+        tasks = b.tasks;
+        firstPage = b.firstPage;
+        firstPageShare = b.firstPageShare;
+        walkMemory = b.walkMemory;
+        insertRate = b.insertRate;
+        batchSize = b.batchSize;
+    }
+
+    /**
+     * @return a builder, with the defaults filled in.
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @return the number of tasks to measure with.
+     */
+    public int getTasks() {
+        return tasks;
+    }
+
+    /**
+     * @return the longest the first page may take.
+     */
+    public Duration getFirstPage() {
+        return firstPage;
+    }
+
+    /**
+     * @return the largest share of a whole walk the first page may take.
+     */
+    public double getFirstPageShare() {
+        return firstPageShare;
+    }
+
+    /**
+     * @return the most heap, in bytes, a walk may hold on to.
+     */
+    public long getWalkMemory() {
+        return walkMemory;
+    }
+
+    /**
+     * @return the fewest tasks per second addAll() must store.
+     */
+    public double getInsertRate() {
+        return insertRate;
+    }
+
+    /**
+     * @return the number of tasks per addAll() call.
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ * This file is part of Blocks.
+ * 
+ * Blocks is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * Blocks is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with Blocks. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package net.ddns.advaith.blocks.plugin;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import net.ddns.advaith.blocks.dao.MemoryDAOFactory;
+import net.ddns.advaith.blocks.model.GenericDAO;
+import net.ddns.advaith.blocks.model.Paginated;
+import net.ddns.advaith.blocks.model.Task;
+
+/**
+ * Tests that calls and threads are counted towards the right plugin, and
+ * that the soft limits log and throttle.
+ *
+ * @since 0.1.0
+ * @author Advaith Menon
+ */
+class PluginAccountingTest {
+    // keeps allocations from being optimised away
+    private static volatile Object sink;
+
+    private static ClassLoader pluginLoader() {
+        return new URLClassLoader(new URL[0],
+                PluginAccountingTest.class.getClassLoader());
+    }
+
+    @Test
+    void testCalls() throws Exception {
+        MBeanServer server = MBeanServerFactory.newMBeanServer();
+        PluginAccounting a = new PluginAccounting(PluginLimits.NONE, server);
+        ClassLoader loader = pluginLoader();
+        PluginUsage u = a.register("Test", UUID.randomUUID(), loader);
+        assertSame(u, a.register("Test", UUID.fromString(u.getUUID()),
+                    loader));
+
+        ClassLoader seen = a.call(u, () -> {
+            for (int i = 0; i < 1000; ++i) {
+                sink = new byte[10_000];
+            }
+            return Thread.currentThread().getContextClassLoader();
+        });
+        assertSame(loader, seen);
+        assertTrue(Thread.currentThread().getContextClassLoader() != loader);
+        assertEquals(1, u.getCalls());
+        assertTrue(u.getCpuTime() > 0);
+        if (PluginAccounting.ALLOCATION_SUPPORTED) {
+            assertTrue(u.getAllocatedBytes() >= 10_000_000,
+                    "allocated " + u.getAllocatedBytes());
+        }
+
+        // nested calls count once
+        a.run(u, () -> a.run(u, () -> sink = null));
+        assertEquals(2, u.getCalls());
+        assertEquals(2L, server.getAttribute(PluginAccounting.objectName(u),
+                    "Calls"));
+    }
+
+    @Test
+    void testDAOs() {
+        PluginAccounting a = new PluginAccounting(PluginLimits.NONE, null);
+        PluginUsage u = a.register("Test", UUID.randomUUID(), pluginLoader());
+        GenericDAO<Task> dao = a.wrap(u, new MemoryDAOFactory(2)).build()
+            .getTaskDAO();
+        long calls = u.getCalls();
+        for (int i = 0; i < 5; ++i) {
+            dao.add(new Task(-1, "Task " + i, null,
+                        ZonedDateTime.now().plusDays(1)));
+        }
+        Paginated<Task> p = dao.fetchAll();
+        int n = 0;
+        while (p.hasNextPage()) {
+            n += p.nextPage().size();
+        }
+        assertEquals(5, n);
+        // 5 adds, fetchAll, 3 pages and 4 hasNextPage
+        assertEquals(calls + 13, u.getCalls());
+    }
+
+    @Test
+    void testThreads() throws Exception {
+        PluginAccounting a = new PluginAccounting(PluginLimits.NONE, null);
+        PluginUsage u = a.register("Test", UUID.randomUUID(), pluginLoader());
+        CountDownLatch spun = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(1);
+        AtomicReference<Thread> t = new AtomicReference<>();
+        a.run(u, () -> {
+            t.set(new Thread(() -> {
+                ThreadMXBean mx = ManagementFactory.getThreadMXBean();
+                long end = mx.getCurrentThreadCpuTime() + 20_000_000;
+                while (mx.getCurrentThreadCpuTime() < end) {
+                    sink = new byte[1000];
+                }
+                spun.countDown();
+                try {
+                    done.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }));
+            t.get().start();
+        });
+        // work done after the last sample of a thread is not seen
+        spun.await();
+        a.sample();
+        assertEquals(1, u.getThreadsCreated());
+        assertEquals(1, u.getLiveThreads());
+
+        done.countDown();
+        t.get().join();
+        long cpu = u.getCpuTime();
+        a.sample();
+        assertEquals(1, u.getThreadsCreated());
+        assertEquals(0, u.getLiveThreads());
+        // the thread's work stays counted after it dies
+        assertTrue(u.getCpuTime() >= cpu);
+        assertTrue(u.getCpuTime() >= 20_000_000, "cpu " + u.getCpuTime());
+    }
+
+    @Test
+    void testThrottle() throws Exception {
+        PluginAccounting a = new PluginAccounting(new PluginLimits(0, 0, 1,
+                    true), null);
+        PluginUsage u = a.register("Test", UUID.randomUUID(), pluginLoader());
+        CountDownLatch done = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 2; ++i) {
+            a.run(u, () -> {
+                Thread t = new Thread(() -> {
+                    try {
+                        done.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                });
+                threads.add(t);
+                t.start();
+            });
+        }
+        a.sample();
+        assertEquals(1, u.getLimitBreaches());
+        assertEquals(PluginAccounting.MIN_DELAY, u.getThrottleDelay());
+        a.sample();
+        assertEquals(2 * PluginAccounting.MIN_DELAY, u.getThrottleDelay());
+
+        a.run(u, () -> {});
+        assertTrue(u.getThrottledTime() >= 2 * PluginAccounting.MIN_DELAY);
+
+        done.countDown();
+        for (Thread t: threads) {
+            t.join();
+        }
+        long end = System.nanoTime() + 5_000_000_000L;
+        while (u.getThrottleDelay() > 0 && System.nanoTime() < end) {
+            a.sample();
+        }
+        assertEquals(0, u.getThrottleDelay());
+        assertEquals(2, u.getLimitBreaches());
+    }
+}
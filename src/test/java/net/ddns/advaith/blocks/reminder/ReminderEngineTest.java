@@ -0,0 +1,239 @@
+/*
+ * This file is part of Blocks.
+ * 
+ * Blocks is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * Blocks is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with Blocks. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package net.ddns.advaith.blocks.reminder;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import net.ddns.advaith.blocks.dao.ChangeFeed;
+import net.ddns.advaith.blocks.dao.MemoryTaskDAO;
+import net.ddns.advaith.blocks.dao.ObservableTaskDAO;
+import net.ddns.advaith.blocks.model.Task;
+
+/**
+ * Tests for ReminderEngine, on a clock that only moves when told to.
+ *
+ * @since 0.1.0
+ * @author Advaith Menon
+ */
+class ReminderEngineTest {
+    // on a tick, so that reminders are due exactly on time
+    private static final ZonedDateTime NOW = ZonedDateTime.now()
+        .truncatedTo(ChronoUnit.SECONDS);
+
+    private static final Duration HOUR = Duration.ofHours(1);
+
+    private final MovingClock clock = new MovingClock();
+
+    private final ReminderEngine engine = new ReminderEngine(
+            List.of(HOUR, Duration.ZERO), Duration.ofSeconds(1), clock);
+
+    private final List<Reminder> fired = new ArrayList<>();
+
+    {
+        engine.addListener(fired::add);
+    }
+
+    /**
+     * A clock that only moves when told to, either way.
+     */
+    private static final class MovingClock extends Clock {
+        private volatile Instant now = NOW.toInstant();
+
+        void advance(Duration d) {
+            now = now.plus(d);
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneId.systemDefault();
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+    }
+
+    private static Task task(long id, Duration in) {
+        return Task.restore(id, "Task " + id, null, NOW.plus(in));
+    }
+
+    @Test
+    void testLeads() {
+        engine.schedule(task(1, Duration.ofHours(2)));
+        // the hour-before reminder has already passed
+        engine.schedule(task(2, Duration.ofMinutes(30)));
+        assertEquals(3, engine.size());
+        clock.advance(Duration.ofMinutes(30));
+        assertEquals(1, engine.tick());
+        assertEquals(2, fired.get(0).getTask().getID());
+        assertEquals(Duration.ZERO, fired.get(0).getLead());
+        clock.advance(Duration.ofMinutes(30));
+        assertEquals(1, engine.tick());
+        assertEquals(1, fired.get(1).getTask().getID());
+        assertEquals(HOUR, fired.get(1).getLead());
+        assertEquals(NOW.plusHours(1).toInstant(),
+                fired.get(1).getTime());
+    }
+
+    @Test
+    void testReschedule() {
+        engine.schedule(task(1, Duration.ofHours(2)));
+        engine.schedule(task(1, Duration.ofHours(5)));
+        assertEquals(2, engine.size());
+        clock.advance(Duration.ofHours(3));
+        assertEquals(0, engine.tick());
+        engine.cancel(1);
+        assertEquals(0, engine.size());
+        clock.advance(Duration.ofHours(3));
+        assertEquals(0, engine.tick());
+        assertTrue(fired.isEmpty());
+    }
+
+    @Test
+    void testClockJumps() {
+        engine.schedule(task(1, Duration.ofHours(2)));
+        engine.schedule(task(2, Duration.ofDays(30)));
+        // forward: everything skipped fires, late, on the next tick
+        clock.advance(Duration.ofDays(2));
+        assertEquals(2, engine.tick());
+        // back: what is left fires by the new time
+        clock.advance(Duration.ofDays(-2));
+        assertEquals(0, engine.tick());
+        assertEquals(2, engine.size());
+        clock.advance(Duration.ofDays(30).minus(HOUR));
+        assertEquals(1, engine.tick());
+        assertEquals(2, fired.get(2).getTask().getID());
+        assertEquals(HOUR, fired.get(2).getLead());
+    }
+
+    @Test
+    void testListenerFailure() {
+        engine.addListener(r -> {
+            throw new IllegalStateException("Broken listener");
+        });
+        List<Reminder> after = new ArrayList<>();
+        engine.addListener(after::add);
+        engine.schedule(task(1, Duration.ofMinutes(1)));
+        clock.advance(Duration.ofMinutes(1));
+        assertEquals(1, engine.tick());
+        assertEquals(1, fired.size());
+        assertEquals(1, after.size());
+    }
+
+    @Test
+    void testFollow() throws InterruptedException {
+        MemoryTaskDAO dao = new MemoryTaskDAO(2);
+        List<Task> tasks = new ArrayList<>();
+        for (int i = 0; i < 5; ++i) {
+            Task t = new Task(-1, "Task " + i, null, NOW.plusHours(2 + i));
+            dao.add(t);
+            tasks.add(t);
+        }
+        engine.follow(dao);
+        assertEquals(10, engine.size());
+        dao.add(new Task(-1, "Later", null, NOW.plusHours(10)));
+        waitFor(12);
+        dao.delete(tasks.get(0).getID());
+        waitFor(10);
+        clock.advance(Duration.ofHours(3));
+        engine.tick();
+        // both reminders of the second task, and the hour-before one of
+        // the third; the first task's are gone
+        assertEquals(3, fired.size());
+        assertEquals(tasks.get(1).getID(), fired.get(0).getTask().getID());
+        assertEquals(tasks.get(2).getID(), fired.get(2).getTask().getID());
+    }
+
+    @Test
+    void testOverflow() throws InterruptedException {
+        // the feed delivers only when told to, two changes at a time
+        Queue<Runnable> feed = new ConcurrentLinkedQueue<>();
+        ObservableTaskDAO dao = new ObservableTaskDAO(new MemoryTaskDAO(2),
+                new ChangeFeed<>(feed::add, 2));
+        List<Task> tasks = new ArrayList<>();
+        for (int i = 0; i < 5; ++i) {
+            Task t = new Task(-1, "Task " + i, null, NOW.plusHours(2 + i));
+            dao.add(t);
+            tasks.add(t);
+        }
+        try {
+            engine.follow(dao);
+            assertEquals(10, engine.size());
+            // the delete is dropped along with the rest
+            dao.delete(tasks.get(0).getID());
+            dao.add(new Task(-1, "Later", null, NOW.plusHours(10)));
+            dao.add(new Task(-1, "Latest", null, NOW.plusHours(11)));
+            // without the delete, the first task's two would still be here
+            for (int i = 0; i < 500 && engine.size() != 12; ++i) {
+                for (Runnable r; (r = feed.poll()) != null;) {
+                    r.run();
+                }
+                Thread.sleep(10);
+            }
+            assertEquals(12, engine.size());
+            clock.advance(Duration.ofHours(3));
+            engine.tick();
+            assertEquals(3, fired.size());
+            for (Reminder r: fired) {
+                assertTrue(r.getTask().getID() != tasks.get(0).getID());
+            }
+        } finally {
+            engine.stop();
+        }
+    }
+
+    @Test
+    void testArguments() {
+        assertThrows(IllegalArgumentException.class, () -> new ReminderEngine(
+                    List.of(Duration.ofMinutes(-1)), Duration.ofSeconds(1),
+                    clock));
+        assertThrows(IllegalArgumentException.class, () -> new ReminderEngine(
+                    List.of(), Duration.ZERO, clock));
+        assertThrows(IllegalArgumentException.class,
+                () -> engine.schedule(task(-1, HOUR)));
+    }
+
+    // the feed delivers on another thread
+    private void waitFor(int size) throws InterruptedException {
+        for (int i = 0; i < 500 && engine.size() != size; ++i) {
+            Thread.sleep(10);
+        }
+        assertEquals(size, engine.size());
+    }
+}
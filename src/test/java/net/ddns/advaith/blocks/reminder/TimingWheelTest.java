@@ -0,0 +1,164 @@
+/*
+ * This file is part of Blocks.
+ * 
+ * Blocks is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * Blocks is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with Blocks. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package net.ddns.advaith.blocks.reminder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Consumer;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for TimingWheel.
+ *
+ * @since 0.1.0
+ * @author Advaith Menon
+ */
+class TimingWheelTest {
+    private static final long START = 1_700_000_000_000L;
+
+    private final TimingWheel<Integer> wheel = new TimingWheel<>(10, START);
+
+    private final List<Integer> fired = new ArrayList<>();
+
+    private void advance(long to) {
+        wheel.advance(to, e -> fired.add(e.getValue()));
+    }
+
+    @Test
+    void testFire() {
+        wheel.schedule(START + 25, 1);
+        wheel.schedule(START + 5, 0);
+        wheel.schedule(START + 1000, 2);
+        assertEquals(3, wheel.size());
+        advance(START + 20);
+        assertEquals(List.of(0), fired);
+        advance(START + 30);
+        assertEquals(List.of(0, 1), fired);
+        advance(START + 999);
+        assertEquals(List.of(0, 1), fired);
+        advance(START + 1000);
+        assertEquals(List.of(0, 1, 2), fired);
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void testPast() {
+        TimingWheel.Entry<Integer> e = wheel.schedule(START - 1000, 7);
+        assertTrue(e.isScheduled());
+        advance(START);
+        assertEquals(List.of(7), fired);
+        assertFalse(e.isScheduled());
+    }
+
+    @Test
+    void testCancel() {
+        TimingWheel.Entry<Integer> a = wheel.schedule(START + 100, 1);
+        TimingWheel.Entry<Integer> b = wheel.schedule(START + 100_000_000L,
+                2);
+        wheel.schedule(START + 200, 3);
+        assertTrue(wheel.cancel(a));
+        assertTrue(wheel.cancel(b));
+        assertFalse(wheel.cancel(a));
+        assertEquals(1, wheel.size());
+        advance(START + 200_000_000L);
+        assertEquals(List.of(3), fired);
+    }
+
+    @Test
+    void testOrder() {
+        Random r = new Random(42);
+        List<Long> times = new ArrayList<>();
+        for (int i = 0; i < 5000; ++i) {
+            long t = START + r.nextInt(100_000_000);
+            times.add(t);
+            wheel.schedule(t, i);
+        }
+        List<Long> seen = new ArrayList<>();
+        for (long now = START; now <= START + 100_000_000L;
+                now += 1 + r.nextInt(2_000_000)) {
+            long n = now;
+            wheel.advance(now, e -> {
+                assertTrue(e.getTime() <= n);
+                seen.add(e.getTime());
+            });
+        }
+        wheel.advance(START + 100_000_000L, e -> seen.add(e.getTime()));
+        assertEquals(times.size(), seen.size());
+        for (int i = 1; i < seen.size(); ++i) {
+            // fired a tick at a time, so never more than a tick out of order
+            assertTrue(seen.get(i - 1) / 10 <= seen.get(i) / 10 + 1);
+        }
+    }
+
+    @Test
+    void testJump() {
+        wheel.schedule(START + 50, 1);
+        wheel.schedule(START + 86_400_000L * 365, 2);
+        // a year in one step only visits slots that have something in them
+        advance(START + 86_400_000L * 366);
+        assertEquals(List.of(1, 2), fired);
+        assertEquals(START + 86_400_000L * 366, wheel.getTime());
+    }
+
+    @Test
+    void testRewind() {
+        advance(START + 10_000);
+        wheel.schedule(START + 20_000, 1);
+        wheel.schedule(START + 9_000, 2);
+        wheel.rewind(START);
+        assertEquals(2, wheel.size());
+        advance(START + 8_000);
+        assertEquals(List.of(), fired);
+        advance(START + 9_000);
+        assertEquals(List.of(2), fired);
+        advance(START + 20_000);
+        assertEquals(List.of(2, 1), fired);
+    }
+
+    @Test
+    void testReschedule() {
+        // each value schedules the next one, from inside advance()
+        Consumer<TimingWheel.Entry<Integer>> chain = e -> {
+            fired.add(e.getValue());
+            if (e.getValue() < 3) {
+                wheel.schedule(START + 10 * (e.getValue() + 2),
+                        e.getValue() + 1);
+            }
+        };
+        wheel.schedule(START + 10, 1);
+        wheel.advance(START + 10, chain);
+        assertEquals(List.of(1), fired);
+        wheel.advance(START + 100, chain);
+        assertEquals(List.of(1, 2, 3), fired);
+    }
+
+    @Test
+    void testArguments() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new TimingWheel<>(0, START));
+        assertThrows(IllegalArgumentException.class,
+                () -> wheel.rewind(-1));
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * This file is part of Blocks.
+ * 
+ * Blocks is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * Blocks is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with Blocks. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.ddns.advaith.blocks.server;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.ddns.advaith.blocks.dao.MapTaskDAO;
+import net.ddns.advaith.blocks.model.Task;
+
+/**
+ * A small load test: every read of the DAO takes 5 ms, as it might on a
+ * network file system, and the throughput of the server is measured with
+ * more and more clients at once. Because each request waits on its own
+ * thread, throughput should grow with the number of clients until the
+ * machine runs out of something else.
+ *
+ * @since 0.1.0
+ * @author Advaith Menon
+ */
+class TaskServerLoadTest {
+    private static final Logger LOGGER = LoggerFactory.getLogger(
+            TaskServerLoadTest.class);
+
+    // requests made by each client
+    private static final int REQUESTS = 25;
+
+    @Test
+    void testConcurrencyScales() throws Exception {
+        MapTaskDAO dao = new MapTaskDAO() {
+            @Override
+            protected void beforeRead() {
+                try {
+                    Thread.sleep(5);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        for (int i = 0; i < 20; ++i) {
+            dao.add(new Task(-1, "Task " + i, null,
+                        ZonedDateTime.now().plusDays(i + 1)));
+        }
+        TaskServer server = new TaskServer(dao, new InetSocketAddress(
+                    InetAddress.getLoopbackAddress(), 0));
+        server.start();
+        HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1).build();
+        HttpRequest req = HttpRequest.newBuilder(URI.create("http://127.0.0.1:"
+                    + server.getPort() + "/tasks?limit=5")).build();
+        ExecutorService clients = Executors.newCachedThreadPool();
+        try {
+            // warm up
+            run(client, req, clients, 4);
+            double one = run(client, req, clients, 1);
+            double many = one;
+            for (int n: new int[] {4, 16, 32}) {
+                many = run(client, req, clients, n);
+                LOGGER.info("{} clients: {} requests/s ({}x)", n,
+                        Math.round(many), String.format("%.1f", many / one));
+            }
+            // 32 clients waiting on a 5 ms DAO should manage far more than
+            // one; leave plenty of room for slow machines
+            assertTrue(many > 4 * one, "no scaling: " + one + " vs "
+                    + many);
+        } finally {
+            clients.shutdownNow();
+            server.stop(0);
+        }
+    }
+
+    // requests per second with n clients
+    private static double run(HttpClient client, HttpRequest req,
+            ExecutorService pool, int n) throws Exception {
+        List<Future<?>> running = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int i = 0; i < n; ++i) {
+            running.add(pool.submit(() -> {
+                for (int j = 0; j < REQUESTS; ++j) {
+                    HttpResponse<String> r = client.send(req,
+                            HttpResponse.BodyHandlers.ofString());
+                    assertEquals(200, r.statusCode());
+                }
+                return null;
+            }));
+        }
+        for (Future<?> f: running) {
+            f.get();
+        }
+        return n * REQUESTS * 1e9 / (System.nanoTime() - start);
+    }
+}
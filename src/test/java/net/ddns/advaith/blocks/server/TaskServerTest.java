@@ -0,0 +1,207 @@
+/*
+ * This file is part of Blocks.
+ * 
+ * Blocks is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * Blocks is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with Blocks. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.ddns.advaith.blocks.server;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import net.ddns.advaith.blocks.dao.MapTaskDAO;
+import net.ddns.advaith.blocks.io.TaskFormat;
+import net.ddns.advaith.blocks.model.Task;
+
+/**
+ * Tests for TaskServer.
+ *
+ * @since 0.1.0
+ * @author Advaith Menon
+ */
+class TaskServerTest {
+    private static final ZonedDateTime BASE = ZonedDateTime.now(
+            ZoneOffset.UTC).plusYears(1).withNano(0);
+
+    private final HttpClient client = HttpClient.newHttpClient();
+    private MapTaskDAO dao;
+    private TaskServer server;
+
+    @BeforeEach
+    void start() throws IOException {
+        dao = new MapTaskDAO(3);
+        for (int i = 0; i < 10; ++i) {
+            dao.add(new Task(-1, i % 2 == 0 ? "Even" : "Odd", null,
+                        BASE.plusHours(i)));
+        }
+        server = new TaskServer(dao, new InetSocketAddress(
+                    InetAddress.getLoopbackAddress(), 0));
+        server.start();
+    }
+
+    @AfterEach
+    void stop() {
+        server.stop(0);
+    }
+
+    private HttpResponse<String> send(String method, String path,
+            String body, String... headers) throws IOException,
+            InterruptedException {
+        HttpRequest.Builder b = HttpRequest.newBuilder(URI.create(
+                    "http://127.0.0.1:" + server.getPort() + path));
+        if (headers.length > 0) {
+            b.headers(headers);
+        }
+        b.method(method, body == null ? HttpRequest.BodyPublishers.noBody()
+                : HttpRequest.BodyPublishers.ofString(body));
+        return client.send(b.build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static List<Task> tasks(HttpResponse<String> r) {
+        List<Task> out = new ArrayList<>();
+        for (String line: r.body().split("\n")) {
+            if (!line.isEmpty()) {
+                out.add(TaskFormat.JSONL.parse(line));
+            }
+        }
+        return out;
+    }
+
+    private static String q(String s) {
+        return URLEncoder.encode(s, StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void testCrud() throws Exception {
+        String deadline = BASE.plusDays(3).toString();
+        HttpResponse<String> r = send("POST", "/tasks", "{\"title\":\"New\","
+                + "\"details\":\"x\",\"deadline\":\"" + deadline + "\"}");
+        assertEquals(201, r.statusCode());
+        Task t = TaskFormat.JSONL.parse(r.body());
+        assertEquals(10, t.getID());
+        assertEquals("/tasks/10", r.headers().firstValue("Location")
+                .orElseThrow());
+        assertEquals(11, dao.size());
+
+        r = send("GET", "/tasks/10", null);
+        assertEquals(200, r.statusCode());
+        assertEquals("New", TaskFormat.JSONL.parse(r.body()).getTitle());
+
+        r = send("PUT", "/tasks/10", "{\"title\":\"Changed\",\"deadline\":\""
+                + deadline + "\"}");
+        assertEquals(200, r.statusCode());
+        assertNull(TaskFormat.JSONL.parse(send("GET", "/tasks/10", null)
+                    .body()).getDetails());
+
+        assertEquals(204, send("DELETE", "/tasks/10", null).statusCode());
+        assertEquals(404, send("GET", "/tasks/10", null).statusCode());
+        assertEquals(404, send("DELETE", "/tasks/10", null).statusCode());
+        assertEquals(10, dao.size());
+    }
+
+    @Test
+    void testErrors() throws Exception {
+        assertEquals(400, send("POST", "/tasks", "{\"title\":").statusCode());
+        // deadlines in the past are rejected, as in the UI
+        HttpResponse<String> r = send("POST", "/tasks", "{\"title\":\"A\","
+                + "\"deadline\":\"2000-01-01T00:00Z\"}");
+        assertEquals(400, r.statusCode());
+        assertTrue(r.body().startsWith("{\"error\":"));
+        assertEquals(400, send("GET", "/tasks?colour=red", null).statusCode());
+        assertEquals(400, send("GET", "/tasks?limit=-1", null).statusCode());
+        assertEquals(404, send("GET", "/tasks/abc", null).statusCode());
+        assertEquals(405, send("PATCH", "/tasks", null).statusCode());
+        assertEquals(200, send("GET", "/health", null).statusCode());
+        String big = "{\"title\":\"" + "x".repeat(TaskServer.MAX_BODY)
+            + "\"}";
+        assertEquals(413, send("POST", "/tasks", big).statusCode());
+        assertEquals(413, send("PUT", "/tasks/1", big).statusCode());
+    }
+
+    @Test
+    void testIfMatch() throws Exception {
+        String deadline = BASE.plusDays(3).toString();
+        HttpResponse<String> r = send("GET", "/tasks/4", null);
+        String etag = r.headers().firstValue("ETag").orElseThrow();
+        assertEquals("\"0\"", etag);
+
+        String body = "{\"title\":\"Mine\",\"deadline\":\"" + deadline
+            + "\"}";
+        r = send("PUT", "/tasks/4", body, "If-Match", etag);
+        assertEquals(200, r.statusCode());
+        assertEquals("\"1\"", r.headers().firstValue("ETag").orElseThrow());
+
+        // someone else's change, made with the old version, is refused
+        r = send("PUT", "/tasks/4", body.replace("Mine", "Theirs"),
+                "If-Match", etag);
+        assertEquals(412, r.statusCode());
+        assertEquals(412, send("DELETE", "/tasks/4", null, "If-Match", etag)
+                .statusCode());
+        assertEquals("Mine", TaskFormat.JSONL.parse(send("GET", "/tasks/4",
+                        null).body()).getTitle());
+        assertEquals(400, send("DELETE", "/tasks/4", null, "If-Match",
+                    "\"x\"").statusCode());
+        assertEquals(204, send("DELETE", "/tasks/4", null, "If-Match",
+                    "\"1\"").statusCode());
+    }
+
+    @Test
+    void testListing() throws Exception {
+        HttpResponse<String> r = send("GET", "/tasks", null);
+        assertEquals("application/x-ndjson", r.headers()
+                .firstValue("Content-Type").orElseThrow());
+        assertEquals(10, tasks(r).size());
+
+        // page through with continuation tokens
+        List<Long> seen = new ArrayList<>();
+        String path = "/tasks?limit=4";
+        while (path != null) {
+            r = send("GET", path, null);
+            tasks(r).forEach(t -> seen.add(t.getID()));
+            path = r.headers().firstValue(TaskServer.TOKEN_HEADER)
+                .map(tok -> "/tasks?limit=4&token=" + q(tok)).orElse(null);
+        }
+        assertEquals(List.of(0L, 1L, 2L, 3L, 4L, 5L, 6L, 7L, 8L, 9L), seen);
+    }
+
+    @Test
+    void testFilters() throws Exception {
+        HttpResponse<String> r = send("GET", "/tasks?title=Odd&deadline.ge="
+                + q(BASE.plusHours(4).toString()) + "&order=-deadline"
+                + "&offset=1&limit=2", null);
+        assertEquals(200, r.statusCode());
+        assertEquals(List.of(7L, 5L), tasks(r).stream().map(Task::getID)
+                .toList());
+        r = send("GET", "/tasks?title.like=" + q("E%"), null);
+        assertEquals(5, tasks(r).size());
+    }
+}
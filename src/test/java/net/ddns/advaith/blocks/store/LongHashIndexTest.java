@@ -0,0 +1,128 @@
+/*
+ * This file is part of Blocks.
+ *
+ * Blocks is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Blocks is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with Blocks. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.ddns.advaith.blocks.store;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for LongHashIndex and ConcurrentLongHashIndex. The single threaded
+ * index is checked against a HashMap with a random mix of operations, which
+ * also exercises the backward shift on removal.
+ *
+ * @since 0.1.0
+ * @author Advaith Menon
+ */
+class LongHashIndexTest {
+    @Test
+    void testAgainstHashMap() {
+        LongHashIndex<String> index = new LongHashIndex<>();
+        Map<Long, String> ref = new HashMap<>();
+        Random r = new Random(314);
+
+        for (int i = 0; i < 200_000; ++i) {
+            // a small key space, so that keys collide and get removed often
+            long key = r.nextInt(5000) - 100;
+            switch (r.nextInt(3)) {
+                case 0:
+                    assertEquals(ref.put(key, "v" + i), index.put(key, "v" + i));
+                    break;
+                case 1:
+                    assertEquals(ref.remove(key), index.remove(key));
+                    break;
+                default:
+                    assertEquals(ref.get(key), index.get(key));
+            }
+            assertEquals(ref.size(), index.size());
+        }
+
+        for (Map.Entry<Long, String> e: ref.entrySet()) {
+            assertEquals(e.getValue(), index.get(e.getKey()));
+        }
+        int[] seen = new int[1];
+        index.forEach((v, k) -> {
+            assertEquals(ref.get(k), v);
+            ++seen[0];
+        });
+        assertEquals(ref.size(), seen[0]);
+
+        index.clear();
+        assertTrue(index.isEmpty());
+        assertNull(index.get(0));
+        assertThrows(IllegalArgumentException.class, () -> index.put(1, null));
+    }
+
+    @Test
+    void testExtremeKeys() {
+        LongHashIndex<String> index = new LongHashIndex<>(0);
+        index.put(Long.MIN_VALUE, "min");
+        index.put(Long.MAX_VALUE, "max");
+        index.put(0, "zero");
+        index.put(-1, "minus one");
+        assertEquals("min", index.get(Long.MIN_VALUE));
+        assertEquals("max", index.get(Long.MAX_VALUE));
+        assertEquals("zero", index.get(0));
+        assertEquals("minus one", index.remove(-1));
+        assertNull(index.get(-1));
+        assertEquals(3, index.size());
+    }
+
+    @Test
+    void testConcurrent() throws Exception {
+        ConcurrentLongHashIndex<Long> index = new ConcurrentLongHashIndex<>();
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        List<Future<?>> futures = new ArrayList<>();
+
+        // each writer owns its own key range; readers run alongside them
+        for (int w = 0; w < 4; ++w) {
+            final long base = w * 100_000L;
+            futures.add(pool.submit(() -> {
+                for (long k = base; k < base + 50_000; ++k) {
+                    index.put(k, k);
+                    Long v = index.get(k);
+                    assertEquals(k, v.longValue());
+                    if (k % 2 == 0) {
+                        index.remove(k);
+                    }
+                }
+            }));
+        }
+        for (Future<?> f: futures) {
+            f.get();
+        }
+        pool.shutdown();
+
+        assertEquals(4 * 25_000, index.size());
+        assertNull(index.get(0));
+        assertEquals(1L, index.get(1).longValue());
+        assertEquals(1L, index.putIfAbsent(1, 2L).longValue());
+        assertNull(index.putIfAbsent(0, 0L));
+    }
+}
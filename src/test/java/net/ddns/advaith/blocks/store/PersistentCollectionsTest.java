@@ -0,0 +1,167 @@
+/*
+ * This file is part of Blocks.
+ * 
+ * Blocks is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * Blocks is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with Blocks. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package net.ddns.advaith.blocks.store;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for PersistentLongMap and PersistentSortedList. Both are checked
+ * against the java.util collections with a random mix of operations, while
+ * holding on to old versions to check that they never change.
+ *
+ * @since 0.1.0
+ * @author Advaith Menon
+ */
+class PersistentCollectionsTest {
+    @Test
+    void testMap() {
+        Random r = new Random(7);
+        PersistentLongMap<Long> map = PersistentLongMap.empty();
+        Map<Long, Long> expected = new HashMap<>();
+        List<PersistentLongMap<Long>> versions = new ArrayList<>();
+        List<Map<Long, Long>> copies = new ArrayList<>();
+        for (int i = 0; i < 20000; ++i) {
+            // dense IDs, and a few far apart ones
+            long key = r.nextInt(10) == 0 ? r.nextLong() : r.nextInt(3000);
+            if (r.nextInt(3) == 0) {
+                map = map.remove(key);
+                expected.remove(key);
+            } else {
+                map = map.put(key, (long) i);
+                expected.put(key, (long) i);
+            }
+            if (i % 1000 == 0) {
+                versions.add(map);
+                copies.add(new HashMap<>(expected));
+            }
+        }
+        check(expected, map);
+        for (int i = 0; i < versions.size(); ++i) {
+            check(copies.get(i), versions.get(i));
+        }
+        for (long key: new ArrayList<>(expected.keySet())) {
+            map = map.remove(key);
+        }
+        assertTrue(map.isEmpty());
+        assertNull(map.get(0));
+    }
+
+    @Test
+    void testMapEdges() {
+        PersistentLongMap<String> map = PersistentLongMap.empty();
+        PersistentLongMap<String> one = map.put(Long.MIN_VALUE, "a")
+            .put(Long.MAX_VALUE, "b").put(-1, "c");
+        assertEquals("a", one.get(Long.MIN_VALUE));
+        assertEquals("b", one.get(Long.MAX_VALUE));
+        assertEquals("c", one.get(-1));
+        assertEquals(3, one.size());
+        assertSame(one, one.remove(5));
+        assertEquals(0, map.size());
+        assertThrows(IllegalArgumentException.class, () -> map.put(1, null));
+    }
+
+    private static void check(Map<Long, Long> expected,
+            PersistentLongMap<Long> map) {
+        assertEquals(expected.size(), map.size());
+        for (Map.Entry<Long, Long> e: expected.entrySet()) {
+            assertEquals(e.getValue(), map.get(e.getKey()));
+        }
+        for (long key = 0; key < 3000; ++key) {
+            assertEquals(expected.containsKey(key), map.containsKey(key));
+        }
+    }
+
+    @Test
+    void testList() {
+        Random r = new Random(11);
+        PersistentSortedList<Integer> list = PersistentSortedList.empty(
+                Comparator.naturalOrder());
+        TreeSet<Integer> expected = new TreeSet<>();
+        List<PersistentSortedList<Integer>> versions = new ArrayList<>();
+        List<List<Integer>> copies = new ArrayList<>();
+        for (int i = 0; i < 20000; ++i) {
+            int e = r.nextInt(5000);
+            if (r.nextInt(3) == 0) {
+                list = list.remove(e);
+                expected.remove(e);
+            } else {
+                list = list.add(e);
+                expected.add(e);
+            }
+            if (i % 2000 == 0) {
+                versions.add(list);
+                copies.add(new ArrayList<>(expected));
+            }
+        }
+        check(new ArrayList<>(expected), list);
+        for (int i = 0; i < versions.size(); ++i) {
+            check(copies.get(i), versions.get(i));
+        }
+    }
+
+    @Test
+    void testListPositions() {
+        PersistentSortedList<Integer> empty = PersistentSortedList.empty(
+                Comparator.naturalOrder());
+        PersistentSortedList<Integer> list = empty.add(50).add(0).add(90)
+            .add(10).add(70).add(30).add(20).add(80).add(40).add(60);
+        assertEquals(10, list.size());
+        assertEquals(30, list.get(3));
+        assertEquals(4, list.indexAfter(e -> Integer.compare(e, 30)));
+        assertEquals(4, list.indexAfter(e -> Integer.compare(e, 35)));
+        assertEquals(0, list.indexAfter(e -> Integer.compare(e, -1)));
+        Iterator<Integer> it = list.iterator(8);
+        assertEquals(80, it.next());
+        assertEquals(90, it.next());
+        assertFalse(it.hasNext());
+        assertFalse(list.iterator(10).hasNext());
+        assertSame(list, list.remove(5));
+        assertThrows(IndexOutOfBoundsException.class, () -> list.get(10));
+        assertThrows(IndexOutOfBoundsException.class,
+                () -> list.iterator(11));
+    }
+
+    private static void check(List<Integer> expected,
+            PersistentSortedList<Integer> list) {
+        assertEquals(expected.size(), list.size());
+        List<Integer> seen = new ArrayList<>();
+        list.forEach(seen::add);
+        assertEquals(expected, seen);
+        for (int i = 0; i < expected.size(); i += 97) {
+            assertEquals(expected.get(i), list.get(i));
+            Iterator<Integer> it = list.iterator(i);
+            assertEquals(expected.get(i), it.next());
+        }
+    }
+}
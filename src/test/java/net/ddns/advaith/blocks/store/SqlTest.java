@@ -0,0 +1,129 @@
+/*
+ * This file is part of Blocks.
+ * 
+ * Blocks is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * Blocks is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with Blocks. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.ddns.advaith.blocks.store;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import net.ddns.advaith.blocks.model.Query;
+import net.ddns.advaith.blocks.model.Task;
+import net.ddns.advaith.blocks.model.TaskKey;
+
+/**
+ * Tests for rendering queries as SQL.
+ *
+ * @since 0.1.0
+ * @author Advaith Menon
+ */
+class SqlTest {
+    @Test
+    void testProjectionOrderLimit() {
+        List<Object> params = new ArrayList<>();
+        Query q = Query.select(Task.ID_FIELD, Task.DEADLINE_FIELD)
+            .from(Task.TABLE).orderBy(Task.DEADLINE_FIELD).limit(50).build();
+        assertEquals("SELECT \"id\", \"deadline\" FROM \"tasks\" ORDER BY "
+                + "\"deadline\" ASC LIMIT 50", Sql.select(q, params));
+        assertEquals(List.of(), params);
+
+        q = Query.select().from(Task.TABLE).offset(10).build();
+        assertEquals("SELECT * FROM \"tasks\" LIMIT -1 OFFSET 10",
+                Sql.select(q, params));
+    }
+
+    @Test
+    void testWhereIsLeftToRight() {
+        List<Object> params = new ArrayList<>();
+        Query q = Query.select().from(Task.TABLE)
+            .where(Task.TITLE_FIELD).like("a%").or()
+            .where(Task.TITLE_FIELD).like("b%").and()
+            .where(Task.ID_FIELD).greaterThan(3L).and()
+            .where(Task.ID_FIELD).lessThan(9L).finish()
+            .orderBy(Task.TITLE_FIELD, Query.Order.DESC).build();
+        assertEquals("SELECT * FROM \"tasks\" WHERE (\"title\" LIKE ? OR "
+                + "\"title\" LIKE ?) AND \"id\" > ? AND \"id\" < ? ORDER BY "
+                + "\"title\" DESC", Sql.select(q, params));
+        assertEquals(List.of("a%", "b%", 3L, 9L), params);
+    }
+
+    @Test
+    void testAggregate() {
+        List<Object> params = new ArrayList<>();
+        Query q = Query.select().from(Task.TABLE)
+            .where(Task.ID_FIELD).greaterThan(3L).finish()
+            .aggregate(Query.count(), Query.max(Task.DEADLINE_FIELD))
+            .groupByDay(Task.DEADLINE_FIELD, ZoneOffset.ofHoursMinutes(5, 30))
+            .build();
+        assertEquals("SELECT date(\"deadline\" / 1000, 'unixepoch', ?), "
+                + "COUNT(*), MAX(\"deadline\") FROM \"tasks\" WHERE \"id\" > ? "
+                + "GROUP BY 1 ORDER BY 1", Sql.aggregate(q, params));
+        assertEquals(List.of("+330 minutes", 3L), params);
+
+        Query dst = Query.select().from(Task.TABLE).aggregate(Query.count())
+            .groupByDay(Task.DEADLINE_FIELD, ZoneId.of("Europe/London"))
+            .build();
+        assertThrows(UnsupportedOperationException.class,
+                () -> Sql.aggregate(dst, new ArrayList<>()));
+    }
+
+    @Test
+    void testAfter() {
+        List<Object> params = new ArrayList<>();
+        assertEquals("SELECT * FROM \"tasks\" ORDER BY \"deadline\" ASC, "
+                + "\"id\" ASC LIMIT ?", Sql.after(Task.TABLE, null, 50, params));
+        assertEquals(List.of(50), params);
+
+        params.clear();
+        TaskKey k = new TaskKey(Instant.ofEpochMilli(1234), 7);
+        assertEquals("SELECT * FROM \"tasks\" WHERE (\"deadline\", \"id\") > "
+                + "(?, ?) ORDER BY \"deadline\" ASC, \"id\" ASC LIMIT ?",
+                Sql.after(Task.TABLE, k, 50, params));
+        assertEquals(List.of(1234L, 7L, 50), params);
+    }
+
+    @Test
+    void testCompareAndSet() {
+        ZonedDateTime d = ZonedDateTime.ofInstant(Instant.ofEpochMilli(
+                    86_400_000L), ZoneOffset.UTC);
+        Task t = Task.restore(7, "Title", null, d, 3);
+        List<Object> params = new ArrayList<>();
+        assertEquals("UPDATE \"tasks\" SET \"title\" = ?, \"details\" = ?, "
+                + "\"deadline\" = ?, \"version\" = \"version\" + 1 WHERE "
+                + "\"id\" = ? AND \"version\" = ?",
+                Sql.update(Task.TABLE, t, params));
+        assertEquals(Arrays.asList("Title", null, 86_400_000L, 7L, 3L),
+                params);
+
+        params.clear();
+        t.setVersion(-1);
+        assertEquals("DELETE FROM \"tasks\" WHERE \"id\" = ?",
+                Sql.delete(Task.TABLE, t, params));
+        assertEquals(List.of(7L), params);
+        t.setID(-1);
+        assertThrows(IllegalArgumentException.class,
+                () -> Sql.delete(Task.TABLE, t, new ArrayList<>()));
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * This file is part of Blocks.
+ *
+ * Blocks is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Blocks is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with Blocks. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.ddns.advaith.blocks.store;
+
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import net.ddns.advaith.blocks.model.LikePattern;
+import net.ddns.advaith.blocks.model.Query;
+import net.ddns.advaith.blocks.model.Task;
+
+/**
+ * Tests for TaskSearchIndex, and the Tokenizer and Fts5 rules behind it.
+ *
+ * @since 0.1.0
+ * @author Advaith Menon
+ */
+class TaskSearchIndexTest {
+    private static final ZonedDateTime LATER = ZonedDateTime.now()
+        .plusYears(1);
+
+    private static final String[] WORDS = {"buy", "milk", "bread", "butter",
+        "call", "mom", "pay", "bills", "book", "flight", "bake", "cake"};
+
+    private static String sentence(Random r) {
+        StringBuilder b = new StringBuilder();
+        int n = 1 + r.nextInt(5);
+        for (int i = 0; i < n; ++i) {
+            b.append(i == 0 ? "" : (r.nextBoolean() ? " " : ", "))
+                .append(WORDS[r.nextInt(WORDS.length)]);
+        }
+        return b.toString();
+    }
+
+    /**
+     * The index must never leave out a task that matches.
+     */
+    @Test
+    void testCandidatesAreSuperset() {
+        Random r = new Random(1);
+        TaskSearchIndex index = new TaskSearchIndex();
+        List<Task> tasks = new ArrayList<>();
+        for (int i = 0; i < 500; ++i) {
+            Task t = new Task(i, sentence(r), r.nextBoolean() ? null
+                    : sentence(r), LATER);
+            tasks.add(t);
+            index.add(t);
+        }
+        // churn, so updates and deletes are covered too
+        for (int i = 0; i < 200; ++i) {
+            Task t = tasks.get(r.nextInt(tasks.size()));
+            if (r.nextInt(4) == 0) {
+                index.delete(t.getID());
+                tasks.remove(t);
+            } else {
+                t.setTitle(sentence(r));
+                index.update(t);
+            }
+        }
+
+        String[] patterns = {"%milk%", "buy%", "%buy milk%", "b%", "%bu%",
+            "buy", "%, bread", "%ca_e%", "%call mom%", "%ilk%", "%ak%",
+            "%ills", "%e_d%", "_ut%"};
+        for (String s: patterns) {
+            LikePattern p = LikePattern.compile(s);
+            long[] c = index.candidates(Task.TITLE_FIELD, p);
+            for (Task t: tasks) {
+                if (p.matches(t.getTitle())) {
+                    assertTrue(c == null || Arrays.binarySearch(c,
+                                t.getID()) >= 0, s + " missed " + t);
+                }
+            }
+        }
+        assertNull(index.candidates(Task.TITLE_FIELD,
+                    LikePattern.compile("%_%")));
+    }
+
+    @Test
+    void testQueryAndSearch() {
+        TaskSearchIndex index = new TaskSearchIndex();
+        index.add(new Task(1, "Buy milk", "from the corner shop", LATER));
+        index.add(new Task(2, "Buy bread", null, LATER));
+        index.add(new Task(3, "Call mom", "about the milk", LATER));
+
+        Query q = Query.select().from(Task.TABLE)
+            .where(Task.TITLE_FIELD).like("buy%").and()
+            .where(Task.DETAILS_FIELD).like("% corner shop").finish()
+            .build();
+        assertArrayEquals(new long[] {1}, index.candidates(q));
+
+        q = Query.select().from(Task.TABLE)
+            .where(Task.TITLE_FIELD).like("buy%").or()
+            .where(Task.DETAILS_FIELD).like("%shop").finish()
+            .build();
+        assertNull(index.candidates(q));
+
+        // pieces of words: through the trigrams, or every term if shorter
+        assertArrayEquals(new long[] {1}, index.candidates(Task.TITLE_FIELD,
+                    LikePattern.contains("ilk")));
+        assertArrayEquals(new long[] {1, 3}, index.candidates(
+                    Task.DETAILS_FIELD, LikePattern.contains("o")));
+        assertArrayEquals(new long[] {2}, index.candidates(Task.TITLE_FIELD,
+                    LikePattern.compile("%ead")));
+        assertArrayEquals(new long[] {}, index.candidates(Task.TITLE_FIELD,
+                    LikePattern.compile("%il")));
+        assertArrayEquals(new long[] {}, index.candidates(Task.TITLE_FIELD,
+                    LikePattern.contains("xyz")));
+
+        assertArrayEquals(new long[] {1, 3}, index.search("milk"));
+        assertArrayEquals(new long[] {1, 2}, index.search("bu"));
+        assertArrayEquals(new long[] {}, index.search("bu "));
+        assertArrayEquals(new long[] {3}, index.search("mom mi"));
+        assertNull(index.search("  "));
+
+        index.delete(1);
+        assertArrayEquals(new long[] {3}, index.search("milk"));
+        assertEquals(2, index.size());
+    }
+
+    @Test
+    void testFts5() {
+        assertEquals("title : (\"buy\" AND \"mil\"*)",
+                Fts5.match("title", LikePattern.compile("buy mil%")));
+        assertNull(Fts5.match("title", LikePattern.compile("%ilk%")));
+        assertEquals("title : (\"buy\")",
+                Fts5.match("title", LikePattern.compile("buy %ilk%")));
+        assertEquals("\"call\" AND \"mo\"*", Fts5.search("Call mo"));
+    }
+}
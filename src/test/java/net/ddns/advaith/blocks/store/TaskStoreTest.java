@@ -0,0 +1,200 @@
+/*
+ * This file is part of Blocks.
+ * 
+ * Blocks is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * Blocks is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with Blocks. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.ddns.advaith.blocks.store;
+
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import net.ddns.advaith.blocks.model.Change;
+import net.ddns.advaith.blocks.model.ConflictException;
+import net.ddns.advaith.blocks.model.Task;
+import net.ddns.advaith.blocks.model.TaskKey;
+
+/**
+ * Tests for TaskStore.
+ *
+ * @since 0.1.0
+ * @author Advaith Menon
+ */
+class TaskStoreTest {
+    private static final ZonedDateTime BASE = ZonedDateTime.now()
+        .plusYears(1);
+
+    @Test
+    void testWrites() {
+        TaskStore store = new TaskStore();
+        Task a = new Task(-1, "A", null, BASE.plusHours(2));
+        Task b = new Task(-1, "B", null, BASE.plusHours(1));
+        store.add(a);
+        store.add(b);
+        assertEquals(0, a.getID());
+        assertEquals(1, b.getID());
+        assertThrows(IllegalArgumentException.class,
+                () -> store.add(Task.restore(0, "Dup", null, BASE)));
+
+        TaskStore.Snapshot before = store.snapshot();
+        assertEquals(List.of(1L, 0L), ids(before));
+
+        b.setDeadline(BASE.plusHours(3));
+        assertTrue(store.update(b));
+        assertFalse(store.update(Task.restore(7, "X", null, BASE)));
+        assertEquals(List.of(0L, 1L), ids(store.snapshot()));
+        assertTrue(store.delete(0));
+        assertFalse(store.delete(0));
+        assertNull(store.get(0));
+        assertEquals(List.of(1L), ids(store.snapshot()));
+
+        // the old snapshot has not changed
+        assertEquals(List.of(1L, 0L), ids(before));
+        assertEquals(BASE.plusHours(1), before.get(1).getDeadline());
+        assertEquals(2, before.getVersion());
+        assertEquals(4, store.snapshot().getVersion());
+
+        // handing out copies
+        store.get(1).setTitle("Changed");
+        assertEquals("B", store.get(1).getTitle());
+        assertEquals(1, store.snapshot().indexAfter(TaskKey.of(b)));
+        assertEquals(0, store.snapshot().indexAfter(TaskKey.of(a)));
+    }
+
+    @Test
+    void testAddAllIsAtomic() {
+        TaskStore store = new TaskStore();
+        store.add(Task.restore(5, "Five", null, BASE));
+        List<Task> batch = List.of(new Task(-1, "A", null, BASE),
+                Task.restore(5, "Clash", null, BASE));
+        assertThrows(IllegalArgumentException.class, () -> store.addAll(
+                    batch));
+        assertEquals(1, store.snapshot().size());
+        assertEquals(-1, batch.get(0).getID());
+
+        store.addAll(List.of(new Task(-1, "A", null, BASE),
+                    new Task(-1, "B", null, BASE)));
+        assertEquals(List.of(5L, 6L, 7L), ids(store.snapshot()));
+    }
+
+    @Test
+    void testConcurrentWriters() throws Exception {
+        TaskStore store = new TaskStore();
+        List<Change<Task>> seen = new ArrayList<>();
+        store.addListener(seen::add);
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        List<Future<?>> writers = new ArrayList<>();
+        for (int w = 0; w < 8; ++w) {
+            writers.add(pool.submit(() -> {
+                for (int i = 0; i < 200; ++i) {
+                    Task t = new Task(-1, "T", null, BASE.plusMinutes(i));
+                    store.add(t);
+                    if (i % 2 == 0) {
+                        t.setTitle("Updated");
+                        store.update(t);
+                    }
+                    // readers never see a half made change
+                    TaskStore.Snapshot s = store.snapshot();
+                    assertEquals(s.size(), s.tasks().size());
+                }
+            }));
+        }
+        for (Future<?> f: writers) {
+            f.get();
+        }
+        pool.shutdown();
+
+        TaskStore.Snapshot s = store.snapshot();
+        assertEquals(1600, s.size());
+        Set<Long> unique = new HashSet<>(ids(s));
+        assertEquals(1600, unique.size());
+        // listeners hear every change once, in order
+        assertEquals(2400, seen.size());
+        for (int i = 0; i < seen.size(); ++i) {
+            assertEquals(i + 1, seen.get(i).getSequence());
+        }
+        assertEquals(2400, s.getVersion());
+    }
+
+    @Test
+    void testCompareAndSet() throws Exception {
+        TaskStore store = new TaskStore();
+        Task t = new Task(-1, "A", null, BASE);
+        store.add(t);
+        assertEquals(0, t.getVersion());
+        Task mine = store.get(0);
+        Task theirs = store.get(0);
+        mine.setTitle("Mine");
+        assertTrue(store.update(mine));
+        assertEquals(1, mine.getVersion());
+        theirs.setTitle("Theirs");
+        ConflictException e = assertThrows(ConflictException.class,
+                () -> store.update(theirs));
+        assertEquals(0, e.getExpectedVersion());
+        assertEquals(1, e.getActualVersion());
+        assertThrows(ConflictException.class, () -> store.delete(0, 0));
+        assertEquals("Mine", store.get(0).getTitle());
+
+        // unversioned writes always go through
+        assertTrue(store.update(Task.restore(0, "Blind", null, BASE)));
+        assertEquals(2, store.get(0).getVersion());
+
+        // writers that retry on conflicts lose no updates
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        List<Future<?>> writers = new ArrayList<>();
+        for (int w = 0; w < 8; ++w) {
+            writers.add(pool.submit(() -> {
+                for (int i = 0; i < 100; ++i) {
+                    while (true) {
+                        Task cur = store.get(0);
+                        String n = cur.getDetails() == null ? "0"
+                            : cur.getDetails();
+                        cur.setDetails(String.valueOf(Integer.parseInt(n)
+                                    + 1));
+                        try {
+                            store.update(cur);
+                            break;
+                        } catch (ConflictException ex) {
+                            // somebody beat us to it; read it again
+                        }
+                    }
+                }
+            }));
+        }
+        for (Future<?> f: writers) {
+            f.get();
+        }
+        pool.shutdown();
+        assertEquals("800", store.get(0).getDetails());
+        assertEquals(802, store.get(0).getVersion());
+        assertTrue(store.delete(0, 802));
+    }
+
+    private static List<Long> ids(TaskStore.Snapshot s) {
+        return s.tasks().stream().map(Task::getID).toList();
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * This file is part of Blocks.
+ *
+ * Blocks is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Blocks is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with Blocks. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.ddns.advaith.blocks.store;
+
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import net.ddns.advaith.blocks.model.Task;
+
+/**
+ * Tests for the TaskTable class.
+ *
+ * @since 0.1.0
+ * @author Advaith Menon
+ */
+class TaskTableTest {
+    // a fixed point far enough in the future for Task to accept it
+    private static final ZonedDateTime BASE = ZonedDateTime.of(2100, 1, 1, 0,
+            0, 0, 0, ZoneId.of("UTC"));
+
+    private static Task task(long id, int day) {
+        return new Task(id, "Task " + id, id % 2 == 0 ? null : "Details " + id,
+                BASE.plusDays(day));
+    }
+
+    private static long millis(int day) {
+        return BASE.plusDays(day).toInstant().toEpochMilli();
+    }
+
+    @Test
+    void testAddAndGet() {
+        TaskTable t = new TaskTable(1);
+        for (int i = 0; i < 100; ++i) {
+            assertEquals(i, t.add(task(i, i)));
+        }
+        assertEquals(100, t.size());
+
+        Task x = t.get(t.rowOf(41));
+        assertEquals(41, x.getID());
+        assertEquals("Task 41", x.getTitle());
+        assertEquals("Details 41", x.getDetails());
+        assertEquals(BASE.plusDays(41), x.getDeadline());
+        assertNull(t.get(t.rowOf(42)).getDetails());
+
+        assertThrows(IllegalArgumentException.class, () -> t.add(task(41, 0)));
+        assertThrows(IllegalArgumentException.class,
+                () -> t.add(new Task(-1, "x", null, BASE)));
+        assertThrows(IndexOutOfBoundsException.class, () -> t.get(100));
+    }
+
+    @Test
+    void testUpdateAndDelete() {
+        TaskTable t = new TaskTable();
+        for (int i = 0; i < 10; ++i) {
+            t.add(task(i, i));
+        }
+
+        assertTrue(t.update(new Task(3, "Renamed", "New details",
+                        BASE.plusDays(50))));
+        assertFalse(t.update(task(99, 0)));
+        assertEquals("Renamed", t.getTitle(t.rowOf(3)));
+        assertEquals("New details", t.getDetails(t.rowOf(3)));
+
+        assertTrue(t.delete(0));
+        assertFalse(t.delete(0));
+        assertEquals(9, t.size());
+        assertEquals(-1, t.rowOf(0));
+
+        // churn through enough updates to force the pool to compact
+        for (int n = 0; n < 50; ++n) {
+            for (int i = 1; i < 10; ++i) {
+                t.update(new Task(i, "Title " + n, "Round " + n,
+                            BASE.plusDays(i)));
+            }
+        }
+        for (int i = 1; i < 10; ++i) {
+            Task x = t.get(t.rowOf(i));
+            assertEquals("Title 49", x.getTitle());
+            assertEquals("Round 49", x.getDetails());
+        }
+    }
+
+    @Test
+    void testIncompleteTask() {
+        TaskTable t = new TaskTable();
+        t.add(task(1, 1));
+        // a subclass can leave the deadline unset
+        Task bad = new Task() { };
+        bad.setID(2);
+        bad.setTitle("No deadline");
+        assertThrows(IllegalArgumentException.class, () -> t.add(bad));
+        assertEquals(1, t.size());
+        assertEquals(-1, t.rowOf(2));
+        bad.setID(1);
+        assertThrows(IllegalArgumentException.class, () -> t.update(bad));
+        assertEquals("Task 1", t.get(t.rowOf(1)).getTitle());
+        assertEquals(1, t.add(task(3, 3)));
+    }
+
+    @Test
+    void testScans() {
+        TaskTable t = new TaskTable();
+        for (int i = 0; i < 1000; ++i) {
+            t.add(task(i, i % 10));
+        }
+        int[] rows = new int[t.size()];
+
+        assertEquals(300, t.countDeadlineBetween(millis(2), millis(5)));
+        int n = t.selectDeadlineBetween(millis(2), millis(5), rows);
+        assertEquals(300, n);
+        for (Task x: t.materialize(rows, n)) {
+            long d = x.getDeadline().toInstant().toEpochMilli();
+            assertTrue(d >= millis(2) && d < millis(5));
+        }
+
+        assertEquals(100, t.countDeadlineEquals(millis(7)));
+        assertEquals(100, t.selectDeadlineEquals(millis(7), rows));
+
+        n = t.selectIDBetween(10, 13, rows);
+        List<Task> l = t.materialize(rows, n);
+        assertEquals(3, l.size());
+        assertEquals(10, l.get(0).getID());
+        assertEquals(12, l.get(2).getID());
+
+        assertThrows(IllegalArgumentException.class,
+                () -> t.selectDeadlineEquals(0, new int[1]));
+    }
+
+    @Test
+    void testPastDeadlines() {
+        TaskTable t = new TaskTable();
+        ZonedDateTime past = ZonedDateTime.of(2001, 9, 9, 1, 46, 40, 0,
+                ZoneId.of("Asia/Kolkata"));
+        t.add(Task.restore(1, "Overdue", null, past));
+        assertEquals(past, t.get(0).getDeadline());
+    }
+}